@@ -0,0 +1,50 @@
+-- Corridor-bounded variant of astar() from spdb.sql.
+-- Only edges intersecting the bounding box of the start and end vertices, expanded by a margin, are handed
+-- to pgr_astar, so the edge load grows with the trip length instead of the size of the ways table.
+-- When no path exists inside the corridor the margin is doubled and the search repeated; after max_attempts
+-- the unbounded astar() is used, so the function never returns less than astar() would.
+
+CREATE INDEX IF NOT EXISTS ways_the_geom_gist_idx ON ways USING gist (the_geom);
+
+CREATE OR REPLACE FUNCTION astar_bounded(start_id BIGINT, end_id BIGINT, v int, w double precision, heur int,
+                                         margin_ratio double precision DEFAULT 0.25,
+                                         min_margin double precision DEFAULT 0.05,
+                                         max_attempts int DEFAULT 3)
+     RETURNS TABLE(
+         seq INT,
+         path_seq INT,
+         node BIGINT,
+         edge BIGINT,
+         cost DOUBLE PRECISION,
+         agg_cost DOUBLE PRECISION
+                  ) AS $$
+    DECLARE
+        area box2d;
+        margin double precision;
+        attempt int := 1;
+    BEGIN
+        SELECT ST_Extent(the_geom) INTO area FROM ways_vertices_pgr WHERE id IN (start_id, end_id);
+        IF area IS NULL THEN
+            RETURN;
+        END IF;
+
+        margin := greatest(min_margin,
+                           margin_ratio * sqrt((ST_XMax(area) - ST_XMin(area)) ^ 2 + (ST_YMax(area) - ST_YMin(area)) ^ 2));
+
+        WHILE attempt <= max_attempts LOOP
+            RETURN QUERY
+                SELECT * FROM pgr_astar(edge_cost_sql(v, w,
+                                                      ST_MakeEnvelope(ST_XMin(area) - margin, ST_YMin(area) - margin,
+                                                                      ST_XMax(area) + margin, ST_YMax(area) + margin,
+                                                                      4326)),
+                    start_id, end_id, true, heur);
+            IF FOUND THEN
+                RETURN;
+            END IF;
+            margin := margin * 2;
+            attempt := attempt + 1;
+        END LOOP;
+
+        RETURN QUERY SELECT * FROM astar(start_id, end_id, v, w, heur);
+    END; $$
+    LANGUAGE plpgsql;
@@ -0,0 +1,94 @@
+-- Route search for several maximum speeds at once, sharing one edge set.
+-- The edges (the corridor used by astar_bounded(), or the whole ways table when bounded is false) are copied once
+-- into a temporary table together with their stored lengths (ways.cost_length), so every per-speed pgr_astar call
+-- reads the prepared rows instead of scanning ways again.
+-- Speeds not lower than the highest speed limit in the edge set give identical edge costs, as do all speeds when
+-- w = 1, so such speeds are searched only once and share the resulting path.
+-- Requires astar_bounded.sql (index on the_geom) and edge_costs.sql.
+
+CREATE OR REPLACE FUNCTION astar_multi(start_id BIGINT, end_id BIGINT, speeds int[], w double precision, heur int,
+                                       bounded boolean DEFAULT true,
+                                       margin_ratio double precision DEFAULT 0.25,
+                                       min_margin double precision DEFAULT 0.05)
+     RETURNS TABLE(
+         v INT,
+         seq INT,
+         edge BIGINT
+                  ) AS $$
+    DECLARE
+        area box2d;
+        margin double precision;
+        top_speed double precision;
+        speed int;
+        effective_speed double precision;
+        edges_sql text;
+    BEGIN
+        SELECT ST_Extent(the_geom) INTO area FROM ways_vertices_pgr WHERE id IN (start_id, end_id);
+        IF area IS NULL THEN
+            RETURN;
+        END IF;
+
+        margin := greatest(min_margin,
+                           margin_ratio * sqrt((ST_XMax(area) - ST_XMin(area)) ^ 2 + (ST_YMax(area) - ST_YMin(area)) ^ 2));
+
+        DROP TABLE IF EXISTS astar_multi_edges;
+        DROP TABLE IF EXISTS astar_multi_paths;
+        CREATE TEMP TABLE astar_multi_paths(effective double precision, seq int, edge bigint) ON COMMIT DROP;
+        CREATE TEMP TABLE astar_multi_edges ON COMMIT DROP AS
+            SELECT gid, source, target, cost_length AS len,
+                   sign(cost) AS forward, sign(reverse_cost) AS backward,
+                   maxspeed_forward AS speed_forward, maxspeed_backward AS speed_backward,
+                   x1, y1, x2, y2
+            FROM ways
+            WHERE NOT bounded
+               OR the_geom && ST_MakeEnvelope(ST_XMin(area) - margin, ST_YMin(area) - margin,
+                                              ST_XMax(area) + margin, ST_YMax(area) + margin, 4326);
+
+        SELECT max(greatest(speed_forward, speed_backward)) INTO top_speed FROM astar_multi_edges;
+
+        FOR speed IN SELECT DISTINCT unnest(speeds) LOOP
+            effective_speed := CASE WHEN w = 1 THEN 0 ELSE least(speed, top_speed) END;
+            CONTINUE WHEN EXISTS (SELECT 1 FROM astar_multi_paths p WHERE p.effective = effective_speed);
+
+            edges_sql := format('SELECT gid AS id,
+                             source::integer,
+                             target::integer,
+                             edge_cost(forward, len, speed_forward, %2$s, %1$s) AS cost,
+                             edge_cost(backward, len, speed_backward, %2$s, %1$s) AS reverse_cost,
+                             x1, y1, x2, y2
+                             FROM astar_multi_edges', w, speed);
+
+            INSERT INTO astar_multi_paths
+                SELECT effective_speed, res.seq, res.edge FROM pgr_astar(edges_sql, start_id, end_id, true, heur) res;
+
+            -- Whether a path exists does not depend on the speed, so a failure can only happen on the first search.
+            -- The corridor is then replaced by the whole ways table, like the fallback in astar_bounded().
+            IF NOT FOUND AND bounded THEN
+                bounded := false;
+                TRUNCATE astar_multi_edges;
+                INSERT INTO astar_multi_edges
+                    SELECT gid, source, target, cost_length,
+                           sign(cost), sign(reverse_cost),
+                           maxspeed_forward, maxspeed_backward,
+                           x1, y1, x2, y2
+                    FROM ways;
+                SELECT max(greatest(speed_forward, speed_backward)) INTO top_speed FROM astar_multi_edges;
+                effective_speed := CASE WHEN w = 1 THEN 0 ELSE least(speed, top_speed) END;
+
+                INSERT INTO astar_multi_paths
+                    SELECT effective_speed, res.seq, res.edge
+                    FROM pgr_astar(edges_sql, start_id, end_id, true, heur) res;
+            END IF;
+            IF NOT FOUND THEN
+                RETURN;
+            END IF;
+        END LOOP;
+
+        RETURN QUERY
+            SELECT s.speed, p.seq, p.edge
+            FROM (SELECT DISTINCT unnest(speeds) AS speed) s
+            JOIN astar_multi_paths p
+              ON p.effective = CASE WHEN w = 1 THEN 0 ELSE least(s.speed, top_speed) END
+            ORDER BY s.speed, p.seq;
+    END; $$
+    LANGUAGE plpgsql;
@@ -0,0 +1,154 @@
+-- Precomputed edge costs for route searches.
+-- The length used by the cost function (ST_LENGTH(the_geom)/1000, in degrees/1000) is stored once in ways.cost_length,
+-- and cost/reverse_cost for the speed profiles (v, w) listed in edge_cost_profiles are stored in edge_costs, so the
+-- edge query of a search is a plain scan of stored columns instead of evaluating ST_LENGTH, least() and a plpgsql
+-- call for every edge on every search. Other (v, w) values are computed on demand from ways.cost_length.
+-- Both are kept up to date by triggers on ways. A zero speed limit is replaced by 0.00001 inline (formerly
+-- handle_speed_equal_zero()), in both directions, as in the in-memory engine.
+-- edge_cost_sql() builds the edge query used by astar(), astar_bounded() and route_matrix().
+
+ALTER TABLE ways ADD COLUMN IF NOT EXISTS cost_length double precision;
+UPDATE ways SET cost_length = ST_LENGTH(the_geom)/1000 WHERE cost_length IS NULL;
+
+CREATE TABLE IF NOT EXISTS edge_cost_profiles(
+    v int NOT NULL,
+    w double precision NOT NULL,
+    PRIMARY KEY (v, w)
+);
+
+CREATE TABLE IF NOT EXISTS edge_costs(
+    v int NOT NULL,
+    w double precision NOT NULL,
+    id bigint NOT NULL,
+    source integer,
+    target integer,
+    cost double precision,
+    reverse_cost double precision,
+    x1 double precision,
+    y1 double precision,
+    x2 double precision,
+    y2 double precision,
+    PRIMARY KEY (v, w, id)
+);
+CREATE INDEX IF NOT EXISTS edge_costs_id_idx ON edge_costs (id);
+
+-- Cost of one direction of an edge, the same as in the in-memory engine (CostProfile.cost).
+CREATE OR REPLACE FUNCTION edge_cost(direction_cost double precision, len double precision, speed double precision,
+                                     v int, w double precision)
+    RETURNS double precision AS
+$$
+SELECT sign(direction_cost) * len * (w + (1 - w) / least(CASE WHEN speed = 0 THEN 0.00001 ELSE speed END, v));
+$$
+    LANGUAGE sql IMMUTABLE;
+
+-- Adds a speed profile and stores edge costs for it; returns the number of stored edges.
+CREATE OR REPLACE FUNCTION add_edge_cost_profile(profile_v int, profile_w double precision)
+    RETURNS bigint AS
+$$
+DECLARE
+    stored bigint;
+BEGIN
+    INSERT INTO edge_cost_profiles VALUES (profile_v, profile_w) ON CONFLICT DO NOTHING;
+    DELETE FROM edge_costs WHERE v = profile_v AND w = profile_w;
+    INSERT INTO edge_costs
+        SELECT profile_v, profile_w, gid, source, target,
+               edge_cost(cost, cost_length, maxspeed_forward, profile_v, profile_w),
+               edge_cost(reverse_cost, cost_length, maxspeed_backward, profile_v, profile_w),
+               x1, y1, x2, y2
+        FROM ways;
+    GET DIAGNOSTICS stored = ROW_COUNT;
+    RETURN stored;
+END;
+$$
+    LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION drop_edge_cost_profile(profile_v int, profile_w double precision)
+    RETURNS void AS
+$$
+DELETE FROM edge_costs WHERE v = profile_v AND w = profile_w;
+DELETE FROM edge_cost_profiles WHERE v = profile_v AND w = profile_w;
+$$
+    LANGUAGE sql;
+
+-- Edge query (id, source, target, cost, reverse_cost, x1, y1, x2, y2) for pgr_astar / pgr_dijkstra.
+-- Stored costs are used when (v, w) is a configured profile - w is compared with a tolerance, because the
+-- application passes it as a float. envelope, when given, limits the edges to those intersecting it.
+CREATE OR REPLACE FUNCTION edge_cost_sql(v int, w double precision, envelope geometry DEFAULT NULL)
+    RETURNS text AS
+$$
+DECLARE
+    profile_w double precision;
+BEGIN
+    SELECT p.w INTO profile_w FROM edge_cost_profiles p WHERE p.v = edge_cost_sql.v AND abs(p.w - edge_cost_sql.w) < 1e-6;
+
+    IF FOUND AND envelope IS NULL THEN
+        RETURN format('SELECT id, source, target, cost, reverse_cost, x1, y1, x2, y2
+                       FROM edge_costs WHERE v = %s AND w = %s', v, profile_w);
+    ELSIF FOUND THEN
+        RETURN format('SELECT c.id, c.source, c.target, c.cost, c.reverse_cost, c.x1, c.y1, c.x2, c.y2
+                       FROM edge_costs c JOIN ways wy ON wy.gid = c.id
+                       WHERE c.v = %s AND c.w = %s AND wy.the_geom && %L::geometry', v, profile_w, envelope);
+    END IF;
+
+    RETURN format('SELECT gid AS id,
+                          source::integer,
+                          target::integer,
+                          edge_cost(cost, cost_length, maxspeed_forward, %1$s, %2$s) AS cost,
+                          edge_cost(reverse_cost, cost_length, maxspeed_backward, %1$s, %2$s) AS reverse_cost,
+                          x1, y1, x2, y2
+                   FROM ways', v, w)
+        || CASE WHEN envelope IS NULL THEN '' ELSE format(' WHERE the_geom && %L::geometry', envelope) END;
+END;
+$$
+    LANGUAGE plpgsql STABLE;
+
+CREATE OR REPLACE FUNCTION ways_cost_length()
+    RETURNS trigger AS
+$$
+BEGIN
+    NEW.cost_length := ST_LENGTH(NEW.the_geom)/1000;
+    RETURN NEW;
+END;
+$$
+    LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS ways_cost_length ON ways;
+CREATE TRIGGER ways_cost_length
+    BEFORE INSERT OR UPDATE OF the_geom
+    ON ways
+    FOR EACH ROW
+EXECUTE FUNCTION ways_cost_length();
+
+CREATE OR REPLACE FUNCTION ways_edge_costs()
+    RETURNS trigger AS
+$$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        DELETE FROM edge_costs WHERE id = OLD.gid;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'INSERT') THEN
+        INSERT INTO edge_costs
+            SELECT p.v, p.w, NEW.gid, NEW.source, NEW.target,
+                   edge_cost(NEW.cost, NEW.cost_length, NEW.maxspeed_forward, p.v, p.w),
+                   edge_cost(NEW.reverse_cost, NEW.cost_length, NEW.maxspeed_backward, p.v, p.w),
+                   NEW.x1, NEW.y1, NEW.x2, NEW.y2
+            FROM edge_cost_profiles p;
+    END IF;
+    RETURN NULL;
+END;
+$$
+    LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS ways_edge_costs ON ways;
+CREATE TRIGGER ways_edge_costs
+    AFTER INSERT OR DELETE OR UPDATE OF source, target, cost, reverse_cost, maxspeed_forward, maxspeed_backward,
+        the_geom, x1, y1, x2, y2
+    ON ways
+    FOR EACH ROW
+EXECUTE FUNCTION ways_edge_costs();
+
+-- Profiles of the contraction hierarchies (graph.ch.profiles), the most frequent searches.
+SELECT add_edge_cost_profile(v, w) FROM (VALUES (50, 0), (90, 0), (140, 0), (200, 1)) AS profiles(v, w)
+WHERE NOT EXISTS (SELECT 1 FROM edge_cost_profiles p WHERE p.v = profiles.v AND p.w = profiles.w);
+
+DROP FUNCTION IF EXISTS handle_speed_equal_zero(double precision);
@@ -0,0 +1,42 @@
+-- Reachability area (isochrone) around a start vertex for a travel time or distance budget.
+-- One pgr_drivingDistance call grows a single search tree from the start vertex and stops at the budget, so the cost
+-- is that of one route query rather than one query per target. Edge costs follow astar() with w = 0 (time, hours)
+-- or w = 1 (distance, km), but use the metric length_m instead of ST_LENGTH(the_geom), so the budget is in real
+-- units. No road is shorter than the straight line, so only edges within the budget distance of the start vertex are
+-- loaded. Requires astar_bounded.sql (index on the_geom) and edge_cost() from edge_costs.sql.
+
+CREATE OR REPLACE FUNCTION isochrone(start_id BIGINT, v int, budget double precision, time_budget boolean)
+     RETURNS TABLE(
+         node BIGINT,
+         edge BIGINT,
+         agg_cost DOUBLE PRECISION
+                  ) AS $$
+    DECLARE
+        start_geom geometry;
+        w double precision := CASE WHEN time_budget THEN 0 ELSE 1 END;
+        reach_km double precision := CASE WHEN time_budget THEN budget * v ELSE budget END;
+        margin_x double precision;
+        margin_y double precision;
+    BEGIN
+        SELECT the_geom INTO start_geom FROM ways_vertices_pgr WHERE id = start_id;
+        IF start_geom IS NULL THEN
+            RETURN;
+        END IF;
+
+        margin_y := reach_km / 110.57;
+        margin_x := reach_km / (111.32 * greatest(cos(radians(ST_Y(start_geom))), 0.01));
+
+        RETURN QUERY
+            SELECT dd.node, dd.edge, dd.agg_cost FROM pgr_drivingDistance(format('SELECT gid AS id,
+                         source::integer,
+                         target::integer,
+                         edge_cost(cost, length_m/1000, maxspeed_forward, %2$s, %1$s) AS cost,
+                         edge_cost(reverse_cost, length_m/1000, maxspeed_backward, %2$s, %1$s) AS reverse_cost
+                         FROM ways
+                         WHERE the_geom && ST_MakeEnvelope(%3$s, %4$s, %5$s, %6$s, 4326)',
+                         w, v,
+                         ST_X(start_geom) - margin_x, ST_Y(start_geom) - margin_y,
+                         ST_X(start_geom) + margin_x, ST_Y(start_geom) + margin_y),
+                start_id, budget, true) dd;
+    END; $$
+    LANGUAGE plpgsql;
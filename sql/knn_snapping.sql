@@ -0,0 +1,15 @@
+-- Index-backed nearest-vertex lookup used by DatabaseServiceImpl.getStartOrEnd.
+-- The point columns mirror st_makepoint(y1,x1) / st_makepoint(y2,x2) that the snapping queries used to compute
+-- for every row, so the <-> operator can walk the GiST index instead of sorting the whole table.
+
+ALTER TABLE ways
+    ADD COLUMN IF NOT EXISTS source_point geometry(Point) GENERATED ALWAYS AS (st_makepoint(y1, x1)) STORED;
+
+ALTER TABLE ways
+    ADD COLUMN IF NOT EXISTS target_point geometry(Point) GENERATED ALWAYS AS (st_makepoint(y2, x2)) STORED;
+
+CREATE INDEX IF NOT EXISTS ways_source_point_gist_idx ON ways USING gist (source_point);
+
+CREATE INDEX IF NOT EXISTS ways_target_point_gist_idx ON ways USING gist (target_point);
+
+ANALYZE ways;
@@ -0,0 +1,25 @@
+-- Distance and travel time matrix between many start and end vertices.
+-- pgr_dijkstra in its many-to-many form grows one search tree per start vertex and reads every end vertex from it,
+-- so the work depends on the number of start vertices, not on the number of pairs. The edge cost is the same as in
+-- astar(); the returned distance (km) and travel time (h) are summed over the edges of the cheapest path.
+-- Pairs without a path are not returned. Requires edge_costs.sql.
+
+CREATE OR REPLACE FUNCTION route_matrix(start_ids BIGINT[], end_ids BIGINT[], v int, w double precision)
+     RETURNS TABLE(
+         start_vid BIGINT,
+         end_vid BIGINT,
+         distance DOUBLE PRECISION,
+         travel_time DOUBLE PRECISION
+                  ) AS $$
+    BEGIN
+        RETURN QUERY
+            SELECT res.start_vid, res.end_vid,
+                   sum(wy.length_m) / 1000,
+                   sum(edge_cost(1, wy.length_m / 1000,
+                                 CASE WHEN res.node = wy.source THEN wy.maxspeed_forward ELSE wy.maxspeed_backward END,
+                                 v, 0))
+            FROM pgr_dijkstra(edge_cost_sql(v, w), start_ids, end_ids, true) res
+            JOIN ways wy ON res.edge = wy.gid
+            GROUP BY res.start_vid, res.end_vid;
+    END; $$
+    LANGUAGE plpgsql;
@@ -1,13 +1,4 @@
-CREATE OR REPLACE FUNCTION handle_speed_equal_zero(speed double precision)
-    RETURNS double precision as
-$$
-BEGIN
-    IF speed = 0::double precision then return 0.00001::double precision;
-    else return speed;
-    end if;
-end;
-$$
-    language plpgsql;
+-- Edge costs come from edge_cost_sql() (edge_costs.sql).
 
 CREATE OR REPLACE FUNCTION astar(start_id BIGINT, end_id BIGINT, v int, w double precision, heur int)
      RETURNS TABLE(
@@ -20,16 +11,14 @@ CREATE OR REPLACE FUNCTION astar(start_id BIGINT, end_id BIGINT, v int, w double
                   ) AS $$
     BEGIN
         RETURN QUERY
-            SELECT * FROM pgr_astar('SELECT gid AS id,
-                         source::integer,
-                         target::integer,
-                         sign(cost)*(ST_LENGTH(the_geom)/1000)*('||w||'+((1-'||w||')/(least(maxspeed_forward,'||v||'))))::double precision AS cost,
-                         sign(reverse_cost)*(ST_LENGTH(the_geom)/1000)*('||w||'+((1-'||w||')/(least(handle_speed_equal_zero(maxspeed_backward),'||v||'))))::double precision AS reverse_cost,
-                         x1, y1, x2, y2
-                         FROM ways', start_id, end_id, true, heur);
+            SELECT * FROM pgr_astar(edge_cost_sql(v, w), start_id, end_id, true, heur);
     END; $$
     LANGUAGE plpgsql;
 
+-- test_routes()/calculate_stats() below search the test routes serially in one session and keep every route in its
+-- own table. The batch command (SpdbTools batch, ./gradlew batchRoutes) replaces them: it searches pairs from a CSV
+-- file in parallel and writes length, time and latency of each route to a CSV file.
+
 CREATE OR REPLACE FUNCTION calculate_route_stats(table_name text)
     RETURNS TABLE(
                      path_config text,
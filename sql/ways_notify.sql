@@ -0,0 +1,56 @@
+-- Publishes row-level changes of the ways table on the ways_changed channel (pg_notify), so that a running
+-- application can apply them to its in-memory graph and drop affected cached routes without reloading the table.
+-- Payload (comma separated):
+--   U,gid,old maxspeed_forward,old maxspeed_backward,new maxspeed_forward,new maxspeed_backward,old flags,new flags
+--   I,gid / D,gid
+-- where flags are the allowed directions: 1 - cost >= 0 (source to target), 2 - reverse_cost >= 0.
+-- Notifications are delivered when the transaction commits; updates not touching speeds or directions are skipped.
+
+CREATE OR REPLACE FUNCTION ways_direction_flags(cost double precision, reverse_cost double precision)
+    RETURNS int AS
+$$
+SELECT (CASE WHEN cost >= 0 THEN 1 ELSE 0 END) + (CASE WHEN reverse_cost >= 0 THEN 2 ELSE 0 END);
+$$
+    LANGUAGE sql IMMUTABLE;
+
+CREATE OR REPLACE FUNCTION ways_notify()
+    RETURNS trigger AS
+$$
+BEGIN
+    IF TG_OP = 'UPDATE' THEN
+        PERFORM pg_notify('ways_changed', concat_ws(',', 'U', NEW.gid,
+                                                    coalesce(OLD.maxspeed_forward, 0),
+                                                    coalesce(OLD.maxspeed_backward, 0),
+                                                    coalesce(NEW.maxspeed_forward, 0),
+                                                    coalesce(NEW.maxspeed_backward, 0),
+                                                    ways_direction_flags(OLD.cost, OLD.reverse_cost),
+                                                    ways_direction_flags(NEW.cost, NEW.reverse_cost)));
+        RETURN NEW;
+    ELSIF TG_OP = 'INSERT' THEN
+        PERFORM pg_notify('ways_changed', concat_ws(',', 'I', NEW.gid));
+        RETURN NEW;
+    ELSE
+        PERFORM pg_notify('ways_changed', concat_ws(',', 'D', OLD.gid));
+        RETURN OLD;
+    END IF;
+END;
+$$
+    LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS ways_notify_update ON ways;
+CREATE TRIGGER ways_notify_update
+    AFTER UPDATE OF maxspeed_forward, maxspeed_backward, cost, reverse_cost
+    ON ways
+    FOR EACH ROW
+    WHEN (OLD.maxspeed_forward IS DISTINCT FROM NEW.maxspeed_forward
+        OR OLD.maxspeed_backward IS DISTINCT FROM NEW.maxspeed_backward
+        OR (OLD.cost >= 0) IS DISTINCT FROM (NEW.cost >= 0)
+        OR (OLD.reverse_cost >= 0) IS DISTINCT FROM (NEW.reverse_cost >= 0))
+EXECUTE FUNCTION ways_notify();
+
+DROP TRIGGER IF EXISTS ways_notify_insert_delete ON ways;
+CREATE TRIGGER ways_notify_insert_delete
+    AFTER INSERT OR DELETE
+    ON ways
+    FOR EACH ROW
+EXECUTE FUNCTION ways_notify();
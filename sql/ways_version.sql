@@ -0,0 +1,30 @@
+-- Version of the ways table - a single row counter increased by every statement changing the table.
+-- Results computed for one version (e.g. routes kept in the application's route store) are not valid for another.
+-- The counter is increased in the changing transaction, so it is visible together with the change.
+
+CREATE TABLE IF NOT EXISTS ways_version
+(
+    id      boolean PRIMARY KEY DEFAULT true CHECK (id),
+    version bigint NOT NULL
+);
+
+INSERT INTO ways_version (id, version)
+VALUES (true, 1)
+ON CONFLICT (id) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION ways_version_bump()
+    RETURNS trigger AS
+$$
+BEGIN
+    UPDATE ways_version SET version = version + 1;
+    RETURN NULL;
+END;
+$$
+    LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS ways_version_bump ON ways;
+CREATE TRIGGER ways_version_bump
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE
+    ON ways
+    FOR EACH STATEMENT
+EXECUTE FUNCTION ways_version_bump();
@@ -0,0 +1,203 @@
+package pl.edu.pw.spdb.bench;
+
+import pl.edu.pw.spdb.dal.graph.RoadGraph;
+import pl.edu.pw.spdb.dal.graph.RoadGraphBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/***
+ * Wygenerowana sieć dróg - odpowiednik tabel ways_vertices_pgr i ways. Węzeł i ma id 1000 + i, krawędź e ma
+ * gid e + 1. Kształt krawędzi zapisany jest od węzła source do target jako (długość, szerokość, ...)
+ */
+public final class RoadNetwork {
+
+    private static final double EARTH_RADIUS_M = 6_371_000;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] sources;
+    private final int[] targets;
+    private final float[] speeds;
+    private final boolean[] oneWay;
+    private final double[][] shapes;
+
+    private int[] adjacencyBegin;
+    private int[] adjacency;
+
+    RoadNetwork(double[] latitudes, double[] longitudes, int[] sources, int[] targets, float[] speeds,
+                boolean[] oneWay, double[][] shapes) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.sources = sources;
+        this.targets = targets;
+        this.speeds = speeds;
+        this.oneWay = oneWay;
+        this.shapes = shapes;
+    }
+
+    public int nodeCount() {
+        return latitudes.length;
+    }
+
+    public int edgeCount() {
+        return sources.length;
+    }
+
+    public long nodeId(int node) {
+        return 1000L + node;
+    }
+
+    public long edgeId(int edge) {
+        return edge + 1L;
+    }
+
+    public double latitude(int node) {
+        return latitudes[node];
+    }
+
+    public double longitude(int node) {
+        return longitudes[node];
+    }
+
+    public int source(int edge) {
+        return sources[edge];
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public float speed(int edge) {
+        return speeds[edge];
+    }
+
+    public boolean isOneWay(int edge) {
+        return oneWay[edge];
+    }
+
+    /***
+     * Długość kształtu krawędzi w stopniach podzielona przez 1000 - odpowiednik ST_LENGTH(the_geom)/1000
+     */
+    public double costLength(int edge) {
+        double[] shape = shapes[edge];
+        double sum = 0;
+        for (int i = 2; i < shape.length; i += 2) {
+            sum += Math.hypot(shape[i] - shape[i - 2], shape[i + 1] - shape[i - 1]);
+        }
+        return sum / 1000;
+    }
+
+    /***
+     * Długość kształtu krawędzi w metrach - odpowiednik length_m
+     */
+    public double lengthMeters(int edge) {
+        double[] shape = shapes[edge];
+        double sum = 0;
+        for (int i = 2; i < shape.length; i += 2) {
+            sum += haversine(shape[i - 1], shape[i - 2], shape[i + 1], shape[i]);
+        }
+        return sum;
+    }
+
+    /***
+     * Kształt krawędzi w formacie WKB (LineString, little endian) - taki jak zwraca ST_AsBinary(the_geom)
+     */
+    public byte[] wkb(int edge) {
+        double[] shape = shapes[edge];
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + shape.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1).putInt(2).putInt(shape.length / 2);
+        for (double value : shape) {
+            buffer.putDouble(value);
+        }
+        return buffer.array();
+    }
+
+    /***
+     * Graf drogowy w pamięci zbudowany z sieci, taki jak wczytuje RoadGraphLoader
+     */
+    public RoadGraph toRoadGraph() {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        for (int edge = 0; edge < edgeCount(); edge++) {
+            int source = sources[edge];
+            int target = targets[edge];
+            builder.addEdge(edgeId(edge), nodeId(source), nodeId(target), costLength(edge), lengthMeters(edge),
+                    speeds[edge], speeds[edge], true, !oneWay[edge],
+                    longitudes[source], latitudes[source], longitudes[target], latitudes[target]);
+        }
+        return builder.build();
+    }
+
+    /***
+     * Trasa o zadanej liczbie krawędzi wyznaczona przez losowy spacer po sieci zgodny z kierunkami jazdy
+     * @param length - liczba krawędzi
+     * @param seed - ziarno generatora liczb losowych
+     * @return krawędzie trasy; wartość ujemna (-e - 1) oznacza krawędź e pokonywaną od target do source
+     */
+    public int[] randomWalk(int length, long seed) {
+        buildAdjacency();
+        Random random = new Random(seed);
+        int[] walk = new int[length];
+        int node = random.nextInt(nodeCount());
+        int previousEdge = -1;
+        for (int step = 0; step < length; step++) {
+            int begin = adjacencyBegin[node];
+            int end = adjacencyBegin[node + 1];
+            int chosen = -1;
+            for (int attempt = 0; attempt < 8 && end > begin; attempt++) {
+                int candidate = adjacency[begin + random.nextInt(end - begin)];
+                int edge = candidate >= 0 ? candidate : -candidate - 1;
+                if (edge != previousEdge || attempt == 7) {
+                    chosen = candidate;
+                    break;
+                }
+            }
+            if (chosen == -1) {
+                // ślepy zaułek - spacer zaczyna się od nowa w losowym węźle
+                node = random.nextInt(nodeCount());
+                step--;
+                continue;
+            }
+            walk[step] = chosen;
+            previousEdge = chosen >= 0 ? chosen : -chosen - 1;
+            node = chosen >= 0 ? targets[chosen] : sources[-chosen - 1];
+        }
+        return walk;
+    }
+
+    private void buildAdjacency() {
+        if (adjacency != null) {
+            return;
+        }
+        int[] begin = new int[nodeCount() + 1];
+        for (int edge = 0; edge < edgeCount(); edge++) {
+            begin[sources[edge] + 1]++;
+            if (!oneWay[edge]) {
+                begin[targets[edge] + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount(); node++) {
+            begin[node + 1] += begin[node];
+        }
+        int[] next = Arrays.copyOf(begin, nodeCount());
+        int[] entries = new int[begin[nodeCount()]];
+        for (int edge = 0; edge < edgeCount(); edge++) {
+            entries[next[sources[edge]]++] = edge;
+            if (!oneWay[edge]) {
+                entries[next[targets[edge]]++] = -edge - 1;
+            }
+        }
+        adjacencyBegin = begin;
+        adjacency = entries;
+    }
+
+    static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,299 @@
+package pl.edu.pw.spdb.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/***
+ * Deterministyczny generator sieci dróg do testów wydajności - ten sam rozmiar i ziarno dają zawsze tę samą sieć.
+ * Sieci umieszczane są w okolicy Warszawy, tak jak dane z bazy
+ */
+public final class RoadNetworkGenerator {
+
+    private static final double ORIGIN_LATITUDE = 52.0;
+    private static final double ORIGIN_LONGITUDE = 20.5;
+    /***
+     * Odległość sąsiednich skrzyżowań siatki w stopniach (ok. 400 m)
+     */
+    private static final double GRID_SPACING = 0.004;
+    private static final int NODES_PER_TOWN = 500;
+    private static final int NEIGHBOURS = 3;
+
+    private RoadNetworkGenerator() {
+    }
+
+    /***
+     * Sieć w kształcie zaburzonej siatki ulic - co ósma ulica jest arterią 90 km/h, pozostałe mają 50 lub 30 km/h,
+     * część ulic jest jednokierunkowa, a część odcinków nie istnieje
+     * @param nodes - przybliżona liczba węzłów (zaokrąglana do kwadratu liczby całkowitej)
+     * @param seed - ziarno generatora liczb losowych
+     * @return RoadNetwork
+     */
+    public static RoadNetwork grid(int nodes, long seed) {
+        Random random = new Random(seed);
+        int side = Math.max(2, (int) Math.ceil(Math.sqrt(nodes)));
+        int count = side * side;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                latitudes[y * side + x] = ORIGIN_LATITUDE + (y + (random.nextDouble() - 0.5) * 0.3) * GRID_SPACING;
+                longitudes[y * side + x] = ORIGIN_LONGITUDE + (x + (random.nextDouble() - 0.5) * 0.3) * GRID_SPACING;
+            }
+        }
+
+        EdgeList edges = new EdgeList(count * 2);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int node = y * side + x;
+                if (x + 1 < side && random.nextInt(20) > 0) {
+                    float speed = y % 8 == 0 ? 90 : random.nextInt(4) == 0 ? 30 : 50;
+                    edges.add(node, node + 1, speed, y % 8 != 0 && random.nextInt(10) == 0, 1 + random.nextInt(3));
+                }
+                if (y + 1 < side && random.nextInt(20) > 0) {
+                    float speed = x % 8 == 0 ? 90 : random.nextInt(4) == 0 ? 30 : 50;
+                    edges.add(node, node + side, speed, x % 8 != 0 && random.nextInt(10) == 0, 1 + random.nextInt(3));
+                }
+            }
+        }
+        return edges.toNetwork(latitudes, longitudes, random);
+    }
+
+    /***
+     * Sieć o kształcie zbliżonym do rzeczywistej - gęste miejscowości (ulice 30-50 km/h) rozrzucone na obszarze
+     * o rzadkiej zabudowie (drogi 70-90 km/h), połączone długimi drogami szybkiego ruchu (140 km/h) o krętym kształcie.
+     * Każdy węzeł łączony jest z najbliższymi sąsiadami
+     * @param nodes - liczba węzłów
+     * @param seed - ziarno generatora liczb losowych
+     * @return RoadNetwork
+     */
+    public static RoadNetwork realWorld(int nodes, long seed) {
+        Random random = new Random(seed);
+        int count = Math.max(NEIGHBOURS + 1, nodes);
+        int towns = Math.max(1, count / NODES_PER_TOWN);
+        // obszar rośnie z liczbą węzłów tak, aby średnia gęstość sieci była stała
+        double size = Math.sqrt(count) * GRID_SPACING * 2;
+
+        double[] townLatitudes = new double[towns];
+        double[] townLongitudes = new double[towns];
+        for (int town = 0; town < towns; town++) {
+            townLatitudes[town] = ORIGIN_LATITUDE + random.nextDouble() * size;
+            townLongitudes[town] = ORIGIN_LONGITUDE + random.nextDouble() * size;
+        }
+
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        boolean[] urban = new boolean[count];
+        for (int node = 0; node < count; node++) {
+            if (node < towns) {
+                // pierwsze węzły to centra miejscowości, łączone drogami szybkiego ruchu
+                latitudes[node] = townLatitudes[node];
+                longitudes[node] = townLongitudes[node];
+                urban[node] = true;
+            } else if (random.nextInt(10) < 7) {
+                int town = random.nextInt(towns);
+                double radius = GRID_SPACING * Math.sqrt(NODES_PER_TOWN) / 2;
+                latitudes[node] = townLatitudes[town] + random.nextGaussian() * radius;
+                longitudes[node] = townLongitudes[town] + random.nextGaussian() * radius;
+                urban[node] = true;
+            } else {
+                latitudes[node] = ORIGIN_LATITUDE + random.nextDouble() * size;
+                longitudes[node] = ORIGIN_LONGITUDE + random.nextDouble() * size;
+            }
+        }
+
+        EdgeList edges = new EdgeList(count * NEIGHBOURS);
+        NeighbourIndex index = new NeighbourIndex(latitudes, longitudes);
+        long[] connected = new long[count * NEIGHBOURS];
+        int connectedCount = 0;
+        for (int node = 0; node < count; node++) {
+            for (int neighbour : index.nearest(node, NEIGHBOURS)) {
+                long key = (long) Math.min(node, neighbour) * count + Math.max(node, neighbour);
+                connected[connectedCount++] = key;
+            }
+        }
+        long[] unique = Arrays.stream(connected, 0, connectedCount).distinct().toArray();
+        for (long key : unique) {
+            int source = (int) (key / count);
+            int target = (int) (key % count);
+            boolean city = urban[source] && urban[target];
+            float speed = city ? (random.nextInt(3) == 0 ? 30 : 50) : (random.nextInt(2) == 0 ? 70 : 90);
+            edges.add(source, target, speed, city && random.nextInt(8) == 0, 1 + random.nextInt(4));
+        }
+
+        NeighbourIndex townIndex = new NeighbourIndex(Arrays.copyOf(latitudes, towns), Arrays.copyOf(longitudes, towns));
+        for (int town = 0; town < towns && towns > 1; town++) {
+            for (int other : townIndex.nearest(town, Math.min(2, towns - 1))) {
+                if (other > town) {
+                    double distance = Math.hypot(latitudes[town] - latitudes[other], longitudes[town] - longitudes[other]);
+                    edges.add(town, other, 140, false, 4 + (int) (distance / GRID_SPACING));
+                }
+            }
+        }
+        return edges.toNetwork(latitudes, longitudes, random);
+    }
+
+    /***
+     * Lista krawędzi budowanej sieci
+     */
+    private static final class EdgeList {
+        private int[] sources;
+        private int[] targets;
+        private float[] speeds;
+        private boolean[] oneWay;
+        private int[] shapePoints;
+        private int size;
+
+        EdgeList(int capacity) {
+            sources = new int[capacity];
+            targets = new int[capacity];
+            speeds = new float[capacity];
+            oneWay = new boolean[capacity];
+            shapePoints = new int[capacity];
+        }
+
+        void add(int source, int target, float speed, boolean isOneWay, int intermediatePoints) {
+            if (size == sources.length) {
+                int capacity = Math.max(16, size * 2);
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                speeds = Arrays.copyOf(speeds, capacity);
+                oneWay = Arrays.copyOf(oneWay, capacity);
+                shapePoints = Arrays.copyOf(shapePoints, capacity);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            speeds[size] = speed;
+            oneWay[size] = isOneWay;
+            shapePoints[size] = intermediatePoints;
+            size++;
+        }
+
+        /***
+         * Tworzy sieć dodając do każdej krawędzi punkty pośrednie odchylone od linii prostej
+         */
+        RoadNetwork toNetwork(double[] latitudes, double[] longitudes, Random random) {
+            double[][] shapes = new double[size][];
+            for (int edge = 0; edge < size; edge++) {
+                int points = shapePoints[edge] + 2;
+                double[] shape = new double[points * 2];
+                double x1 = longitudes[sources[edge]];
+                double y1 = latitudes[sources[edge]];
+                double x2 = longitudes[targets[edge]];
+                double y2 = latitudes[targets[edge]];
+                for (int i = 0; i < points; i++) {
+                    double t = (double) i / (points - 1);
+                    double offset = i == 0 || i == points - 1 ? 0 : (random.nextDouble() - 0.5) * 0.15;
+                    shape[i * 2] = x1 + t * (x2 - x1) - offset * (y2 - y1);
+                    shape[i * 2 + 1] = y1 + t * (y2 - y1) + offset * (x2 - x1);
+                }
+                shapes[edge] = shape;
+            }
+            return new RoadNetwork(latitudes, longitudes, Arrays.copyOf(sources, size), Arrays.copyOf(targets, size),
+                    Arrays.copyOf(speeds, size), Arrays.copyOf(oneWay, size), shapes);
+        }
+    }
+
+    /***
+     * Indeks węzłów w jednorodnej siatce komórek do wyszukiwania najbliższych sąsiadów
+     */
+    private static final class NeighbourIndex {
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final double minLatitude;
+        private final double minLongitude;
+        private final double cellSize;
+        private final int columns;
+        private final int rows;
+        private final int[] cellBegin;
+        private final int[] cellNodes;
+
+        NeighbourIndex(double[] latitudes, double[] longitudes) {
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            int count = latitudes.length;
+            double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+            double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                minLat = Math.min(minLat, latitudes[i]);
+                maxLat = Math.max(maxLat, latitudes[i]);
+                minLon = Math.min(minLon, longitudes[i]);
+                maxLon = Math.max(maxLon, longitudes[i]);
+            }
+            this.minLatitude = minLat;
+            this.minLongitude = minLon;
+            double area = Math.max(1e-12, (maxLat - minLat) * (maxLon - minLon));
+            this.cellSize = Math.max(1e-9, Math.sqrt(area * 2 / count));
+            this.columns = (int) ((maxLon - minLon) / cellSize) + 1;
+            this.rows = (int) ((maxLat - minLat) / cellSize) + 1;
+
+            int[] begin = new int[columns * rows + 1];
+            int[] cells = new int[count];
+            for (int i = 0; i < count; i++) {
+                cells[i] = cell(latitudes[i], longitudes[i]);
+                begin[cells[i] + 1]++;
+            }
+            for (int c = 0; c < columns * rows; c++) {
+                begin[c + 1] += begin[c];
+            }
+            int[] next = Arrays.copyOf(begin, columns * rows);
+            int[] nodes = new int[count];
+            for (int i = 0; i < count; i++) {
+                nodes[next[cells[i]]++] = i;
+            }
+            this.cellBegin = begin;
+            this.cellNodes = nodes;
+        }
+
+        private int cell(double latitude, double longitude) {
+            int column = Math.min(columns - 1, (int) ((longitude - minLongitude) / cellSize));
+            int row = Math.min(rows - 1, (int) ((latitude - minLatitude) / cellSize));
+            return row * columns + column;
+        }
+
+        /***
+         * Najbliżsi sąsiedzi węzła, przeszukiwanie kolejnych pierścieni komórek
+         */
+        int[] nearest(int node, int k) {
+            int[] best = new int[k];
+            double[] bestDistances = new double[k];
+            Arrays.fill(best, -1);
+            Arrays.fill(bestDistances, Double.MAX_VALUE);
+            int column = Math.min(columns - 1, (int) ((longitudes[node] - minLongitude) / cellSize));
+            int row = Math.min(rows - 1, (int) ((latitudes[node] - minLatitude) / cellSize));
+
+            for (int ring = 0; ring <= Math.max(columns, rows); ring++) {
+                if (best[k - 1] >= 0 && bestDistances[k - 1] < (ring - 1) * cellSize * (ring - 1) * cellSize) {
+                    break;
+                }
+                for (int r = row - ring; r <= row + ring; r++) {
+                    for (int c = column - ring; c <= column + ring; c++) {
+                        boolean border = r == row - ring || r == row + ring || c == column - ring || c == column + ring;
+                        if (!border || r < 0 || c < 0 || r >= rows || c >= columns) {
+                            continue;
+                        }
+                        int cell = r * columns + c;
+                        for (int i = cellBegin[cell]; i < cellBegin[cell + 1]; i++) {
+                            int other = cellNodes[i];
+                            if (other == node) {
+                                continue;
+                            }
+                            double dLat = latitudes[other] - latitudes[node];
+                            double dLon = longitudes[other] - longitudes[node];
+                            double distance = dLat * dLat + dLon * dLon;
+                            for (int j = 0; j < k; j++) {
+                                if (distance < bestDistances[j]) {
+                                    System.arraycopy(bestDistances, j, bestDistances, j + 1, k - j - 1);
+                                    System.arraycopy(best, j, best, j + 1, k - j - 1);
+                                    bestDistances[j] = distance;
+                                    best[j] = other;
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return Arrays.stream(best).filter(neighbour -> neighbour >= 0).toArray();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pl.edu.pw.spdb.dal;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.edu.pw.spdb.bench.RoadNetwork;
+import pl.edu.pw.spdb.bench.RoadNetworkGenerator;
+import pl.edu.pw.spdb.model.Route;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Parsowanie wyniku zapytania FIND_ROUTE_SQL. Wiersze trasy pochodzą z wygenerowanej sieci i są przechowywane
+ * w CachedRowSet z JDK, więc pomiar nie wymaga bazy danych
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouteParsingBenchmark {
+
+    @Param({"100", "2000"})
+    private int segments;
+
+    private CachedRowSet rows;
+    private long startId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        RoadNetwork network = RoadNetworkGenerator.realWorld(20_000, 1);
+        int[] walk = network.randomWalk(segments, 2);
+        startId = walk[0] >= 0 ? network.nodeId(network.source(walk[0])) : network.nodeId(network.target(-walk[0] - 1));
+        rows = routeRows(network, walk);
+    }
+
+    @Setup(Level.Invocation)
+    public void rewind() throws SQLException {
+        rows.beforeFirst();
+    }
+
+    @Benchmark
+    public void parseRecord(Blackhole blackhole) throws SQLException {
+        while (rows.next()) {
+            blackhole.consume(DatabaseServiceImpl.parseRecord(rows));
+        }
+    }
+
+    @Benchmark
+    public Route parseQueryResult() throws SQLException {
+        return DatabaseServiceImpl.parseQueryResult(rows, startId, 90);
+    }
+
+    /***
+     * Wiersze w układzie kolumn FIND_ROUTE_SQL
+     */
+    static CachedRowSet routeRows(RoadNetwork network, int[] walk) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        int[] types = {Types.BIGINT, Types.VARBINARY, Types.BIGINT, Types.BIGINT, Types.DOUBLE, Types.DOUBLE,
+                Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE};
+        metaData.setColumnCount(types.length);
+        for (int column = 1; column <= types.length; column++) {
+            metaData.setColumnType(column, types[column - 1]);
+        }
+
+        CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+        rows.setMetaData(metaData);
+        for (int step : walk) {
+            int edge = step >= 0 ? step : -step - 1;
+            int source = network.source(edge);
+            int target = network.target(edge);
+            rows.moveToInsertRow();
+            rows.updateLong(1, network.edgeId(edge));
+            rows.updateBytes(2, network.wkb(edge));
+            rows.updateLong(3, network.nodeId(source));
+            rows.updateLong(4, network.nodeId(target));
+            rows.updateDouble(5, network.lengthMeters(edge));
+            rows.updateDouble(6, network.speed(edge));
+            rows.updateDouble(7, network.speed(edge));
+            rows.updateDouble(8, network.longitude(source));
+            rows.updateDouble(9, network.latitude(source));
+            rows.updateDouble(10, network.longitude(target));
+            rows.updateDouble(11, network.latitude(target));
+            rows.insertRow();
+            rows.moveToCurrentRow();
+        }
+        return rows;
+    }
+}
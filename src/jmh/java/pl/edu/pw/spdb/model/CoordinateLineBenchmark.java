@@ -0,0 +1,60 @@
+package pl.edu.pw.spdb.model;
+
+import com.sothawo.mapjfx.CoordinateLine;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.pw.spdb.bench.RoadNetwork;
+import pl.edu.pw.spdb.bench.RoadNetworkGenerator;
+import pl.edu.pw.spdb.dal.WkbReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Tworzenie linii trasy do wyświetlenia na mapie - z pełnego kształtu dróg oraz z samych końców segmentów
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CoordinateLineBenchmark {
+
+    @Param({"100", "2000"})
+    private int segments;
+
+    private List<RouteSegment> routeSegments;
+    private RouteGeometry geometry;
+
+    @Setup
+    public void setUp() {
+        RoadNetwork network = RoadNetworkGenerator.realWorld(20_000, 1);
+        int[] walk = network.randomWalk(segments, 2);
+        routeSegments = new ArrayList<>();
+        CoordinateBuffer buffer = new CoordinateBuffer();
+        for (int step : walk) {
+            int edge = step >= 0 ? step : -step - 1;
+            int source = network.source(edge);
+            int target = network.target(edge);
+            routeSegments.add(new RouteSegment(network.edgeId(edge), network.nodeId(source), network.nodeId(target),
+                    network.lengthMeters(edge) / 1000, network.speed(edge), network.longitude(source),
+                    network.latitude(source), network.longitude(target), network.latitude(target)));
+            int from = buffer.size();
+            WkbReader.read(network.wkb(edge), buffer);
+            if (step < 0) {
+                buffer.reverse(from, buffer.size());
+            }
+        }
+        geometry = RouteGeometry.of(buffer);
+    }
+
+    @Benchmark
+    public CoordinateLine segmentEndpoints() {
+        return Route.of(routeSegments, 90).getCoordinateLine();
+    }
+
+    @Benchmark
+    public CoordinateLine fullGeometry() {
+        Route route = Route.of(routeSegments, 90);
+        route.setGeometry(geometry);
+        return route.getCoordinateLine();
+    }
+}
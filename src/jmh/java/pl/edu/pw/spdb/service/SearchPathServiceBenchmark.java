@@ -0,0 +1,78 @@
+package pl.edu.pw.spdb.service;
+
+import com.sothawo.mapjfx.Coordinate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.pw.spdb.bench.RoadNetwork;
+import pl.edu.pw.spdb.bench.RoadNetworkGenerator;
+import pl.edu.pw.spdb.dal.DatabaseService;
+import pl.edu.pw.spdb.dal.InMemoryDatabaseService;
+import pl.edu.pw.spdb.dal.graph.ContractionHierarchyRegistry;
+import pl.edu.pw.spdb.dal.graph.LandmarkRegistry;
+import pl.edu.pw.spdb.dal.graph.RoadGraph;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+import pl.edu.pw.spdb.model.Route;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Pełne wyszukanie trasy przez SearchPathService - od współrzędnych do obiektu Route. Wyszukiwaniem zajmuje się
+ * wymienny DatabaseService (domyślnie InMemoryDatabaseService na wygenerowanej sieci), a pamięć podręczna tras jest
+ * wyłączona, aby każde wywołanie wykonywało wyszukiwanie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchPathServiceBenchmark {
+
+    private static final int QUERIES = 256;
+
+    @Param({"grid", "realWorld"})
+    private String shape;
+
+    @Param({"10000", "100000"})
+    private int nodes;
+
+    private final RouteMetrics metrics = new RouteMetrics(new SimpleMeterRegistry());
+    private SearchPathService service;
+    private Coordinate[] starts;
+    private Coordinate[] ends;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        RoadNetwork network = shape.equals("grid")
+                ? RoadNetworkGenerator.grid(nodes, 1)
+                : RoadNetworkGenerator.realWorld(nodes, 1);
+        service = new SearchPathService(databaseService(network), new RouteCache(0, 0), metrics);
+
+        Random random = new Random(3);
+        starts = new Coordinate[QUERIES];
+        ends = new Coordinate[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int start = random.nextInt(network.nodeCount());
+            int end = random.nextInt(network.nodeCount());
+            starts[i] = new Coordinate(network.latitude(start), network.longitude(start));
+            ends[i] = new Coordinate(network.latitude(end), network.longitude(end));
+        }
+    }
+
+    /***
+     * DatabaseService używany w pomiarze - do porównania innej implementacji wystarczy zmienić tę metodę
+     */
+    protected DatabaseService databaseService(RoadNetwork network) throws Exception {
+        RoadGraph graph = network.toRoadGraph();
+        String directory = Files.createTempDirectory("spdb-bench").toString();
+        return new InMemoryDatabaseService(graph, new ContractionHierarchyRegistry(graph, List.of(), directory),
+                new LandmarkRegistry(graph, 0, directory + "/landmarks.bin"), metrics);
+    }
+
+    @Benchmark
+    public Route findRoute() {
+        int query = next++ % QUERIES;
+        return service.findRoute(starts[query], ends[query], 90, 0.5);
+    }
+}
@@ -0,0 +1,19 @@
+package pl.edu.pw.spdb;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/***
+ * Klasa z metodą main uruchamiającą aplikację bez interfejsu graficznego, jako serwer HTTP wyszukiwania tras
+ * (profil "server", RoutingServer). Profil in-memory można dołączyć przez SPRING_PROFILES_ACTIVE
+ */
+public class SpdbServer {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(SpdbApplication.class)
+                .profiles("server")
+                .web(WebApplicationType.NONE)
+                .headless(true)
+                .run(args);
+    }
+}
@@ -0,0 +1,107 @@
+package pl.edu.pw.spdb;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import pl.edu.pw.spdb.dal.graph.ContractionHierarchyRegistry;
+import pl.edu.pw.spdb.dal.graph.CostProfile;
+import pl.edu.pw.spdb.dal.graph.LandmarkRegistry;
+import pl.edu.pw.spdb.dal.graph.RoadGraph;
+import pl.edu.pw.spdb.dal.graph.RoadGraphFile;
+import pl.edu.pw.spdb.dal.graph.RoadGraphLoader;
+import pl.edu.pw.spdb.service.BatchRouteRunner;
+import pl.edu.pw.spdb.service.SearchPathService;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/***
+ * Klasa z metodą main uruchamiającą polecenia wykonywane bez interfejsu graficznego
+ * Pierwszy argument to nazwa polecenia:
+ * build-ch - buduje i zapisuje hierarchie skrótów dla profili z graph.ch.profiles
+ * build-alt - wybiera punkty orientacyjne heurystyki ALT i zapisuje je do pliku graph.alt.file
+ * export-graph - wczytuje tabelę ways i zapisuje graf do pliku graph.snapshot.file
+ * batch &lt;input.csv&gt; &lt;output.csv&gt; - wyszukuje trasy dla par punktów z pliku CSV (BatchRouteRunner) przy pomocy
+ * silnika wybranego profilami Springa (domyślnie pgRouting)
+ */
+public class SpdbTools {
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: SpdbTools <build-ch|build-alt|export-graph|batch <input.csv> <output.csv>>");
+            System.exit(1);
+        }
+
+        boolean batch = args[0].equals("batch");
+        if (batch && args.length < 3) {
+            System.err.println("Usage: SpdbTools batch <input.csv> <output.csv>");
+            System.exit(1);
+        }
+
+        // polecenia kończą się po wykonaniu, więc nie nasłuchują zmian tabeli ways
+        String[] springArgs = Arrays.copyOf(args, args.length + 1);
+        springArgs[args.length] = "--db.listen.enabled=false";
+        // batch korzysta z silnika wybranego przez użytkownika, pozostałe polecenia dotyczą grafu w pamięci
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpdbApplication.class)
+                .profiles(batch ? new String[0] : new String[]{"in-memory"})
+                .web(WebApplicationType.NONE)
+                .run(springArgs)) {
+            switch (args[0]) {
+                case "build-ch" -> context.getBean(ContractionHierarchyRegistry.class).buildAll();
+                case "build-alt" -> context.getBean(LandmarkRegistry.class).build();
+                case "export-graph" -> exportGraph(context);
+                case "batch" -> batch(context, Path.of(args[1]), Path.of(args[2]));
+                default -> {
+                    System.err.println("Unknown command: " + args[0]);
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    /***
+     * Wyszukuje trasy dla par punktów z pliku wejściowego i wypisuje podsumowanie przebiegu
+     */
+    private static void batch(ConfigurableApplicationContext context, Path input, Path output) {
+        Environment environment = context.getEnvironment();
+        List<CostProfile> profiles = Arrays.stream(environment.getRequiredProperty("batch.profiles").split(","))
+                .filter(p -> !p.isBlank())
+                .map(CostProfile::parse)
+                .toList();
+        int threads = environment.getRequiredProperty("batch.threads", Integer.class);
+        int maxInFlight = environment.getRequiredProperty("batch.max-in-flight", Integer.class);
+        BatchRouteRunner runner = new BatchRouteRunner(context.getBean(SearchPathService.class), profiles, threads,
+                maxInFlight);
+        try {
+            BatchRouteRunner.Summary summary = runner.run(input, output);
+            System.out.println(summary);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /***
+     * Zapisuje graf wczytany z tabeli ways (a nie z istniejącego pliku, który może być nieaktualny)
+     */
+    private static void exportGraph(ConfigurableApplicationContext context) {
+        Path path = Path.of(context.getEnvironment().getRequiredProperty("graph.snapshot.file"));
+        RoadGraph graph = new RoadGraphLoader(context.getBean(DataSource.class)).load();
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            RoadGraphFile.write(graph, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("Road graph written to " + path);
+    }
+}
@@ -7,6 +7,7 @@ import javafx.stage.Stage;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
@@ -16,6 +17,7 @@ import java.io.IOException;
  * Klasa wiążąca kontekst aplikacji z biblioteką JavaFX
  */
 @Component
+@Profile("!server")
 public class StageInitializer implements ApplicationListener<ClientUI.StageReadyEvent> {
 
     private final ApplicationContext applicationContext;
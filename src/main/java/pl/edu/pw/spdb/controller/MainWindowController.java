@@ -4,6 +4,7 @@ import com.sothawo.mapjfx.*;
 import com.sothawo.mapjfx.event.MapLabelEvent;
 import com.sothawo.mapjfx.event.MapViewEvent;
 import com.sothawo.mapjfx.event.MarkerEvent;
+import io.micrometer.core.instrument.Timer;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.event.Event;
@@ -19,49 +20,70 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.util.Pair;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+import pl.edu.pw.spdb.model.Isochrone;
 import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteDetailLevels;
+import pl.edu.pw.spdb.model.RouteGeometry;
+import pl.edu.pw.spdb.service.SearchExecutor;
 import pl.edu.pw.spdb.service.SearchPathService;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /***
  * Klasa reprezentująca kontroler okna aplikacji
  */
 @Component
+@Profile("!server")
 public class MainWindowController implements Initializable {
     private final Coordinate pkinCoordinate = new Coordinate(52.231667, 21.006389);
 
     private final ToggleGroup radioButtonsGroup = new ToggleGroup();
     private final SearchPathService searchPathService;
+    private final SearchExecutor searchExecutor;
+    private final RouteMetrics metrics;
+    private final String sessionId = UUID.randomUUID().toString();
     @FXML
     private ListView<Pair<String, Route>> resultListView;
     private MapViewState mapViewState = MapViewState.DEFAUlT;
     @FXML
-    private Button chooseStartPointButton, chooseEndPointButton, searchButton, showResultButton, cleanMapViewButton;
+    private Button chooseStartPointButton, chooseEndPointButton, searchButton, showResultButton, cleanMapViewButton,
+            isochroneButton, tradeOffButton;
     @FXML
     private Label costParameterLabel, applicationStateLabel;
     @FXML
     private TextField startPointCoordinatesTextField, endPointCoordinatesTextField;
     @FXML
-    private TextField v1TextField, v2TextField, v3TextField;
+    private TextField v1TextField, v2TextField, v3TextField, isochroneTimeTextField;
     @FXML
     private Slider optionsSlider;
     @FXML
     private RadioButton shortestPathRadioButton, shortestTimeRadioButton, advancedRadioButton;
     private Marker startPointMarker;
     private Marker endPointMarker;
+    private Route shownRoute;
+    private RouteDetailLevels.Selection shownSelection;
+    private CoordinateLine shownLine;
+    private CoordinateLine shownIsochrone;
+    private Extent visibleExtent;
 
     @FXML
     private MapView mapView;
 
-    public MainWindowController(SearchPathService searchPathService) {
+    public MainWindowController(SearchPathService searchPathService, SearchExecutor searchExecutor,
+                                RouteMetrics metrics) {
         this.searchPathService = searchPathService;
+        this.searchExecutor = searchExecutor;
+        this.metrics = metrics;
     }
 
     /***
@@ -103,6 +125,8 @@ public class MainWindowController implements Initializable {
         chooseStartPointButton.setOnMouseClicked(this::handleChooseStartPointButtonClicked);
         chooseEndPointButton.setOnMouseClicked(this::handleChooseEndPointButtonClicked);
         searchButton.setOnMouseClicked(this::handleSearchButtonClicked);
+        isochroneButton.setOnMouseClicked(this::handleIsochroneButtonClicked);
+        tradeOffButton.setOnMouseClicked(this::handleTradeOffButtonClicked);
         showResultButton.setOnMouseClicked(this::handleShowResultButtonClicked);
         cleanMapViewButton.setOnMouseClicked(this::handleCleanMapViewButton);
     }
@@ -160,7 +184,11 @@ public class MainWindowController implements Initializable {
             event.consume();
         });
         mapView.addEventHandler(MapViewEvent.MAP_RIGHTCLICKED, Event::consume);
-        mapView.addEventHandler(MapViewEvent.MAP_BOUNDING_EXTENT, Event::consume);
+        mapView.addEventHandler(MapViewEvent.MAP_BOUNDING_EXTENT, event -> {
+            visibleExtent = event.getExtent();
+            refreshShownRoute();
+            event.consume();
+        });
         mapView.addEventHandler(MarkerEvent.MARKER_CLICKED, Event::consume);
         mapView.addEventHandler(MarkerEvent.MARKER_MOUSEDOWN, Event::consume);
         mapView.addEventHandler(MarkerEvent.MARKER_MOUSEUP, Event::consume);
@@ -182,6 +210,7 @@ public class MainWindowController implements Initializable {
 
         mapView.initializedProperty().addListener((observable, oldValue, newValue) -> {
         });
+        mapView.zoomProperty().addListener((observable, oldValue, newValue) -> refreshShownRoute());
 
         mapView.setMapType(MapType.OSM);
         mapView.initialize(Configuration.builder().build());
@@ -256,6 +285,11 @@ public class MainWindowController implements Initializable {
                 validateSpeedTextField(v3TextField);
             }
         });
+        isochroneTimeTextField.focusedProperty().addListener((observable, oldValue, newValue) -> {
+            if (!newValue) {
+                validateSpeedTextField(isochroneTimeTextField);
+            }
+        });
     }
 
     /***
@@ -314,9 +348,42 @@ public class MainWindowController implements Initializable {
      * Metoda usuwająca linie z kontrolki MapView
      */
     private void cleanCoordinateLinesFromMapView() {
-        for (var element : resultListView.getItems()) {
-            mapView.removeCoordinateLine(element.getValue().getCoordinateLine());
+        if (shownLine != null) {
+            mapView.removeCoordinateLine(shownLine);
         }
+        if (shownIsochrone != null) {
+            mapView.removeCoordinateLine(shownIsochrone);
+        }
+        shownRoute = null;
+        shownSelection = null;
+        shownLine = null;
+        shownIsochrone = null;
+    }
+
+    /***
+     * Metoda zamieniająca linię wyświetlanej trasy na wersję odpowiednią dla aktualnego przybliżenia i widocznego
+     * obszaru mapy. Linia jest zamieniana tylko, gdy zmienił się poziom przybliżenia lub widoczny obszar wyszedł
+     * poza obszar wyświetlany dokładnie
+     */
+    private void refreshShownRoute() {
+        if (shownRoute == null || (shownSelection != null && shownSelection.covers(mapView.getZoom(), visibleExtent))) {
+            return;
+        }
+        Timer.Sample sample = metrics.start();
+        shownSelection = shownRoute.getDetailLevels().select(mapView.getZoom(), visibleExtent);
+        CoordinateLine line = new CoordinateLine(shownSelection.coordinates()).setVisible(true)
+                .setColor(Color.DARKGREEN)
+                .setWidth(7)
+                .setClosed(false);
+        metrics.recordLine(sample, shownRoute);
+
+        if (shownLine != null) {
+            mapView.removeCoordinateLine(shownLine);
+        }
+        shownLine = line;
+        sample = metrics.start();
+        mapView.addCoordinateLine(line);
+        metrics.recordMapAdd(sample, shownRoute);
     }
 
     /***
@@ -343,34 +410,93 @@ public class MainWindowController implements Initializable {
             cleanCoordinateLinesFromMapView();
             resultListView.getItems().clear();
 
-            SearchRouteTask v1SearchTask = new SearchRouteTask(startPointMarker.getPosition(), endPointMarker.getPosition(), Integer.parseInt(v1TextField.getText()), Double.parseDouble(costParameterLabel.getText()));
-            prepareTask(v1SearchTask);
-            SearchRouteTask v2SearchTask = new SearchRouteTask(startPointMarker.getPosition(), endPointMarker.getPosition(), Integer.parseInt(v2TextField.getText()), Double.parseDouble(costParameterLabel.getText()));
-            prepareTask(v2SearchTask);
-            SearchRouteTask v3SearchTask = new SearchRouteTask(startPointMarker.getPosition(), endPointMarker.getPosition(), Integer.parseInt(v3TextField.getText()), Double.parseDouble(costParameterLabel.getText()));
-            prepareTask(v3SearchTask);
-
-            ExecutorService executorService = Executors.newFixedThreadPool(3);
-            executorService.execute(v1SearchTask);
-            executorService.execute(v2SearchTask);
-            executorService.execute(v3SearchTask);
-            executorService.shutdown();
+            List<Integer> speeds = List.of(Integer.parseInt(v1TextField.getText()),
+                    Integer.parseInt(v2TextField.getText()), Integer.parseInt(v3TextField.getText()));
+            SearchRouteTask searchTask = new SearchRouteTask(startPointMarker.getPosition(), endPointMarker.getPosition(), speeds, Double.parseDouble(costParameterLabel.getText()));
+            prepareTask(searchTask, results -> resultListView.getItems().addAll(results));
+
+            searchExecutor.submitBatch(List.of(searchTask));
+        }
+    }
+
+    /***
+     * Metoda obsługująca zdarzenie naciśnięcia przycisku Kompromisy - wyszukuje wszystkie trasy będące różnymi
+     * kompromisami pomiędzy długością a czasem przejazdu dla prędkości v1
+     * @param event - zdarzenie myszki
+     */
+    private void handleTradeOffButtonClicked(MouseEvent event) {
+        if (startPointCoordinatesTextField.getText().isBlank() || endPointCoordinatesTextField.getText().isBlank()) {
+            createAlert("Błąd", "Brak współrzędnych", "Podaj punkt początkowy i końcowy w prawidłowy sposób").showAndWait();
+        } else if (v1TextField.getText().isBlank()) {
+            createAlert("Błąd", "Brak prędkości", "Uzupełnij prędkość v1").showAndWait();
+        } else {
+            cleanCoordinateLinesFromMapView();
+            resultListView.getItems().clear();
+
+            SearchTradeOffTask tradeOffTask = new SearchTradeOffTask(startPointMarker.getPosition(),
+                    endPointMarker.getPosition(), Integer.parseInt(v1TextField.getText()));
+            prepareTask(tradeOffTask, results -> resultListView.getItems().addAll(results));
+
+            searchExecutor.submitBatch(List.of(tradeOffTask));
         }
     }
 
     /***
-     * Metoda przygotowująca zadany task wyszukiwania ścieżki.
+     * Metoda obsługująca zdarzenie naciśnięcia przycisku Izochrona - wyszukuje obszar osiągalny z punktu początkowego
+     * w podanym czasie przy prędkości v1
+     * @param event - zdarzenie myszki
+     */
+    private void handleIsochroneButtonClicked(MouseEvent event) {
+        if (startPointCoordinatesTextField.getText().isBlank()) {
+            createAlert("Błąd", "Brak współrzędnych", "Podaj punkt początkowy w prawidłowy sposób").showAndWait();
+        } else if (v1TextField.getText().isBlank() || isochroneTimeTextField.getText().isBlank()) {
+            createAlert("Błąd", "Brak parametrów", "Uzupełnij prędkość v1 i czas przejazdu").showAndWait();
+        } else {
+            cleanCoordinateLinesFromMapView();
+
+            double hours = Integer.parseInt(isochroneTimeTextField.getText()) / 60.0;
+            SearchIsochroneTask isochroneTask = new SearchIsochroneTask(startPointMarker.getPosition(), hours,
+                    Integer.parseInt(v1TextField.getText()));
+            prepareTask(isochroneTask, this::showIsochrone);
+
+            searchExecutor.submitBatch(List.of(isochroneTask));
+        }
+    }
+
+    /***
+     * Metoda wyświetlająca otoczkę obszaru osiągalnego na mapie
+     * @param isochrone - wyszukany obszar osiągalny
+     */
+    private void showIsochrone(Isochrone isochrone) {
+        RouteGeometry hull = isochrone.getHull();
+        List<Coordinate> coordinates = new ArrayList<>(hull.pointCount());
+        for (int i = 0; i < hull.pointCount(); i++) {
+            coordinates.add(new Coordinate(hull.latitude(i), hull.longitude(i)));
+        }
+        cleanCoordinateLinesFromMapView();
+        shownIsochrone = new CoordinateLine(coordinates).setVisible(true)
+                .setColor(Color.DODGERBLUE)
+                .setFillColor(Color.web("#1e90ff", 0.3))
+                .setWidth(2)
+                .setClosed(true);
+        mapView.addCoordinateLine(shownIsochrone);
+    }
+
+    /***
+     * Metoda przygotowująca zadany task wyszukiwania.
      * Definiuje zachowanie aplikacji podczas wykonywania się kodu, w przypadku niepowodzenia oraz sukcesu.
-     * @param task - zadanie wyszukiwania ścieżki
+     * @param task - zadanie wyszukiwania
+     * @param onSucceeded - obsługa wyniku zadania
      */
-    private void prepareTask(SearchRouteTask task) {
+    private <T> void prepareTask(Task<T> task, Consumer<T> onSucceeded) {
         Stage dialog = new Stage();
         dialog.setWidth(300);
         dialog.setHeight(150);
         dialog.initStyle(StageStyle.UNDECORATED);
         Scene scene = new Scene(new Group(new Text(50, 50, "Trwa komunikacja z bazą danych")));
         dialog.setScene(scene);
-        dialog.initModality(Modality.WINDOW_MODAL);
+        // okno główne pozostaje aktywne - nowe wyszukiwanie anuluje trwające
+        dialog.initModality(Modality.NONE);
         dialog.initOwner(searchButton.getScene().getWindow());
 
         task.setOnFailed((failed) -> {
@@ -384,6 +510,8 @@ public class MainWindowController implements Initializable {
 
         });
 
+        task.setOnCancelled((cancelledEvent) -> dialog.hide());
+
         task.setOnRunning((successesEvent) -> {
             dialog.showAndWait();
         });
@@ -392,7 +520,7 @@ public class MainWindowController implements Initializable {
             dialog.hide();
 
             try {
-                resultListView.getItems().add(task.get());
+                onSucceeded.accept(task.get());
             } catch (InterruptedException | ExecutionException e) {
                 throw new RuntimeException(e);
             }
@@ -461,15 +589,12 @@ public class MainWindowController implements Initializable {
         var selectedItem = resultListView.getSelectionModel().getSelectedItem();
         if (selectedItem != null) {
             mapViewState = MapViewState.SHOWING_ROUTE;
-            CoordinateLine theLine = selectedItem.getValue().getCoordinateLine().setVisible(true)
-                    .setColor(Color.DARKGREEN)
-                    .setWidth(7)
-                    .setClosed(false);
 
             Platform.runLater(() -> {
                 showRouteDetails(selectedItem.getValue());
                 cleanCoordinateLinesFromMapView();
-                mapView.addCoordinateLine(theLine);
+                shownRoute = selectedItem.getValue();
+                refreshShownRoute();
             });
         }
     }
@@ -483,28 +608,82 @@ public class MainWindowController implements Initializable {
     }
 
     /***
-     * Klasa implementująca wywołanie wyszukiwania najlepszej drogi.
+     * Klasa implementująca wyznaczenie obszaru osiągalnego z punktu w zadanym czasie.
      * Służy do uruchomienia zadania w osobnym wątku.
      */
-    private class SearchRouteTask extends Task<Pair<String, Route>> {
+    private class SearchIsochroneTask extends Task<Isochrone> {
+        private final Coordinate startPoint;
+        private final double hours;
         private final int speed;
-        private final double costParameter;
+
+        public SearchIsochroneTask(Coordinate startPoint, double hours, int speed) {
+            this.startPoint = startPoint;
+            this.hours = hours;
+            this.speed = speed;
+        }
+
+        @Override
+        protected Isochrone call() {
+            return searchPathService.findIsochrone(startPoint, Isochrone.BudgetType.TIME, hours, speed);
+        }
+    }
+
+    /***
+     * Klasa implementująca wyszukiwanie tras kompromisowych pomiędzy najkrótszą a najszybszą drogą.
+     * Służy do uruchomienia zadania w osobnym wątku.
+     */
+    private class SearchTradeOffTask extends Task<List<Pair<String, Route>>> {
         private final Coordinate startPoint;
         private final Coordinate endPoint;
+        private final int speed;
 
-        public SearchRouteTask(Coordinate startPoint, Coordinate endPoint, int speed, double costParameter) {
+        public SearchTradeOffTask(Coordinate startPoint, Coordinate endPoint, int speed) {
             this.startPoint = startPoint;
             this.endPoint = endPoint;
             this.speed = speed;
+        }
+
+        @Override
+        protected List<Pair<String, Route>> call() {
+            List<Route> routes = searchPathService.findTradeOffRoutes(startPoint, endPoint, speed);
+
+            List<Pair<String, Route>> results = new ArrayList<>();
+            for (Route route : routes) {
+                String resultTitle = String.format("Kompromis dla prędkości %d km/h: %.1f km, %.0f min (parametr %.2f)",
+                        speed, route.getDistance(), route.getEstimatedTime() * 60, route.getDistanceWeight());
+                results.add(new Pair<>(resultTitle, route));
+            }
+            return results;
+        }
+    }
+
+    /***
+     * Klasa implementująca wywołanie wyszukiwania najlepszej drogi dla kilku prędkości.
+     * Służy do uruchomienia zadania w osobnym wątku.
+     */
+    private class SearchRouteTask extends Task<List<Pair<String, Route>>> {
+        private final List<Integer> speeds;
+        private final double costParameter;
+        private final Coordinate startPoint;
+        private final Coordinate endPoint;
+
+        public SearchRouteTask(Coordinate startPoint, Coordinate endPoint, List<Integer> speeds, double costParameter) {
+            this.startPoint = startPoint;
+            this.endPoint = endPoint;
+            this.speeds = speeds;
             this.costParameter = costParameter;
         }
 
         @Override
-        protected Pair<String, Route> call() {
-            Route route = searchPathService.findRoute(startPoint, endPoint, speed, costParameter);
+        protected List<Pair<String, Route>> call() {
+            List<Route> routes = searchPathService.findRoutes(sessionId, startPoint, endPoint, speeds, costParameter);
 
-            String resultTitle = "Droga dla prędkości " + speed + " km/h";
-            return new Pair<>(resultTitle, route);
+            List<Pair<String, Route>> results = new ArrayList<>();
+            for (int i = 0; i < speeds.size(); i++) {
+                String resultTitle = "Droga dla prędkości " + speeds.get(i) + " km/h";
+                results.add(new Pair<>(resultTitle, routes.get(i)));
+            }
+            return results;
         }
     }
 }
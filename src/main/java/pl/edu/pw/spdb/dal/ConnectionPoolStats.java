@@ -0,0 +1,31 @@
+package pl.edu.pw.spdb.dal;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/***
+ * Migawka stanu puli połączeń z bazą danych
+ * @param activeConnections - liczba połączeń aktualnie wykorzystywanych
+ * @param idleConnections - liczba połączeń oczekujących w puli
+ * @param totalConnections - łączna liczba otwartych połączeń
+ * @param threadsAwaitingConnection - liczba wątków oczekujących na połączenie
+ * @param maximumPoolSize - maksymalny rozmiar puli
+ */
+public record ConnectionPoolStats(int activeConnections, int idleConnections, int totalConnections,
+                                  int threadsAwaitingConnection, int maximumPoolSize) {
+
+    /***
+     * Odczytuje statystyki z puli HikariCP. Dopóki pula nie zostanie zainicjalizowana pierwszym połączeniem
+     * wszystkie liczniki mają wartość 0
+     * @param dataSource - pula połączeń
+     * @return ConnectionPoolStats
+     */
+    public static ConnectionPoolStats of(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return new ConnectionPoolStats(0, 0, 0, 0, dataSource.getMaximumPoolSize());
+        }
+        return new ConnectionPoolStats(pool.getActiveConnections(), pool.getIdleConnections(),
+                pool.getTotalConnections(), pool.getThreadsAwaitingConnection(), dataSource.getMaximumPoolSize());
+    }
+}
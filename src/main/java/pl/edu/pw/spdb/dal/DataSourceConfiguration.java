@@ -0,0 +1,50 @@
+package pl.edu.pw.spdb.dal;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/***
+ * Konfiguracja puli połączeń z bazą danych
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+    private static final String POOL_NAME = "spdb-pool";
+
+    /***
+     * Tworzy pulę połączeń HikariCP. Pula jest inicjalizowana leniwie - przy pierwszym pobraniu połączenia,
+     * dzięki czemu kontekst aplikacji podnosi się także wtedy, gdy baza nie jest jeszcze dostępna.
+     * Parametry prepareThreshold i preparedStatementCacheQueries sterownika PostgreSQL sprawiają, że zapytania
+     * przygotowywane są po stronie serwera od pierwszego wykonania i współdzielone w obrębie połączenia z puli
+     * @return HikariDataSource
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource dataSource(@Value("${db.url}") String url,
+                                       @Value("${db.username}") String username,
+                                       @Value("${db.password}") String password,
+                                       @Value("${db.pool.maximum-size}") int maximumPoolSize,
+                                       @Value("${db.pool.minimum-idle}") int minimumIdle,
+                                       @Value("${db.pool.connection-timeout-ms}") long connectionTimeout,
+                                       @Value("${db.pool.idle-timeout-ms}") long idleTimeout,
+                                       @Value("${db.pool.max-lifetime-ms}") long maxLifetime,
+                                       @Value("${db.statement.prepare-threshold}") int prepareThreshold,
+                                       @Value("${db.statement.cache-queries}") int cacheQueries) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(POOL_NAME);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setAutoCommit(true);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setMinimumIdle(minimumIdle);
+        dataSource.setConnectionTimeout(connectionTimeout);
+        dataSource.setIdleTimeout(idleTimeout);
+        dataSource.setMaxLifetime(maxLifetime);
+        dataSource.setRegisterMbeans(true);
+        dataSource.addDataSourceProperty("prepareThreshold", prepareThreshold);
+        dataSource.addDataSourceProperty("preparedStatementCacheQueries", cacheQueries);
+        return dataSource;
+    }
+}
@@ -1,9 +1,33 @@
 package pl.edu.pw.spdb.dal;
 
+import pl.edu.pw.spdb.model.Isochrone;
 import pl.edu.pw.spdb.model.Point;
 import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteMatrix;
+
+import java.util.List;
 
 public interface DatabaseService {
     Long getStartOrEnd(Point point, boolean isStartPoint);
+
+    /***
+     * Wyszukuje wierzchołki najbliższe początkowi i końcowi trasy
+     * @return tablica {id początku, id końca}, -1 lub null w miejscu nieznalezionego wierzchołka
+     */
+    default Long[] getStartAndEnd(Point startPoint, Point endPoint) {
+        return new Long[]{getStartOrEnd(startPoint, true), getStartOrEnd(endPoint, false)};
+    }
     Route findRoute(long startId, long endId, Integer maxSpeed, float distanceWeight);
+    Route findRoute(Point startPoint, Point endPoint, int maxSpeed, float distanceWeight);
+    List<Route> findRoutes(Point startPoint, Point endPoint, List<Integer> maxSpeeds, float distanceWeight);
+    List<Route> findRoutes(String sessionId, Point startPoint, Point endPoint, List<Integer> maxSpeeds,
+                           float distanceWeight);
+    RouteMatrix findRouteMatrix(List<Point> origins, List<Point> destinations, int maxSpeed, float distanceWeight);
+    Isochrone findIsochrone(Point startPoint, Isochrone.BudgetType budgetType, double budget, int maxSpeed);
+
+    /***
+     * Wersja danych grafu - trasy wyznaczone dla jednej wersji nie muszą być najlepsze dla innej
+     * @return wersja grafu lub 0, jeśli nie jest znana
+     */
+    long getGraphVersion();
 }
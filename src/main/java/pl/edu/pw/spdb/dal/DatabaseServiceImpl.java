@@ -1,38 +1,138 @@
 package pl.edu.pw.spdb.dal;
 
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import pl.edu.pw.spdb.model.Point;
-import pl.edu.pw.spdb.model.Route;
-import pl.edu.pw.spdb.model.RouteSegment;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+import pl.edu.pw.spdb.model.*;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
 
 @Component
+@Profile("!in-memory & !tiled")
 @Slf4j
 public class DatabaseServiceImpl implements DatabaseService {
 
     private static final String NEAREST_START_ID_SQL = "SELECT source FROM ways " +
-            "order by st_distance(st_makepoint(?,?), st_makepoint(y1,x1)) limit 1;";
+            "order by source_point <-> st_makepoint(?,?) limit 1;";
     private static final String NEAREST_END_ID_SQL = "SELECT source FROM ways " +
-            "order by st_distance(st_makepoint(?,?), st_makepoint(y2,x2)) limit 1;";
+            "order by target_point <-> st_makepoint(?,?) limit 1;";
+    private static final String NEAREST_START_AND_END_ID_SQL =
+            "SELECT (SELECT source FROM ways order by source_point <-> st_makepoint(?,?) limit 1), " +
+                    "(SELECT source FROM ways order by target_point <-> st_makepoint(?,?) limit 1);";
     private static final String FIND_ROUTE_SQL =
-            "SELECT w.gid, w.the_geom, w.source, w.target, w.length_m, w.maxspeed_forward, " +
+            "SELECT w.gid, ST_AsBinary(w.the_geom), w.source, w.target, w.length_m, w.maxspeed_forward, " +
                     "w.maxspeed_backward, w.x1, w.y1, w.x2, w.y2 " +
-                    "FROM astar(?, ?, ?, ?, 0) res join ways w on res.edge=w.gid;";
-    @Value("${db.url}")
-    private String DB_URL;
-    @Value("${db.username}")
-    private String DB_USERNAME;
-    @Value("${db.password}")
-    private String DB_PASSWORD;
+                    "FROM astar(?, ?, ?, ?, 0) res join ways w on res.edge=w.gid ORDER BY res.seq;";
+    private static final String FIND_ROUTE_BOUNDED_SQL =
+            "SELECT w.gid, ST_AsBinary(w.the_geom), w.source, w.target, w.length_m, w.maxspeed_forward, " +
+                    "w.maxspeed_backward, w.x1, w.y1, w.x2, w.y2 " +
+                    "FROM astar_bounded(?, ?, ?, ?, 0) res join ways w on res.edge=w.gid ORDER BY res.seq;";
+    /***
+     * Wyszukanie najbliższych wierzchołków i trasy w jednym zapytaniu. Kolumny 1-11 są takie same jak w FIND_ROUTE_SQL,
+     * kolumny 12 i 13 zawierają id wierzchołka początkowego i końcowego. Dzięki LEFT JOIN zapytanie zwraca co najmniej
+     * jeden wiersz (z pustymi kolumnami trasy), nawet jeśli trasa nie istnieje. %s to nazwa funkcji wyszukującej trasę
+     */
+    private static final String FIND_ROUTE_BY_POINTS_SQL =
+            "WITH s AS (SELECT source AS id FROM ways order by source_point <-> st_makepoint(?,?) limit 1), " +
+                    "e AS (SELECT source AS id FROM ways order by target_point <-> st_makepoint(?,?) limit 1) " +
+                    "SELECT w.gid, ST_AsBinary(w.the_geom), w.source, w.target, w.length_m, w.maxspeed_forward, " +
+                    "w.maxspeed_backward, w.x1, w.y1, w.x2, w.y2, s.id, e.id " +
+                    "FROM s CROSS JOIN e " +
+                    "LEFT JOIN LATERAL %s(s.id, e.id, ?, ?, 0) res ON true " +
+                    "LEFT JOIN ways w on res.edge=w.gid " +
+                    "ORDER BY res.seq;";
+    /***
+     * Wyszukanie najbliższych wierzchołków i tras dla wielu prędkości w jednym zapytaniu. Kolumny 1-13 są takie same
+     * jak w FIND_ROUTE_BY_POINTS_SQL, kolumna 14 zawiera prędkość, dla której wyznaczono segment
+     */
+    private static final String FIND_ROUTES_BY_POINTS_SQL =
+            "WITH s AS (SELECT source AS id FROM ways order by source_point <-> st_makepoint(?,?) limit 1), " +
+                    "e AS (SELECT source AS id FROM ways order by target_point <-> st_makepoint(?,?) limit 1) " +
+                    "SELECT w.gid, ST_AsBinary(w.the_geom), w.source, w.target, w.length_m, w.maxspeed_forward, " +
+                    "w.maxspeed_backward, w.x1, w.y1, w.x2, w.y2, s.id, e.id, res.v " +
+                    "FROM s CROSS JOIN e " +
+                    "LEFT JOIN LATERAL astar_multi(s.id, e.id, ?, ?, 0, ?) res ON true " +
+                    "LEFT JOIN ways w on res.edge=w.gid " +
+                    "ORDER BY res.v, res.seq;";
+    /***
+     * Macierz długości i czasów przejazdu pomiędzy wieloma punktami w jednym zapytaniu. Punkty przekazywane są jako
+     * tablice szerokości i długości geograficznych, wierzchołki najbliższe każdemu z nich wyszukiwane są tak samo
+     * jak w NEAREST_START_ID_SQL i NEAREST_END_ID_SQL. Kolumny: numer punktu początkowego i końcowego (od 1),
+     * długość w km i czas w h - puste, jeśli trasa nie istnieje
+     */
+    private static final String ROUTE_MATRIX_SQL =
+            "WITH o AS (SELECT p.i, s.id FROM unnest(?::float8[], ?::float8[]) WITH ORDINALITY AS p(lat, lon, i) " +
+                    "CROSS JOIN LATERAL (SELECT source AS id FROM ways " +
+                    "order by source_point <-> st_makepoint(p.lat, p.lon) limit 1) s), " +
+                    "d AS (SELECT p.i, s.id FROM unnest(?::float8[], ?::float8[]) WITH ORDINALITY AS p(lat, lon, i) " +
+                    "CROSS JOIN LATERAL (SELECT source AS id FROM ways " +
+                    "order by target_point <-> st_makepoint(p.lat, p.lon) limit 1) s), " +
+                    "m AS (SELECT * FROM route_matrix((SELECT array_agg(DISTINCT id) FROM o), " +
+                    "(SELECT array_agg(DISTINCT id) FROM d), ?, ?)) " +
+                    "SELECT o.i, d.i, CASE WHEN o.id = d.id THEN 0 ELSE m.distance END, " +
+                    "CASE WHEN o.id = d.id THEN 0 ELSE m.travel_time END " +
+                    "FROM o CROSS JOIN d LEFT JOIN m ON m.start_vid = o.id AND m.end_vid = d.id;";
+    /***
+     * Parametr ST_ConcaveHull - im mniejszy, tym bardziej wklęsła otoczka obszaru osiągalnego
+     */
+    private static final double ISOCHRONE_HULL_TARGET_PERCENT = 0.8;
+    /***
+     * Wyszukanie wierzchołka najbliższego punktowi początkowemu i obszaru osiągalnego z niego w jednym zapytaniu.
+     * Kolumny: id wierzchołka początkowego, osiągnięty wierzchołek, krawędź, którą do niego dojechano (-1 dla
+     * wierzchołka początkowego) i koszt dojazdu. Ostatni wiersz zawiera tylko wklęsłą otoczkę osiągniętych
+     * wierzchołków w formacie WKB (kolumna 5)
+     */
+    private static final String ISOCHRONE_SQL =
+            "WITH s AS (SELECT source AS id FROM ways order by source_point <-> st_makepoint(?,?) limit 1), " +
+                    "r AS (SELECT i.node, i.edge, i.agg_cost FROM s CROSS JOIN LATERAL isochrone(s.id, ?, ?, ?) i) " +
+                    "SELECT s.id, r.node, r.edge, r.agg_cost, NULL::bytea FROM s LEFT JOIN r ON true " +
+                    "UNION ALL " +
+                    "SELECT NULL, NULL, NULL, NULL, ST_AsBinary(ST_ConcaveHull(ST_Collect(v.the_geom), " +
+                    ISOCHRONE_HULL_TARGET_PERCENT + ")) FROM r JOIN ways_vertices_pgr v ON v.id = r.node;";
+    private static final String GRAPH_VERSION_SQL = "SELECT version FROM ways_version;";
+    /***
+     * SQLSTATE zapytania przerwanego przez Statement.cancel() lub po przekroczeniu czasu (query_canceled)
+     */
+    private static final String QUERY_CANCELED_STATE = "57014";
+    /***
+     * SQLSTATE zapytania o nieistniejącą tabelę (undefined_table)
+     */
+    private static final String UNDEFINED_TABLE_STATE = "42P01";
+    private final HikariDataSource dataSource;
+    private final RouteMetrics metrics;
+    private final RunningQueries runningQueries;
+    private final boolean boundedSearch;
+    private final int queryTimeout;
+    private final String findRouteSql;
+    private final String findRouteByPointsSql;
+
+    public DatabaseServiceImpl(HikariDataSource dataSource, RouteMetrics metrics, RunningQueries runningQueries,
+                               @Value("${db.route.bounded}") boolean boundedSearch,
+                               @Value("${db.statement.timeout-seconds}") int queryTimeout) {
+        this.dataSource = dataSource;
+        this.metrics = metrics;
+        this.runningQueries = runningQueries;
+        this.boundedSearch = boundedSearch;
+        this.queryTimeout = queryTimeout;
+        this.findRouteSql = boundedSearch ? FIND_ROUTE_BOUNDED_SQL : FIND_ROUTE_SQL;
+        this.findRouteByPointsSql = String.format(FIND_ROUTE_BY_POINTS_SQL, boundedSearch ? "astar_bounded" : "astar");
+    }
 
     /***
      * Funkcja która przygotowuje zapytanie pod wyszukanie nakrótszej trasy - zamienia znaki zapytania z FIND_ROUTE_SQL
+     * (lub FIND_ROUTE_BOUNDED_SQL, jeśli włączone jest ograniczenie przeszukiwanego obszaru - db.route.bounded)
      * na odpowiednie wartości podane przy jej wywołaniu
      * @param startId - id punktu startu
      * @param endId - id punktu końcowego
@@ -41,8 +141,8 @@ public class DatabaseServiceImpl implements DatabaseService {
      * @param connection - połączenie z baż
      * @return PreparedStatement
      */
-    private static PreparedStatement getStatement(long startId, long endId, Integer maxSpeed, float distanceWeight, Connection connection) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(FIND_ROUTE_SQL);
+    private PreparedStatement getStatement(long startId, long endId, Integer maxSpeed, float distanceWeight, Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(findRouteSql);
         statement.setLong(1, startId);
         statement.setLong(2, endId);
         statement.setInt(3, maxSpeed);
@@ -52,13 +152,13 @@ public class DatabaseServiceImpl implements DatabaseService {
 
     /***
      * Funkcja parsuje jeden rekord z ResultSet otrzymanego po wykonaniu zapytania FIND_ROTE_SQL na RouteSegment -
-     * wyciąga porzebne informacje oraz oblicza długość segmentu w km
+     * wyciąga porzebne informacje oraz oblicza długość segmentu w km. Geometria drogi (kolumna 2, WKB) odczytywana
+     * jest osobno przez RouteAssembler
      * @param result - rekord otrzymany z zaytania
      * @return RouteSegment
      */
-    private static RouteSegment parseRecord(ResultSet result) throws SQLException {
+    static RouteSegment parseRecord(ResultSet result) throws SQLException {
         long id = result.getLong(1);
-        Object geom = result.getObject(2);
         long source = result.getLong(3);
         long target = result.getLong(4);
         double length = result.getDouble(5);
@@ -68,17 +168,23 @@ public class DatabaseServiceImpl implements DatabaseService {
         double x2 = result.getDouble(10);
         double y2 = result.getDouble(11);
 
-        return new RouteSegment(id, geom, source, target, length / 1000, maxSpeedForward, x1, y1, x2, y2);
+        return new RouteSegment(id, source, target, length / 1000, maxSpeedForward, x1, y1, x2, y2);
     }
 
     /***
-     * Funkcja zwraca połączenie z bazą danych
+     * Funkcja zwraca połączenie z bazą danych pobrane z puli - zamknięcie połączenia oddaje je do puli
      * @return java.sql.Connection
      */
     private Connection getConnection() throws SQLException {
-        Connection connection = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-        connection.setAutoCommit(true);
-        return connection;
+        return dataSource.getConnection();
+    }
+
+    /***
+     * Funkcja zwracająca aktualne statystyki puli połączeń
+     * @return ConnectionPoolStats
+     */
+    public ConnectionPoolStats getPoolStats() {
+        return ConnectionPoolStats.of(dataSource);
     }
 
     /***
@@ -90,19 +196,20 @@ public class DatabaseServiceImpl implements DatabaseService {
      */
     @Override
     public Long getStartOrEnd(Point point, boolean isStartPoint) throws RuntimeException {
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection
-                    .prepareStatement(isStartPoint ? NEAREST_START_ID_SQL : NEAREST_END_ID_SQL);
+        Timer.Sample sample = metrics.start();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection
+                     .prepareStatement(isStartPoint ? NEAREST_START_ID_SQL : NEAREST_END_ID_SQL)) {
             statement.setDouble(1, point.latitude());
             statement.setDouble(2, point.longitude());
             log.info(statement.toString());
 
-            ResultSet result = executeStatement(statement);
-
-            if (result.next()) {
-                long id = result.getInt("source");
-                log.info("Received id: " + id);
-                return id;
+            try (ResultSet result = executeStatement(statement)) {
+                if (result.next()) {
+                    long id = result.getInt("source");
+                    log.info("Received id: " + id);
+                    return id;
+                }
             }
 
             return (long) -1;
@@ -110,6 +217,41 @@ public class DatabaseServiceImpl implements DatabaseService {
         } catch (SQLException e) {
             log.error("SQLException has occurred with message: " + e.getMessage());
             throw new RuntimeException(e);
+        } finally {
+            metrics.recordSnap(sample, isStartPoint);
+        }
+    }
+
+    /***
+     * Wyszukuje początek i koniec trasy jednym zapytaniem (NEAREST_START_AND_END_ID_SQL)
+     */
+    @Override
+    public Long[] getStartAndEnd(Point startPoint, Point endPoint) throws RuntimeException {
+        Timer.Sample sample = metrics.start();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(NEAREST_START_AND_END_ID_SQL)) {
+            statement.setDouble(1, startPoint.latitude());
+            statement.setDouble(2, startPoint.longitude());
+            statement.setDouble(3, endPoint.latitude());
+            statement.setDouble(4, endPoint.longitude());
+            log.info(statement.toString());
+
+            try (ResultSet result = executeStatement(statement)) {
+                if (result.next()) {
+                    long startId = result.getObject(1) != null ? result.getLong(1) : -1;
+                    long endId = result.getObject(2) != null ? result.getLong(2) : -1;
+                    log.info("Received ids: " + startId + ", " + endId);
+                    return new Long[]{startId, endId};
+                }
+            }
+
+            return new Long[]{(long) -1, (long) -1};
+
+        } catch (SQLException e) {
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        } finally {
+            metrics.recordSnaps(sample);
         }
     }
 
@@ -123,14 +265,75 @@ public class DatabaseServiceImpl implements DatabaseService {
      */
     @Override
     public Route findRoute(long startId, long endId, Integer maxSpeed, float distanceWeight) throws RuntimeException {
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = getStatement(startId, endId, maxSpeed, distanceWeight, connection);
+        try (Connection connection = getConnection();
+             PreparedStatement statement = getStatement(startId, endId, maxSpeed, distanceWeight, connection)) {
+
+            log.info(statement.toString());
+
+            Timer.Sample query = metrics.start();
+            try (ResultSet result = executeStatement(statement)) {
+                metrics.recordQuery(query);
+                Timer.Sample parse = metrics.start();
+                Route route = parseQueryResult(result, startId, maxSpeed);
+                metrics.recordParse(parse);
+                return route;
+            }
+
+        } catch (SQLException e) {
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /***
+     * Funkcja wyszukująca najbliższe wierzchołki dla punktów startu i końca oraz najlepszą trasę pomiędzy nimi
+     * w jednym zapytaniu FIND_ROUTE_BY_POINTS_SQL - zamiast trzech kolejnych zapytań i połączeń z bazą
+     * @param startPoint - punkt początkowy wybrany w GUI
+     * @param endPoint - punkt końcowy wybrany w GUI
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return Route - znaleziona ścieżka wraz z id wierzchołków początkowego i końcowego
+     */
+    @Override
+    public Route findRoute(Point startPoint, Point endPoint, int maxSpeed, float distanceWeight) throws RuntimeException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(findRouteByPointsSql)) {
+            statement.setDouble(1, startPoint.latitude());
+            statement.setDouble(2, startPoint.longitude());
+            statement.setDouble(3, endPoint.latitude());
+            statement.setDouble(4, endPoint.longitude());
+            statement.setInt(5, maxSpeed);
+            statement.setFloat(6, distanceWeight);
 
             log.info(statement.toString());
 
-            ResultSet result = executeStatement(statement);
+            Timer.Sample query = metrics.start();
+            try (ResultSet result = executeStatement(statement)) {
+                metrics.recordQuery(query);
+                Timer.Sample parse = metrics.start();
+                RouteAssembler assembler = null;
+                long startId = -1;
+                long endId = -1;
+                int segmentsNumber = 0;
+                while (result.next()) {
+                    if (assembler == null) {
+                        startId = result.getLong(12);
+                        endId = result.getLong(13);
+                        assembler = new RouteAssembler(startId);
+                    }
+                    if (result.getObject(1) != null) {
+                        assembler.add(parseRecord(result), result.getBytes(2));
+                        segmentsNumber++;
+                    }
+                }
+                log.info("Received ids: " + startId + ", " + endId + ", segments number: " + segmentsNumber);
 
-            return parseQueryResult(result, maxSpeed);
+                Route route = assembler == null ? Route.of(List.of(), maxSpeed) : assembler.build(maxSpeed);
+                metrics.recordParse(parse);
+                route.setStartId(startId);
+                route.setEndId(endId);
+                return route;
+            }
 
         } catch (SQLException e) {
             log.error("SQLException has occurred with message: " + e.getMessage());
@@ -139,39 +342,279 @@ public class DatabaseServiceImpl implements DatabaseService {
     }
 
     /***
-     * Funkcja wykonująca przygotowane zapytanie - jej zadaniem jest także zmierzenie czasu potrzebnego do wykonania
-     * okreslonego zapytania
+     * Funkcja wyszukująca trasy w sesji. Funkcje pgRouting nie zachowują stanu wyszukiwania pomiędzy zapytaniami,
+     * więc trasy wyszukiwane są tak samo jak bez sesji - po przesunięciu punktu ponownie używane są jedynie
+     * zapamiętane w RouteCache wierzchołki i trasy
+     * @param sessionId - identyfikator sesji
+     * @param startPoint - punkt początkowy wybrany w GUI
+     * @param endPoint - punkt końcowy wybrany w GUI
+     * @param maxSpeeds - maksymalne prędkości pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return lista tras w kolejności prędkości z maxSpeeds
+     */
+    @Override
+    public List<Route> findRoutes(String sessionId, Point startPoint, Point endPoint, List<Integer> maxSpeeds,
+                                  float distanceWeight) throws RuntimeException {
+        return findRoutes(startPoint, endPoint, maxSpeeds, distanceWeight);
+    }
+
+    /***
+     * Funkcja wyszukująca najbliższe wierzchołki dla punktów startu i końca oraz najlepsze trasy dla każdej z podanych
+     * prędkości w jednym zapytaniu FIND_ROUTES_BY_POINTS_SQL. Funkcja astar_multi wczytuje krawędzie raz dla wszystkich
+     * prędkości, a prędkości dające ten sam koszt krawędzi wyszukuje tylko raz
+     * @param startPoint - punkt początkowy wybrany w GUI
+     * @param endPoint - punkt końcowy wybrany w GUI
+     * @param maxSpeeds - maksymalne prędkości pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return lista tras w kolejności prędkości z maxSpeeds
+     */
+    @Override
+    public List<Route> findRoutes(Point startPoint, Point endPoint, List<Integer> maxSpeeds, float distanceWeight)
+            throws RuntimeException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(FIND_ROUTES_BY_POINTS_SQL)) {
+            statement.setDouble(1, startPoint.latitude());
+            statement.setDouble(2, startPoint.longitude());
+            statement.setDouble(3, endPoint.latitude());
+            statement.setDouble(4, endPoint.longitude());
+            statement.setArray(5, connection.createArrayOf("integer", maxSpeeds.stream().distinct().toArray()));
+            statement.setFloat(6, distanceWeight);
+            statement.setBoolean(7, boundedSearch);
+
+            log.info(statement.toString());
+
+            Timer.Sample query = metrics.start();
+            try (ResultSet result = executeStatement(statement)) {
+                metrics.recordQuery(query);
+                Timer.Sample parse = metrics.start();
+                // wiersze są posortowane po prędkości, więc trasy składane są jedna po drugiej
+                Map<Integer, Route> found = new HashMap<>();
+                RouteAssembler assembler = null;
+                int speed = -1;
+                long startId = -1;
+                long endId = -1;
+                while (result.next()) {
+                    startId = result.getLong(12);
+                    endId = result.getLong(13);
+                    if (result.getObject(1) == null) {
+                        continue;
+                    }
+                    int rowSpeed = result.getInt(14);
+                    if (assembler == null || rowSpeed != speed) {
+                        if (assembler != null) {
+                            found.put(speed, assembler.build(speed));
+                        }
+                        assembler = new RouteAssembler(startId);
+                        speed = rowSpeed;
+                    }
+                    assembler.add(parseRecord(result), result.getBytes(2));
+                }
+                if (assembler != null) {
+                    found.put(speed, assembler.build(speed));
+                }
+                metrics.recordParse(parse);
+                log.info("Received ids: " + startId + ", " + endId + ", routes number: " + found.size());
+
+                List<Route> routes = new ArrayList<>();
+                for (int maxSpeed : maxSpeeds) {
+                    Route route = found.containsKey(maxSpeed) ? found.get(maxSpeed) : Route.of(List.of(), maxSpeed);
+                    route.setStartId(startId);
+                    route.setEndId(endId);
+                    routes.add(route);
+                }
+                return routes;
+            }
+
+        } catch (SQLException e) {
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /***
+     * Funkcja wyznaczająca macierz długości i czasów przejazdu najlepszych tras pomiędzy punktami początkowymi
+     * i końcowymi w jednym zapytaniu ROUTE_MATRIX_SQL. Funkcja route_matrix wyszukuje trasy jednym drzewem
+     * wyszukiwania dla każdego wierzchołka początkowego, zamiast osobnego wyszukiwania dla każdej pary
+     * @param origins - punkty początkowe
+     * @param destinations - punkty końcowe
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return RouteMatrix - wiersze odpowiadają punktom początkowym, kolumny końcowym
+     */
+    @Override
+    public RouteMatrix findRouteMatrix(List<Point> origins, List<Point> destinations, int maxSpeed,
+                                       float distanceWeight) throws RuntimeException {
+        RouteMatrix matrix = new RouteMatrix(origins.size(), destinations.size());
+        if (origins.isEmpty() || destinations.isEmpty()) {
+            return matrix;
+        }
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(ROUTE_MATRIX_SQL)) {
+            statement.setArray(1, connection.createArrayOf("float8", origins.stream().map(Point::latitude).toArray()));
+            statement.setArray(2, connection.createArrayOf("float8", origins.stream().map(Point::longitude).toArray()));
+            statement.setArray(3, connection.createArrayOf("float8",
+                    destinations.stream().map(Point::latitude).toArray()));
+            statement.setArray(4, connection.createArrayOf("float8",
+                    destinations.stream().map(Point::longitude).toArray()));
+            statement.setInt(5, maxSpeed);
+            statement.setFloat(6, distanceWeight);
+
+            log.info(statement.toString());
+
+            Timer.Sample query = metrics.start();
+            try (ResultSet result = executeStatement(statement)) {
+                metrics.recordQuery(query);
+                Timer.Sample parse = metrics.start();
+                int reachable = 0;
+                while (result.next()) {
+                    double distance = result.getDouble(3);
+                    if (!result.wasNull()) {
+                        matrix.set(result.getInt(1) - 1, result.getInt(2) - 1, distance, result.getDouble(4));
+                        reachable++;
+                    }
+                }
+                metrics.recordParse(parse);
+                log.info("Matrix " + origins.size() + "x" + destinations.size() + ", reachable pairs: " + reachable);
+                return matrix;
+            }
+
+        } catch (SQLException e) {
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /***
+     * Funkcja wyszukująca obszar osiągalny z punktu początkowego w zadanym budżecie czasu lub długości jednym
+     * zapytaniem ISOCHRONE_SQL. Funkcja isochrone rozwija jedno drzewo wyszukiwania (pgr_drivingDistance)
+     * z wierzchołka najbliższego punktowi, przerywane po przekroczeniu budżetu
+     * @param startPoint - punkt początkowy wybrany w GUI
+     * @param budgetType - rodzaj budżetu
+     * @param budget - budżet w godzinach (TIME) lub km (DISTANCE)
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @return Isochrone - osiągnięte wierzchołki i krawędzie oraz otoczka obszaru
+     */
+    @Override
+    public Isochrone findIsochrone(Point startPoint, Isochrone.BudgetType budgetType, double budget, int maxSpeed)
+            throws RuntimeException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(ISOCHRONE_SQL)) {
+            statement.setDouble(1, startPoint.latitude());
+            statement.setDouble(2, startPoint.longitude());
+            statement.setInt(3, maxSpeed);
+            statement.setDouble(4, budget);
+            statement.setBoolean(5, budgetType == Isochrone.BudgetType.TIME);
+
+            log.info(statement.toString());
+
+            Timer.Sample query = metrics.start();
+            try (ResultSet result = executeStatement(statement)) {
+                metrics.recordQuery(query);
+                Timer.Sample parse = metrics.start();
+                long startId = -1;
+                LongStream.Builder vertexIds = LongStream.builder();
+                DoubleStream.Builder vertexCosts = DoubleStream.builder();
+                LongStream.Builder edgeIds = LongStream.builder();
+                CoordinateBuffer hull = new CoordinateBuffer();
+                while (result.next()) {
+                    byte[] hullWkb = result.getBytes(5);
+                    if (hullWkb != null) {
+                        WkbReader.read(hullWkb, hull);
+                        continue;
+                    }
+                    startId = result.getLong(1);
+                    if (result.getObject(2) == null) {
+                        continue;
+                    }
+                    vertexIds.add(result.getLong(2));
+                    vertexCosts.add(result.getDouble(4));
+                    long edge = result.getLong(3);
+                    if (edge >= 0) {
+                        edgeIds.add(edge);
+                    }
+                }
+                Isochrone isochrone = new Isochrone(startId, vertexIds.build().toArray(), vertexCosts.build().toArray(),
+                        edgeIds.build().toArray(), RouteGeometry.of(hull));
+                metrics.recordParse(parse);
+                log.info("Received id: " + startId + ", reached vertices: " + isochrone.getVertexIds().length);
+                return isochrone;
+            }
+
+        } catch (SQLException e) {
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /***
+     * Funkcja zwracająca wersję tabeli ways z tabeli ways_version (sql/ways_version.sql), zwiększaną przez każdą
+     * zmianę tabeli ways
+     * @return wersja grafu lub 0, jeśli tabela ways_version nie istnieje
+     */
+    @Override
+    public long getGraphVersion() {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(GRAPH_VERSION_SQL);
+             ResultSet result = statement.executeQuery()) {
+            return result.next() ? result.getLong(1) : 0;
+        } catch (SQLException e) {
+            if (UNDEFINED_TABLE_STATE.equals(e.getSQLState())) {
+                log.warn("Table ways_version does not exist - apply sql/ways_version.sql to enable the route store");
+                return 0;
+            }
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /***
+     * Funkcja wykonująca przygotowane zapytanie. Czas wykonania zapisywany jest w metrykach przez wywołującego,
+     * a tutaj jedynie logowany w milisekundach. Zapytanie przerywane jest po db.statement.timeout-seconds sekundach,
+     * a na czas wykonania zapisywane w RunningQueries, aby anulowanie wyszukiwania mogło je przerwać
      * @param statement - przygotowane zapytanie
      * @return ResultSet - wynik wykonania zapytania SQL
+     * @throws CancellationException jeśli wyszukiwanie zostało anulowane
      */
     private ResultSet executeStatement(@NotNull PreparedStatement statement) throws SQLException {
-        long start = System.currentTimeMillis();
-        ResultSet result = statement.executeQuery();
-        long end = System.currentTimeMillis();
-        long time = end - start;
-        log.info("Query executed in " + time / 1000 + " seconds");
+        statement.setQueryTimeout(queryTimeout);
+        runningQueries.register(statement);
+        try {
+            // anulowanie przed rejestracją zapytania nie mogło go przerwać
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Route search cancelled before query execution");
+            }
+            long start = System.nanoTime();
+            ResultSet result = statement.executeQuery();
+            log.debug("Query executed in " + (System.nanoTime() - start) / 1_000_000.0 + " ms");
+            log.debug("Connection pool: " + getPoolStats());
 
-        return result;
+            return result;
+        } catch (SQLException e) {
+            if (QUERY_CANCELED_STATE.equals(e.getSQLState()) && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Route search cancelled during query execution");
+            }
+            throw e;
+        } finally {
+            runningQueries.unregister();
+        }
     }
 
     /***
      * Funkcja której zadaniem jest przeparsować otrzymane wyniki z wykonania zapytania FIND_ROUTE_SQL
      * @param result - wynik otrzymany z bazy
+     * @param startId - id punktu początkowego, potrzebne do ustalenia kierunku przejazdu segmentów
      * @param maxSpeed - maksymalna prędkość pojazdu, potrzebna do wyliczenia czasu potrzebnego na pokonanie odcinka drogi
      * @return Route - klasa zawierająca informacje o znalezionej trasie
      */
-    private Route parseQueryResult(ResultSet result, int maxSpeed) throws SQLException {
-        List<RouteSegment> segments = new ArrayList<>();
+    static Route parseQueryResult(ResultSet result, long startId, int maxSpeed) throws SQLException {
+        RouteAssembler assembler = new RouteAssembler(startId);
+        int segmentsNumber = 0;
 
-        float distanceSum = 0;
-        float timeSum = 0;
         while (result.next()) {
-            RouteSegment seg = parseRecord(result);
-            distanceSum += seg.length();
-            timeSum += (seg.length() / (Math.min(seg.maxSpeedForward(), maxSpeed)));
-            segments.add(seg);
+            assembler.add(parseRecord(result), result.getBytes(2));
+            segmentsNumber++;
         }
-        log.info("Segments number: " + segments.size());
-        return new Route(segments, distanceSum, timeSum);
+        log.info("Segments number: " + segmentsNumber);
+        return assembler.build(maxSpeed);
     }
 }
@@ -0,0 +1,457 @@
+package pl.edu.pw.spdb.dal;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.edu.pw.spdb.dal.graph.*;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+import pl.edu.pw.spdb.model.*;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+/***
+ * Implementacja DatabaseService wyszukująca trasy w grafie wczytanym jednorazowo do pamięci.
+ * Wyszukiwanie trasy nie wymaga zapytania do bazy danych. Anulowanie wyszukiwania (przerwanie wątku) kończy
+ * wyszukiwanie wyjątkiem CancellationException
+ */
+@Component
+@Profile("in-memory")
+@Slf4j
+public class InMemoryDatabaseService implements DatabaseService {
+
+    static final int DEFAULT_MAXIMUM_SESSIONS = 6;
+    static final double DEFAULT_MAX_SHIFT_METERS = 2000;
+    private static final double METERS_PER_DEGREE = 111_320;
+    /***
+     * Część wierzchołków ustalonych przez zwykłe wyszukiwanie, o którą można rozwinąć drzewo sesji przy przesunięciu
+     * punktu
+     */
+    static final double TREE_BUDGET_FRACTION = 0.25;
+
+    private final RoadGraph graph;
+    private final ContractionHierarchyRegistry hierarchies;
+    private final LandmarkRegistry landmarks;
+    private final AStarSearch search;
+    private final OneToManySearch oneToManySearch;
+    private final IsochroneSearch isochroneSearch;
+    private final SearchSpacePool searchSpaces;
+    private final RouteMetrics metrics;
+
+    private final int maximumSessions;
+    private final double maxShiftMeters;
+    private final LinkedHashMap<SessionKey, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    public InMemoryDatabaseService(RoadGraph graph, ContractionHierarchyRegistry hierarchies,
+                                   LandmarkRegistry landmarks, RouteMetrics metrics) {
+        this(graph, hierarchies, landmarks, metrics, DEFAULT_MAXIMUM_SESSIONS, DEFAULT_MAX_SHIFT_METERS);
+    }
+
+    @Autowired
+    public InMemoryDatabaseService(RoadGraph graph, ContractionHierarchyRegistry hierarchies,
+                                   LandmarkRegistry landmarks, RouteMetrics metrics,
+                                   @Value("${graph.session.maximum-size}") int maximumSessions,
+                                   @Value("${graph.session.max-shift-meters}") double maxShiftMeters) {
+        this.graph = graph;
+        this.hierarchies = hierarchies;
+        this.landmarks = landmarks;
+        this.metrics = metrics;
+        this.maximumSessions = maximumSessions;
+        this.maxShiftMeters = maxShiftMeters;
+        this.search = new AStarSearch(graph);
+        this.oneToManySearch = new OneToManySearch(graph);
+        this.isochroneSearch = new IsochroneSearch(graph);
+        this.searchSpaces = new SearchSpacePool(graph.nodeCount());
+    }
+
+    /***
+     * Funkcja wyszukująca najbliższy wierzchołek grafu, z którego można wyjechać (początek trasy) lub do którego
+     * można dojechać (koniec trasy)
+     * @param point - punkt wbrany w GUI
+     * @param isStartPoint - czy szukamy początku trasy
+     * @return id wierzchołka w bazie
+     */
+    @Override
+    public Long getStartOrEnd(Point point, boolean isStartPoint) {
+        Timer.Sample sample = metrics.start();
+        int node = graph.nearestNode(point.latitude(), point.longitude(), isStartPoint);
+        metrics.recordSnap(sample, isStartPoint);
+        long id = node < 0 ? -1 : graph.nodeId(node);
+        log.info("Received id: " + id);
+        return id;
+    }
+
+    /***
+     * Funkcja wyszukująca najlepszą trasę. Jeśli dla profilu kosztu istnieje hierarchia skrótów używane jest
+     * dwukierunkowe wyszukiwanie w hierarchii, w przeciwnym razie algorytm A* z heurystyką ALT (jeśli zbudowano
+     * punkty orientacyjne) lub odległości w linii prostej
+     * @param startId - id punktu początkowego
+     * @param endId - id punktu końcowego
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return Route - znaleziona ścieżka, pusta jeśli ścieżka nie istnieje
+     */
+    @Override
+    public Route findRoute(long startId, long endId, Integer maxSpeed, float distanceWeight) {
+        int source = graph.nodeIndex(startId);
+        int target = graph.nodeIndex(endId);
+        if (source < 0 || target < 0) {
+            return Route.of(List.of(), maxSpeed);
+        }
+
+        CostProfile profile = new CostProfile(maxSpeed, distanceWeight);
+        ShortestPath path = findPath(profile, source, target, metrics.start(), System.nanoTime());
+        return toRoute(path, maxSpeed);
+    }
+
+    /***
+     * Wersja grafu - suma kontrolna danych krawędzi, zmieniająca się po naniesieniu zmiany tabeli ways
+     * @return wersja grafu
+     */
+    @Override
+    public long getGraphVersion() {
+        return graph.fingerprint();
+    }
+
+    private ShortestPath searchAStar(CostProfile profile, int source, int target) {
+        SearchSpace space = searchSpaces.acquire();
+        try {
+            Optional<Landmarks> alt = landmarks.find(profile);
+            Heuristic heuristic = alt.isPresent()
+                    ? alt.get().heuristic(graph, source, target, profile)
+                    : Heuristic.straightLine(graph, target, profile);
+            return search.search(source, target, profile, heuristic, space);
+        } finally {
+            searchSpaces.release(space);
+        }
+    }
+
+    private ShortestPath searchHierarchy(ContractionHierarchy hierarchy, int source, int target) {
+        SearchSpace forward = searchSpaces.acquire();
+        SearchSpace backward = searchSpaces.acquire();
+        try {
+            return hierarchy.query(source, target, forward, backward);
+        } finally {
+            searchSpaces.release(forward);
+            searchSpaces.release(backward);
+        }
+    }
+
+    /***
+     * Funkcja wyszukująca najbliższe wierzchołki dla punktów startu i końca oraz najlepszą trasę pomiędzy nimi
+     * @param startPoint - punkt początkowy wybrany w GUI
+     * @param endPoint - punkt końcowy wybrany w GUI
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return Route - znaleziona ścieżka wraz z id wierzchołków początkowego i końcowego
+     */
+    @Override
+    public Route findRoute(Point startPoint, Point endPoint, int maxSpeed, float distanceWeight) {
+        long startId = getStartOrEnd(startPoint, true);
+        long endId = getStartOrEnd(endPoint, false);
+        Route route = findRoute(startId, endId, maxSpeed, distanceWeight);
+        route.setStartId(startId);
+        route.setEndId(endId);
+        return route;
+    }
+
+    /***
+     * Funkcja wyszukująca najbliższe wierzchołki dla punktów startu i końca oraz najlepsze trasy dla każdej z podanych
+     * prędkości. Punkty wyszukiwane są raz, a dla prędkości dających ten sam koszt każdej krawędzi (np. obu nie
+     * mniejszych od największego ograniczenia prędkości w grafie) używana jest już znaleziona ścieżka
+     * @param startPoint - punkt początkowy wybrany w GUI
+     * @param endPoint - punkt końcowy wybrany w GUI
+     * @param maxSpeeds - maksymalne prędkości pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return lista tras w kolejności prędkości z maxSpeeds
+     */
+    @Override
+    public List<Route> findRoutes(Point startPoint, Point endPoint, List<Integer> maxSpeeds, float distanceWeight) {
+        return findRoutes(null, startPoint, endPoint, maxSpeeds, distanceWeight);
+    }
+
+    /***
+     * Funkcja wyszukująca trasy jak findRoutes, zachowująca stan wyszukiwania dla sesji. Jeśli w stosunku do
+     * poprzedniego wyszukiwania w sesji przesunął się tylko jeden z punktów, i to o nie więcej niż
+     * graph.session.max-shift-meters, trasa odczytywana jest z drzewa najtańszych ścieżek zakorzenionego
+     * w niezmienionym punkcie. Drzewo rozwijane jest tylko do nowego punktu i zachowywane, więc kolejne niewielkie
+     * przesunięcia tego samego punktu zwykle nie wymagają już wyszukiwania. Jedno przesunięcie może rozwinąć drzewo
+     * najwyżej o TREE_BUDGET_FRACTION wierzchołków ustalonych przez poprzednie wyszukiwanie - jeśli to nie wystarcza,
+     * trasa wyszukiwana jest od zera, a drzewo jest dalej rozwijane przy kolejnych przesunięciach. Dla profili
+     * z hierarchią skrótów drzewa nie są używane
+     * @param sessionId - identyfikator sesji, null - wyszukiwanie bez sesji
+     * @param startPoint - punkt początkowy wybrany w GUI
+     * @param endPoint - punkt końcowy wybrany w GUI
+     * @param maxSpeeds - maksymalne prędkości pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return lista tras w kolejności prędkości z maxSpeeds
+     */
+    @Override
+    public List<Route> findRoutes(String sessionId, Point startPoint, Point endPoint, List<Integer> maxSpeeds,
+                                  float distanceWeight) {
+        long startId = getStartOrEnd(startPoint, true);
+        long endId = getStartOrEnd(endPoint, false);
+
+        List<CostProfile> searched = new ArrayList<>();
+        List<Route> searchedRoutes = new ArrayList<>();
+        List<Route> routes = new ArrayList<>();
+        for (int maxSpeed : maxSpeeds) {
+            CostProfile profile = new CostProfile(maxSpeed, distanceWeight);
+            Route route = null;
+            for (int i = 0; i < searched.size() && route == null; i++) {
+                if (searched.get(i).isEquivalent(profile, graph.maxSpeed())) {
+                    route = Route.of(searchedRoutes.get(i).getSegments(), maxSpeed);
+                }
+            }
+            if (route == null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Route search interrupted");
+                }
+                route = sessionId == null
+                        ? findRoute(startId, endId, maxSpeed, distanceWeight)
+                        : findSessionRoute(sessionId, startId, endId, profile);
+                searched.add(profile);
+                searchedRoutes.add(route);
+            }
+            route.setStartId(startId);
+            route.setEndId(endId);
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    private Route findSessionRoute(String sessionId, long startId, long endId, CostProfile profile) {
+        int source = graph.nodeIndex(startId);
+        int target = graph.nodeIndex(endId);
+        if (source < 0 || target < 0) {
+            return Route.of(List.of(), profile.maxSpeed());
+        }
+
+        Session session = session(new SessionKey(sessionId, profile));
+        synchronized (session) {
+            long start = System.nanoTime();
+            Timer.Sample sample = metrics.start();
+            ShortestPath path = null;
+            // drzewo rozwijane jest najwyżej o część wierzchołków ustalonych przez ostatnie zwykłe wyszukiwanie - dla
+            // dalszego punktu trasa wyszukiwana jest od zera, więc przesunięcie nie kosztuje więcej niż
+            // (1 + TREE_BUDGET_FRACTION) zwykłego wyszukiwania. Wyszukiwanie w hierarchii skrótów jest zawsze tańsze
+            int budget = (int) (session.settledNodes * TREE_BUDGET_FRACTION);
+            boolean repairable = budget > 0 && hierarchies.find(profile).isEmpty();
+            if (repairable && source == session.source && target != session.target && session.target >= 0
+                    && isShortShift(session.target, target)) {
+                if (session.forward == null || session.forward.root() != source) {
+                    session.forward = new SearchTree(graph, source, false, profile);
+                }
+                path = session.forward.path(target, budget);
+            } else if (repairable && target == session.target && source != session.source && session.source >= 0
+                    && isShortShift(session.source, source)) {
+                if (session.backward == null || session.backward.root() != target) {
+                    session.backward = new SearchTree(graph, target, true, profile);
+                }
+                path = session.backward.path(source, budget);
+            }
+
+            if (path != null) {
+                metrics.recordQuery(sample);
+                log.info("Route repaired from search tree in " + (System.nanoTime() - start) / 1000
+                        + " us, settled nodes: " + path.settledNodes());
+            } else {
+                path = findPath(profile, source, target, sample, start);
+                session.settledNodes = path.settledNodes();
+                if (session.forward != null && session.forward.root() != source) {
+                    session.forward = null;
+                }
+                if (session.backward != null && session.backward.root() != target) {
+                    session.backward = null;
+                }
+            }
+            session.source = source;
+            session.target = target;
+            return toRoute(path, profile.maxSpeed());
+        }
+    }
+
+    private ShortestPath findPath(CostProfile profile, int source, int target, Timer.Sample sample, long start) {
+        Optional<ContractionHierarchy> hierarchy = hierarchies.find(profile);
+        ShortestPath path = hierarchy.isPresent()
+                ? searchHierarchy(hierarchy.get(), source, target)
+                : searchAStar(profile, source, target);
+        metrics.recordQuery(sample);
+        log.info("Route searched " + (hierarchy.isPresent() ? "in contraction hierarchy" : "with A*") + " in "
+                + (System.nanoTime() - start) / 1000 + " us, settled nodes: " + path.settledNodes());
+        return path;
+    }
+
+    /***
+     * Stan sesji dla profilu kosztu - najdawniej używane sesje są usuwane, bo każde drzewo zajmuje pamięć
+     * proporcjonalną do rozmiaru grafu
+     */
+    private Session session(SessionKey key) {
+        synchronized (sessions) {
+            Session session = sessions.computeIfAbsent(key, k -> new Session());
+            Iterator<SessionKey> eldest = sessions.keySet().iterator();
+            while (sessions.size() > maximumSessions) {
+                eldest.next();
+                eldest.remove();
+            }
+            return session;
+        }
+    }
+
+    /***
+     * Porzuca drzewa najtańszych ścieżek sesji - zostały rozwinięte z kosztami sprzed zmiany tabeli ways
+     */
+    @EventListener
+    public void onWaysChanged(WaysChangedEvent event) {
+        synchronized (sessions) {
+            sessions.clear();
+        }
+    }
+
+    private boolean isShortShift(int from, int to) {
+        double dLat = graph.latitude(from) - graph.latitude(to);
+        double dLon = (graph.longitude(from) - graph.longitude(to)) * Math.cos(Math.toRadians(graph.latitude(from)));
+        return Math.sqrt(dLat * dLat + dLon * dLon) * METERS_PER_DEGREE <= maxShiftMeters;
+    }
+
+    /***
+     * Funkcja wyznaczająca macierz długości i czasów przejazdu najlepszych tras pomiędzy punktami początkowymi
+     * i końcowymi. Dla każdego punktu początkowego rozwijane jest jedno drzewo najtańszych ścieżek, z którego
+     * odczytywane są trasy do wszystkich punktów końcowych
+     * @param origins - punkty początkowe
+     * @param destinations - punkty końcowe
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return RouteMatrix - wiersze odpowiadają punktom początkowym, kolumny końcowym
+     */
+    @Override
+    public RouteMatrix findRouteMatrix(List<Point> origins, List<Point> destinations, int maxSpeed,
+                                       float distanceWeight) {
+        RouteMatrix matrix = new RouteMatrix(origins.size(), destinations.size());
+        int[] targets = new int[destinations.size()];
+        for (int j = 0; j < targets.length; j++) {
+            targets[j] = graph.nearestNode(destinations.get(j).latitude(), destinations.get(j).longitude(), false);
+        }
+        int[] reachableTargets = Arrays.stream(targets).filter(target -> target >= 0).toArray();
+
+        CostProfile profile = new CostProfile(maxSpeed, distanceWeight);
+        long start = System.nanoTime();
+        Timer.Sample sample = metrics.start();
+        SearchSpace space = searchSpaces.acquire();
+        try {
+            for (int i = 0; i < origins.size(); i++) {
+                int source = graph.nearestNode(origins.get(i).latitude(), origins.get(i).longitude(), true);
+                if (source < 0) {
+                    continue;
+                }
+                oneToManySearch.search(source, reachableTargets, profile, space);
+                for (int j = 0; j < targets.length; j++) {
+                    if (targets[j] >= 0 && space.isSettled(targets[j])) {
+                        matrix.set(i, j, oneToManySearch.pathLength(space, source, targets[j]),
+                                oneToManySearch.pathTime(space, source, targets[j], maxSpeed));
+                    }
+                }
+            }
+        } finally {
+            searchSpaces.release(space);
+        }
+        metrics.recordQuery(sample);
+        log.info("Matrix " + origins.size() + "x" + destinations.size() + " searched in "
+                + (System.nanoTime() - start) / 1000 + " us");
+        return matrix;
+    }
+
+    /***
+     * Funkcja wyszukująca obszar osiągalny z punktu początkowego w zadanym budżecie czasu lub długości - jedno
+     * wyszukiwanie Dijkstry z wierzchołka najbliższego punktowi, przerywane po przekroczeniu budżetu
+     * @param startPoint - punkt początkowy wybrany w GUI
+     * @param budgetType - rodzaj budżetu
+     * @param budget - budżet w godzinach (TIME) lub km (DISTANCE)
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @return Isochrone - osiągnięte wierzchołki i krawędzie oraz otoczka obszaru
+     */
+    @Override
+    public Isochrone findIsochrone(Point startPoint, Isochrone.BudgetType budgetType, double budget, int maxSpeed) {
+        long startId = getStartOrEnd(startPoint, true);
+        int source = graph.nodeIndex(startId);
+        if (source < 0) {
+            return Isochrone.empty(startId);
+        }
+
+        long start = System.nanoTime();
+        Timer.Sample sample = metrics.start();
+        SearchSpace space = searchSpaces.acquire();
+        try {
+            int[] reached = isochroneSearch.search(source, budget, maxSpeed, budgetType == Isochrone.BudgetType.TIME,
+                    space);
+            metrics.recordQuery(sample);
+
+            long[] vertexIds = new long[reached.length];
+            double[] vertexCosts = new double[reached.length];
+            long[] edgeIds = new long[reached.length - 1];
+            CoordinateBuffer points = new CoordinateBuffer(reached.length);
+            for (int i = 0; i < reached.length; i++) {
+                int node = reached[i];
+                vertexIds[i] = graph.nodeId(node);
+                vertexCosts[i] = space.distance(node);
+                points.add(graph.longitude(node), graph.latitude(node));
+                // pierwszy osiągnięty wierzchołek to wierzchołek początkowy
+                if (i > 0) {
+                    edgeIds[i - 1] = graph.edgeId(RoadGraph.arcEdge(space.parentArc(node)));
+                }
+            }
+            Isochrone isochrone = new Isochrone(startId, vertexIds, vertexCosts, edgeIds, ConcaveHull.of(points));
+            log.info("Isochrone searched in " + (System.nanoTime() - start) / 1000 + " us, reached vertices: "
+                    + reached.length);
+            return isochrone;
+        } finally {
+            searchSpaces.release(space);
+        }
+    }
+
+    /***
+     * Zamienia ścieżkę w grafie na trasę złożoną z segmentów odpowiadających wierszom tabeli ways
+     * @param path - ścieżka
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @return Route
+     */
+    private Route toRoute(ShortestPath path, int maxSpeed) {
+        List<RouteSegment> segments = new ArrayList<>();
+        if (path.isFound()) {
+            for (int arc : path.arcs()) {
+                segments.add(toSegment(RoadGraph.arcEdge(arc)));
+            }
+        }
+        log.info("Segments number: " + segments.size());
+        return Route.of(segments, maxSpeed);
+    }
+
+    private RouteSegment toSegment(int edge) {
+        int source = graph.edgeSource(edge);
+        int target = graph.edgeTarget(edge);
+        return new RouteSegment(graph.edgeId(edge), graph.nodeId(source), graph.nodeId(target),
+                graph.edgeLength(edge) / 1000.0, graph.speedForward(edge),
+                graph.longitude(source), graph.latitude(source), graph.longitude(target), graph.latitude(target));
+    }
+
+    private record SessionKey(String sessionId, CostProfile profile) {
+    }
+
+    /***
+     * Stan wyszukiwania w sesji: wierzchołki ostatniej trasy oraz drzewa z jej początku i do jej końca
+     */
+    private static final class Session {
+        private int source = -1;
+        private int target = -1;
+        private SearchTree forward;
+        private SearchTree backward;
+        /***
+         * Liczba wierzchołków ustalonych przez ostatnie wyszukiwanie bez drzewa
+         */
+        private int settledNodes;
+    }
+}
@@ -0,0 +1,71 @@
+package pl.edu.pw.spdb.dal;
+
+import pl.edu.pw.spdb.model.CoordinateBuffer;
+import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteGeometry;
+import pl.edu.pw.spdb.model.RouteSegment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Składa trasę z kolejnych segmentów wraz z jej kształtem. Geometria każdej drogi jest zapisana od source do target,
+ * więc dla segmentów pokonywanych w przeciwnym kierunku kolejność punktów jest odwracana. Punkty zapisywane są do
+ * bufora współdzielonego przez kolejne trasy składane w tym samym wątku
+ */
+class RouteAssembler {
+
+    private static final ThreadLocal<CoordinateBuffer> BUFFERS = ThreadLocal.withInitial(CoordinateBuffer::new);
+
+    private final List<RouteSegment> segments = new ArrayList<>();
+    private final CoordinateBuffer coordinates;
+    private long currentNode;
+
+    /***
+     * @param startId - id wierzchołka początkowego trasy, potrzebne do ustalenia kierunku przejazdu pierwszego segmentu
+     */
+    RouteAssembler(long startId) {
+        this.coordinates = BUFFERS.get();
+        this.coordinates.clear();
+        this.currentNode = startId;
+    }
+
+    /***
+     * Dodaje kolejny segment trasy
+     * @param segment - segment
+     * @param wkb - geometria drogi w formacie WKB, jeśli null używane są współrzędne końców segmentu
+     */
+    void add(RouteSegment segment, byte[] wkb) {
+        boolean reversed = segment.source() != currentNode && segment.target() == currentNode;
+        currentNode = reversed ? segment.source() : segment.target();
+        segments.add(segment);
+
+        int from = coordinates.size();
+        if (wkb != null) {
+            WkbReader.read(wkb, coordinates);
+        } else {
+            coordinates.add(segment.x1(), segment.y1());
+            coordinates.add(segment.x2(), segment.y2());
+        }
+        if (reversed) {
+            coordinates.reverse(from, coordinates.size());
+        }
+        if (from > 0 && from < coordinates.size() && coordinates.x(from) == coordinates.x(from - 1)
+                && coordinates.y(from) == coordinates.y(from - 1)) {
+            coordinates.remove(from);
+        }
+    }
+
+    /***
+     * Tworzy trasę z dodanych segmentów
+     * @param maxSpeed - maksymalna prędkość pojazdu, potrzebna do wyliczenia czasu przejazdu
+     * @return Route
+     */
+    Route build(int maxSpeed) {
+        Route route = Route.of(segments, maxSpeed);
+        if (!segments.isEmpty()) {
+            route.setGeometry(RouteGeometry.of(coordinates));
+        }
+        return route;
+    }
+}
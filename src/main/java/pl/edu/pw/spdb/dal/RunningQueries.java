@@ -0,0 +1,77 @@
+package pl.edu.pw.spdb.dal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Zapytania wykonywane w danej chwili przez poszczególne wyszukiwania. Przerwanie wątku nie przerywa zapytania JDBC,
+ * dlatego anulowanie wyszukiwania wywołuje Statement.cancel() na zapytaniu wykonywanym w jego ramach.
+ * Zapytania przypisywane są do wyszukiwania, a nie do wątku - wątek z puli może po anulowanym wyszukiwaniu
+ * wykonywać już inne, którego zapytanie nie może zostać przerwane
+ */
+@Component
+@Slf4j
+public class RunningQueries {
+
+    private final Map<Object, Statement> statements = new ConcurrentHashMap<>();
+    private final ThreadLocal<Object> currentSearch = new ThreadLocal<>();
+
+    /***
+     * Przypisuje zapytania wykonywane przez bieżący wątek do wyszukiwania - do wywołania detach()
+     * @param search - wyszukiwanie, np. zadanie SearchExecutor
+     */
+    public void attach(Object search) {
+        currentSearch.set(search);
+    }
+
+    /***
+     * Kończy przypisanie bieżącego wątku do wyszukiwania
+     */
+    public void detach() {
+        currentSearch.remove();
+    }
+
+    /***
+     * Zapisuje zapytanie wyszukiwania wykonywanego przez bieżący wątek. Zapytania wątków nieprzypisanych do żadnego
+     * wyszukiwania nie są zapisywane, ponieważ nie mogą zostać anulowane
+     * @param statement - wykonywane zapytanie
+     */
+    public void register(Statement statement) {
+        Object search = currentSearch.get();
+        if (search != null) {
+            statements.put(search, statement);
+        }
+    }
+
+    /***
+     * Usuwa zapytanie wyszukiwania bieżącego wątku po jego zakończeniu
+     */
+    public void unregister() {
+        Object search = currentSearch.get();
+        if (search != null) {
+            statements.remove(search);
+        }
+    }
+
+    /***
+     * Przerywa zapytanie wykonywane w ramach podanego wyszukiwania, jeśli takie jest
+     * @param search - wyszukiwanie
+     */
+    public void cancel(Object search) {
+        Statement statement = statements.get(search);
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.cancel();
+            log.info("Query of cancelled route search cancelled");
+        } catch (SQLException e) {
+            log.warn("Query could not be cancelled with message: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package pl.edu.pw.spdb.dal;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.edu.pw.spdb.dal.graph.*;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+import pl.edu.pw.spdb.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/***
+ * Implementacja DatabaseService wyszukująca trasy w grafie dzielonym na kafelki graph.tiles.size-degrees stopni,
+ * wczytywane z bazy dopiero wtedy, gdy dotrze do nich wyszukiwanie. W pamięci trzymane są najdawniej używane kafelki
+ * o łącznej liczbie krawędzi do graph.tiles.max-edges, więc zajęta pamięć zależy od obszaru, w którym wyszukiwane są
+ * trasy, a nie od rozmiaru tabeli ways. Wyszukiwanie najbliższych wierzchołków, macierz tras (findRouteMatrix)
+ * i obszar osiągalny (findIsochrone) nie korzystają z kafelków - są przekazywane do DatabaseServiceImpl, czyli
+ * wyznaczane przez pgRouting.
+ * Kafelki, pamięć podręczna tras i trwały magazyn tras dowiadują się o zmianach tabeli ways wyłącznie
+ * z powiadomień WaysChangeListener - przy db.listen.enabled=false wczytane kafelki i zapamiętane trasy pozostają
+ * nieaktualne aż do ponownego uruchomienia (magazyn tras sprawdza jedynie wersję grafu co
+ * route.store.version-refresh-seconds)
+ */
+@Component
+@Profile("tiled")
+@Slf4j
+public class TiledDatabaseService implements DatabaseService {
+
+    private final DatabaseService pgRouting;
+    private final TileLoader loader;
+    private final TileCache tiles;
+    private final TiledAStarSearch search;
+    private final RouteMetrics metrics;
+
+    /***
+     * Największe ograniczenie prędkości w grafie, NaN - do odczytania z bazy
+     */
+    private volatile double maxSpeed = Double.NaN;
+
+    @Autowired
+    public TiledDatabaseService(HikariDataSource dataSource, RouteMetrics metrics, RunningQueries runningQueries,
+                                @Value("${db.route.bounded}") boolean boundedSearch,
+                                @Value("${db.statement.timeout-seconds}") int queryTimeout,
+                                @Value("${graph.tiles.size-degrees}") double tileSize,
+                                @Value("${graph.tiles.max-edges}") long maxEdges) {
+        this(new DatabaseServiceImpl(dataSource, metrics, runningQueries, boundedSearch, queryTimeout),
+                new PostgisTileLoader(dataSource), metrics, tileSize, maxEdges);
+    }
+
+    public TiledDatabaseService(DatabaseService pgRouting, TileLoader loader, RouteMetrics metrics, double tileSize,
+                                long maxEdges) {
+        this.pgRouting = pgRouting;
+        this.loader = loader;
+        this.metrics = metrics;
+        this.tiles = new TileCache(loader, tileSize, maxEdges);
+        this.search = new TiledAStarSearch(tiles, loader);
+    }
+
+    @Override
+    public Long getStartOrEnd(Point point, boolean isStartPoint) {
+        return pgRouting.getStartOrEnd(point, isStartPoint);
+    }
+
+    /***
+     * Funkcja wyszukująca najlepszą trasę algorytmem A* w grafie dzielonym na kafelki
+     * @param startId - id punktu początkowego
+     * @param endId - id punktu końcowego
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return Route - znaleziona ścieżka, pusta jeśli ścieżka nie istnieje
+     */
+    @Override
+    public Route findRoute(long startId, long endId, Integer maxSpeed, float distanceWeight) {
+        CostProfile profile = new CostProfile(maxSpeed, distanceWeight);
+        long start = System.nanoTime();
+        Timer.Sample sample = metrics.start();
+        TiledAStarSearch.TiledPath path = search.search(startId, endId, profile, graphMaxSpeed());
+        metrics.recordQuery(sample);
+        TileCache.TileCacheStats stats = tiles.getStats();
+        log.info("Route searched with tiled A* in " + (System.nanoTime() - start) / 1000 + " us, settled nodes: "
+                + path.settledNodes() + ", tiles: " + path.tiles() + ", cached tiles: " + stats.size()
+                + " (" + stats.edges() + " edges)");
+
+        List<RouteSegment> segments = new ArrayList<>();
+        if (path.isFound()) {
+            for (int i = 0; i < path.arcs().length; i++) {
+                segments.add(toSegment(path.graphs()[i], RoadGraph.arcEdge(path.arcs()[i])));
+            }
+        }
+        log.info("Segments number: " + segments.size());
+        return Route.of(segments, maxSpeed);
+    }
+
+    @Override
+    public Route findRoute(Point startPoint, Point endPoint, int maxSpeed, float distanceWeight) {
+        long startId = getStartOrEnd(startPoint, true);
+        long endId = getStartOrEnd(endPoint, false);
+        Route route = findRoute(startId, endId, maxSpeed, distanceWeight);
+        route.setStartId(startId);
+        route.setEndId(endId);
+        return route;
+    }
+
+    /***
+     * Funkcja wyszukująca najbliższe wierzchołki dla punktów startu i końca oraz najlepsze trasy dla każdej z podanych
+     * prędkości. Dla prędkości dających ten sam koszt każdej krawędzi używana jest już znaleziona ścieżka
+     * @param startPoint - punkt początkowy wybrany w GUI
+     * @param endPoint - punkt końcowy wybrany w GUI
+     * @param maxSpeeds - maksymalne prędkości pojazdu
+     * @param distanceWeight - waga wpływająca na liczenie kosztu wyszukania
+     * @return lista tras w kolejności prędkości z maxSpeeds
+     */
+    @Override
+    public List<Route> findRoutes(Point startPoint, Point endPoint, List<Integer> maxSpeeds, float distanceWeight) {
+        long startId = getStartOrEnd(startPoint, true);
+        long endId = getStartOrEnd(endPoint, false);
+
+        List<CostProfile> searched = new ArrayList<>();
+        List<Route> searchedRoutes = new ArrayList<>();
+        List<Route> routes = new ArrayList<>();
+        for (int maxSpeed : maxSpeeds) {
+            CostProfile profile = new CostProfile(maxSpeed, distanceWeight);
+            Route route = null;
+            for (int i = 0; i < searched.size() && route == null; i++) {
+                if (searched.get(i).isEquivalent(profile, graphMaxSpeed())) {
+                    route = Route.of(searchedRoutes.get(i).getSegments(), maxSpeed);
+                }
+            }
+            if (route == null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Route search interrupted");
+                }
+                route = findRoute(startId, endId, maxSpeed, distanceWeight);
+                searched.add(profile);
+                searchedRoutes.add(route);
+            }
+            route.setStartId(startId);
+            route.setEndId(endId);
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    /***
+     * Sesje nie są obsługiwane - drzewa wyszukiwania obejmowałyby kafelki, których nie trzeba trzymać w pamięci
+     */
+    @Override
+    public List<Route> findRoutes(String sessionId, Point startPoint, Point endPoint, List<Integer> maxSpeeds,
+                                  float distanceWeight) {
+        return findRoutes(startPoint, endPoint, maxSpeeds, distanceWeight);
+    }
+
+    @Override
+    public RouteMatrix findRouteMatrix(List<Point> origins, List<Point> destinations, int maxSpeed,
+                                       float distanceWeight) {
+        return pgRouting.findRouteMatrix(origins, destinations, maxSpeed, distanceWeight);
+    }
+
+    @Override
+    public Isochrone findIsochrone(Point startPoint, Isochrone.BudgetType budgetType, double budget, int maxSpeed) {
+        return pgRouting.findIsochrone(startPoint, budgetType, budget, maxSpeed);
+    }
+
+    @Override
+    public long getGraphVersion() {
+        return pgRouting.getGraphVersion();
+    }
+
+    /***
+     * Usuwa z pamięci kafelki zawierające zmienioną krawędź. Nowa lub nieznana zmiana mogła dotyczyć dowolnego
+     * kafelka i podnieść największe ograniczenie prędkości, więc usuwane są wszystkie kafelki
+     * @param event - zmiana tabeli ways
+     */
+    @EventListener
+    public void onWaysChanged(WaysChangedEvent event) {
+        switch (event.operation()) {
+            case UPDATE -> {
+                double current = maxSpeed;
+                if (!Double.isNaN(current)) {
+                    maxSpeed = Math.max(current, Math.max(event.newSpeedForward(), event.newSpeedBackward()));
+                }
+                tiles.invalidateEdge(event.gid());
+            }
+            case DELETE -> tiles.invalidateEdge(event.gid());
+            case INSERT, UNKNOWN -> {
+                maxSpeed = Double.NaN;
+                tiles.invalidateAll();
+            }
+        }
+    }
+
+    public TileCache.TileCacheStats getTileStats() {
+        return tiles.getStats();
+    }
+
+    private double graphMaxSpeed() {
+        double current = maxSpeed;
+        if (Double.isNaN(current)) {
+            current = loader.maxSpeed();
+            maxSpeed = current;
+        }
+        return current;
+    }
+
+    private static RouteSegment toSegment(RoadGraph graph, int edge) {
+        int source = graph.edgeSource(edge);
+        int target = graph.edgeTarget(edge);
+        return new RouteSegment(graph.edgeId(edge), graph.nodeId(source), graph.nodeId(target),
+                graph.edgeLength(edge) / 1000.0, graph.speedForward(edge),
+                graph.longitude(source), graph.latitude(source), graph.longitude(target), graph.latitude(target));
+    }
+}
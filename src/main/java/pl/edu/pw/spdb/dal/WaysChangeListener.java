@@ -0,0 +1,133 @@
+package pl.edu.pw.spdb.dal;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/***
+ * Wątek nasłuchujący na kanale ways_changed (LISTEN) zmian tabeli ways publikowanych przez wyzwalacz
+ * z sql/ways_notify.sql. Każde powiadomienie publikowane jest jako WaysChangedEvent, na podstawie którego pamięć
+ * podręczna tras (RouteCache) usuwa nieaktualne trasy, a magazyn tras (RouteStore) ponownie odczytuje wersję grafu -
+ * niezależnie od silnika wyszukiwania. Graf w pamięci (profil in-memory, RoadGraphUpdater) i kafelki grafu (profil
+ * tiled) są dodatkowo aktualizowane bez ponownego wczytywania tabeli. Nasłuchiwanie używa osobnego połączenia spoza
+ * puli, odnawianego po zerwaniu - powiadomienia wysłane w czasie przerwy są tracone, więc po ponownym połączeniu
+ * publikowana jest zmiana nieznana (WaysChangedEvent.unknown).
+ * Nasłuchiwanie jest uruchamiane po utworzeniu kontekstu, jeśli db.listen.enabled - polecenia SpdbTools je wyłączają.
+ * Bez nasłuchiwania trasy w RouteCache wygasają po route.cache.ttl-seconds
+ */
+@Component
+@Slf4j
+public class WaysChangeListener implements SmartLifecycle {
+
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final HikariDataSource dataSource;
+    private final ApplicationEventPublisher publisher;
+    private final boolean enabled;
+    private Thread thread;
+    private volatile boolean running;
+
+    public WaysChangeListener(HikariDataSource dataSource, ApplicationEventPublisher publisher,
+                              @Value("${db.listen.enabled}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.publisher = publisher;
+        this.enabled = enabled;
+    }
+
+    /***
+     * Czy zmiany tabeli ways będą publikowane - nasłuchiwanie zostanie uruchomione wraz z kontekstem
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "ways-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSource.getJdbcUrl(),
+                    dataSource.getUsername(), dataSource.getPassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + WaysChangedEvent.CHANNEL);
+                }
+                log.info("Listening for changes of ways table");
+                if (connectedBefore) {
+                    publisher.publishEvent(WaysChangedEvent.unknown());
+                }
+                connectedBefore = true;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Listening for changes of ways table failed with message: " + e.getMessage()
+                        + " - reconnecting in " + RECONNECT_DELAY_MS + " ms");
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    void handle(String payload) {
+        WaysChangedEvent event;
+        try {
+            event = WaysChangedEvent.parse(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn(e.getMessage());
+            return;
+        }
+        log.info("Ways changed: " + event);
+        try {
+            publisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            log.error("Applying ways change failed with message: " + e.getMessage());
+        }
+    }
+}
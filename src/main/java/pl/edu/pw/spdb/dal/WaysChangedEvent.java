@@ -0,0 +1,82 @@
+package pl.edu.pw.spdb.dal;
+
+/***
+ * Zmiana wiersza tabeli ways opublikowana przez wyzwalacz z sql/ways_notify.sql (kanał ways_changed).
+ * Treść powiadomienia to pola rozdzielone przecinkami: operacja (U, I, D), gid, a dla U dodatkowo stare i nowe
+ * maxspeed_forward i maxspeed_backward oraz stare i nowe kierunki przejazdu (1 - cost >= 0, 2 - reverse_cost >= 0)
+ * @param operation - rodzaj zmiany
+ * @param gid - id krawędzi
+ * @param oldSpeedForward - maxspeed_forward przed zmianą
+ * @param oldSpeedBackward - maxspeed_backward przed zmianą
+ * @param newSpeedForward - maxspeed_forward po zmianie
+ * @param newSpeedBackward - maxspeed_backward po zmianie
+ * @param oldFlags - dozwolone kierunki przed zmianą
+ * @param newFlags - dozwolone kierunki po zmianie
+ */
+public record WaysChangedEvent(Operation operation, long gid, double oldSpeedForward, double oldSpeedBackward,
+                               double newSpeedForward, double newSpeedBackward, byte oldFlags, byte newFlags) {
+
+    public enum Operation {
+        UPDATE,
+        INSERT,
+        DELETE,
+        /***
+         * Powiadomienia mogły zostać utracone (np. po zerwaniu połączenia) - zmienione mogło zostać cokolwiek
+         */
+        UNKNOWN
+    }
+
+    public static final String CHANNEL = "ways_changed";
+
+    public static WaysChangedEvent unknown() {
+        return new WaysChangedEvent(Operation.UNKNOWN, -1, 0, 0, 0, 0, (byte) 0, (byte) 0);
+    }
+
+    /***
+     * Odczytuje zmianę z treści powiadomienia
+     * @param payload - treść powiadomienia
+     * @return WaysChangedEvent
+     * @throws IllegalArgumentException dla niepoprawnej treści
+     */
+    public static WaysChangedEvent parse(String payload) {
+        String[] fields = payload.split(",");
+        try {
+            switch (fields[0]) {
+                case "U" -> {
+                    if (fields.length != 8) {
+                        break;
+                    }
+                    return new WaysChangedEvent(Operation.UPDATE, Long.parseLong(fields[1]),
+                            Double.parseDouble(fields[2]), Double.parseDouble(fields[3]),
+                            Double.parseDouble(fields[4]), Double.parseDouble(fields[5]),
+                            Byte.parseByte(fields[6]), Byte.parseByte(fields[7]));
+                }
+                case "I", "D" -> {
+                    if (fields.length != 2) {
+                        break;
+                    }
+                    Operation operation = fields[0].equals("I") ? Operation.INSERT : Operation.DELETE;
+                    return new WaysChangedEvent(operation, Long.parseLong(fields[1]), 0, 0, 0, 0, (byte) 0, (byte) 0);
+                }
+                default -> {
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid ways change: " + payload, e);
+        }
+        throw new IllegalArgumentException("Invalid ways change: " + payload);
+    }
+
+    /***
+     * Czy zmiana może obniżyć koszt którejś trasy - wtedy nieaktualna może być każda zapamiętana trasa, a nie tylko
+     * trasy przechodzące przez zmienioną krawędź
+     */
+    public boolean canLowerCosts() {
+        return switch (operation) {
+            case UPDATE -> newSpeedForward > oldSpeedForward || newSpeedBackward > oldSpeedBackward
+                    || (newFlags & ~oldFlags) != 0;
+            case INSERT, UNKNOWN -> true;
+            case DELETE -> false;
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package pl.edu.pw.spdb.dal;
+
+import pl.edu.pw.spdb.model.CoordinateBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/***
+ * Dekoder geometrii w formacie WKB (ST_AsBinary) oraz EWKB (domyślny format kolumn geometry w PostGIS).
+ * Współrzędne X i Y są zapisywane bezpośrednio do CoordinateBuffer - dekodowanie nie tworzy obiektów dla punktów.
+ * Współrzędne Z i M są pomijane. Dla geometrii złożonych z wielu części punkty kolejnych części są dopisywane
+ * jeden za drugim
+ */
+public final class WkbReader {
+
+    private static final int POINT = 1;
+    private static final int LINE_STRING = 2;
+    private static final int POLYGON = 3;
+    private static final int MULTI_POINT = 4;
+    private static final int MULTI_LINE_STRING = 5;
+    private static final int MULTI_POLYGON = 6;
+    private static final int GEOMETRY_COLLECTION = 7;
+
+    private static final int EWKB_Z = 0x80000000;
+    private static final int EWKB_M = 0x40000000;
+    private static final int EWKB_SRID = 0x20000000;
+
+    private final ByteBuffer buffer;
+    private final CoordinateBuffer out;
+
+    private WkbReader(byte[] wkb, CoordinateBuffer out) {
+        this.buffer = ByteBuffer.wrap(wkb);
+        this.out = out;
+    }
+
+    /***
+     * Dekoduje geometrię i dopisuje jej punkty do bufora
+     * @param wkb - geometria w formacie WKB lub EWKB
+     * @param out - bufor, do którego dopisywane są punkty
+     * @return liczba dopisanych punktów
+     */
+    public static int read(byte[] wkb, CoordinateBuffer out) {
+        int before = out.size();
+        new WkbReader(wkb, out).readGeometry();
+        return out.size() - before;
+    }
+
+    private void readGeometry() {
+        buffer.order(buffer.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int typeCode = buffer.getInt();
+
+        int dimensions = 2;
+        if ((typeCode & EWKB_Z) != 0) {
+            dimensions++;
+        }
+        if ((typeCode & EWKB_M) != 0) {
+            dimensions++;
+        }
+        if ((typeCode & EWKB_SRID) != 0) {
+            buffer.getInt();
+        }
+        typeCode &= 0x0FFFFFFF;
+        // ISO WKB: 1000 - Z, 2000 - M, 3000 - ZM
+        switch (typeCode / 1000) {
+            case 1, 2 -> dimensions++;
+            case 3 -> dimensions += 2;
+            default -> {
+            }
+        }
+
+        switch (typeCode % 1000) {
+            case POINT -> readPoints(1, dimensions);
+            case LINE_STRING -> readPoints(buffer.getInt(), dimensions);
+            case POLYGON -> {
+                int rings = buffer.getInt();
+                for (int i = 0; i < rings; i++) {
+                    readPoints(buffer.getInt(), dimensions);
+                }
+            }
+            case MULTI_POINT, MULTI_LINE_STRING, MULTI_POLYGON, GEOMETRY_COLLECTION -> {
+                int parts = buffer.getInt();
+                for (int i = 0; i < parts; i++) {
+                    readGeometry();
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported WKB geometry type: " + typeCode);
+        }
+    }
+
+    private void readPoints(int count, int dimensions) {
+        int skipped = (dimensions - 2) * Double.BYTES;
+        for (int i = 0; i < count; i++) {
+            double x = buffer.getDouble();
+            double y = buffer.getDouble();
+            buffer.position(buffer.position() + skipped);
+            out.add(x, y);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.concurrent.CancellationException;
+
+/***
+ * Algorytm A* na grafie RoadGraph z funkcją kosztu taką jak w funkcji astar() z sql/spdb.sql
+ */
+public class AStarSearch {
+
+    /***
+     * Co ile ustalonych wierzchołków sprawdzane jest przerwanie wątku
+     */
+    private static final int INTERRUPT_CHECK_MASK = 0xFFF;
+
+    private final RoadGraph graph;
+
+    public AStarSearch(RoadGraph graph) {
+        this.graph = graph;
+    }
+
+    /***
+     * Wyszukuje najtańszą ścieżkę pomiędzy wierzchołkami
+     * @param source - indeks wierzchołka początkowego
+     * @param target - indeks wierzchołka końcowego
+     * @param profile - profil kosztu
+     * @param heuristic - spójna heurystyka dla wierzchołka target
+     * @param space - stan przeszukiwania
+     * @return ShortestPath
+     * @throws CancellationException jeśli wątek wyszukiwania został przerwany
+     */
+    public ShortestPath search(int source, int target, CostProfile profile, Heuristic heuristic, SearchSpace space) {
+        space.reset();
+        MinHeap heap = space.heap();
+        space.relax(source, 0, -1, heuristic.estimate(source));
+
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (space.isSettled(node)) {
+                continue;
+            }
+            space.settle(node);
+            if ((space.settledCount() & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Route search interrupted");
+            }
+            if (node == target) {
+                return new ShortestPath(extractPath(space, source, target), space.distance(target),
+                        space.settledCount());
+            }
+
+            double distance = space.distance(node);
+            for (int i = graph.outBegin(node), end = graph.outEnd(node); i < end; i++) {
+                int arc = graph.outArc(i);
+                int head = graph.arcHead(arc);
+                if (space.isSettled(head)) {
+                    continue;
+                }
+                double candidate = distance + graph.arcCost(arc, profile);
+                if (candidate < space.distance(head)) {
+                    space.relax(head, candidate, arc, candidate + heuristic.estimate(head));
+                }
+            }
+        }
+        return ShortestPath.notFound(space.settledCount());
+    }
+
+    /***
+     * Odtwarza ścieżkę przechodząc po łukach-rodzicach od wierzchołka końcowego
+     */
+    int[] extractPath(SearchSpace space, int source, int target) {
+        int length = 0;
+        for (int node = target; node != source; node = graph.arcTail(space.parentArc(node))) {
+            length++;
+        }
+        int[] arcs = new int[length];
+        for (int node = target; node != source; node = graph.arcTail(space.parentArc(node))) {
+            arcs[--length] = space.parentArc(node);
+        }
+        return arcs;
+    }
+}
@@ -0,0 +1,209 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.Arrays;
+
+/***
+ * Hierarchia skrótów (contraction hierarchy) zbudowana dla jednego profilu kosztu.
+ * Krawędzie hierarchii to łuki oryginalnego grafu oraz skróty zastępujące ścieżkę przez wierzchołek o niższej randze.
+ * Wyszukiwanie jest dwukierunkowe - w przód po krawędziach prowadzących do wierzchołków o wyższej randze
+ * i wstecz po krawędziach, które do wierzchołka wchodzą z wierzchołków o wyższej randze.
+ */
+public final class ContractionHierarchy {
+
+    private final CostProfile profile;
+    private final int[] ranks;
+
+    private final int[] edgeTails;
+    private final int[] edgeHeads;
+    private final double[] edgeWeights;
+    private final int[] edgeFirstChildren;
+    private final int[] edgeSecondChildren;
+
+    private final int[] upBegin;
+    private final int[] upEdges;
+    private final int[] downBegin;
+    private final int[] downEdges;
+
+    /***
+     * @param profile - profil kosztu, dla którego zbudowano hierarchię
+     * @param ranks - ranga (kolejność kontrakcji) każdego wierzchołka
+     * @param edgeTails - początek krawędzi hierarchii
+     * @param edgeHeads - koniec krawędzi hierarchii
+     * @param edgeWeights - koszt krawędzi
+     * @param edgeFirstChildren - pierwsza krawędź zastępowana przez skrót lub -1 dla łuku oryginalnego grafu
+     * @param edgeSecondChildren - druga krawędź zastępowana przez skrót lub łuk oryginalnego grafu
+     */
+    ContractionHierarchy(CostProfile profile, int[] ranks, int[] edgeTails, int[] edgeHeads, double[] edgeWeights,
+                         int[] edgeFirstChildren, int[] edgeSecondChildren) {
+        this.profile = profile;
+        this.ranks = ranks;
+        this.edgeTails = edgeTails;
+        this.edgeHeads = edgeHeads;
+        this.edgeWeights = edgeWeights;
+        this.edgeFirstChildren = edgeFirstChildren;
+        this.edgeSecondChildren = edgeSecondChildren;
+
+        int nodeCount = ranks.length;
+        this.upBegin = new int[nodeCount + 1];
+        this.downBegin = new int[nodeCount + 1];
+        int upCount = 0;
+        for (int edge = 0; edge < edgeTails.length; edge++) {
+            if (isUpward(edge)) {
+                upBegin[edgeTails[edge] + 1]++;
+                upCount++;
+            } else {
+                downBegin[edgeHeads[edge] + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            upBegin[node + 1] += upBegin[node];
+            downBegin[node + 1] += downBegin[node];
+        }
+        this.upEdges = new int[upCount];
+        this.downEdges = new int[edgeTails.length - upCount];
+        int[] upFill = Arrays.copyOf(upBegin, nodeCount);
+        int[] downFill = Arrays.copyOf(downBegin, nodeCount);
+        for (int edge = 0; edge < edgeTails.length; edge++) {
+            if (isUpward(edge)) {
+                upEdges[upFill[edgeTails[edge]]++] = edge;
+            } else {
+                downEdges[downFill[edgeHeads[edge]]++] = edge;
+            }
+        }
+    }
+
+    public CostProfile profile() {
+        return profile;
+    }
+
+    public int nodeCount() {
+        return ranks.length;
+    }
+
+    public int edgeCount() {
+        return edgeTails.length;
+    }
+
+    int rank(int node) {
+        return ranks[node];
+    }
+
+    int edgeTail(int edge) {
+        return edgeTails[edge];
+    }
+
+    int edgeHead(int edge) {
+        return edgeHeads[edge];
+    }
+
+    double edgeWeight(int edge) {
+        return edgeWeights[edge];
+    }
+
+    int edgeFirstChild(int edge) {
+        return edgeFirstChildren[edge];
+    }
+
+    int edgeSecondChild(int edge) {
+        return edgeSecondChildren[edge];
+    }
+
+    private boolean isUpward(int edge) {
+        return ranks[edgeTails[edge]] < ranks[edgeHeads[edge]];
+    }
+
+    /***
+     * Dwukierunkowe wyszukiwanie w hierarchii. Każdy kierunek przegląda tylko krawędzie prowadzące w górę hierarchii
+     * i kończy się, gdy najmniejszy klucz w jego kopcu nie jest mniejszy od najlepszej znalezionej ścieżki
+     * @param source - indeks wierzchołka początkowego
+     * @param target - indeks wierzchołka końcowego
+     * @param forward - stan przeszukiwania w przód
+     * @param backward - stan przeszukiwania wstecz
+     * @return ShortestPath ze skrótami rozwiniętymi do łuków oryginalnego grafu
+     */
+    public ShortestPath query(int source, int target, SearchSpace forward, SearchSpace backward) {
+        forward.reset();
+        backward.reset();
+        forward.relax(source, 0, -1, 0);
+        backward.relax(target, 0, -1, 0);
+
+        MinHeap forwardHeap = forward.heap();
+        MinHeap backwardHeap = backward.heap();
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+
+        while (true) {
+            boolean forwardActive = !forwardHeap.isEmpty() && forwardHeap.peekKey() < best;
+            boolean backwardActive = !backwardHeap.isEmpty() && backwardHeap.peekKey() < best;
+            if (!forwardActive && !backwardActive) {
+                break;
+            }
+            boolean stepForward = forwardActive
+                    && (!backwardActive || forwardHeap.peekKey() <= backwardHeap.peekKey());
+
+            SearchSpace space = stepForward ? forward : backward;
+            SearchSpace other = stepForward ? backward : forward;
+            int node = space.heap().pop();
+            if (space.isSettled(node)) {
+                continue;
+            }
+            space.settle(node);
+
+            double distance = space.distance(node);
+            if (other.isReached(node) && distance + other.distance(node) < best) {
+                best = distance + other.distance(node);
+                meeting = node;
+            }
+
+            int[] begin = stepForward ? upBegin : downBegin;
+            int[] edges = stepForward ? upEdges : downEdges;
+            for (int i = begin[node], end = begin[node + 1]; i < end; i++) {
+                int edge = edges[i];
+                int next = stepForward ? edgeHeads[edge] : edgeTails[edge];
+                double candidate = distance + edgeWeights[edge];
+                if (candidate < space.distance(next)) {
+                    space.relax(next, candidate, edge, candidate);
+                }
+            }
+        }
+
+        int settled = forward.settledCount() + backward.settledCount();
+        if (meeting < 0) {
+            return ShortestPath.notFound(settled);
+        }
+        return new ShortestPath(unpack(forward, backward, source, target, meeting), best, settled);
+    }
+
+    /***
+     * Rozwija krawędzie ścieżki od source do punktu spotkania i od punktu spotkania do target do łuków oryginalnego grafu
+     */
+    private int[] unpack(SearchSpace forward, SearchSpace backward, int source, int target, int meeting) {
+        IntList arcs = new IntList();
+        IntList stack = new IntList();
+
+        IntList forwardEdges = new IntList();
+        for (int node = meeting; node != source; node = edgeTails[forward.parentArc(node)]) {
+            forwardEdges.add(forward.parentArc(node));
+        }
+        for (int i = forwardEdges.size() - 1; i >= 0; i--) {
+            unpackEdge(forwardEdges.get(i), arcs, stack);
+        }
+        for (int node = meeting; node != target; node = edgeHeads[backward.parentArc(node)]) {
+            unpackEdge(backward.parentArc(node), arcs, stack);
+        }
+        return arcs.toArray();
+    }
+
+    void unpackEdge(int edge, IntList arcs, IntList stack) {
+        stack.add(edge);
+        while (stack.size() > 0) {
+            int current = stack.removeLast();
+            if (edgeFirstChildren[current] < 0) {
+                arcs.add(edgeSecondChildren[current]);
+            } else {
+                stack.add(edgeSecondChildren[current]);
+                stack.add(edgeFirstChildren[current]);
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+
+/***
+ * Budowanie hierarchii skrótów dla zadanego profilu kosztu.
+ * Wierzchołki kontraktowane są w kolejności priorytetu (różnica krawędzi, liczba skontraktowanych sąsiadów
+ * i poziom w hierarchii) z leniwą aktualizacją. Przy kontrakcji wierzchołka v dla każdej pary sąsiadów u -> v -> x
+ * wykonywane jest ograniczone lokalne wyszukiwanie świadka - skrót u -> x dodawany jest tylko wtedy, gdy
+ * nie znaleziono ścieżki omijającej v o koszcie nie większym niż przez v.
+ * Ograniczenie wyszukiwania świadka może dodać zbędny skrót, ale nigdy nie psuje poprawności wyniku.
+ */
+@Slf4j
+public class ContractionHierarchyBuilder {
+
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int SIMULATION_SETTLE_LIMIT = 100;
+
+    private final RoadGraph graph;
+    private final CostProfile profile;
+    private final int nodeCount;
+
+    private int edgeCount;
+    private int[] edgeTails = new int[1024];
+    private int[] edgeHeads = new int[1024];
+    private double[] edgeWeights = new double[1024];
+    private int[] edgeFirstChildren = new int[1024];
+    private int[] edgeSecondChildren = new int[1024];
+
+    /***
+     * Listy sąsiedztwa jeszcze nieskontraktowanej części grafu - każdy element to numer krawędzi hierarchii
+     */
+    private final IntList[] outEdges;
+    private final IntList[] inEdges;
+
+    private final boolean[] contracted;
+    private final int[] contractedNeighbors;
+    private final int[] levels;
+    private final double[] priorities;
+    private final SearchSpace witnessSpace;
+
+    public ContractionHierarchyBuilder(RoadGraph graph, CostProfile profile) {
+        this.graph = graph;
+        this.profile = profile;
+        this.nodeCount = graph.nodeCount();
+        this.outEdges = new IntList[nodeCount];
+        this.inEdges = new IntList[nodeCount];
+        this.contracted = new boolean[nodeCount];
+        this.contractedNeighbors = new int[nodeCount];
+        this.levels = new int[nodeCount];
+        this.priorities = new double[nodeCount];
+        this.witnessSpace = new SearchSpace(nodeCount);
+    }
+
+    /***
+     * Kontraktuje wszystkie wierzchołki grafu
+     * @return ContractionHierarchy
+     */
+    public ContractionHierarchy build() {
+        long start = System.currentTimeMillis();
+        for (int node = 0; node < nodeCount; node++) {
+            outEdges[node] = new IntList(4);
+            inEdges[node] = new IntList(4);
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            for (int i = graph.outBegin(node); i < graph.outEnd(node); i++) {
+                int arc = graph.outArc(i);
+                int head = graph.arcHead(arc);
+                if (head != node && graph.isArcOpen(arc)) {
+                    addOrImprove(node, head, graph.arcCost(arc, profile), -1, arc);
+                }
+            }
+        }
+        int originalEdges = edgeCount;
+
+        MinHeap queue = new MinHeap();
+        for (int node = 0; node < nodeCount; node++) {
+            priorities[node] = priority(node);
+            queue.push(node, priorities[node]);
+        }
+
+        int[] ranks = new int[nodeCount];
+        IntList finalEdges = new IntList(edgeCount * 2);
+        int rank = 0;
+        while (!queue.isEmpty()) {
+            double key = queue.peekKey();
+            int node = queue.pop();
+            if (contracted[node] || key != priorities[node]) {
+                continue;
+            }
+            double updated = priority(node);
+            if (!queue.isEmpty() && updated > queue.peekKey()) {
+                priorities[node] = updated;
+                queue.push(node, updated);
+                continue;
+            }
+
+            ranks[node] = rank++;
+            contract(node, finalEdges);
+            if (rank % 100000 == 0) {
+                log.info("Contracted " + rank + " of " + nodeCount + " nodes, " + (edgeCount - originalEdges)
+                        + " shortcuts");
+            }
+
+            for (int i = 0; i < outEdges[node].size(); i++) {
+                updateNeighbour(edgeHeads[outEdges[node].get(i)], node, queue);
+            }
+            for (int i = 0; i < inEdges[node].size(); i++) {
+                updateNeighbour(edgeTails[inEdges[node].get(i)], node, queue);
+            }
+            outEdges[node] = null;
+            inEdges[node] = null;
+        }
+
+        // skróty odwołują się wyłącznie do krawędzi kontraktowanego wierzchołka, które w chwili kontrakcji
+        // trafiają do finalEdges, więc po przenumerowaniu wszystkie krawędzie potomne są dostępne
+        int[] used = finalEdges.toArray();
+        Arrays.sort(used);
+        int[] remap = new int[edgeCount];
+        for (int i = 0; i < used.length; i++) {
+            remap[used[i]] = i;
+        }
+
+        int total = used.length;
+        int[] tails = new int[total];
+        int[] heads = new int[total];
+        double[] weights = new double[total];
+        int[] firstChildren = new int[total];
+        int[] secondChildren = new int[total];
+        for (int i = 0; i < total; i++) {
+            int edge = used[i];
+            tails[i] = edgeTails[edge];
+            heads[i] = edgeHeads[edge];
+            weights[i] = edgeWeights[edge];
+            if (edgeFirstChildren[edge] < 0) {
+                firstChildren[i] = -1;
+                secondChildren[i] = edgeSecondChildren[edge];
+            } else {
+                firstChildren[i] = remap[edgeFirstChildren[edge]];
+                secondChildren[i] = remap[edgeSecondChildren[edge]];
+            }
+        }
+
+        log.info("Contraction hierarchy for " + profile + " built in " + (System.currentTimeMillis() - start)
+                + " ms: " + (edgeCount - originalEdges) + " shortcuts");
+        return new ContractionHierarchy(profile, ranks, tails, heads, weights, firstChildren, secondChildren);
+    }
+
+    /***
+     * Kontrakcja wierzchołka: zapamiętuje jego krawędzie do pozostałych wierzchołków jako krawędzie hierarchii
+     * i dodaje skróty pomiędzy sąsiadami, dla których nie istnieje świadek
+     */
+    private void contract(int node, IntList finalEdges) {
+        contracted[node] = true;
+        for (int i = 0; i < outEdges[node].size(); i++) {
+            finalEdges.add(outEdges[node].get(i));
+        }
+        for (int i = 0; i < inEdges[node].size(); i++) {
+            finalEdges.add(inEdges[node].get(i));
+        }
+
+        IntList shortcuts = findShortcuts(node, WITNESS_SETTLE_LIMIT);
+        for (int i = 0; i < shortcuts.size(); i += 2) {
+            int in = shortcuts.get(i);
+            int out = shortcuts.get(i + 1);
+            addOrImprove(edgeTails[in], edgeHeads[out], edgeWeights[in] + edgeWeights[out], in, out);
+        }
+
+        for (int i = 0; i < outEdges[node].size(); i++) {
+            removeEdge(inEdges[edgeHeads[outEdges[node].get(i)]], node, true);
+        }
+        for (int i = 0; i < inEdges[node].size(); i++) {
+            removeEdge(outEdges[edgeTails[inEdges[node].get(i)]], node, false);
+        }
+    }
+
+    private void updateNeighbour(int neighbour, int contractedNode, MinHeap queue) {
+        if (contracted[neighbour]) {
+            return;
+        }
+        contractedNeighbors[neighbour]++;
+        levels[neighbour] = Math.max(levels[neighbour], levels[contractedNode] + 1);
+        priorities[neighbour] = priority(neighbour);
+        queue.push(neighbour, priorities[neighbour]);
+    }
+
+    /***
+     * Priorytet kontrakcji wierzchołka - im mniejszy, tym wcześniej wierzchołek zostanie skontraktowany
+     */
+    private double priority(int node) {
+        int shortcuts = findShortcuts(node, SIMULATION_SETTLE_LIMIT).size() / 2;
+        int edgeDifference = shortcuts - outEdges[node].size() - inEdges[node].size();
+        return 2.0 * edgeDifference + contractedNeighbors[node] + levels[node];
+    }
+
+    /***
+     * Wyznacza pary (krawędź wchodząca, krawędź wychodząca) wierzchołka, które wymagają skrótu
+     * @param node - kontraktowany wierzchołek
+     * @param settleLimit - limit wierzchołków zdejmowanych z kopca w wyszukiwaniu świadka
+     * @return lista par numerów krawędzi
+     */
+    private IntList findShortcuts(int node, int settleLimit) {
+        IntList result = new IntList();
+        IntList out = outEdges[node];
+        IntList in = inEdges[node];
+        if (out.size() == 0 || in.size() == 0) {
+            return result;
+        }
+
+        for (int i = 0; i < in.size(); i++) {
+            int inEdge = in.get(i);
+            int from = edgeTails[inEdge];
+            double maxCost = 0;
+            for (int j = 0; j < out.size(); j++) {
+                int to = edgeHeads[out.get(j)];
+                if (to != from) {
+                    maxCost = Math.max(maxCost, edgeWeights[inEdge] + edgeWeights[out.get(j)]);
+                }
+            }
+            witnessSearch(from, node, maxCost, settleLimit);
+            for (int j = 0; j < out.size(); j++) {
+                int outEdge = out.get(j);
+                int to = edgeHeads[outEdge];
+                if (to != from && witnessSpace.distance(to) > edgeWeights[inEdge] + edgeWeights[outEdge]) {
+                    result.add(inEdge);
+                    result.add(outEdge);
+                }
+            }
+        }
+        return result;
+    }
+
+    /***
+     * Lokalny algorytm Dijkstry od wierzchołka from, omijający kontraktowany wierzchołek
+     */
+    private void witnessSearch(int from, int excluded, double maxCost, int settleLimit) {
+        witnessSpace.reset();
+        witnessSpace.relax(from, 0, -1, 0);
+        MinHeap heap = witnessSpace.heap();
+        while (!heap.isEmpty() && witnessSpace.settledCount() < settleLimit) {
+            if (heap.peekKey() > maxCost) {
+                break;
+            }
+            int node = heap.pop();
+            if (witnessSpace.isSettled(node)) {
+                continue;
+            }
+            witnessSpace.settle(node);
+            double distance = witnessSpace.distance(node);
+            IntList out = outEdges[node];
+            for (int i = 0; i < out.size(); i++) {
+                int edge = out.get(i);
+                int head = edgeHeads[edge];
+                if (head == excluded) {
+                    continue;
+                }
+                double candidate = distance + edgeWeights[edge];
+                if (candidate < witnessSpace.distance(head)) {
+                    witnessSpace.relax(head, candidate, edge, candidate);
+                }
+            }
+        }
+    }
+
+    /***
+     * Dodaje krawędź from -> to lub zastępuje istniejącą, jeśli nowa ma mniejszy koszt
+     */
+    private void addOrImprove(int from, int to, double weight, int firstChild, int secondChild) {
+        IntList out = outEdges[from];
+        for (int i = 0; i < out.size(); i++) {
+            int existing = out.get(i);
+            if (edgeHeads[existing] == to) {
+                if (edgeWeights[existing] <= weight) {
+                    return;
+                }
+                int edge = newEdge(from, to, weight, firstChild, secondChild);
+                out.set(i, edge);
+                IntList in = inEdges[to];
+                for (int j = 0; j < in.size(); j++) {
+                    if (in.get(j) == existing) {
+                        in.set(j, edge);
+                    }
+                }
+                return;
+            }
+        }
+        int edge = newEdge(from, to, weight, firstChild, secondChild);
+        out.add(edge);
+        inEdges[to].add(edge);
+    }
+
+    private void removeEdge(IntList edges, int node, boolean byTail) {
+        for (int i = edges.size() - 1; i >= 0; i--) {
+            int edge = edges.get(i);
+            if ((byTail ? edgeTails[edge] : edgeHeads[edge]) == node) {
+                edges.set(i, edges.get(edges.size() - 1));
+                edges.removeLast();
+            }
+        }
+    }
+
+    private int newEdge(int from, int to, double weight, int firstChild, int secondChild) {
+        if (edgeCount == edgeTails.length) {
+            int capacity = edgeCount + (edgeCount >> 1);
+            edgeTails = Arrays.copyOf(edgeTails, capacity);
+            edgeHeads = Arrays.copyOf(edgeHeads, capacity);
+            edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+            edgeFirstChildren = Arrays.copyOf(edgeFirstChildren, capacity);
+            edgeSecondChildren = Arrays.copyOf(edgeSecondChildren, capacity);
+        }
+        edgeTails[edgeCount] = from;
+        edgeHeads[edgeCount] = to;
+        edgeWeights[edgeCount] = weight;
+        edgeFirstChildren[edgeCount] = firstChild;
+        edgeSecondChildren[edgeCount] = secondChild;
+        return edgeCount++;
+    }
+}
@@ -0,0 +1,96 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/***
+ * Zapis i odczyt hierarchii skrótów z pliku. Plik zawiera sumę kontrolną grafu, z którego hierarchia została
+ * zbudowana - hierarchia dla innej zawartości tabeli ways jest odrzucana przy odczycie
+ */
+public final class ContractionHierarchyFile {
+
+    private static final int MAGIC = 0x53434831; // "SCH1"
+    private static final int VERSION = 1;
+
+    private ContractionHierarchyFile() {
+    }
+
+    /***
+     * Nazwa pliku hierarchii dla profilu kosztu
+     */
+    public static String fileName(CostProfile profile) {
+        return "ch-v" + profile.maxSpeed() + "-w" + Float.floatToIntBits(profile.distanceWeight()) + ".bin";
+    }
+
+    /***
+     * Zapisuje hierarchię do pliku. Zapis odbywa się do pliku tymczasowego, który następnie zastępuje docelowy,
+     * więc przerwany zapis nie zostawia uszkodzonego pliku
+     * @param hierarchy - hierarchia
+     * @param graphFingerprint - suma kontrolna grafu
+     * @param path - ścieżka pliku
+     */
+    public static void write(ContractionHierarchy hierarchy, long graphFingerprint, Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary),
+                1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(graphFingerprint);
+            out.writeInt(hierarchy.profile().maxSpeed());
+            out.writeFloat(hierarchy.profile().distanceWeight());
+            out.writeInt(hierarchy.nodeCount());
+            for (int node = 0; node < hierarchy.nodeCount(); node++) {
+                out.writeInt(hierarchy.rank(node));
+            }
+            out.writeInt(hierarchy.edgeCount());
+            for (int edge = 0; edge < hierarchy.edgeCount(); edge++) {
+                out.writeInt(hierarchy.edgeTail(edge));
+                out.writeInt(hierarchy.edgeHead(edge));
+                out.writeDouble(hierarchy.edgeWeight(edge));
+                out.writeInt(hierarchy.edgeFirstChild(edge));
+                out.writeInt(hierarchy.edgeSecondChild(edge));
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /***
+     * Odczytuje hierarchię z pliku
+     * @param path - ścieżka pliku
+     * @param graphFingerprint - suma kontrolna aktualnego grafu
+     * @return hierarchia lub pusty Optional, jeśli plik nie istnieje lub został zbudowany dla innego grafu
+     */
+    public static Optional<ContractionHierarchy> read(Path path, long graphFingerprint) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != graphFingerprint) {
+                return Optional.empty();
+            }
+            CostProfile profile = new CostProfile(in.readInt(), in.readFloat());
+            int[] ranks = new int[in.readInt()];
+            for (int node = 0; node < ranks.length; node++) {
+                ranks[node] = in.readInt();
+            }
+            int edgeCount = in.readInt();
+            int[] tails = new int[edgeCount];
+            int[] heads = new int[edgeCount];
+            double[] weights = new double[edgeCount];
+            int[] firstChildren = new int[edgeCount];
+            int[] secondChildren = new int[edgeCount];
+            for (int edge = 0; edge < edgeCount; edge++) {
+                tails[edge] = in.readInt();
+                heads[edge] = in.readInt();
+                weights[edge] = in.readDouble();
+                firstChildren[edge] = in.readInt();
+                secondChildren[edge] = in.readInt();
+            }
+            return Optional.of(new ContractionHierarchy(profile, ranks, tails, heads, weights, firstChildren,
+                    secondChildren));
+        }
+    }
+}
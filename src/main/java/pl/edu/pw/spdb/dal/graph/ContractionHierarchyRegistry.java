@@ -0,0 +1,106 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/***
+ * Hierarchie skrótów dla profili kosztu skonfigurowanych w graph.ch.profiles.
+ * Przy starcie aplikacji wczytywane są hierarchie zapisane w katalogu graph.ch.directory. Budowanie odbywa się
+ * osobnym poleceniem (SpdbTools build-ch), ponieważ dla całej sieci drogowej trwa wiele minut
+ */
+@Component
+@Profile("in-memory")
+@Slf4j
+public class ContractionHierarchyRegistry {
+
+    private final RoadGraph graph;
+    private final List<CostProfile> profiles;
+    private final Path directory;
+    private final List<ContractionHierarchy> hierarchies = new CopyOnWriteArrayList<>();
+
+    public ContractionHierarchyRegistry(RoadGraph graph,
+                                        @Value("${graph.ch.profiles}") List<String> profiles,
+                                        @Value("${graph.ch.directory}") String directory) {
+        this.graph = graph;
+        this.profiles = profiles.stream().filter(p -> !p.isBlank()).map(CostProfile::parse).toList();
+        this.directory = Path.of(directory);
+        loadAll();
+    }
+
+    /***
+     * Zwraca hierarchię zbudowaną dla profilu równoważnego zadanemu
+     * @param profile - profil kosztu zapytania
+     * @return hierarchia lub pusty Optional
+     */
+    public Optional<ContractionHierarchy> find(CostProfile profile) {
+        for (ContractionHierarchy hierarchy : hierarchies) {
+            if (hierarchy.profile().isEquivalent(profile, graph.maxSpeed())) {
+                return Optional.of(hierarchy);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /***
+     * Buduje i zapisuje hierarchie dla wszystkich skonfigurowanych profili, dla których nie ma aktualnego pliku
+     */
+    public void buildAll() {
+        try {
+            Files.createDirectories(directory);
+            for (CostProfile profile : profiles) {
+                if (find(profile).isPresent()) {
+                    log.info("Contraction hierarchy for " + profile + " is up to date");
+                    continue;
+                }
+                ContractionHierarchy hierarchy = new ContractionHierarchyBuilder(graph, profile).build();
+                ContractionHierarchyFile.write(hierarchy, graph.fingerprint(),
+                        directory.resolve(ContractionHierarchyFile.fileName(profile)));
+                hierarchies.add(hierarchy);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /***
+     * Porzuca wszystkie hierarchie - po zmianie kosztów krawędzi grafu nie odpowiadają one już grafowi, więc do czasu
+     * ponownego zbudowania wyszukiwanie odbywa się algorytmem A*
+     */
+    public void invalidate() {
+        if (!hierarchies.isEmpty()) {
+            hierarchies.clear();
+            log.warn("Road graph has changed - contraction hierarchies were dropped until they are rebuilt (build-ch)");
+        }
+    }
+
+    private void loadAll() {
+        List<ContractionHierarchy> loaded = new ArrayList<>();
+        for (CostProfile profile : profiles) {
+            Path path = directory.resolve(ContractionHierarchyFile.fileName(profile));
+            try {
+                Optional<ContractionHierarchy> hierarchy = ContractionHierarchyFile.read(path, graph.fingerprint());
+                if (hierarchy.isPresent()) {
+                    loaded.add(hierarchy.get());
+                    log.info("Loaded contraction hierarchy for " + profile);
+                } else {
+                    log.warn("No up-to-date contraction hierarchy for " + profile + " in " + path
+                            + " - A* will be used for this profile");
+                }
+            } catch (IOException e) {
+                log.error("Could not read contraction hierarchy " + path + ": " + e.getMessage());
+            }
+        }
+        hierarchies.addAll(loaded);
+    }
+}
@@ -0,0 +1,67 @@
+package pl.edu.pw.spdb.dal.graph;
+
+/***
+ * Profil kosztu przejazdu - odpowiednik parametrów v i w funkcji astar() z sql/spdb.sql.
+ * Koszt krawędzi to len*(w+(1-w)/min(maxspeed,v))
+ * @param maxSpeed - maksymalna prędkość pojazdu
+ * @param distanceWeight - waga długości trasy w koszcie
+ */
+public record CostProfile(int maxSpeed, float distanceWeight) {
+
+    /***
+     * Prędkość używana zamiast zerowej - odpowiednik funkcji edge_cost z sql/edge_costs.sql
+     */
+    static final double ZERO_SPEED = 0.00001;
+
+    /***
+     * Koszt przejazdu krawędzią o zadanej długości i ograniczeniu prędkości
+     * @param costLength - długość krawędzi (ST_LENGTH(the_geom)/1000)
+     * @param speed - ograniczenie prędkości na krawędzi w kierunku przejazdu
+     * @return koszt
+     */
+    public double cost(double costLength, double speed) {
+        double w = distanceWeight;
+        double effectiveSpeed = Math.min(speed == 0 ? ZERO_SPEED : speed, maxSpeed);
+        return costLength * (w + (1 - w) / effectiveSpeed);
+    }
+
+    /***
+     * Najmniejszy możliwy koszt jednostki długości w grafie o zadanej maksymalnej prędkości - służy do
+     * wyznaczenia dopuszczalnej heurystyki A*
+     * @param graphMaxSpeed - największe ograniczenie prędkości w grafie
+     * @return dolne ograniczenie kosztu jednostki długości
+     */
+    public double minimalCostPerLength(double graphMaxSpeed) {
+        double w = distanceWeight;
+        return w + (1 - w) / Math.min(graphMaxSpeed, maxSpeed);
+    }
+
+    /***
+     * Sprawdza, czy dwa profile dają ten sam koszt każdej krawędzi grafu. Tak jest, gdy wagi są równe, a prędkości
+     * są równe lub obie nie mniejsze od największego ograniczenia prędkości w grafie. Dla wagi 1 koszt nie zależy
+     * od prędkości
+     * @param other - drugi profil
+     * @param graphMaxSpeed - największe ograniczenie prędkości w grafie
+     * @return czy profile są równoważne
+     */
+    public boolean isEquivalent(CostProfile other, double graphMaxSpeed) {
+        if (Float.compare(distanceWeight, other.distanceWeight) != 0) {
+            return false;
+        }
+        return distanceWeight == 1 || maxSpeed == other.maxSpeed
+                || (maxSpeed >= graphMaxSpeed && other.maxSpeed >= graphMaxSpeed);
+    }
+
+    /***
+     * Tworzy profil z zapisu "prędkość:waga", np. "90:0.5"
+     * @param text - zapis profilu
+     * @return CostProfile
+     */
+    public static CostProfile parse(String text) {
+        String[] parts = text.trim().split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid cost profile: " + text);
+        }
+        return new CostProfile(Integer.parseInt(parts[0].trim()), Float.parseFloat(parts[1].trim()));
+    }
+}
@@ -0,0 +1,27 @@
+package pl.edu.pw.spdb.dal.graph;
+
+/***
+ * Dolne oszacowanie kosztu dojazdu z wierzchołka do celu przeszukiwania A*.
+ * Aby wynik był optymalny oszacowanie musi być dopuszczalne i spójne
+ */
+@FunctionalInterface
+public interface Heuristic {
+
+    Heuristic NONE = node -> 0;
+
+    double estimate(int node);
+
+    /***
+     * Heurystyka oparta na odległości w linii prostej - geometria krawędzi nie może być krótsza od odcinka łączącego
+     * jej końce, a koszt jednostki długości nie może być mniejszy niż dla największej prędkości w grafie
+     * @param graph - graf
+     * @param target - wierzchołek docelowy
+     * @param profile - profil kosztu
+     * @return heurystyka
+     */
+    static Heuristic straightLine(RoadGraph graph, int target, CostProfile profile) {
+        // zapas na błąd zaokrąglenia długości krawędzi zapisanych jako float
+        double factor = profile.minimalCostPerLength(graph.maxSpeed()) * 0.9999;
+        return node -> graph.straightLineCostLength(node, target) * factor;
+    }
+}
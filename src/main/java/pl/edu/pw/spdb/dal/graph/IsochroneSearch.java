@@ -0,0 +1,68 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.concurrent.CancellationException;
+
+/***
+ * Wyszukiwanie wszystkich wierzchołków osiągalnych z wierzchołka początkowego w zadanym budżecie - algorytm Dijkstry
+ * zatrzymywany po przekroczeniu budżetu, odpowiednik funkcji isochrone() z sql/isochrone.sql. Koszt łuku to koszt
+ * z CostProfile z wagą 0 (czas w godzinach) lub 1 (długość w km) liczony z długości krawędzi w metrach
+ */
+public class IsochroneSearch {
+
+    /***
+     * Co ile ustalonych wierzchołków sprawdzane jest przerwanie wątku
+     */
+    private static final int INTERRUPT_CHECK_MASK = 0xFFF;
+
+    private final RoadGraph graph;
+
+    public IsochroneSearch(RoadGraph graph) {
+        this.graph = graph;
+    }
+
+    /***
+     * Wyszukuje wierzchołki osiągalne w budżecie. Koszt dojazdu i łuk-rodzic każdego z nich zapisane są w space
+     * @param source - indeks wierzchołka początkowego
+     * @param budget - budżet w godzinach lub km
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param timeBudget - czy budżet jest czasem przejazdu
+     * @param space - stan przeszukiwania
+     * @return indeksy osiągniętych wierzchołków w kolejności rosnącego kosztu dojazdu
+     * @throws CancellationException jeśli wątek wyszukiwania został przerwany
+     */
+    public int[] search(int source, double budget, int maxSpeed, boolean timeBudget, SearchSpace space) {
+        CostProfile profile = new CostProfile(maxSpeed, timeBudget ? 0 : 1);
+        IntList reached = new IntList();
+
+        space.reset();
+        MinHeap heap = space.heap();
+        space.relax(source, 0, -1, 0);
+
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (space.isSettled(node)) {
+                continue;
+            }
+            space.settle(node);
+            reached.add(node);
+            if ((space.settledCount() & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Isochrone search interrupted");
+            }
+
+            double distance = space.distance(node);
+            for (int i = graph.outBegin(node), end = graph.outEnd(node); i < end; i++) {
+                int arc = graph.outArc(i);
+                int head = graph.arcHead(arc);
+                if (space.isSettled(head) || !graph.isArcOpen(arc)) {
+                    continue;
+                }
+                double candidate = distance
+                        + profile.cost(graph.edgeLength(RoadGraph.arcEdge(arc)) / 1000.0, graph.arcSpeed(arc));
+                if (candidate <= budget && candidate < space.distance(head)) {
+                    space.relax(head, candidate, arc, candidate);
+                }
+            }
+        }
+        return reached.toArray();
+    }
+}
@@ -0,0 +1,131 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/***
+ * Wybór punktów orientacyjnych i wyznaczenie kosztów dojazdu do nich i z nich (Landmarks).
+ * Punkty wybierane są metodą najdalszego punktu: pierwszy to wierzchołek najdalszy od losowego wierzchołka,
+ * każdy kolejny to wierzchołek, dla którego najmniejsza odległość w obie strony (tam i z powrotem) od już wybranych
+ * punktów jest największa. Punkty leżą wtedy na obrzeżach sieci, gdzie nierówność trójkąta daje najlepsze oszacowania.
+ * Dla każdego punktu wykonywane są cztery pełne przeszukiwania algorytmem Dijkstry (obie metryki, oba kierunki)
+ */
+@Slf4j
+public class LandmarkBuilder {
+
+    private final RoadGraph graph;
+    private final int count;
+    private final long seed;
+    private final int nodeCount;
+    private final SearchSpace space;
+
+    /***
+     * @param graph - graf
+     * @param count - liczba punktów orientacyjnych (ograniczana do liczby wierzchołków grafu)
+     * @param seed - ziarno losowania pierwszego wierzchołka
+     */
+    public LandmarkBuilder(RoadGraph graph, int count, long seed) {
+        this.graph = graph;
+        this.count = Math.min(count, graph.nodeCount());
+        this.seed = seed;
+        this.nodeCount = graph.nodeCount();
+        this.space = new SearchSpace(nodeCount);
+    }
+
+    public Landmarks build() {
+        long start = System.nanoTime();
+        int[] nodes = new int[count];
+        float[] lengthFrom = new float[count * nodeCount];
+        float[] lengthTo = new float[count * nodeCount];
+        float[] timeFrom = new float[count * nodeCount];
+        float[] timeTo = new float[count * nodeCount];
+
+        // odległość w obie strony do najbliższego z wybranych punktów
+        double[] nearest = new double[nodeCount];
+        if (count > 0) {
+            int origin = new Random(seed).nextInt(nodeCount);
+            float[] from = new float[nodeCount];
+            float[] to = new float[nodeCount];
+            distances(origin, false, Landmarks.LENGTH, from, 0);
+            distances(origin, true, Landmarks.LENGTH, to, 0);
+            for (int node = 0; node < nodeCount; node++) {
+                nearest[node] = (double) from[node] + to[node];
+            }
+        }
+
+        for (int landmark = 0; landmark < count; landmark++) {
+            int node = farthest(nearest);
+            nodes[landmark] = node;
+            int offset = landmark * nodeCount;
+            distances(node, false, Landmarks.LENGTH, lengthFrom, offset);
+            distances(node, true, Landmarks.LENGTH, lengthTo, offset);
+            distances(node, false, Landmarks.TIME, timeFrom, offset);
+            distances(node, true, Landmarks.TIME, timeTo, offset);
+            for (int i = 0; i < nodeCount; i++) {
+                nearest[i] = Math.min(nearest[i], (double) lengthFrom[offset + i] + lengthTo[offset + i]);
+            }
+            log.info("Landmark " + (landmark + 1) + "/" + count + ": node " + graph.nodeId(node));
+        }
+        log.info("Built " + count + " landmarks in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new Landmarks(nodes, nodeCount, lengthFrom, lengthTo, timeFrom, timeTo);
+    }
+
+    /***
+     * Wierzchołek o największej skończonej odległości - wierzchołki spoza silnie spójnej składowej punktów
+     * (odległość nieskończona) nie są wybierane. Wierzchołek początkowy i wybrane punkty mają odległość 0,
+     * więc taki wierzchołek zawsze istnieje
+     */
+    private int farthest(double[] nearest) {
+        int best = -1;
+        for (int node = 0; node < nodeCount; node++) {
+            if (nearest[node] != Double.POSITIVE_INFINITY && (best < 0 || nearest[node] > nearest[best])) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    /***
+     * Pełne przeszukiwanie algorytmem Dijkstry - zapisuje koszty zaokrąglone w dół do float, wierzchołki nieosiągalne
+     * dostają nieskończoność
+     */
+    private void distances(int root, boolean backward, CostProfile profile, float[] result, int offset) {
+        Arrays.fill(result, offset, offset + nodeCount, Float.POSITIVE_INFINITY);
+        space.reset();
+        MinHeap heap = space.heap();
+        space.relax(root, 0, -1, 0);
+        while (!heap.isEmpty()) {
+            int current = heap.pop();
+            if (space.isSettled(current)) {
+                continue;
+            }
+            space.settle(current);
+            double distance = space.distance(current);
+            result[offset + current] = floor(distance);
+
+            int begin = backward ? graph.inBegin(current) : graph.outBegin(current);
+            int end = backward ? graph.inEnd(current) : graph.outEnd(current);
+            for (int i = begin; i < end; i++) {
+                int arc = backward ? graph.inArc(i) : graph.outArc(i);
+                int next = backward ? graph.arcTail(arc) : graph.arcHead(arc);
+                if (space.isSettled(next)) {
+                    continue;
+                }
+                double candidate = distance + graph.arcCost(arc, profile);
+                if (candidate < space.distance(next)) {
+                    space.relax(next, candidate, arc, candidate);
+                }
+            }
+        }
+    }
+
+    /***
+     * Największy float nie większy od wartości
+     */
+    static float floor(double value) {
+        float rounded = (float) value;
+        return rounded > value ? Math.nextDown(rounded) : rounded;
+    }
+}
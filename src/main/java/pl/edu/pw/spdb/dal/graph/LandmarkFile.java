@@ -0,0 +1,84 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/***
+ * Zapis i odczyt punktów orientacyjnych z pliku. Tak jak w ContractionHierarchyFile plik zawiera sumę kontrolną
+ * grafu, z którego punkty zostały wyznaczone - punkty dla innej zawartości tabeli ways są odrzucane przy odczycie
+ */
+public final class LandmarkFile {
+
+    private static final int MAGIC = 0x53414c31; // "SAL1"
+    private static final int VERSION = 1;
+
+    private LandmarkFile() {
+    }
+
+    /***
+     * Zapisuje punkty orientacyjne do pliku. Zapis odbywa się do pliku tymczasowego, który następnie zastępuje
+     * docelowy, więc przerwany zapis nie zostawia uszkodzonego pliku
+     * @param landmarks - punkty orientacyjne
+     * @param graphFingerprint - suma kontrolna grafu
+     * @param path - ścieżka pliku
+     */
+    public static void write(Landmarks landmarks, long graphFingerprint, Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary),
+                1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(graphFingerprint);
+            out.writeInt(landmarks.count());
+            out.writeInt(landmarks.nodeCount());
+            for (int landmark = 0; landmark < landmarks.count(); landmark++) {
+                out.writeInt(landmarks.node(landmark));
+            }
+            for (int landmark = 0; landmark < landmarks.count(); landmark++) {
+                for (int node = 0; node < landmarks.nodeCount(); node++) {
+                    out.writeFloat(landmarks.lengthFrom(landmark, node));
+                    out.writeFloat(landmarks.lengthTo(landmark, node));
+                    out.writeFloat(landmarks.timeFrom(landmark, node));
+                    out.writeFloat(landmarks.timeTo(landmark, node));
+                }
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /***
+     * Odczytuje punkty orientacyjne z pliku
+     * @param path - ścieżka pliku
+     * @param graphFingerprint - suma kontrolna aktualnego grafu
+     * @return punkty orientacyjne lub pusty Optional, jeśli plik nie istnieje lub został zbudowany dla innego grafu
+     */
+    public static Optional<Landmarks> read(Path path, long graphFingerprint) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != graphFingerprint) {
+                return Optional.empty();
+            }
+            int[] nodes = new int[in.readInt()];
+            int nodeCount = in.readInt();
+            for (int landmark = 0; landmark < nodes.length; landmark++) {
+                nodes[landmark] = in.readInt();
+            }
+            float[] lengthFrom = new float[nodes.length * nodeCount];
+            float[] lengthTo = new float[nodes.length * nodeCount];
+            float[] timeFrom = new float[nodes.length * nodeCount];
+            float[] timeTo = new float[nodes.length * nodeCount];
+            for (int i = 0; i < lengthFrom.length; i++) {
+                lengthFrom[i] = in.readFloat();
+                lengthTo[i] = in.readFloat();
+                timeFrom[i] = in.readFloat();
+                timeTo[i] = in.readFloat();
+            }
+            return Optional.of(new Landmarks(nodes, nodeCount, lengthFrom, lengthTo, timeFrom, timeTo));
+        }
+    }
+}
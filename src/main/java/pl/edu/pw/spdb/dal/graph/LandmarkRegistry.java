@@ -0,0 +1,94 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/***
+ * Punkty orientacyjne heurystyki ALT dla grafu w pamięci. Przy starcie aplikacji wczytywane są z pliku
+ * graph.alt.file, a budowane osobnym poleceniem (SpdbTools build-alt), tak jak hierarchie skrótów.
+ * Jeden zestaw punktów obsługuje wszystkie profile kosztu (Landmarks)
+ */
+@Component
+@Profile("in-memory")
+@Slf4j
+public class LandmarkRegistry {
+
+    private static final long SEED = 1;
+
+    private final RoadGraph graph;
+    private final int count;
+    private final Path file;
+    private volatile Landmarks landmarks;
+
+    public LandmarkRegistry(RoadGraph graph,
+                            @Value("${graph.alt.landmarks}") int count,
+                            @Value("${graph.alt.file}") String file) {
+        this.graph = graph;
+        this.count = count;
+        this.file = Path.of(file);
+        load();
+    }
+
+    /***
+     * Zwraca punkty orientacyjne, jeśli zostały zbudowane dla aktualnego grafu i obsługują profil kosztu
+     * @param profile - profil kosztu zapytania
+     * @return punkty orientacyjne lub pusty Optional
+     */
+    public Optional<Landmarks> find(CostProfile profile) {
+        Landmarks current = landmarks;
+        return current != null && current.supports(profile) ? Optional.of(current) : Optional.empty();
+    }
+
+    /***
+     * Buduje i zapisuje punkty orientacyjne, jeśli nie ma aktualnego pliku
+     */
+    public void build() {
+        if (landmarks != null) {
+            log.info("Landmarks are up to date");
+            return;
+        }
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Landmarks built = new LandmarkBuilder(graph, count, SEED).build();
+            LandmarkFile.write(built, graph.fingerprint(), file);
+            landmarks = built;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /***
+     * Porzuca punkty orientacyjne - po obniżeniu kosztu krawędzi oszacowania mogą przestać być dopuszczalne, więc
+     * do czasu ponownego zbudowania używana jest heurystyka odległości w linii prostej
+     */
+    public void invalidate() {
+        if (landmarks != null) {
+            landmarks = null;
+            log.warn("Road graph has changed - landmarks were dropped until they are rebuilt (build-alt)");
+        }
+    }
+
+    private void load() {
+        try {
+            Optional<Landmarks> loaded = LandmarkFile.read(file, graph.fingerprint());
+            if (loaded.isPresent()) {
+                landmarks = loaded.get();
+                log.info("Loaded " + landmarks.count() + " landmarks");
+            } else {
+                log.warn("No up-to-date landmarks in " + file + " - A* will use the straight line heuristic");
+            }
+        } catch (IOException e) {
+            log.error("Could not read landmarks " + file + ": " + e.getMessage());
+        }
+    }
+}
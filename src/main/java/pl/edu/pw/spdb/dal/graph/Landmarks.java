@@ -0,0 +1,178 @@
+package pl.edu.pw.spdb.dal.graph;
+
+/***
+ * Punkty orientacyjne (landmarks) dla heurystyki ALT - A* z dolnymi oszacowaniami z nierówności trójkąta.
+ * Dla każdego punktu orientacyjnego l przechowywane są koszty dojazdu z l do każdego wierzchołka i z każdego
+ * wierzchołka do l, wtedy d(u,t) >= d(l,t) - d(l,u) oraz d(u,t) >= d(u,l) - d(t,l).
+ * Zamiast tablic dla każdego profilu kosztu przechowywane są tablice dla dwóch metryk bazowych: długości (LENGTH)
+ * i czasu przejazdu bez ograniczenia prędkości pojazdu (TIME). Koszt krawędzi len*(w+(1-w)/min(s,v)) to
+ * w*len + (1-w)*len/min(s,v), a len/min(s,v) nie jest mniejsze ani od len/s, ani od len/v, więc oszacowanie
+ * w*hL + (1-w)*max(hT, hL/v) jest dopuszczalne i spójne dla każdego profilu z wagą z przedziału [0, 1].
+ * Koszty zapisane są jako float zaokrąglone w dół, a odejmowana wartość jest zaokrąglana w górę, więc zaokrąglenie
+ * nie zawyża oszacowania (spójność zachowana jest z dokładnością do względnego błędu float, ok. 1e-7)
+ */
+public final class Landmarks {
+
+    /***
+     * Metryka długości - koszt krawędzi to len
+     */
+    public static final CostProfile LENGTH = new CostProfile(Integer.MAX_VALUE, 1);
+
+    /***
+     * Metryka czasu bez ograniczenia prędkości pojazdu - koszt krawędzi to len/s
+     */
+    public static final CostProfile TIME = new CostProfile(Integer.MAX_VALUE, 0);
+
+    /***
+     * Liczba punktów orientacyjnych używanych w jednym wyszukiwaniu - wybierane są te, które dają największe
+     * oszacowanie dla wierzchołka początkowego
+     */
+    static final int ACTIVE_LANDMARKS = 4;
+
+    private final int[] nodes;
+    private final int nodeCount;
+    private final float[] lengthFrom;
+    private final float[] lengthTo;
+    private final float[] timeFrom;
+    private final float[] timeTo;
+
+    /***
+     * @param nodes - wierzchołki będące punktami orientacyjnymi
+     * @param nodeCount - liczba wierzchołków grafu
+     * @param lengthFrom - długości z punktu l do wierzchołka u pod indeksem l*nodeCount+u
+     * @param lengthTo - długości z wierzchołka u do punktu l
+     * @param timeFrom - czasy przejazdu z punktu l do wierzchołka u
+     * @param timeTo - czasy przejazdu z wierzchołka u do punktu l
+     */
+    Landmarks(int[] nodes, int nodeCount, float[] lengthFrom, float[] lengthTo, float[] timeFrom, float[] timeTo) {
+        this.nodes = nodes;
+        this.nodeCount = nodeCount;
+        this.lengthFrom = lengthFrom;
+        this.lengthTo = lengthTo;
+        this.timeFrom = timeFrom;
+        this.timeTo = timeTo;
+    }
+
+    public int count() {
+        return nodes.length;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int node(int landmark) {
+        return nodes[landmark];
+    }
+
+    float lengthFrom(int landmark, int node) {
+        return lengthFrom[landmark * nodeCount + node];
+    }
+
+    float lengthTo(int landmark, int node) {
+        return lengthTo[landmark * nodeCount + node];
+    }
+
+    float timeFrom(int landmark, int node) {
+        return timeFrom[landmark * nodeCount + node];
+    }
+
+    float timeTo(int landmark, int node) {
+        return timeTo[landmark * nodeCount + node];
+    }
+
+    /***
+     * Czy oszacowania są poprawne dla profilu - wymagają wagi długości z przedziału [0, 1]
+     */
+    public boolean supports(CostProfile profile) {
+        return profile.distanceWeight() >= 0 && profile.distanceWeight() <= 1;
+    }
+
+    /***
+     * Heurystyka ALT dla wyszukiwania z source do target, połączona z heurystyką odległości w linii prostej
+     * (maksimum spójnych heurystyk jest spójne)
+     * @param graph - graf, dla którego zostały wyznaczone punkty orientacyjne
+     * @param source - wierzchołek początkowy
+     * @param target - wierzchołek docelowy
+     * @param profile - profil kosztu, dla którego supports zwraca true
+     * @return heurystyka
+     */
+    public Heuristic heuristic(RoadGraph graph, int source, int target, CostProfile profile) {
+        double w = profile.distanceWeight();
+        double inverseSpeed = 1 / Math.min(graph.maxSpeed(), (double) profile.maxSpeed());
+        Heuristic straightLine = Heuristic.straightLine(graph, target, profile);
+
+        int[] active = activeLandmarks(source, target, w, inverseSpeed);
+        int count = active.length;
+        // wartości dla wierzchołka docelowego nie zmieniają się w trakcie wyszukiwania
+        float[] lengthFromTarget = new float[count];
+        float[] lengthToTarget = new float[count];
+        float[] timeFromTarget = new float[count];
+        float[] timeToTarget = new float[count];
+        for (int i = 0; i < count; i++) {
+            lengthFromTarget[i] = lengthFrom(active[i], target);
+            lengthToTarget[i] = Math.nextUp(lengthTo(active[i], target));
+            timeFromTarget[i] = timeFrom(active[i], target);
+            timeToTarget[i] = Math.nextUp(timeTo(active[i], target));
+        }
+
+        return node -> {
+            double length = 0;
+            double time = 0;
+            for (int i = 0; i < count; i++) {
+                int offset = active[i] * nodeCount + node;
+                length = Math.max(length, bound(lengthFromTarget[i], lengthFrom[offset], lengthTo[offset],
+                        lengthToTarget[i]));
+                time = Math.max(time, bound(timeFromTarget[i], timeFrom[offset], timeTo[offset], timeToTarget[i]));
+            }
+            double estimate = w * length + (1 - w) * Math.max(time, length * inverseSpeed);
+            return Math.max(estimate, straightLine.estimate(node));
+        };
+    }
+
+    /***
+     * Punkty orientacyjne dające największe oszacowanie kosztu z source do target
+     */
+    private int[] activeLandmarks(int source, int target, double w, double inverseSpeed) {
+        double[] estimates = new double[nodes.length];
+        for (int landmark = 0; landmark < nodes.length; landmark++) {
+            int offset = landmark * nodeCount + source;
+            double length = bound(lengthFrom(landmark, target), lengthFrom[offset], lengthTo[offset],
+                    Math.nextUp(lengthTo(landmark, target)));
+            double time = bound(timeFrom(landmark, target), timeFrom[offset], timeTo[offset],
+                    Math.nextUp(timeTo(landmark, target)));
+            estimates[landmark] = w * length + (1 - w) * Math.max(time, length * inverseSpeed);
+        }
+        int[] active = new int[Math.min(ACTIVE_LANDMARKS, nodes.length)];
+        for (int i = 0; i < active.length; i++) {
+            int best = 0;
+            for (int landmark = 1; landmark < nodes.length; landmark++) {
+                if (estimates[landmark] > estimates[best]) {
+                    best = landmark;
+                }
+            }
+            active[i] = best;
+            estimates[best] = Double.NEGATIVE_INFINITY;
+        }
+        return active;
+    }
+
+    /***
+     * Oszacowanie z nierówności trójkąta dla jednego punktu orientacyjnego, pomijające wierzchołki nieosiągalne
+     * z punktu lub z których punkt jest nieosiągalny
+     * @param fromTarget - koszt z punktu do celu (zaokrąglony w dół)
+     * @param fromNode - koszt z punktu do wierzchołka (zaokrąglony w dół)
+     * @param toNode - koszt z wierzchołka do punktu (zaokrąglony w dół)
+     * @param toTarget - koszt z celu do punktu (zaokrąglony w górę)
+     */
+    private static double bound(float fromTarget, float fromNode, float toNode, float toTarget) {
+        double bound = 0;
+        if (fromTarget != Float.POSITIVE_INFINITY && fromNode != Float.POSITIVE_INFINITY) {
+            bound = fromTarget - (double) Math.nextUp(fromNode);
+        }
+        if (toNode != Float.POSITIVE_INFINITY && toTarget != Float.POSITIVE_INFINITY) {
+            bound = Math.max(bound, toNode - (double) toTarget);
+        }
+        return bound;
+    }
+}
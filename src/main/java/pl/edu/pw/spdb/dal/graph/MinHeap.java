@@ -0,0 +1,84 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.Arrays;
+
+/***
+ * Kopiec binarny par (klucz, wierzchołek) oparty na tablicach prymitywów.
+ * Nie obsługuje zmniejszania klucza - wierzchołek wstawiany jest ponownie, a nieaktualne wpisy pomijane są
+ * przez algorytm przeszukiwania przy zdejmowaniu z kopca.
+ */
+final class MinHeap {
+
+    private double[] keys = new double[256];
+    private int[] nodes = new int[256];
+    private int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    double peekKey() {
+        return keys[0];
+    }
+
+    int peekNode() {
+        return nodes[0];
+    }
+
+    void push(int node, double key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+            nodes = Arrays.copyOf(nodes, size << 1);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            nodes[i] = nodes[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        nodes[i] = node;
+    }
+
+    /***
+     * Zdejmuje wierzchołek o najmniejszym kluczu
+     * @return wierzchołek
+     */
+    int pop() {
+        int result = nodes[0];
+        size--;
+        if (size > 0) {
+            double key = keys[size];
+            int node = nodes[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                keys[i] = keys[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+package pl.edu.pw.spdb.dal.graph;
+
+/***
+ * Regularna siatka nad współrzędnymi wierzchołków grafu, pozwalająca szybko znaleźć najbliższy wierzchołek.
+ * Wierzchołki każdej komórki przechowywane są w jednej tablicy w układzie CSR.
+ * Odległość liczona jest w płaszczyźnie (szerokość, długość) - tak jak st_distance(st_makepoint(...)) w zapytaniach SQL
+ */
+final class NodeGrid {
+
+    private static final int NODES_PER_CELL = 4;
+
+    private final RoadGraph graph;
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double cellSize;
+    private final int rows;
+    private final int columns;
+    private final int[] cellBegin;
+    private final int[] cellNodes;
+
+    NodeGrid(RoadGraph graph) {
+        this.graph = graph;
+        int nodeCount = graph.nodeCount();
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int node = 0; node < nodeCount; node++) {
+            minLat = Math.min(minLat, graph.latitude(node));
+            maxLat = Math.max(maxLat, graph.latitude(node));
+            minLon = Math.min(minLon, graph.longitude(node));
+            maxLon = Math.max(maxLon, graph.longitude(node));
+        }
+        if (nodeCount == 0) {
+            minLat = maxLat = minLon = maxLon = 0;
+        }
+
+        double area = Math.max((maxLat - minLat) * (maxLon - minLon), 1e-12);
+        double cells = Math.max(1, nodeCount / (double) NODES_PER_CELL);
+        this.minLatitude = minLat;
+        this.minLongitude = minLon;
+        this.cellSize = Math.max(Math.sqrt(area / cells), 1e-6);
+        this.rows = (int) ((maxLat - minLat) / cellSize) + 1;
+        this.columns = (int) ((maxLon - minLon) / cellSize) + 1;
+
+        this.cellBegin = new int[rows * columns + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            cellBegin[cellOf(node) + 1]++;
+        }
+        for (int cell = 0; cell < rows * columns; cell++) {
+            cellBegin[cell + 1] += cellBegin[cell];
+        }
+        this.cellNodes = new int[nodeCount];
+        int[] fill = new int[rows * columns];
+        for (int node = 0; node < nodeCount; node++) {
+            int cell = cellOf(node);
+            cellNodes[cellBegin[cell] + fill[cell]++] = node;
+        }
+    }
+
+    /***
+     * Przeszukuje kolejne pierścienie komórek wokół punktu aż do momentu, gdy żaden dalszy pierścień nie może
+     * zawierać bliższego wierzchołka
+     */
+    int nearest(double latitude, double longitude, boolean isStartPoint) {
+        int row = clamp((int) Math.floor((latitude - minLatitude) / cellSize), rows);
+        int column = clamp((int) Math.floor((longitude - minLongitude) / cellSize), columns);
+
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        int maxRing = Math.max(rows, columns);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (best >= 0) {
+                double ringDistance = (ring - 1) * cellSize;
+                if (ringDistance > 0 && ringDistance * ringDistance > bestDistance) {
+                    break;
+                }
+            }
+            for (int r = row - ring; r <= row + ring; r++) {
+                if (r < 0 || r >= rows) {
+                    continue;
+                }
+                boolean edgeRow = r == row - ring || r == row + ring;
+                for (int c = column - ring; c <= column + ring; c += edgeRow ? 1 : 2 * ring) {
+                    if (c >= 0 && c < columns) {
+                        int cell = r * columns + c;
+                        for (int i = cellBegin[cell]; i < cellBegin[cell + 1]; i++) {
+                            int node = cellNodes[i];
+                            if (!isUsable(node, isStartPoint)) {
+                                continue;
+                            }
+                            double dLat = graph.latitude(node) - latitude;
+                            double dLon = graph.longitude(node) - longitude;
+                            double distance = dLat * dLat + dLon * dLon;
+                            if (distance < bestDistance) {
+                                bestDistance = distance;
+                                best = node;
+                            }
+                        }
+                    }
+                    if (ring == 0) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean isUsable(int node, boolean isStartPoint) {
+        return isStartPoint ? graph.outEnd(node) > graph.outBegin(node) : graph.inEnd(node) > graph.inBegin(node);
+    }
+
+    private int cellOf(int node) {
+        int row = (int) ((graph.latitude(node) - minLatitude) / cellSize);
+        int column = (int) ((graph.longitude(node) - minLongitude) / cellSize);
+        return row * columns + column;
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+}
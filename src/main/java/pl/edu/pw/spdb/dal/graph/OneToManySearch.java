@@ -0,0 +1,109 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/***
+ * Algorytm Dijkstry z jednego wierzchołka do wielu wierzchołków końcowych. Drzewo najtańszych ścieżek rozwijane jest
+ * raz dla wierzchołka początkowego, aż do ustalenia wszystkich wierzchołków końcowych - odpowiednik pgr_dijkstra
+ * w wariancie jeden-do-wielu
+ */
+public class OneToManySearch {
+
+    /***
+     * Co ile ustalonych wierzchołków sprawdzane jest przerwanie wątku
+     */
+    private static final int INTERRUPT_CHECK_MASK = 0xFFF;
+
+    private final RoadGraph graph;
+
+    public OneToManySearch(RoadGraph graph) {
+        this.graph = graph;
+    }
+
+    /***
+     * Rozwija drzewo najtańszych ścieżek z wierzchołka source. Po zakończeniu ścieżka do osiągalnego wierzchołka
+     * końcowego odtwarzana jest z łuków-rodziców zapisanych w space
+     * @param source - indeks wierzchołka początkowego
+     * @param targets - indeksy wierzchołków końcowych, mogą się powtarzać
+     * @param profile - profil kosztu
+     * @param space - stan przeszukiwania
+     * @throws CancellationException jeśli wątek wyszukiwania został przerwany
+     */
+    public void search(int source, int[] targets, CostProfile profile, SearchSpace space) {
+        int[] pending = Arrays.stream(targets).distinct().sorted().toArray();
+        int remaining = pending.length;
+
+        space.reset();
+        MinHeap heap = space.heap();
+        space.relax(source, 0, -1, 0);
+
+        while (!heap.isEmpty() && remaining > 0) {
+            int node = heap.pop();
+            if (space.isSettled(node)) {
+                continue;
+            }
+            space.settle(node);
+            if ((space.settledCount() & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Route search interrupted");
+            }
+            if (Arrays.binarySearch(pending, node) >= 0) {
+                remaining--;
+            }
+
+            double distance = space.distance(node);
+            for (int i = graph.outBegin(node), end = graph.outEnd(node); i < end; i++) {
+                int arc = graph.outArc(i);
+                int head = graph.arcHead(arc);
+                if (space.isSettled(head)) {
+                    continue;
+                }
+                double candidate = distance + graph.arcCost(arc, profile);
+                if (candidate < space.distance(head)) {
+                    space.relax(head, candidate, arc, candidate);
+                }
+            }
+        }
+    }
+
+    /***
+     * Długość ścieżki z drzewa do wierzchołka target
+     * @param space - stan po wywołaniu search
+     * @param source - indeks wierzchołka początkowego
+     * @param target - indeks wierzchołka końcowego
+     * @return długość w km lub Double.POSITIVE_INFINITY, jeśli wierzchołek nie jest osiągalny
+     */
+    public double pathLength(SearchSpace space, int source, int target) {
+        if (!space.isSettled(target)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double length = 0;
+        for (int node = target; node != source; node = graph.arcTail(space.parentArc(node))) {
+            length += graph.edgeLength(RoadGraph.arcEdge(space.parentArc(node))) / 1000.0;
+        }
+        return length;
+    }
+
+    /***
+     * Czas przejazdu ścieżki z drzewa do wierzchołka target, liczony z ograniczenia prędkości w kierunku przejazdu
+     * nie większego niż maksymalna prędkość pojazdu
+     * @param space - stan po wywołaniu search
+     * @param source - indeks wierzchołka początkowego
+     * @param target - indeks wierzchołka końcowego
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @return czas w h lub Double.POSITIVE_INFINITY, jeśli wierzchołek nie jest osiągalny
+     */
+    public double pathTime(SearchSpace space, int source, int target, int maxSpeed) {
+        if (!space.isSettled(target)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double time = 0;
+        for (int node = target; node != source; node = graph.arcTail(space.parentArc(node))) {
+            int arc = space.parentArc(node);
+            float speed = graph.arcSpeed(arc);
+            time += graph.edgeLength(RoadGraph.arcEdge(arc)) / 1000.0
+                    / Math.min(speed == 0 ? CostProfile.ZERO_SPEED : speed, maxSpeed);
+        }
+        return time;
+    }
+}
@@ -0,0 +1,109 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import lombok.extern.slf4j.Slf4j;
+import pl.edu.pw.spdb.model.Point;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/***
+ * Wczytuje kafelki grafu z tabeli ways zapytaniem przestrzennym po kolumnach source_point i target_point.
+ * Kolumny są takie same jak w RoadGraphLoader, a wiersze posortowane po gid, aby kafelek nie zależał od kolejności
+ * wierszy w tabeli
+ */
+@Slf4j
+public class PostgisTileLoader implements TileLoader {
+
+    /***
+     * source_point i target_point to st_makepoint(szerokość, długość), więc szerokość jest współrzędną X obwiedni
+     */
+    private static final String LOAD_TILE_SQL =
+            "SELECT gid, source, target, ST_LENGTH(the_geom)/1000, length_m, maxspeed_forward, maxspeed_backward, " +
+                    "cost, reverse_cost, x1, y1, x2, y2 FROM ways " +
+                    "WHERE source_point && ST_MakeEnvelope(?, ?, ?, ?) OR target_point && ST_MakeEnvelope(?, ?, ?, ?) " +
+                    "ORDER BY gid;";
+    private static final String LOCATE_SQL =
+            "(SELECT y1, x1 FROM ways WHERE source = ? LIMIT 1) UNION ALL " +
+                    "(SELECT y2, x2 FROM ways WHERE target = ? LIMIT 1) LIMIT 1;";
+    private static final String MAX_SPEED_SQL =
+            "SELECT max(greatest(maxspeed_forward, maxspeed_backward)) FROM ways;";
+
+    /***
+     * Margines obwiedni kafelka - punkt na granicy kafelka nie może zostać pominięty przez błąd zaokrąglenia
+     */
+    private static final double ENVELOPE_MARGIN = 1e-9;
+    private static final int FETCH_SIZE = 10000;
+
+    private final DataSource dataSource;
+
+    public PostgisTileLoader(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public RoadGraph load(TileKey key, double size) {
+        long start = System.currentTimeMillis();
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(LOAD_TILE_SQL)) {
+                statement.setFetchSize(FETCH_SIZE);
+                for (int offset = 0; offset < 8; offset += 4) {
+                    statement.setDouble(offset + 1, key.minLatitude(size) - ENVELOPE_MARGIN);
+                    statement.setDouble(offset + 2, key.minLongitude(size) - ENVELOPE_MARGIN);
+                    statement.setDouble(offset + 3, key.maxLatitude(size) + ENVELOPE_MARGIN);
+                    statement.setDouble(offset + 4, key.maxLongitude(size) + ENVELOPE_MARGIN);
+                }
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        builder.addEdge(result.getLong(1), result.getLong(2), result.getLong(3),
+                                result.getDouble(4), result.getDouble(5), result.getDouble(6), result.getDouble(7),
+                                result.getDouble(8) >= 0, result.getDouble(9) >= 0,
+                                result.getDouble(10), result.getDouble(11), result.getDouble(12), result.getDouble(13));
+                    }
+                }
+            } finally {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+
+        RoadGraph graph = builder.build();
+        log.info("Tile " + key.row() + "/" + key.column() + " loaded in " + (System.currentTimeMillis() - start)
+                + " ms: " + graph.nodeCount() + " nodes, " + graph.edgeCount() + " edges");
+        return graph;
+    }
+
+    @Override
+    public Point locate(long nodeId) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(LOCATE_SQL)) {
+            statement.setLong(1, nodeId);
+            statement.setLong(2, nodeId);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? new Point(result.getDouble(1), result.getDouble(2)) : null;
+            }
+        } catch (SQLException e) {
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public double maxSpeed() {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(MAX_SPEED_SQL);
+             ResultSet result = statement.executeQuery()) {
+            return result.next() ? result.getDouble(1) : 0;
+        } catch (SQLException e) {
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.nio.*;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/***
+ * Graf drogowy przechowywany w pamięci w postaci skompresowanych list sąsiedztwa (CSR).
+ * Wierzchołki mają identyfikatory przemapowane na kolejne liczby całkowite 0..nodeCount-1, krawędzie odpowiadają
+ * wierszom tabeli ways. Łuk (arc) to krawędź wraz z kierunkiem przejazdu - kodowany jest jako
+ * (indeks krawędzi << 1) | (1 jeśli przejazd od target do source).
+ * Dane przechowywane są w buforach NIO - tablicach na stercie dla grafu zbudowanego przez RoadGraphBuilder lub
+ * widokach pliku zmapowanego do pamięci dla grafu wczytanego przez RoadGraphFile.
+ */
+public final class RoadGraph {
+
+    public static final byte FORWARD = 1;
+    public static final byte BACKWARD = 2;
+
+    private final LongBuffer nodeIds;
+    private final DoubleBuffer nodeLatitudes;
+    private final DoubleBuffer nodeLongitudes;
+
+    private final IntBuffer edgeIds;
+    private final IntBuffer edgeSources;
+    private final IntBuffer edgeTargets;
+    private final FloatBuffer edgeCostLengths;
+    private final FloatBuffer edgeLengths;
+    private final FloatBuffer speedsForward;
+    private final FloatBuffer speedsBackward;
+    private final ByteBuffer edgeFlags;
+
+    private final IntBuffer outBegin;
+    private final IntBuffer outArcs;
+    private final IntBuffer inBegin;
+    private final IntBuffer inArcs;
+
+    private final int nodeCount;
+    private final int edgeCount;
+    private volatile float maxSpeed;
+    private volatile NodeGrid nodeGrid;
+    private volatile long fingerprint;
+    private volatile int[] edgesById;
+
+    RoadGraph(long[] nodeIds, double[] nodeLatitudes, double[] nodeLongitudes,
+              int[] edgeIds, int[] edgeSources, int[] edgeTargets, float[] edgeCostLengths, float[] edgeLengths,
+              float[] speedsForward, float[] speedsBackward, byte[] edgeFlags,
+              int[] outBegin, int[] outArcs, int[] inBegin, int[] inArcs) {
+        this(LongBuffer.wrap(nodeIds), DoubleBuffer.wrap(nodeLatitudes), DoubleBuffer.wrap(nodeLongitudes),
+                IntBuffer.wrap(edgeIds), IntBuffer.wrap(edgeSources), IntBuffer.wrap(edgeTargets),
+                FloatBuffer.wrap(edgeCostLengths), FloatBuffer.wrap(edgeLengths), FloatBuffer.wrap(speedsForward),
+                FloatBuffer.wrap(speedsBackward), ByteBuffer.wrap(edgeFlags), IntBuffer.wrap(outBegin),
+                IntBuffer.wrap(outArcs), IntBuffer.wrap(inBegin), IntBuffer.wrap(inArcs), 0);
+    }
+
+    /***
+     * Graf na buforach - tablicach na stercie lub widokach pliku zmapowanego do pamięci (RoadGraphFile)
+     * @param fingerprint - znana suma kontrolna grafu lub 0, jeśli ma zostać wyliczona przy pierwszym użyciu
+     */
+    RoadGraph(LongBuffer nodeIds, DoubleBuffer nodeLatitudes, DoubleBuffer nodeLongitudes,
+              IntBuffer edgeIds, IntBuffer edgeSources, IntBuffer edgeTargets, FloatBuffer edgeCostLengths,
+              FloatBuffer edgeLengths, FloatBuffer speedsForward, FloatBuffer speedsBackward, ByteBuffer edgeFlags,
+              IntBuffer outBegin, IntBuffer outArcs, IntBuffer inBegin, IntBuffer inArcs, long fingerprint) {
+        this.nodeIds = nodeIds;
+        this.nodeLatitudes = nodeLatitudes;
+        this.nodeLongitudes = nodeLongitudes;
+        this.edgeIds = edgeIds;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+        this.edgeCostLengths = edgeCostLengths;
+        this.edgeLengths = edgeLengths;
+        this.speedsForward = speedsForward;
+        this.speedsBackward = speedsBackward;
+        this.edgeFlags = edgeFlags;
+        this.outBegin = outBegin;
+        this.outArcs = outArcs;
+        this.inBegin = inBegin;
+        this.inArcs = inArcs;
+        this.nodeCount = nodeIds.capacity();
+        this.edgeCount = edgeIds.capacity();
+        this.fingerprint = fingerprint;
+        this.maxSpeed = computeMaxSpeed();
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /***
+     * Metoda zamieniająca identyfikator wierzchołka z bazy na indeks w grafie
+     * @param nodeId - identyfikator wierzchołka (ways.source / ways.target)
+     * @return indeks wierzchołka lub -1 jeśli wierzchołek nie istnieje
+     */
+    public int nodeIndex(long nodeId) {
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = nodeIds.get(middle);
+            if (middleId < nodeId) {
+                low = middle + 1;
+            } else if (middleId > nodeId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /***
+     * Metoda zamieniająca identyfikator krawędzi z bazy na indeks w grafie. Indeks krawędzi posortowanych po
+     * identyfikatorze jest budowany przy pierwszym wywołaniu, ponieważ potrzebny jest tylko przy zmianach tabeli ways
+     * @param edgeId - identyfikator krawędzi (ways.gid)
+     * @return indeks krawędzi lub -1 jeśli krawędź nie istnieje
+     */
+    public int edgeIndex(long edgeId) {
+        int[] order = edgesById();
+        int low = 0;
+        int high = edgeCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = edgeIds.get(order[middle]);
+            if (middleId < edgeId) {
+                low = middle + 1;
+            } else if (middleId > edgeId) {
+                high = middle - 1;
+            } else {
+                return order[middle];
+            }
+        }
+        return -1;
+    }
+
+    private int[] edgesById() {
+        int[] order = edgesById;
+        if (order == null) {
+            long[] keys = new long[edgeCount];
+            for (int edge = 0; edge < edgeCount; edge++) {
+                keys[edge] = ((long) edgeIds.get(edge) << 32) | edge;
+            }
+            Arrays.sort(keys);
+            order = new int[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                order[i] = (int) keys[i];
+            }
+            edgesById = order;
+        }
+        return order;
+    }
+
+    public long nodeId(int node) {
+        return nodeIds.get(node);
+    }
+
+    public double latitude(int node) {
+        return nodeLatitudes.get(node);
+    }
+
+    public double longitude(int node) {
+        return nodeLongitudes.get(node);
+    }
+
+    public int edgeId(int edge) {
+        return edgeIds.get(edge);
+    }
+
+    public int edgeSource(int edge) {
+        return edgeSources.get(edge);
+    }
+
+    public int edgeTarget(int edge) {
+        return edgeTargets.get(edge);
+    }
+
+    /***
+     * Długość krawędzi używana w funkcji kosztu - odpowiada ST_LENGTH(the_geom)/1000 z funkcji astar()
+     */
+    public float edgeCostLength(int edge) {
+        return edgeCostLengths.get(edge);
+    }
+
+    /***
+     * Długość krawędzi w metrach (ways.length_m)
+     */
+    public float edgeLength(int edge) {
+        return edgeLengths.get(edge);
+    }
+
+    public float speedForward(int edge) {
+        return speedsForward.get(edge);
+    }
+
+    public float speedBackward(int edge) {
+        return speedsBackward.get(edge);
+    }
+
+    public byte edgeFlags(int edge) {
+        return edgeFlags.get(edge);
+    }
+
+    /***
+     * Największe ograniczenie prędkości w grafie - dla prędkości pojazdu powyżej tej wartości koszt przejazdu
+     * przestaje od niej zależeć
+     */
+    public float maxSpeed() {
+        return maxSpeed;
+    }
+
+    public int outBegin(int node) {
+        return outBegin.get(node);
+    }
+
+    public int outEnd(int node) {
+        return outBegin.get(node + 1);
+    }
+
+    public int outArc(int index) {
+        return outArcs.get(index);
+    }
+
+    public int inBegin(int node) {
+        return inBegin.get(node);
+    }
+
+    public int inEnd(int node) {
+        return inBegin.get(node + 1);
+    }
+
+    public int inArc(int index) {
+        return inArcs.get(index);
+    }
+
+    public static int arc(int edge, boolean reversed) {
+        return (edge << 1) | (reversed ? 1 : 0);
+    }
+
+    public static int arcEdge(int arc) {
+        return arc >>> 1;
+    }
+
+    public static boolean arcReversed(int arc) {
+        return (arc & 1) != 0;
+    }
+
+    public int arcTail(int arc) {
+        return arcReversed(arc) ? edgeTargets.get(arc >>> 1) : edgeSources.get(arc >>> 1);
+    }
+
+    public int arcHead(int arc) {
+        return arcReversed(arc) ? edgeSources.get(arc >>> 1) : edgeTargets.get(arc >>> 1);
+    }
+
+    /***
+     * Czy przejazd łukiem jest dozwolony - kierunek mógł zostać zamknięty przez updateEdge
+     */
+    public boolean isArcOpen(int arc) {
+        return (edgeFlags.get(arc >>> 1) & (arcReversed(arc) ? BACKWARD : FORWARD)) != 0;
+    }
+
+    public float arcSpeed(int arc) {
+        return arcReversed(arc) ? speedsBackward.get(arc >>> 1) : speedsForward.get(arc >>> 1);
+    }
+
+    /***
+     * Koszt przejazdu łukiem dla zadanego profilu
+     * @param arc - łuk
+     * @param profile - profil kosztu
+     * @return koszt przejazdu, nieskończony dla zamkniętego kierunku
+     */
+    public double arcCost(int arc, CostProfile profile) {
+        if (!isArcOpen(arc)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return profile.cost(edgeCostLengths.get(arc >>> 1), arcSpeed(arc));
+    }
+
+    /***
+     * Odległość w linii prostej pomiędzy wierzchołkami liczona w układzie współrzędnych geometrii (stopnie),
+     * podzielona przez 1000 tak jak długość w funkcji kosztu
+     */
+    public double straightLineCostLength(int from, int to) {
+        double dLat = nodeLatitudes.get(from) - nodeLatitudes.get(to);
+        double dLon = nodeLongitudes.get(from) - nodeLongitudes.get(to);
+        return Math.sqrt(dLat * dLat + dLon * dLon) / 1000;
+    }
+
+    /***
+     * Wyszukuje najbliższy wierzchołek, z którego można wyjechać (isStartPoint) lub do którego można dojechać.
+     * Siatka wierzchołków budowana jest przy pierwszym wywołaniu, aby nie wydłużać mapowania grafu z pliku
+     * @param latitude - szerokość geograficzna
+     * @param longitude - długość geograficzna
+     * @param isStartPoint - czy szukamy początku trasy
+     * @return indeks wierzchołka lub -1 dla pustego grafu
+     */
+    public int nearestNode(double latitude, double longitude, boolean isStartPoint) {
+        return nodeGrid().nearest(latitude, longitude, isStartPoint);
+    }
+
+    private NodeGrid nodeGrid() {
+        NodeGrid grid = nodeGrid;
+        if (grid == null) {
+            grid = new NodeGrid(this);
+            nodeGrid = grid;
+        }
+        return grid;
+    }
+
+    /***
+     * Suma kontrolna danych krawędzi wpływających na koszt przejazdu. Pozwala sprawdzić, czy dane wyliczone
+     * wcześniej dla grafu (np. hierarchia skrótów zapisana w pliku) odpowiadają aktualnej zawartości tabeli ways
+     * @return suma kontrolna CRC32 rozszerzona o liczbę wierzchołków i krawędzi
+     */
+    public long fingerprint() {
+        if (fingerprint == 0) {
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate(40);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                buffer.clear();
+                buffer.putInt(edgeIds.get(edge))
+                        .putLong(nodeIds.get(edgeSources.get(edge))).putLong(nodeIds.get(edgeTargets.get(edge)))
+                        .putFloat(edgeCostLengths.get(edge))
+                        .putFloat(speedsForward.get(edge)).putFloat(speedsBackward.get(edge))
+                        .put(edgeFlags.get(edge));
+                crc.update(buffer.flip());
+            }
+            fingerprint = ((long) nodeCount() << 40) ^ ((long) edgeCount() << 32) ^ crc.getValue() | 1L << 63;
+        }
+        return fingerprint;
+    }
+
+    /***
+     * Zmienia ograniczenia prędkości i dozwolone kierunki przejazdu krawędzi bez przebudowy grafu. Listy sąsiedztwa
+     * nie są zmieniane, więc otwarty może zostać tylko kierunek, który był dozwolony przy budowie grafu.
+     * Wyszukiwania wykonywane równocześnie mogą zobaczyć stan sprzed lub po zmianie
+     * @param edge - indeks krawędzi
+     * @param speedForward - nowe ograniczenie prędkości od source do target
+     * @param speedBackward - nowe ograniczenie prędkości od target do source
+     * @param flags - nowe dozwolone kierunki (FORWARD, BACKWARD)
+     * @return false, jeśli żądanego kierunku nie ma w listach sąsiedztwa i pozostaje zamknięty
+     */
+    public boolean updateEdge(int edge, float speedForward, float speedBackward, byte flags) {
+        byte available = 0;
+        if (hasOutArc(edgeSources.get(edge), arc(edge, false))) {
+            available |= FORWARD;
+        }
+        if (hasOutArc(edgeTargets.get(edge), arc(edge, true))) {
+            available |= BACKWARD;
+        }
+        speedsForward.put(edge, speedForward);
+        speedsBackward.put(edge, speedBackward);
+        edgeFlags.put(edge, (byte) (flags & available));
+        if ((flags & FORWARD) != 0) {
+            maxSpeed = Math.max(maxSpeed, speedForward);
+        }
+        if ((flags & BACKWARD) != 0) {
+            maxSpeed = Math.max(maxSpeed, speedBackward);
+        }
+        fingerprint = 0;
+        return (flags & ~available) == 0;
+    }
+
+    private boolean hasOutArc(int node, int arc) {
+        for (int i = outBegin(node); i < outEnd(node); i++) {
+            if (outArcs.get(i) == arc) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private float computeMaxSpeed() {
+        float max = 0;
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if ((edgeFlags.get(edge) & FORWARD) != 0) {
+                max = Math.max(max, speedsForward.get(edge));
+            }
+            if ((edgeFlags.get(edge) & BACKWARD) != 0) {
+                max = Math.max(max, speedsBackward.get(edge));
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,152 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.Arrays;
+
+/***
+ * Klasa budująca RoadGraph z kolejnych wierszy tabeli ways.
+ * Dane trzymane są w rosnących tablicach prymitywów, aby wczytanie milionów krawędzi nie tworzyło obiektów
+ * dla każdego wiersza.
+ */
+public class RoadGraphBuilder {
+
+    private int edgeCount;
+    private long[] sources = new long[1024];
+    private long[] targets = new long[1024];
+    private int[] edgeIds = new int[1024];
+    private double[] coordinates = new double[4096];
+    private float[] costLengths = new float[1024];
+    private float[] lengths = new float[1024];
+    private float[] speedsForward = new float[1024];
+    private float[] speedsBackward = new float[1024];
+    private byte[] flags = new byte[1024];
+
+    /***
+     * Dodaje krawędź - odpowiednik jednego wiersza tabeli ways
+     * @param gid - ways.gid
+     * @param source - ways.source
+     * @param target - ways.target
+     * @param costLength - ST_LENGTH(the_geom)/1000
+     * @param length - ways.length_m
+     * @param speedForward - ways.maxspeed_forward
+     * @param speedBackward - ways.maxspeed_backward
+     * @param forward - czy można przejechać od source do target (cost >= 0)
+     * @param backward - czy można przejechać od target do source (reverse_cost >= 0)
+     * @param x1 - długość geograficzna wierzchołka source
+     * @param y1 - szerokość geograficzna wierzchołka source
+     * @param x2 - długość geograficzna wierzchołka target
+     * @param y2 - szerokość geograficzna wierzchołka target
+     * @return builder
+     */
+    public RoadGraphBuilder addEdge(long gid, long source, long target, double costLength, double length,
+                                    double speedForward, double speedBackward, boolean forward, boolean backward,
+                                    double x1, double y1, double x2, double y2) {
+        ensureCapacity(edgeCount + 1);
+        edgeIds[edgeCount] = Math.toIntExact(gid);
+        sources[edgeCount] = source;
+        targets[edgeCount] = target;
+        costLengths[edgeCount] = (float) costLength;
+        lengths[edgeCount] = (float) length;
+        speedsForward[edgeCount] = (float) speedForward;
+        speedsBackward[edgeCount] = (float) speedBackward;
+        flags[edgeCount] = (byte) ((forward ? RoadGraph.FORWARD : 0) | (backward ? RoadGraph.BACKWARD : 0));
+        coordinates[4 * edgeCount] = x1;
+        coordinates[4 * edgeCount + 1] = y1;
+        coordinates[4 * edgeCount + 2] = x2;
+        coordinates[4 * edgeCount + 3] = y2;
+        edgeCount++;
+        return this;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /***
+     * Przemapowuje identyfikatory wierzchołków na kolejne liczby całkowite i buduje listy sąsiedztwa
+     * @return RoadGraph
+     */
+    public RoadGraph build() {
+        long[] nodeIds = new long[2 * edgeCount];
+        System.arraycopy(sources, 0, nodeIds, 0, edgeCount);
+        System.arraycopy(targets, 0, nodeIds, edgeCount, edgeCount);
+        Arrays.sort(nodeIds);
+        int nodeCount = 0;
+        for (int i = 0; i < nodeIds.length; i++) {
+            if (i == 0 || nodeIds[i] != nodeIds[i - 1]) {
+                nodeIds[nodeCount++] = nodeIds[i];
+            }
+        }
+        nodeIds = Arrays.copyOf(nodeIds, nodeCount);
+
+        double[] latitudes = new double[nodeCount];
+        double[] longitudes = new double[nodeCount];
+        int[] edgeSources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int source = Arrays.binarySearch(nodeIds, sources[edge]);
+            int target = Arrays.binarySearch(nodeIds, targets[edge]);
+            edgeSources[edge] = source;
+            edgeTargets[edge] = target;
+            longitudes[source] = coordinates[4 * edge];
+            latitudes[source] = coordinates[4 * edge + 1];
+            longitudes[target] = coordinates[4 * edge + 2];
+            latitudes[target] = coordinates[4 * edge + 3];
+        }
+
+        int[] outBegin = new int[nodeCount + 1];
+        int[] inBegin = new int[nodeCount + 1];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if ((flags[edge] & RoadGraph.FORWARD) != 0) {
+                outBegin[edgeSources[edge] + 1]++;
+                inBegin[edgeTargets[edge] + 1]++;
+            }
+            if ((flags[edge] & RoadGraph.BACKWARD) != 0) {
+                outBegin[edgeTargets[edge] + 1]++;
+                inBegin[edgeSources[edge] + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            outBegin[node + 1] += outBegin[node];
+            inBegin[node + 1] += inBegin[node];
+        }
+
+        int[] outArcs = new int[outBegin[nodeCount]];
+        int[] inArcs = new int[inBegin[nodeCount]];
+        int[] outFill = Arrays.copyOf(outBegin, nodeCount);
+        int[] inFill = Arrays.copyOf(inBegin, nodeCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if ((flags[edge] & RoadGraph.FORWARD) != 0) {
+                int arc = RoadGraph.arc(edge, false);
+                outArcs[outFill[edgeSources[edge]]++] = arc;
+                inArcs[inFill[edgeTargets[edge]]++] = arc;
+            }
+            if ((flags[edge] & RoadGraph.BACKWARD) != 0) {
+                int arc = RoadGraph.arc(edge, true);
+                outArcs[outFill[edgeTargets[edge]]++] = arc;
+                inArcs[inFill[edgeSources[edge]]++] = arc;
+            }
+        }
+
+        return new RoadGraph(nodeIds, latitudes, longitudes,
+                Arrays.copyOf(edgeIds, edgeCount), edgeSources, edgeTargets,
+                Arrays.copyOf(costLengths, edgeCount), Arrays.copyOf(lengths, edgeCount),
+                Arrays.copyOf(speedsForward, edgeCount), Arrays.copyOf(speedsBackward, edgeCount),
+                Arrays.copyOf(flags, edgeCount), outBegin, outArcs, inBegin, inArcs);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= edgeIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, edgeIds.length + (edgeIds.length >> 1));
+        sources = Arrays.copyOf(sources, newCapacity);
+        targets = Arrays.copyOf(targets, newCapacity);
+        edgeIds = Arrays.copyOf(edgeIds, newCapacity);
+        coordinates = Arrays.copyOf(coordinates, 4 * newCapacity);
+        costLengths = Arrays.copyOf(costLengths, newCapacity);
+        lengths = Arrays.copyOf(lengths, newCapacity);
+        speedsForward = Arrays.copyOf(speedsForward, newCapacity);
+        speedsBackward = Arrays.copyOf(speedsBackward, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+    }
+}
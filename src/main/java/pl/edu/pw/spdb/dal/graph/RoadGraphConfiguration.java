@@ -0,0 +1,44 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/***
+ * Konfiguracja grafu drogowego trzymanego w pamięci - aktywna w profilu in-memory.
+ * Jeśli istnieje plik graph.snapshot.file (SpdbTools export-graph), graf jest z niego mapowany do pamięci,
+ * w przeciwnym razie wczytywany jest z tabeli ways
+ */
+@Configuration
+@Profile("in-memory")
+@Slf4j
+public class RoadGraphConfiguration {
+
+    @Bean
+    public RoadGraph roadGraph(DataSource dataSource,
+                               @Value("${graph.snapshot.file}") String snapshotFile,
+                               @Value("${graph.snapshot.verify-checksum}") boolean verifyChecksum) {
+        if (!snapshotFile.isBlank()) {
+            long start = System.currentTimeMillis();
+            try {
+                Optional<RoadGraph> graph = RoadGraphFile.read(Path.of(snapshotFile), verifyChecksum);
+                if (graph.isPresent()) {
+                    log.info("Road graph mapped from " + snapshotFile + " in " + (System.currentTimeMillis() - start)
+                            + " ms: " + graph.get().nodeCount() + " nodes, " + graph.get().edgeCount() + " edges");
+                    return graph.get();
+                }
+                log.warn("No valid road graph snapshot in " + snapshotFile + " - loading ways table");
+            } catch (IOException e) {
+                log.error("Could not read road graph snapshot " + snapshotFile + ": " + e.getMessage());
+            }
+        }
+        return new RoadGraphLoader(dataSource).load();
+    }
+}
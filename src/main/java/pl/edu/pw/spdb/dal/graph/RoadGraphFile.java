@@ -0,0 +1,281 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/***
+ * Zapis grafu drogowego do pliku binarnego i jego odczyt przez mapowanie pliku do pamięci (FileChannel.map).
+ * Graf wczytany z pliku czyta dane bezpośrednio ze zmapowanych stron - nie jest kopiowany na stertę, a kilka
+ * procesów korzystających z tego samego pliku współdzieli jego strony w pamięci podręcznej systemu. Wyjątkiem są
+ * ograniczenia prędkości i kierunki przejazdu, które mogą być zmieniane w działającej aplikacji - są kopiowane
+ * do buforów poza stertą.
+ * Układ pliku (little-endian): nagłówek HEADER_SIZE bajtów, a po nim tablice grafu w kolejności pól RoadGraph,
+ * każda zaczynająca się od przesunięcia podzielnego przez 8. Nagłówek zawiera sumę kontrolną CRC32 wszystkich
+ * danych za nagłówkiem oraz sumę kontrolną grafu (RoadGraph.fingerprint), której używają hierarchie skrótów.
+ * Suma CRC32 sprawdzana jest tylko na żądanie, bo wymaga odczytania całego pliku - przy każdym odczycie sprawdzane
+ * są nagłówek, rozmiar pliku i skrajne wartości tablic początków list sąsiedztwa
+ */
+public final class RoadGraphFile {
+
+    private static final int MAGIC = 0x53524731; // "SRG1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /***
+     * Największy fragment pliku mapowany jednym wywołaniem przy sprawdzaniu sumy kontrolnej
+     */
+    private static final long VERIFY_CHUNK_SIZE = 1L << 30;
+
+    private RoadGraphFile() {
+    }
+
+    /***
+     * Zapisuje graf do pliku. Zapis odbywa się do pliku tymczasowego, który następnie zastępuje docelowy,
+     * więc przerwany zapis nie zostawia uszkodzonego pliku
+     * @param graph - graf
+     * @param path - ścieżka pliku
+     */
+    public static void write(RoadGraph graph, Path path) throws IOException {
+        int nodeCount = graph.nodeCount();
+        int edgeCount = graph.edgeCount();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionWriter out = new SectionWriter(channel);
+            for (int node = 0; node < nodeCount; node++) {
+                out.ensure(Long.BYTES).putLong(graph.nodeId(node));
+            }
+            out.align();
+            for (int node = 0; node < nodeCount; node++) {
+                out.ensure(Double.BYTES).putDouble(graph.latitude(node));
+            }
+            out.align();
+            for (int node = 0; node < nodeCount; node++) {
+                out.ensure(Double.BYTES).putDouble(graph.longitude(node));
+            }
+            out.align();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                out.ensure(Integer.BYTES).putInt(graph.edgeId(edge));
+            }
+            out.align();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                out.ensure(Integer.BYTES).putInt(graph.edgeSource(edge));
+            }
+            out.align();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                out.ensure(Integer.BYTES).putInt(graph.edgeTarget(edge));
+            }
+            out.align();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                out.ensure(Float.BYTES).putFloat(graph.edgeCostLength(edge));
+            }
+            out.align();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                out.ensure(Float.BYTES).putFloat(graph.edgeLength(edge));
+            }
+            out.align();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                out.ensure(Float.BYTES).putFloat(graph.speedForward(edge));
+            }
+            out.align();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                out.ensure(Float.BYTES).putFloat(graph.speedBackward(edge));
+            }
+            out.align();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                out.ensure(Byte.BYTES).put(graph.edgeFlags(edge));
+            }
+            out.align();
+            writeBegins(out, nodeCount, graph::outBegin);
+            int outArcCount = graph.outBegin(nodeCount);
+            for (int i = 0; i < outArcCount; i++) {
+                out.ensure(Integer.BYTES).putInt(graph.outArc(i));
+            }
+            out.align();
+            writeBegins(out, nodeCount, graph::inBegin);
+            int inArcCount = graph.inBegin(nodeCount);
+            for (int i = 0; i < inArcCount; i++) {
+                out.ensure(Integer.BYTES).putInt(graph.inArc(i));
+            }
+            out.align();
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(graph.fingerprint())
+                    .putInt(nodeCount).putInt(edgeCount).putInt(outArcCount).putInt(inArcCount)
+                    .putLong(out.checksum());
+            header.clear();
+            channel.write(header, 0);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /***
+     * Mapuje graf z pliku do pamięci
+     * @param path - ścieżka pliku
+     * @param verifyChecksum - czy sprawdzić sumę kontrolną danych (wymaga jednokrotnego odczytania całego pliku)
+     * @return graf lub pusty Optional, jeśli plik nie istnieje, ma inną wersję formatu albo niezgodną sumę kontrolną
+     * @throws IOException jeśli plik jest obcięty lub nie może zostać odczytany
+     */
+    public static Optional<RoadGraph> read(Path path, boolean verifyChecksum) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < HEADER_SIZE || channel.read(header, 0) != HEADER_SIZE) {
+                return Optional.empty();
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return Optional.empty();
+            }
+            long fingerprint = header.getLong();
+            int nodeCount = header.getInt();
+            int edgeCount = header.getInt();
+            int outArcCount = header.getInt();
+            int inArcCount = header.getInt();
+            long checksum = header.getLong();
+            if (verifyChecksum && checksum(channel) != checksum) {
+                return Optional.empty();
+            }
+
+            SectionReader in = new SectionReader(channel);
+            RoadGraph graph = new RoadGraph(
+                    in.map((long) nodeCount * Long.BYTES).asLongBuffer(),
+                    in.map((long) nodeCount * Double.BYTES).asDoubleBuffer(),
+                    in.map((long) nodeCount * Double.BYTES).asDoubleBuffer(),
+                    in.map((long) edgeCount * Integer.BYTES).asIntBuffer(),
+                    in.map((long) edgeCount * Integer.BYTES).asIntBuffer(),
+                    in.map((long) edgeCount * Integer.BYTES).asIntBuffer(),
+                    in.map((long) edgeCount * Float.BYTES).asFloatBuffer(),
+                    in.map((long) edgeCount * Float.BYTES).asFloatBuffer(),
+                    in.copy((long) edgeCount * Float.BYTES).asFloatBuffer(),
+                    in.copy((long) edgeCount * Float.BYTES).asFloatBuffer(),
+                    in.copy(edgeCount),
+                    in.map((long) (nodeCount + 1) * Integer.BYTES).asIntBuffer(),
+                    in.map((long) outArcCount * Integer.BYTES).asIntBuffer(),
+                    in.map((long) (nodeCount + 1) * Integer.BYTES).asIntBuffer(),
+                    in.map((long) inArcCount * Integer.BYTES).asIntBuffer(),
+                    fingerprint);
+            if (in.position != channel.size() || !hasConsistentBegins(graph, outArcCount, inArcCount)) {
+                return Optional.empty();
+            }
+            return Optional.of(graph);
+        }
+    }
+
+    private static void writeBegins(SectionWriter out, int nodeCount, BeginAccessor begins) throws IOException {
+        for (int node = 0; node <= nodeCount; node++) {
+            out.ensure(Integer.BYTES).putInt(begins.begin(node));
+        }
+        out.align();
+    }
+
+    private static boolean hasConsistentBegins(RoadGraph graph, int outArcCount, int inArcCount) {
+        int nodeCount = graph.nodeCount();
+        return graph.outBegin(0) == 0 && graph.outBegin(nodeCount) == outArcCount
+                && graph.inBegin(0) == 0 && graph.inBegin(nodeCount) == inArcCount;
+    }
+
+    private static long checksum(FileChannel channel) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long position = HEADER_SIZE; position < channel.size(); position += VERIFY_CHUNK_SIZE) {
+            long size = Math.min(VERIFY_CHUNK_SIZE, channel.size() - position);
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+        }
+        return crc.getValue();
+    }
+
+    private static long aligned(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    @FunctionalInterface
+    private interface BeginAccessor {
+        int begin(int node);
+    }
+
+    /***
+     * Zapis kolejnych tablic za nagłówkiem przez bufor, z jednoczesnym liczeniem sumy kontrolnej
+     */
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+        private long position = HEADER_SIZE;
+
+        private SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            position += bytes;
+            return buffer;
+        }
+
+        private void align() throws IOException {
+            while (position != aligned(position)) {
+                ensure(Byte.BYTES).put((byte) 0);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            long writePosition = position - buffer.remaining();
+            while (buffer.hasRemaining()) {
+                writePosition += channel.write(buffer, writePosition);
+            }
+            buffer.clear();
+        }
+
+        private long checksum() {
+            return crc.getValue();
+        }
+    }
+
+    /***
+     * Mapowanie kolejnych tablic za nagłówkiem - każda tablica to osobne mapowanie, więc pojedyncza tablica
+     * może mieć do 2 GB
+     */
+    private static final class SectionReader {
+        private final FileChannel channel;
+        private long position = HEADER_SIZE;
+
+        private SectionReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private ByteBuffer map(long bytes) throws IOException {
+            if (position + bytes > channel.size()) {
+                throw new IOException("Road graph file is truncated");
+            }
+            MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+            position = aligned(position + bytes);
+            return section.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /***
+         * Kopiuje tablicę do bufora poza stertą - dla danych zmienianych przez RoadGraph.updateEdge, ponieważ
+         * mapowanie pliku jest tylko do odczytu
+         */
+        private ByteBuffer copy(long bytes) throws IOException {
+            ByteBuffer section = map(bytes);
+            return ByteBuffer.allocateDirect(section.capacity()).order(ByteOrder.LITTLE_ENDIAN).put(section).clear();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/***
+ * Klasa wczytująca tabelę ways do grafu RoadGraph
+ */
+@Slf4j
+public class RoadGraphLoader {
+
+    private static final String LOAD_WAYS_SQL =
+            "SELECT gid, source, target, ST_LENGTH(the_geom)/1000, length_m, maxspeed_forward, maxspeed_backward, " +
+                    "cost, reverse_cost, x1, y1, x2, y2 FROM ways;";
+
+    private static final int FETCH_SIZE = 10000;
+
+    private final DataSource dataSource;
+
+    public RoadGraphLoader(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /***
+     * Wczytuje całą tabelę ways. Wiersze pobierane są kursorem po FETCH_SIZE, więc wynik zapytania nie jest
+     * materializowany w pamięci przed zbudowaniem grafu
+     * @return RoadGraph
+     */
+    public RoadGraph load() {
+        long start = System.currentTimeMillis();
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(LOAD_WAYS_SQL)) {
+                statement.setFetchSize(FETCH_SIZE);
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        builder.addEdge(result.getLong(1), result.getLong(2), result.getLong(3),
+                                result.getDouble(4), result.getDouble(5), result.getDouble(6), result.getDouble(7),
+                                result.getDouble(8) >= 0, result.getDouble(9) >= 0,
+                                result.getDouble(10), result.getDouble(11), result.getDouble(12), result.getDouble(13));
+                    }
+                }
+            } finally {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            log.error("SQLException has occurred with message: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+
+        RoadGraph graph = builder.build();
+        log.info("Road graph loaded in " + (System.currentTimeMillis() - start) + " ms: "
+                + graph.nodeCount() + " nodes, " + graph.edgeCount() + " edges");
+        return graph;
+    }
+}
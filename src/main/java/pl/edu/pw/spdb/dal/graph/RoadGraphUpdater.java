@@ -0,0 +1,66 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import pl.edu.pw.spdb.dal.WaysChangedEvent;
+
+/***
+ * Nanosi zmiany tabeli ways na graf w pamięci bez ponownego wczytywania tabeli. Zmiana ograniczeń prędkości lub
+ * kierunków przejazdu i usunięcie wiersza (zamknięcie obu kierunków) są nanoszone na krawędź grafu. Nowe wiersze
+ * zmieniają listy sąsiedztwa, więc wymagają ponownego zapisania grafu (SpdbTools export-graph) i restartu.
+ * Po zmianie porzucane są hierarchie skrótów, a punkty orientacyjne ALT tylko wtedy, gdy zmiana może obniżyć koszt
+ * krawędzi - wyższe koszty nie psują dolnych oszacowań.
+ * Nasłuchuje przed pozostałymi odbiorcami zmian, aby trasy wyznaczane po unieważnieniu pamięci podręcznej
+ * korzystały już ze zmienionego grafu
+ */
+@Component
+@Profile("in-memory")
+@Slf4j
+public class RoadGraphUpdater {
+
+    private final RoadGraph graph;
+    private final ContractionHierarchyRegistry hierarchies;
+    private final LandmarkRegistry landmarks;
+
+    public RoadGraphUpdater(RoadGraph graph, ContractionHierarchyRegistry hierarchies, LandmarkRegistry landmarks) {
+        this.graph = graph;
+        this.hierarchies = hierarchies;
+        this.landmarks = landmarks;
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onWaysChanged(WaysChangedEvent event) {
+        if (event.operation() == WaysChangedEvent.Operation.INSERT
+                || event.operation() == WaysChangedEvent.Operation.UNKNOWN) {
+            log.warn("Change of ways table " + event
+                    + " cannot be applied to the in-memory road graph - export the graph again and restart");
+            return;
+        }
+        int edge = graph.edgeIndex(event.gid());
+        if (edge < 0) {
+            log.warn("Edge " + event.gid() + " is not in the in-memory road graph - export the graph again and restart");
+            return;
+        }
+
+        boolean applied;
+        if (event.operation() == WaysChangedEvent.Operation.DELETE) {
+            applied = graph.updateEdge(edge, graph.speedForward(edge), graph.speedBackward(edge), (byte) 0);
+        } else {
+            applied = graph.updateEdge(edge, (float) event.newSpeedForward(), (float) event.newSpeedBackward(),
+                    event.newFlags());
+        }
+        if (!applied) {
+            log.warn("Edge " + event.gid() + " was opened in a direction missing from the in-memory road graph "
+                    + "- export the graph again and restart");
+        }
+        hierarchies.invalidate();
+        if (event.canLowerCosts()) {
+            landmarks.invalidate();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.Arrays;
+
+/***
+ * Stan pojedynczego przeszukiwania grafu: odległości, łuki-rodzice, znaczniki odwiedzin i kopiec.
+ * Tablice mają rozmiar grafu i są używane wielokrotnie - zamiast czyszczenia zwiększany jest numer przeszukiwania,
+ * a wpis jest ważny tylko wtedy, gdy jego znacznik jest równy bieżącemu numerowi.
+ */
+public final class SearchSpace {
+
+    private final double[] distances;
+    private final int[] parentArcs;
+    private final int[] reachedStamps;
+    private final int[] settledStamps;
+    private final MinHeap heap = new MinHeap();
+    private int stamp;
+    private int settledCount;
+
+    public SearchSpace(int nodeCount) {
+        this.distances = new double[nodeCount];
+        this.parentArcs = new int[nodeCount];
+        this.reachedStamps = new int[nodeCount];
+        this.settledStamps = new int[nodeCount];
+    }
+
+    /***
+     * Przygotowuje obiekt do nowego przeszukiwania
+     */
+    public void reset() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(reachedStamps, 0);
+            Arrays.fill(settledStamps, 0);
+            stamp = 1;
+        }
+        heap.clear();
+        settledCount = 0;
+    }
+
+    public int capacity() {
+        return distances.length;
+    }
+
+    public boolean isReached(int node) {
+        return reachedStamps[node] == stamp;
+    }
+
+    public double distance(int node) {
+        return reachedStamps[node] == stamp ? distances[node] : Double.POSITIVE_INFINITY;
+    }
+
+    public int parentArc(int node) {
+        return parentArcs[node];
+    }
+
+    /***
+     * Ustawia odległość i łuk-rodzica wierzchołka oraz wstawia go do kopca z zadanym priorytetem
+     */
+    public void relax(int node, double distance, int parentArc, double priority) {
+        reachedStamps[node] = stamp;
+        distances[node] = distance;
+        parentArcs[node] = parentArc;
+        heap.push(node, priority);
+    }
+
+    public boolean isSettled(int node) {
+        return settledStamps[node] == stamp;
+    }
+
+    public void settle(int node) {
+        settledStamps[node] = stamp;
+        settledCount++;
+    }
+
+    public int settledCount() {
+        return settledCount;
+    }
+
+    MinHeap heap() {
+        return heap;
+    }
+}
@@ -0,0 +1,30 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/***
+ * Pula obiektów SearchSpace - pozwala równoległym zapytaniom korzystać z osobnych tablic bez alokowania ich
+ * przy każdym wyszukiwaniu
+ */
+public class SearchSpacePool {
+
+    private final int nodeCount;
+    private final ConcurrentLinkedQueue<SearchSpace> spaces = new ConcurrentLinkedQueue<>();
+
+    public SearchSpacePool(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    public SearchSpace acquire() {
+        SearchSpace space = spaces.poll();
+        if (space == null) {
+            space = new SearchSpace(nodeCount);
+        }
+        space.reset();
+        return space;
+    }
+
+    public void release(SearchSpace space) {
+        spaces.offer(space);
+    }
+}
@@ -0,0 +1,133 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.concurrent.CancellationException;
+
+/***
+ * Drzewo najtańszych ścieżek z wierzchołka root (drzewo w przód) lub do wierzchołka root (drzewo wstecz) rozwijane
+ * algorytmem Dijkstry tylko tak daleko, jak jest to potrzebne. Stan wyszukiwania jest zachowywany pomiędzy
+ * wywołaniami, więc ścieżka do wierzchołka leżącego w już rozwiniętej części drzewa jest odczytywana bez
+ * wyszukiwania, a dla dalszego wierzchołka wyszukiwanie jest kontynuowane od miejsca, w którym się zatrzymało
+ */
+public class SearchTree {
+
+    /***
+     * Co ile ustalonych wierzchołków sprawdzane jest przerwanie wątku
+     */
+    private static final int INTERRUPT_CHECK_MASK = 0xFFF;
+
+    private final RoadGraph graph;
+    private final int root;
+    private final boolean backward;
+    private final CostProfile profile;
+    private final SearchSpace space;
+
+    /***
+     * @param graph - graf
+     * @param root - korzeń drzewa
+     * @param backward - czy drzewo zawiera ścieżki do korzenia zamiast z korzenia
+     * @param profile - profil kosztu
+     */
+    public SearchTree(RoadGraph graph, int root, boolean backward, CostProfile profile) {
+        this.graph = graph;
+        this.root = root;
+        this.backward = backward;
+        this.profile = profile;
+        this.space = new SearchSpace(graph.nodeCount());
+        space.reset();
+        space.relax(root, 0, -1, 0);
+    }
+
+    public int root() {
+        return root;
+    }
+
+    public boolean isBackward() {
+        return backward;
+    }
+
+    public CostProfile profile() {
+        return profile;
+    }
+
+    public int settledCount() {
+        return space.settledCount();
+    }
+
+    /***
+     * Wyznacza najtańszą ścieżkę pomiędzy korzeniem a wierzchołkiem, w razie potrzeby rozwijając drzewo.
+     * Przerwanie wyszukiwania pozostawia drzewo w stanie, od którego można je dalej rozwijać
+     * @param node - koniec (drzewo w przód) lub początek (drzewo wstecz) ścieżki
+     * @return ścieżka w kolejności przejazdu; settledNodes to liczba wierzchołków ustalonych w tym wywołaniu
+     * @throws CancellationException jeśli wątek wyszukiwania został przerwany
+     */
+    public ShortestPath path(int node) {
+        return path(node, Integer.MAX_VALUE);
+    }
+
+    /***
+     * Wyznacza ścieżkę jak path(node), rozwijając drzewo najwyżej o maxSettled wierzchołków. Drzewo rozwinięte
+     * w tym wywołaniu jest zachowywane, więc kolejne wywołanie kontynuuje wyszukiwanie
+     * @param node - koniec (drzewo w przód) lub początek (drzewo wstecz) ścieżki
+     * @param maxSettled - największa liczba wierzchołków, które można ustalić w tym wywołaniu
+     * @return ścieżka lub null, jeśli wierzchołek nie został osiągnięty w ramach limitu
+     * @throws CancellationException jeśli wątek wyszukiwania został przerwany
+     */
+    public ShortestPath path(int node, int maxSettled) {
+        int settledBefore = space.settledCount();
+        grow(node, settledBefore + (long) maxSettled);
+        int settled = space.settledCount() - settledBefore;
+        if (!space.isSettled(node)) {
+            return space.heap().isEmpty() ? ShortestPath.notFound(settled) : null;
+        }
+
+        IntList arcs = new IntList();
+        for (int current = node; current != root; ) {
+            int arc = space.parentArc(current);
+            arcs.add(arc);
+            current = backward ? graph.arcHead(arc) : graph.arcTail(arc);
+        }
+        int[] path = arcs.toArray();
+        if (!backward) {
+            reverse(path);
+        }
+        return new ShortestPath(path, space.distance(node), settled);
+    }
+
+    private void grow(int node, long settledLimit) {
+        MinHeap heap = space.heap();
+        while (!space.isSettled(node) && !heap.isEmpty() && space.settledCount() < settledLimit) {
+            // sprawdzenie przed ustaleniem wierzchołka - przerwanie nie zostawia wierzchołka z nierozluźnionymi łukami
+            if ((space.settledCount() & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Route search interrupted");
+            }
+            int current = heap.pop();
+            if (space.isSettled(current)) {
+                continue;
+            }
+            space.settle(current);
+
+            double distance = space.distance(current);
+            int begin = backward ? graph.inBegin(current) : graph.outBegin(current);
+            int end = backward ? graph.inEnd(current) : graph.outEnd(current);
+            for (int i = begin; i < end; i++) {
+                int arc = backward ? graph.inArc(i) : graph.outArc(i);
+                int next = backward ? graph.arcTail(arc) : graph.arcHead(arc);
+                if (space.isSettled(next)) {
+                    continue;
+                }
+                double candidate = distance + graph.arcCost(arc, profile);
+                if (candidate < space.distance(next)) {
+                    space.relax(next, candidate, arc, candidate);
+                }
+            }
+        }
+    }
+
+    private static void reverse(int[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+}
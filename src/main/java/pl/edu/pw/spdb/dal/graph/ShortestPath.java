@@ -0,0 +1,18 @@
+package pl.edu.pw.spdb.dal.graph;
+
+/***
+ * Wynik przeszukiwania grafu
+ * @param arcs - kolejne łuki ścieżki od początku do końca, null jeśli ścieżka nie istnieje
+ * @param cost - koszt ścieżki
+ * @param settledNodes - liczba wierzchołków zdjętych z kopca podczas przeszukiwania
+ */
+public record ShortestPath(int[] arcs, double cost, int settledNodes) {
+
+    public static ShortestPath notFound(int settledNodes) {
+        return new ShortestPath(null, Double.POSITIVE_INFINITY, settledNodes);
+    }
+
+    public boolean isFound() {
+        return arcs != null;
+    }
+}
@@ -0,0 +1,227 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Pamięć podręczna kafelków grafu o rozmiarze ograniczonym łączną liczbą krawędzi - po przekroczeniu limitu usuwane
+ * są najdawniej używane kafelki. Kafelek używany przez trwające wyszukiwanie jest przypięty i nie może zostać
+ * usunięty, więc przez czas wyszukiwania limit może zostać chwilowo przekroczony. Równoczesne żądania tego samego
+ * kafelka są łączone - do bazy trafia tylko jedno zapytanie
+ */
+public class TileCache {
+
+    private final TileLoader loader;
+    private final double tileSize;
+    private final long maxEdges;
+
+    private final LinkedHashMap<TileKey, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<TileKey, CompletableFuture<Tile>> inFlight = new ConcurrentHashMap<>();
+    private long cachedEdges;
+    /***
+     * Zwiększana przy każdym unieważnieniu - kafelek wczytany przed unieważnieniem nie jest zapamiętywany
+     */
+    private long generation;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /***
+     * @param loader - źródło kafelków
+     * @param tileSize - bok kafelka w stopniach
+     * @param maxEdges - limit łącznej liczby krawędzi nieprzypiętych kafelków
+     */
+    public TileCache(TileLoader loader, double tileSize, long maxEdges) {
+        this.loader = loader;
+        this.tileSize = tileSize;
+        this.maxEdges = maxEdges;
+    }
+
+    public double tileSize() {
+        return tileSize;
+    }
+
+    /***
+     * Zwraca przypięty kafelek, wczytując go, jeśli nie ma go w pamięci podręcznej. Każde wywołanie musi zostać
+     * zakończone wywołaniem release
+     * @param key - kafelek
+     * @return Tile
+     */
+    public Tile acquire(TileKey key) {
+        Tile cached = pinIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<Tile> future = new CompletableFuture<>();
+        CompletableFuture<Tile> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            Tile tile = await(running);
+            synchronized (tiles) {
+                tile.pins++;
+            }
+            hits.increment();
+            return tile;
+        }
+
+        try {
+            // wątek, który przed chwilą zakończył wczytywanie tego kafelka, mógł już go zapisać
+            Tile tile = pinIfPresent(key);
+            if (tile != null) {
+                hits.increment();
+            } else {
+                long loadedGeneration;
+                synchronized (tiles) {
+                    loadedGeneration = generation;
+                }
+                loads.increment();
+                tile = new Tile(key, loader.load(key, tileSize));
+                put(tile, loadedGeneration);
+            }
+            future.complete(tile);
+            return tile;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /***
+     * Odpina kafelek zwrócony przez acquire
+     * @param tile - kafelek
+     */
+    public void release(Tile tile) {
+        synchronized (tiles) {
+            tile.pins--;
+            if (tile.pins == 0) {
+                evict();
+            }
+        }
+    }
+
+    /***
+     * Usuwa kafelki zawierające krawędź - zostaną wczytane ponownie z aktualnymi danymi. Wyszukiwania, które już
+     * przypięły kafelek, korzystają z niego do końca
+     * @param gid - id krawędzi
+     */
+    public void invalidateEdge(long gid) {
+        synchronized (tiles) {
+            generation++;
+            Iterator<Tile> iterator = tiles.values().iterator();
+            while (iterator.hasNext()) {
+                Tile tile = iterator.next();
+                if (tile.graph.edgeIndex(gid) >= 0) {
+                    iterator.remove();
+                    cachedEdges -= tile.graph.edgeCount();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (tiles) {
+            generation++;
+            tiles.clear();
+            cachedEdges = 0;
+        }
+    }
+
+    public TileCacheStats getStats() {
+        synchronized (tiles) {
+            return new TileCacheStats(loads.sum(), hits.sum(), evictions.sum(), tiles.size(), cachedEdges);
+        }
+    }
+
+    private Tile pinIfPresent(TileKey key) {
+        synchronized (tiles) {
+            Tile tile = tiles.get(key);
+            if (tile != null) {
+                tile.pins++;
+            }
+            return tile;
+        }
+    }
+
+    private void put(Tile tile, long loadedGeneration) {
+        synchronized (tiles) {
+            tile.pins++;
+            if (loadedGeneration != generation) {
+                return;
+            }
+            Tile previous = tiles.put(tile.key, tile);
+            if (previous != null) {
+                cachedEdges -= previous.graph.edgeCount();
+            }
+            cachedEdges += tile.graph.edgeCount();
+            evict();
+        }
+    }
+
+    /***
+     * Usuwa najdawniej używane nieprzypięte kafelki, dopóki łączna liczba krawędzi przekracza limit
+     */
+    private void evict() {
+        Iterator<Map.Entry<TileKey, Tile>> iterator = tiles.entrySet().iterator();
+        while (cachedEdges > maxEdges && iterator.hasNext()) {
+            Tile tile = iterator.next().getValue();
+            if (tile.pins == 0) {
+                iterator.remove();
+                cachedEdges -= tile.graph.edgeCount();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static Tile await(CompletableFuture<Tile> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /***
+     * Wczytany kafelek. Liczba przypięć chroniona jest monitorem mapy kafelków
+     */
+    public static final class Tile {
+        private final TileKey key;
+        private final RoadGraph graph;
+        private int pins;
+
+        private Tile(TileKey key, RoadGraph graph) {
+            this.key = key;
+            this.graph = graph;
+        }
+
+        public TileKey key() {
+            return key;
+        }
+
+        public RoadGraph graph() {
+            return graph;
+        }
+    }
+
+    /***
+     * Statystyki pamięci podręcznej kafelków
+     * @param loads - liczba kafelków wczytanych z bazy
+     * @param hits - liczba żądań obsłużonych bez zapytania do bazy
+     * @param evictions - liczba kafelków usuniętych z powodu limitu krawędzi
+     * @param size - aktualna liczba kafelków
+     * @param edges - łączna liczba krawędzi kafelków
+     */
+    public record TileCacheStats(long loads, long hits, long evictions, int size, long edges) {
+    }
+}
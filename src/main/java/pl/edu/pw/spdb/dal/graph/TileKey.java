@@ -0,0 +1,38 @@
+package pl.edu.pw.spdb.dal.graph;
+
+/***
+ * Kafelek grafu - kwadrat siatki o boku size stopni, zawierający punkty o szerokości geograficznej
+ * [row * size, (row + 1) * size) i długości geograficznej [column * size, (column + 1) * size)
+ * @param row - numer wiersza siatki
+ * @param column - numer kolumny siatki
+ */
+public record TileKey(int row, int column) {
+
+    public static TileKey of(double latitude, double longitude, double size) {
+        return new TileKey(row(latitude, size), column(longitude, size));
+    }
+
+    static int row(double latitude, double size) {
+        return (int) Math.floor(latitude / size);
+    }
+
+    static int column(double longitude, double size) {
+        return (int) Math.floor(longitude / size);
+    }
+
+    public double minLatitude(double size) {
+        return row * size;
+    }
+
+    public double minLongitude(double size) {
+        return column * size;
+    }
+
+    public double maxLatitude(double size) {
+        return (row + 1) * size;
+    }
+
+    public double maxLongitude(double size) {
+        return (column + 1) * size;
+    }
+}
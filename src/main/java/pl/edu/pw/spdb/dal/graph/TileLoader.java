@@ -0,0 +1,31 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import pl.edu.pw.spdb.model.Point;
+
+/***
+ * Źródło kafelków grafu dla TileCache
+ */
+public interface TileLoader {
+
+    /***
+     * Wczytuje kafelek - wszystkie krawędzie, których wierzchołek source lub target leży w kafelku. Dzięki temu
+     * wierzchołek leżący w kafelku ma w nim wszystkie swoje łuki
+     * @param key - kafelek
+     * @param size - bok kafelka w stopniach
+     * @return graf krawędzi kafelka
+     */
+    RoadGraph load(TileKey key, double size);
+
+    /***
+     * Współrzędne wierzchołka
+     * @param nodeId - id wierzchołka w bazie
+     * @return współrzędne lub null, jeśli wierzchołek nie istnieje
+     */
+    Point locate(long nodeId);
+
+    /***
+     * Największe ograniczenie prędkości w całym grafie - wyznacza dopuszczalną heurystykę A* niezależnie od tego,
+     * które kafelki są wczytane
+     */
+    double maxSpeed();
+}
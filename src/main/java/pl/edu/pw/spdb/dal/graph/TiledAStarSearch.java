@@ -0,0 +1,239 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import pl.edu.pw.spdb.model.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/***
+ * Algorytm A* na grafie dzielonym na kafelki wczytywane dopiero wtedy, gdy dotrze do nich front wyszukiwania.
+ * Ten sam wierzchołek ma w każdym kafelku inny indeks, więc stan wyszukiwania indeksowany jest id wierzchołka z bazy.
+ * Wierzchołek rozwijany jest w kafelku zawierającym jego współrzędne - tylko tam ma wszystkie swoje łuki. Koszt
+ * łuków i heurystyka (odległość w linii prostej i największa prędkość w całym grafie) są takie same jak w AStarSearch,
+ * więc znaleziona ścieżka ma ten sam koszt co w całym grafie. Użyte kafelki są przypięte do końca wyszukiwania
+ */
+public class TiledAStarSearch {
+
+    /***
+     * Co ile ustalonych wierzchołków sprawdzane jest przerwanie wątku
+     */
+    private static final int INTERRUPT_CHECK_MASK = 0xFFF;
+
+    private final TileCache tiles;
+    private final TileLoader loader;
+
+    public TiledAStarSearch(TileCache tiles, TileLoader loader) {
+        this.tiles = tiles;
+        this.loader = loader;
+    }
+
+    /***
+     * Wyszukuje najtańszą ścieżkę pomiędzy wierzchołkami
+     * @param sourceId - id wierzchołka początkowego w bazie
+     * @param targetId - id wierzchołka końcowego w bazie
+     * @param profile - profil kosztu
+     * @param graphMaxSpeed - największe ograniczenie prędkości w całym grafie
+     * @return TiledPath
+     * @throws CancellationException jeśli wątek wyszukiwania został przerwany
+     */
+    public TiledPath search(long sourceId, long targetId, CostProfile profile, double graphMaxSpeed) {
+        Point sourcePoint = loader.locate(sourceId);
+        Point targetPoint = loader.locate(targetId);
+        if (sourcePoint == null || targetPoint == null) {
+            return TiledPath.notFound(0, 0);
+        }
+
+        // zapas na błąd zaokrąglenia długości krawędzi zapisanych jako float
+        double factor = graphMaxSpeed > 0 ? profile.minimalCostPerLength(graphMaxSpeed) * 0.9999 : 0;
+        double targetLatitude = targetPoint.latitude();
+        double targetLongitude = targetPoint.longitude();
+        double tileSize = tiles.tileSize();
+
+        State state = new State();
+        MinHeap heap = new MinHeap();
+        Map<TileKey, TileCache.Tile> pinned = new HashMap<>();
+        try {
+            int source = state.add(sourceId, sourcePoint.latitude(), sourcePoint.longitude());
+            state.distances[source] = 0;
+            heap.push(source, 0);
+
+            int settledCount = 0;
+            TileCache.Tile tile = null;
+            while (!heap.isEmpty()) {
+                int node = heap.pop();
+                if (state.settled[node]) {
+                    continue;
+                }
+                state.settled[node] = true;
+                settledCount++;
+                if ((settledCount & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Route search interrupted");
+                }
+                if (state.ids[node] == targetId) {
+                    return state.path(node, settledCount, pinned.size());
+                }
+
+                int row = TileKey.row(state.latitudes[node], tileSize);
+                int column = TileKey.column(state.longitudes[node], tileSize);
+                if (tile == null || tile.key().row() != row || tile.key().column() != column) {
+                    tile = pinned.computeIfAbsent(new TileKey(row, column), tiles::acquire);
+                }
+                RoadGraph graph = tile.graph();
+                int index = graph.nodeIndex(state.ids[node]);
+                if (index < 0) {
+                    continue;
+                }
+
+                double distance = state.distances[node];
+                for (int i = graph.outBegin(index), end = graph.outEnd(index); i < end; i++) {
+                    int arc = graph.outArc(i);
+                    int head = graph.arcHead(arc);
+                    int next = state.indexOf(graph.nodeId(head));
+                    if (next >= 0 && state.settled[next]) {
+                        continue;
+                    }
+                    double candidate = distance + graph.arcCost(arc, profile);
+                    if (candidate == Double.POSITIVE_INFINITY) {
+                        continue;
+                    }
+                    if (next < 0) {
+                        next = state.add(graph.nodeId(head), graph.latitude(head), graph.longitude(head));
+                    }
+                    if (candidate < state.distances[next]) {
+                        state.distances[next] = candidate;
+                        state.parents[next] = node;
+                        state.parentGraphs[next] = graph;
+                        state.parentArcs[next] = arc;
+                        double dLat = state.latitudes[next] - targetLatitude;
+                        double dLon = state.longitudes[next] - targetLongitude;
+                        heap.push(next, candidate + Math.sqrt(dLat * dLat + dLon * dLon) / 1000 * factor);
+                    }
+                }
+            }
+            return TiledPath.notFound(settledCount, pinned.size());
+        } finally {
+            pinned.values().forEach(tiles::release);
+        }
+    }
+
+    /***
+     * Wynik przeszukiwania grafu dzielonego na kafelki
+     * @param graphs - kafelki, z których pochodzą kolejne łuki ścieżki, null jeśli ścieżka nie istnieje
+     * @param arcs - kolejne łuki ścieżki od początku do końca (indeksy w odpowiadających im kafelkach)
+     * @param cost - koszt ścieżki
+     * @param settledNodes - liczba wierzchołków zdjętych z kopca podczas przeszukiwania
+     * @param tiles - liczba kafelków użytych przez wyszukiwanie
+     */
+    public record TiledPath(RoadGraph[] graphs, int[] arcs, double cost, int settledNodes, int tiles) {
+
+        public static TiledPath notFound(int settledNodes, int tiles) {
+            return new TiledPath(null, null, Double.POSITIVE_INFINITY, settledNodes, tiles);
+        }
+
+        public boolean isFound() {
+            return arcs != null;
+        }
+    }
+
+    /***
+     * Stan wyszukiwania w rosnących tablicach prymitywów. Lokalne indeksy wierzchołków nadawane są w kolejności
+     * odkrycia, a id z bazy mapowane są na nie tablicą z adresowaniem otwartym
+     */
+    private static final class State {
+        private long[] ids = new long[256];
+        private double[] latitudes = new double[256];
+        private double[] longitudes = new double[256];
+        private double[] distances = new double[256];
+        private int[] parents = new int[256];
+        private RoadGraph[] parentGraphs = new RoadGraph[256];
+        private int[] parentArcs = new int[256];
+        private boolean[] settled = new boolean[256];
+        private int size;
+
+        private long[] slotIds = new long[512];
+        private int[] slotNodes = new int[512];
+
+        State() {
+            Arrays.fill(slotNodes, -1);
+        }
+
+        int indexOf(long id) {
+            int mask = slotIds.length - 1;
+            for (int slot = hash(id) & mask; slotNodes[slot] >= 0; slot = (slot + 1) & mask) {
+                if (slotIds[slot] == id) {
+                    return slotNodes[slot];
+                }
+            }
+            return -1;
+        }
+
+        int add(long id, double latitude, double longitude) {
+            if (size == ids.length) {
+                int capacity = size << 1;
+                ids = Arrays.copyOf(ids, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                distances = Arrays.copyOf(distances, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                parentGraphs = Arrays.copyOf(parentGraphs, capacity);
+                parentArcs = Arrays.copyOf(parentArcs, capacity);
+                settled = Arrays.copyOf(settled, capacity);
+            }
+            // tablica mieszająca wypełniona najwyżej w połowie
+            if (size * 2 >= slotIds.length) {
+                rehash(slotIds.length << 1);
+            }
+            int node = size++;
+            ids[node] = id;
+            latitudes[node] = latitude;
+            longitudes[node] = longitude;
+            distances[node] = Double.POSITIVE_INFINITY;
+            parents[node] = -1;
+            insert(id, node);
+            return node;
+        }
+
+        TiledPath path(int target, int settledCount, int tileCount) {
+            List<Integer> nodes = new ArrayList<>();
+            for (int node = target; parents[node] >= 0; node = parents[node]) {
+                nodes.add(node);
+            }
+            RoadGraph[] graphs = new RoadGraph[nodes.size()];
+            int[] arcs = new int[nodes.size()];
+            for (int i = 0; i < arcs.length; i++) {
+                int node = nodes.get(arcs.length - 1 - i);
+                graphs[i] = parentGraphs[node];
+                arcs[i] = parentArcs[node];
+            }
+            return new TiledPath(graphs, arcs, distances[target], settledCount, tileCount);
+        }
+
+        private void rehash(int capacity) {
+            slotIds = new long[capacity];
+            slotNodes = new int[capacity];
+            Arrays.fill(slotNodes, -1);
+            for (int node = 0; node < size; node++) {
+                insert(ids[node], node);
+            }
+        }
+
+        private void insert(long id, int node) {
+            int mask = slotIds.length - 1;
+            int slot = hash(id) & mask;
+            while (slotNodes[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            slotIds[slot] = id;
+            slotNodes[slot] = node;
+        }
+
+        private static int hash(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package pl.edu.pw.spdb.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/***
+ * Konfiguracja rejestrów metryk - metryki są publikowane przez JMX (domena "metrics") oraz w formacie Prometheus
+ * na lokalnym porcie metrics.prometheus.port
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public PrometheusMeterRegistry prometheusMeterRegistry() {
+        return new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    }
+
+    /***
+     * Rejestr, do którego aplikacja zapisuje metryki - przekazuje je do wszystkich włączonych rejestrów
+     * @param prometheusMeterRegistry - rejestr Prometheus
+     * @param jmxEnabled - czy metryki mają być dostępne przez JMX
+     * @return MeterRegistry
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    public MeterRegistry meterRegistry(PrometheusMeterRegistry prometheusMeterRegistry,
+                                       @Value("${metrics.jmx.enabled}") boolean jmxEnabled) {
+        CompositeMeterRegistry registry = new CompositeMeterRegistry();
+        registry.add(prometheusMeterRegistry);
+        if (jmxEnabled) {
+            registry.add(new JmxMeterRegistry(JmxConfig.DEFAULT, Clock.SYSTEM));
+        }
+        return registry;
+    }
+
+    @Bean(destroyMethod = "stop")
+    public PrometheusScrapeServer prometheusScrapeServer(PrometheusMeterRegistry prometheusMeterRegistry,
+                                                         @Value("${metrics.prometheus.host}") String host,
+                                                         @Value("${metrics.prometheus.port}") int port) {
+        PrometheusScrapeServer server = new PrometheusScrapeServer(prometheusMeterRegistry, host, port);
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,64 @@
+package pl.edu.pw.spdb.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/***
+ * Minimalny serwer HTTP udostępniający metryki pod adresem /metrics do pobierania przez Prometheus.
+ * Port 0 wyłącza serwer
+ */
+@Slf4j
+public class PrometheusScrapeServer {
+
+    private static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PrometheusMeterRegistry registry;
+    private final String host;
+    private final int port;
+    private HttpServer server;
+
+    public PrometheusScrapeServer(PrometheusMeterRegistry registry, String host, int port) {
+        this.registry = registry;
+        this.host = host;
+        this.port = port;
+    }
+
+    public void start() {
+        if (port <= 0) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            server.createContext(PATH, this::handle);
+            server.start();
+            log.info("Prometheus metrics available at http://" + host + ":" + port + PATH);
+        } catch (IOException e) {
+            // brak metryk nie powinien blokować uruchomienia aplikacji
+            log.error("Prometheus endpoint could not be started with message: " + e.getMessage());
+            server = null;
+        }
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
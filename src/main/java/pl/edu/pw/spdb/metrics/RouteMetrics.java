@@ -0,0 +1,223 @@
+package pl.edu.pw.spdb.metrics;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+import pl.edu.pw.spdb.model.Route;
+
+import java.util.Locale;
+
+/***
+ * Metryki kolejnych etapów wyszukiwania i wyświetlania trasy. Wszystkie metryki mają znaczniki maxSpeed (przedział
+ * prędkości) oraz cost (parametr kosztu zaokrąglony do 0.1). Dla etapów wykonywanych w warstwie dostępu do danych
+ * znaczniki pochodzą z wyszukiwania otwartego w bieżącym wątku metodą search
+ */
+@Component
+public class RouteMetrics {
+
+    public static final String SNAP = "spdb.route.snap";
+    public static final String QUERY = "spdb.route.query";
+    public static final String PARSE = "spdb.route.parse";
+    public static final String LINE = "spdb.route.line";
+    public static final String MAP_ADD = "spdb.map.line.add";
+    public static final String SEGMENTS = "spdb.route.segments";
+    public static final String FAILURES = "spdb.route.failures";
+    public static final String SERVER_REQUEST = "spdb.server.request";
+
+    private static final String NONE = "none";
+    private static final String MULTI = "multi";
+    private static final String TRADE_OFFS = "tradeoffs";
+
+    private final MeterRegistry registry;
+    private final ThreadLocal<Tags> currentSearch = new ThreadLocal<>();
+
+    public RouteMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /***
+     * Otwiera wyszukiwanie w bieżącym wątku - metryki zapisywane do jego zamknięcia dostają jego znaczniki
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param costParameter - parametr kosztu
+     * @return Search, który należy zamknąć po zakończeniu wyszukiwania
+     */
+    public Search search(int maxSpeed, double costParameter) {
+        return open(tags(speedBucket(maxSpeed), costParameter));
+    }
+
+    /***
+     * Otwiera wyszukiwanie tras dla wielu prędkości jednocześnie (znacznik maxSpeed=multi)
+     * @param costParameter - parametr kosztu
+     * @return Search, który należy zamknąć po zakończeniu wyszukiwania
+     */
+    public Search searchMany(double costParameter) {
+        return open(tags(MULTI, costParameter));
+    }
+
+    /***
+     * Otwiera wyszukiwanie kompromisów długości i czasu - wiele wartości parametru kosztu (znacznik cost=tradeoffs)
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @return Search, który należy zamknąć po zakończeniu wyszukiwania
+     */
+    public Search searchTradeOffs(int maxSpeed) {
+        return open(Tags.of("maxSpeed", speedBucket(maxSpeed), "cost", TRADE_OFFS));
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /***
+     * Zapisuje czas wyszukania najbliższego wierzchołka
+     * @param sample - pomiar rozpoczęty metodą start
+     * @param isStartPoint - czy wyszukiwano początek trasy
+     */
+    public void recordSnap(Timer.Sample sample, boolean isStartPoint) {
+        sample.stop(timer(SNAP, currentTags().and("endpoint", isStartPoint ? "start" : "end")));
+    }
+
+    /***
+     * Zapisuje czas wyszukania najbliższych wierzchołków początku i końca trasy jednym zapytaniem
+     * @param sample - pomiar rozpoczęty metodą start
+     */
+    public void recordSnaps(Timer.Sample sample) {
+        sample.stop(timer(SNAP, currentTags().and("endpoint", "both")));
+    }
+
+    /***
+     * Zapisuje czas wykonania zapytania wyszukującego trasę (lub wyszukiwania w grafie w pamięci)
+     */
+    public void recordQuery(Timer.Sample sample) {
+        sample.stop(timer(QUERY, currentTags()));
+    }
+
+    /***
+     * Zapisuje czas parsowania wyniku zapytania
+     */
+    public void recordParse(Timer.Sample sample) {
+        sample.stop(timer(PARSE, currentTags()));
+    }
+
+    /***
+     * Zapisuje czas budowy linii trasy do wyświetlenia
+     */
+    public void recordLine(Timer.Sample sample, Route route) {
+        sample.stop(timer(LINE, tags(route)));
+    }
+
+    /***
+     * Zapisuje czas dodania linii trasy do mapy
+     */
+    public void recordMapAdd(Timer.Sample sample, Route route) {
+        sample.stop(timer(MAP_ADD, tags(route)));
+    }
+
+    /***
+     * Zapisuje czas obsługi żądania serwera HTTP (łącznie z oczekiwaniem na dostęp do bazy)
+     * @param sample - pomiar rozpoczęty metodą start
+     * @param endpoint - ścieżka żądania
+     * @param status - kod odpowiedzi HTTP
+     */
+    public void recordRequest(Timer.Sample sample, String endpoint, int status) {
+        sample.stop(timer(SERVER_REQUEST, Tags.of("endpoint", endpoint, "status", String.valueOf(status))));
+    }
+
+    /***
+     * Zapisuje liczbę segmentów znalezionej trasy, a trasę pustą liczy jako nieudane wyszukiwanie
+     * @param route - wynik wyszukiwania
+     */
+    public void recordRoute(Route route) {
+        Tags tags = tags(route);
+        DistributionSummary.builder(SEGMENTS)
+                .description("Number of segments per found route")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(route.getSegments().size());
+        if (route.getSegments().isEmpty()) {
+            failure(tags, "not_found");
+        }
+    }
+
+    /***
+     * Liczy wyszukiwanie zakończone wyjątkiem
+     */
+    public void recordFailure() {
+        failure(currentTags(), "error");
+    }
+
+    /***
+     * Liczy wyszukiwanie anulowane przez rozpoczęcie nowego
+     */
+    public void recordCancellation() {
+        failure(currentTags(), "cancelled");
+    }
+
+    private void failure(Tags tags, String reason) {
+        Counter.builder(FAILURES)
+                .description("Searches which ended with an error, were cancelled or found no route")
+                .tags(tags.and("reason", reason))
+                .register(registry)
+                .increment();
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+
+    private Search open(Tags tags) {
+        Tags previous = currentSearch.get();
+        currentSearch.set(tags);
+        return new Search(previous);
+    }
+
+    private Tags currentTags() {
+        Tags tags = currentSearch.get();
+        return tags != null ? tags : Tags.of("maxSpeed", NONE, "cost", NONE);
+    }
+
+    private static Tags tags(Route route) {
+        return tags(speedBucket(route.getMaxSpeed()), route.getDistanceWeight());
+    }
+
+    private static Tags tags(String speedBucket, double costParameter) {
+        return Tags.of("maxSpeed", speedBucket, "cost", String.format(Locale.ROOT, "%.1f", costParameter));
+    }
+
+    /***
+     * Przedział prędkości - ogranicza liczbę różnych wartości znacznika
+     */
+    static String speedBucket(int maxSpeed) {
+        if (maxSpeed <= 50) {
+            return "0-50";
+        } else if (maxSpeed <= 90) {
+            return "51-90";
+        } else if (maxSpeed <= 140) {
+            return "91-140";
+        }
+        return "141+";
+    }
+
+    /***
+     * Otwarte wyszukiwanie - zamknięcie przywraca znaczniki poprzedniego wyszukiwania w wątku
+     */
+    public final class Search implements AutoCloseable {
+        private final Tags previous;
+
+        private Search(Tags previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                currentSearch.remove();
+            } else {
+                currentSearch.set(previous);
+            }
+        }
+    }
+}
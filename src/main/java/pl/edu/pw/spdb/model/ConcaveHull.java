@@ -0,0 +1,248 @@
+package pl.edu.pw.spdb.model;
+
+import java.util.Arrays;
+
+/***
+ * Wklęsła otoczka zbioru punktów wyznaczana algorytmem "gift opening" (Park, Oh): zaczynając od otoczki wypukłej,
+ * krawędź otoczki jest wgłębiana do najbliższego punktu wewnętrznego, dopóki jest ponad CONCAVITY razy dłuższa niż
+ * odległość tego punktu od bliższego końca krawędzi. Przed wyznaczeniem otoczki z każdej komórki siatki GRID_CELLS x
+ * GRID_CELLS zostawiany jest jeden punkt, co ogranicza czas obliczeń przy dokładności wystarczającej do wyświetlenia
+ */
+public final class ConcaveHull {
+
+    static final double CONCAVITY = 2.0;
+    static final int GRID_CELLS = 128;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final int[] next;
+    private final int[] previous;
+    private final boolean[] onHull;
+
+    private ConcaveHull(double[] xs, double[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+        this.next = new int[xs.length];
+        this.previous = new int[xs.length];
+        this.onHull = new boolean[xs.length];
+    }
+
+    /***
+     * Wyznacza wklęsłą otoczkę punktów
+     * @param points - punkty (długość, szerokość geograficzna)
+     * @return zamknięty pierścień otoczki - ostatni punkt jest równy pierwszemu; pusty dla pustego zbioru punktów
+     */
+    public static RouteGeometry of(CoordinateBuffer points) {
+        if (points.size() == 0) {
+            return new RouteGeometry(new double[0]);
+        }
+        double latitudeSum = 0;
+        for (int i = 0; i < points.size(); i++) {
+            latitudeSum += points.y(i);
+        }
+        // stopień szerokości jest dłuższy od stopnia długości o 1/cos(szerokość)
+        double latitudeScale = 1 / Math.cos(Math.toRadians(latitudeSum / points.size()));
+
+        CoordinateBuffer thinned = thin(points, latitudeScale);
+        double[] xs = new double[thinned.size()];
+        double[] ys = new double[thinned.size()];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = thinned.x(i);
+            ys[i] = thinned.y(i);
+        }
+
+        ConcaveHull hull = new ConcaveHull(xs, ys);
+        int first = hull.build();
+
+        CoordinateBuffer ring = new CoordinateBuffer();
+        int node = first;
+        do {
+            ring.add(xs[node], ys[node] / latitudeScale);
+            node = hull.next[node];
+        } while (node != first);
+        ring.add(xs[first], ys[first] / latitudeScale);
+        return RouteGeometry.of(ring);
+    }
+
+    /***
+     * Zostawia pierwszy punkt z każdej komórki siatki rozpiętej na prostokącie otaczającym punkty
+     * @return punkty ze współrzędną y przeskalowaną przez latitudeScale
+     */
+    private static CoordinateBuffer thin(CoordinateBuffer points, double latitudeScale) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < points.size(); i++) {
+            minX = Math.min(minX, points.x(i));
+            maxX = Math.max(maxX, points.x(i));
+            minY = Math.min(minY, points.y(i) * latitudeScale);
+            maxY = Math.max(maxY, points.y(i) * latitudeScale);
+        }
+        double cellWidth = Math.max(maxX - minX, Double.MIN_NORMAL) / GRID_CELLS;
+        double cellHeight = Math.max(maxY - minY, Double.MIN_NORMAL) / GRID_CELLS;
+
+        boolean[] taken = new boolean[GRID_CELLS * GRID_CELLS];
+        CoordinateBuffer thinned = new CoordinateBuffer();
+        for (int i = 0; i < points.size(); i++) {
+            double x = points.x(i);
+            double y = points.y(i) * latitudeScale;
+            int column = Math.min((int) ((x - minX) / cellWidth), GRID_CELLS - 1);
+            int row = Math.min((int) ((y - minY) / cellHeight), GRID_CELLS - 1);
+            if (!taken[row * GRID_CELLS + column]) {
+                taken[row * GRID_CELLS + column] = true;
+                thinned.add(x, y);
+            }
+        }
+        return thinned;
+    }
+
+    /***
+     * Wyznacza otoczkę jako listę cykliczną next/previous
+     * @return indeks punktu należącego do otoczki
+     */
+    private int build() {
+        int[] convex = convexHull();
+        for (int i = 0; i < convex.length; i++) {
+            int point = convex[i];
+            next[point] = convex[(i + 1) % convex.length];
+            previous[point] = convex[(i + convex.length - 1) % convex.length];
+            onHull[point] = true;
+        }
+        if (convex.length < 3) {
+            return convex[0];
+        }
+
+        int[] stack = new int[xs.length * 2];
+        int size = 0;
+        for (int point : convex) {
+            stack[size++] = point;
+            stack[size++] = next[point];
+        }
+        while (size > 0) {
+            int b = stack[--size];
+            int a = stack[--size];
+            if (next[a] != b) {
+                continue;
+            }
+            int candidate = nearestInnerPoint(a, b);
+            if (candidate < 0) {
+                continue;
+            }
+            double edgeLength = Math.hypot(xs[b] - xs[a], ys[b] - ys[a]);
+            double decisionDistance = Math.min(Math.hypot(xs[candidate] - xs[a], ys[candidate] - ys[a]),
+                    Math.hypot(xs[candidate] - xs[b], ys[candidate] - ys[b]));
+            if (edgeLength / decisionDistance <= CONCAVITY || intersectsHull(a, candidate, b)) {
+                continue;
+            }
+            next[a] = candidate;
+            previous[candidate] = a;
+            next[candidate] = b;
+            previous[b] = candidate;
+            onHull[candidate] = true;
+            if (size + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[size++] = a;
+            stack[size++] = candidate;
+            stack[size++] = candidate;
+            stack[size++] = b;
+        }
+        return convex[0];
+    }
+
+    /***
+     * Punkt spoza otoczki leżący po wewnętrznej stronie krawędzi a-b, najbliższy tej krawędzi i bliższy jej niż
+     * sąsiednim krawędziom otoczki
+     */
+    private int nearestInnerPoint(int a, int b) {
+        int before = previous[a];
+        int after = next[b];
+        int nearest = -1;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (int point = 0; point < xs.length; point++) {
+            if (onHull[point] || cross(a, b, point) <= 0) {
+                continue;
+            }
+            double distance = squaredSegmentDistance(point, a, b);
+            if (distance < nearestDistance
+                    && distance < squaredSegmentDistance(point, before, a)
+                    && distance < squaredSegmentDistance(point, b, after)) {
+                nearest = point;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    /***
+     * Sprawdza, czy nowe krawędzie a-p i p-b przecinają którąkolwiek z pozostałych krawędzi otoczki
+     */
+    private boolean intersectsHull(int a, int p, int b) {
+        for (int u = b; u != a; u = next[u]) {
+            int v = next[u];
+            if (segmentsIntersect(a, p, u, v) || segmentsIntersect(p, b, u, v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /***
+     * Otoczka wypukła algorytmem łańcucha monotonicznego, w kierunku przeciwnym do ruchu wskazówek zegara
+     */
+    private int[] convexHull() {
+        Integer[] order = new Integer[xs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> xs[i] != xs[j] ? Double.compare(xs[i], xs[j]) : Double.compare(ys[i], ys[j]));
+        if (order.length < 3) {
+            return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+        }
+
+        int[] hull = new int[order.length * 2];
+        int size = 0;
+        for (int point : order) {
+            while (size >= 2 && cross(hull[size - 2], hull[size - 1], point) <= 0) {
+                size--;
+            }
+            hull[size++] = point;
+        }
+        for (int i = order.length - 2, lower = size + 1; i >= 0; i--) {
+            int point = order[i];
+            while (size >= lower && cross(hull[size - 2], hull[size - 1], point) <= 0) {
+                size--;
+            }
+            hull[size++] = point;
+        }
+        // ostatni punkt jest równy pierwszemu
+        return Arrays.copyOf(hull, Math.max(size - 1, 1));
+    }
+
+    private double cross(int o, int a, int b) {
+        return (xs[a] - xs[o]) * (ys[b] - ys[o]) - (ys[a] - ys[o]) * (xs[b] - xs[o]);
+    }
+
+    private boolean segmentsIntersect(int a, int b, int c, int d) {
+        if (a == c || a == d || b == c || b == d) {
+            return false;
+        }
+        double d1 = cross(c, d, a);
+        double d2 = cross(c, d, b);
+        double d3 = cross(a, b, c);
+        double d4 = cross(a, b, d);
+        return ((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0));
+    }
+
+    private double squaredSegmentDistance(int point, int start, int end) {
+        double dx = xs[end] - xs[start];
+        double dy = ys[end] - ys[start];
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, ((xs[point] - xs[start]) * dx + (ys[point] - ys[start]) * dy) / lengthSquared));
+        double cx = xs[start] + t * dx - xs[point];
+        double cy = ys[start] + t * dy - ys[point];
+        return cx * cx + cy * cy;
+    }
+}
@@ -0,0 +1,82 @@
+package pl.edu.pw.spdb.model;
+
+import java.util.Arrays;
+
+/***
+ * Rozszerzalny bufor współrzędnych przechowywanych w jednej tablicy double (długość, szerokość, długość, ...).
+ * Dodawanie punktów nie tworzy obiektów, a wyczyszczony bufor może być użyty ponownie
+ */
+public final class CoordinateBuffer {
+
+    private double[] coordinates;
+    private int size;
+
+    public CoordinateBuffer() {
+        this(256);
+    }
+
+    public CoordinateBuffer(int initialPoints) {
+        this.coordinates = new double[Math.max(1, initialPoints) * 2];
+    }
+
+    public void add(double x, double y) {
+        if (size * 2 == coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+        }
+        coordinates[size * 2] = x;
+        coordinates[size * 2 + 1] = y;
+        size++;
+    }
+
+    /***
+     * Liczba punktów w buforze
+     */
+    public int size() {
+        return size;
+    }
+
+    public double x(int index) {
+        return coordinates[index * 2];
+    }
+
+    public double y(int index) {
+        return coordinates[index * 2 + 1];
+    }
+
+    /***
+     * Odwraca kolejność punktów z zakresu [from, to)
+     * @param from - indeks pierwszego punktu
+     * @param to - indeks za ostatnim punktem
+     */
+    public void reverse(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            double x = coordinates[i * 2];
+            double y = coordinates[i * 2 + 1];
+            coordinates[i * 2] = coordinates[j * 2];
+            coordinates[i * 2 + 1] = coordinates[j * 2 + 1];
+            coordinates[j * 2] = x;
+            coordinates[j * 2 + 1] = y;
+        }
+    }
+
+    /***
+     * Usuwa punkt o zadanym indeksie przesuwając kolejne punkty
+     * @param index - indeks punktu
+     */
+    public void remove(int index) {
+        System.arraycopy(coordinates, (index + 1) * 2, coordinates, index * 2, (size - index - 1) * 2);
+        size--;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /***
+     * Kopia zawartości bufora o dokładnym rozmiarze
+     * @return tablica współrzędnych (długość, szerokość, ...)
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(coordinates, size * 2);
+    }
+}
@@ -0,0 +1,36 @@
+package pl.edu.pw.spdb.model;
+
+import lombok.Getter;
+
+/***
+ * Obszar osiągalny z punktu początkowego w zadanym budżecie czasu lub długości: osiągnięte wierzchołki z kosztem
+ * dojazdu, krawędzie drzewa najtańszych dojazdów oraz wklęsła otoczka wierzchołków do wyświetlenia na mapie
+ */
+@Getter
+public class Isochrone {
+
+    /***
+     * Rodzaj budżetu - czas przejazdu w godzinach lub długość trasy w km
+     */
+    public enum BudgetType {
+        TIME, DISTANCE
+    }
+
+    private final long startId;
+    private final long[] vertexIds;
+    private final double[] vertexCosts;
+    private final long[] edgeIds;
+    private final RouteGeometry hull;
+
+    public Isochrone(long startId, long[] vertexIds, double[] vertexCosts, long[] edgeIds, RouteGeometry hull) {
+        this.startId = startId;
+        this.vertexIds = vertexIds;
+        this.vertexCosts = vertexCosts;
+        this.edgeIds = edgeIds;
+        this.hull = hull;
+    }
+
+    public static Isochrone empty(long startId) {
+        return new Isochrone(startId, new long[0], new double[0], new long[0], new RouteGeometry(new double[0]));
+    }
+}
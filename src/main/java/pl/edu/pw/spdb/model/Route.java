@@ -2,6 +2,7 @@ package pl.edu.pw.spdb.model;
 
 import com.sothawo.mapjfx.Coordinate;
 import com.sothawo.mapjfx.CoordinateLine;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -17,6 +18,14 @@ public class Route {
     private double distance;
     private double estimatedTime;
     private CoordinateLine coordinateLine;
+    private RouteGeometry geometry;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private RouteDetailLevels detailLevels;
+    private long startId = -1;
+    private long endId = -1;
+    private int maxSpeed;
+    private double distanceWeight;
 
     public Route(List<RouteSegment> segments, double distance, double estimatedTime) {
         this.segments = segments;
@@ -24,10 +33,64 @@ public class Route {
         this.estimatedTime = estimatedTime;
     }
 
+    /***
+     * Tworzy trasę z listy segmentów wyliczając jej długość oraz szacowany czas przejazdu
+     * @param segments - segmenty trasy w kolejności przejazdu
+     * @param maxSpeed - maksymalna prędkość pojazdu, potrzebna do wyliczenia czasu potrzebnego na pokonanie odcinka drogi
+     * @return Route
+     */
+    public static Route of(List<RouteSegment> segments, int maxSpeed) {
+        float distanceSum = 0;
+        float timeSum = 0;
+        for (RouteSegment seg : segments) {
+            distanceSum += seg.length();
+            timeSum += (seg.length() / (Math.min(seg.maxSpeedForward(), maxSpeed)));
+        }
+        Route route = new Route(segments, distanceSum, timeSum);
+        route.setMaxSpeed(maxSpeed);
+        return route;
+    }
+
+    /***
+     * Uproszczone wersje kształtu trasy dla kolejnych poziomów przybliżenia mapy, wyznaczane przy pierwszym użyciu.
+     * Jeśli kształt dróg nie jest znany upraszczana jest linia łącząca końce segmentów
+     * @return RouteDetailLevels
+     */
+    public RouteDetailLevels getDetailLevels() {
+        if (detailLevels == null) {
+            RouteGeometry shape = geometry;
+            if (shape == null) {
+                CoordinateBuffer buffer = new CoordinateBuffer(segments.size() + 1);
+                for (RouteSegment routeSegment : segments) {
+                    if (buffer.size() == 0) {
+                        buffer.add(routeSegment.x1(), routeSegment.y1());
+                    }
+                    buffer.add(routeSegment.x2(), routeSegment.y2());
+                }
+                shape = RouteGeometry.of(buffer);
+            }
+            detailLevels = new RouteDetailLevels(shape);
+        }
+        return detailLevels;
+    }
+
+    /***
+     * Linia trasy do wyświetlenia na mapie. Jeśli znany jest kształt dróg (geometry) linia prowadzi przez wszystkie
+     * jego wierzchołki, w przeciwnym razie łączy końce kolejnych segmentów
+     * @return CoordinateLine
+     */
     public CoordinateLine getCoordinateLine() {
         if (coordinateLine == null) {
             List<Coordinate> coordinates = new ArrayList<>();
 
+            if (geometry != null) {
+                for (int i = 0; i < geometry.pointCount(); i++) {
+                    coordinates.add(new Coordinate(geometry.latitude(i), geometry.longitude(i)));
+                }
+                coordinateLine = new CoordinateLine(coordinates);
+                return coordinateLine;
+            }
+
             Iterator<RouteSegment> listIterator = segments.iterator();
 
             boolean isFirst = true;
@@ -0,0 +1,275 @@
+package pl.edu.pw.spdb.model;
+
+import com.sothawo.mapjfx.Coordinate;
+import com.sothawo.mapjfx.Extent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Uproszczone wersje kształtu trasy dla kolejnych poziomów przybliżenia mapy (algorytm Douglasa-Peuckera z tolerancją
+ * jednego piksela na danym poziomie). Każdy poziom to rosnąca lista indeksów punktów RouteGeometry, wyznaczana
+ * z poziomu o jeden dokładniejszego. Fragmenty trasy poza widocznym obszarem mapy są wyświetlane z poziomu, który ma
+ * nie więcej niż OFFSCREEN_POINTS punktów, więc liczba punktów przekazywanych do mapy nie zależy od długości trasy
+ */
+public final class RouteDetailLevels {
+
+    /***
+     * Najdokładniejszy poziom przybliżenia, dla którego trasa jest upraszczana - przy większym przybliżeniu
+     * wyświetlany jest pełny kształt
+     */
+    static final int MAX_LEVEL = 20;
+    static final int OFFSCREEN_POINTS = 256;
+    private static final double PIXEL_TOLERANCE = 1.0;
+    private static final int CHUNK_POINTS = 512;
+    /***
+     * Margines dokładnie wyświetlanego obszaru wokół widocznego fragmentu mapy (jako część jego rozmiaru), dzięki
+     * któremu niewielkie przesunięcie mapy nie wymaga zamiany linii
+     */
+    private static final double EXTENT_MARGIN = 0.5;
+
+    private final RouteGeometry geometry;
+    private final double latitudeScale;
+    private final int[][] levels = new int[MAX_LEVEL + 1][];
+    private final int[] offscreenLevel;
+
+    public RouteDetailLevels(RouteGeometry geometry) {
+        this.geometry = geometry;
+        this.latitudeScale = latitudeScale(geometry);
+
+        int[] finer = new int[geometry.pointCount()];
+        for (int i = 0; i < finer.length; i++) {
+            finer[i] = i;
+        }
+        int[] offscreen = null;
+        for (int level = MAX_LEVEL; level >= 0; level--) {
+            levels[level] = simplify(finer, tolerance(level));
+            finer = levels[level];
+            if (offscreen == null && finer.length <= OFFSCREEN_POINTS) {
+                offscreen = finer;
+            }
+        }
+        this.offscreenLevel = offscreen != null ? offscreen : levels[0];
+    }
+
+    /***
+     * Liczba punktów trasy na zadanym poziomie przybliżenia
+     * @param zoom - poziom przybliżenia mapy
+     */
+    public int pointCount(double zoom) {
+        return level(zoom).length;
+    }
+
+    /***
+     * Wybiera punkty trasy do wyświetlenia - dokładne w pobliżu widocznego obszaru mapy i uproszczone poza nim
+     * @param zoom - poziom przybliżenia mapy
+     * @param extent - widoczny obszar mapy, jeśli null wyświetlana jest cała trasa z dokładnością poziomu zoom
+     * @return Selection
+     */
+    public Selection select(double zoom, Extent extent) {
+        int[] detailed = level(zoom);
+        if (extent == null || detailed.length <= offscreenLevel.length) {
+            // granice NaN - wybór zostanie odświeżony, gdy tylko będzie znany widoczny obszar
+            double bound = extent == null ? Double.NaN : Double.POSITIVE_INFINITY;
+            return new Selection(levelNumber(zoom), -bound, -bound, bound, bound, toCoordinates(detailed));
+        }
+
+        double marginLongitude = (extent.getMax().getLongitude() - extent.getMin().getLongitude()) * EXTENT_MARGIN;
+        double marginLatitude = (extent.getMax().getLatitude() - extent.getMin().getLatitude()) * EXTENT_MARGIN;
+        double minLongitude = extent.getMin().getLongitude() - marginLongitude;
+        double maxLongitude = extent.getMax().getLongitude() + marginLongitude;
+        double minLatitude = extent.getMin().getLatitude() - marginLatitude;
+        double maxLatitude = extent.getMax().getLatitude() + marginLatitude;
+
+        boolean[] inside = new boolean[detailed.length];
+        for (int i = 0; i < detailed.length; i++) {
+            double longitude = geometry.longitude(detailed[i]);
+            double latitude = geometry.latitude(detailed[i]);
+            inside[i] = longitude >= minLongitude && longitude <= maxLongitude
+                    && latitude >= minLatitude && latitude <= maxLatitude;
+        }
+
+        // suma indeksów poziomu poza ekranem oraz punktów dokładnego poziomu leżących w obszarze lub sąsiadujących
+        // z takimi punktami - obie listy są rosnące, więc wynik również
+        int[] merged = new int[detailed.length + offscreenLevel.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < detailed.length || j < offscreenLevel.length) {
+            int next;
+            if (j >= offscreenLevel.length || (i < detailed.length && detailed[i] <= offscreenLevel[j])) {
+                next = detailed[i];
+                boolean visible = inside[i] || (i > 0 && inside[i - 1]) || (i + 1 < detailed.length && inside[i + 1]);
+                boolean shared = j < offscreenLevel.length && offscreenLevel[j] == next;
+                i++;
+                if (shared) {
+                    j++;
+                } else if (!visible) {
+                    continue;
+                }
+            } else {
+                next = offscreenLevel[j++];
+            }
+            merged[size++] = next;
+        }
+
+        int[] selected = new int[size];
+        System.arraycopy(merged, 0, selected, 0, size);
+        return new Selection(levelNumber(zoom), minLongitude, minLatitude, maxLongitude, maxLatitude,
+                toCoordinates(selected));
+    }
+
+    private int levelNumber(double zoom) {
+        return (int) Math.max(0, Math.min(MAX_LEVEL + 1, Math.floor(zoom)));
+    }
+
+    private int[] level(double zoom) {
+        int level = levelNumber(zoom);
+        if (level > MAX_LEVEL) {
+            int[] all = new int[geometry.pointCount()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        return levels[level];
+    }
+
+    private List<Coordinate> toCoordinates(int[] indices) {
+        List<Coordinate> coordinates = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            coordinates.add(new Coordinate(geometry.latitude(index), geometry.longitude(index)));
+        }
+        return coordinates;
+    }
+
+    /***
+     * Szerokość jednego piksela w stopniach długości geograficznej na zadanym poziomie przybliżenia (kafelki 256 px)
+     */
+    private static double tolerance(int level) {
+        return PIXEL_TOLERANCE * 360.0 / (256.0 * (1L << level));
+    }
+
+    /***
+     * Skala szerokości geograficznej - w odwzorowaniu mapy stopień szerokości jest dłuższy od stopnia długości
+     * o 1/cos(szerokość)
+     */
+    private static double latitudeScale(RouteGeometry geometry) {
+        if (geometry.pointCount() == 0) {
+            return 1;
+        }
+        double sum = 0;
+        for (int i = 0; i < geometry.pointCount(); i++) {
+            sum += geometry.latitude(i);
+        }
+        return 1 / Math.cos(Math.toRadians(sum / geometry.pointCount()));
+    }
+
+    /***
+     * Algorytm Douglasa-Peuckera bez rekurencji
+     * @param indices - rosnące indeksy punktów upraszczanej linii
+     * @param tolerance - największa dopuszczalna odległość usuniętego punktu od uproszczonej linii
+     * @return rosnące indeksy pozostawionych punktów
+     */
+    private int[] simplify(int[] indices, double tolerance) {
+        int n = indices.length;
+        if (n <= 2) {
+            return indices;
+        }
+        double squaredTolerance = tolerance * tolerance;
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        // linia dzielona jest na odcinki o stałej liczbie punktów, dzięki czemu czas działania pozostaje liniowy
+        // także dla kształtów, dla których podziały są bardzo nierówne
+        int[] stack = new int[2 * n];
+        int top = 0;
+        for (int first = 0; first < n - 1; first += CHUNK_POINTS) {
+            int last = Math.min(n - 1, first + CHUNK_POINTS);
+            keep[last] = true;
+            stack[top++] = first;
+            stack[top++] = last;
+        }
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int k = first + 1; k < last; k++) {
+                double distance = squaredSegmentDistance(indices[k], indices[first], indices[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = k;
+                }
+            }
+            if (farthest >= 0 && maxDistance > squaredTolerance) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        int count = 0;
+        for (boolean kept : keep) {
+            if (kept) {
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        for (int k = 0, r = 0; k < n; k++) {
+            if (keep[k]) {
+                result[r++] = indices[k];
+            }
+        }
+        return result;
+    }
+
+    private double squaredSegmentDistance(int point, int start, int end) {
+        double px = geometry.longitude(point);
+        double py = geometry.latitude(point) * latitudeScale;
+        double ax = geometry.longitude(start);
+        double ay = geometry.latitude(start) * latitudeScale;
+        double bx = geometry.longitude(end);
+        double by = geometry.latitude(end) * latitudeScale;
+
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+
+    /***
+     * Wybrane do wyświetlenia punkty trasy
+     * @param level - poziom przybliżenia, dla którego zostały wybrane
+     * @param minLongitude - granice obszaru wyświetlanego dokładnie
+     * @param minLatitude - granice obszaru wyświetlanego dokładnie
+     * @param maxLongitude - granice obszaru wyświetlanego dokładnie
+     * @param maxLatitude - granice obszaru wyświetlanego dokładnie
+     * @param coordinates - punkty linii
+     */
+    public record Selection(int level, double minLongitude, double minLatitude, double maxLongitude,
+                            double maxLatitude, List<Coordinate> coordinates) {
+
+        /***
+         * Sprawdza, czy wybór jest nadal aktualny dla nowego poziomu przybliżenia i widocznego obszaru mapy
+         * @param zoom - poziom przybliżenia mapy
+         * @param extent - widoczny obszar mapy
+         * @return czy nie trzeba zamieniać linii
+         */
+        public boolean covers(double zoom, Extent extent) {
+            if (level != (int) Math.max(0, Math.min(MAX_LEVEL + 1, Math.floor(zoom)))) {
+                return false;
+            }
+            return extent == null || (extent.getMin().getLongitude() >= minLongitude
+                    && extent.getMax().getLongitude() <= maxLongitude
+                    && extent.getMin().getLatitude() >= minLatitude
+                    && extent.getMax().getLatitude() <= maxLatitude);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package pl.edu.pw.spdb.model;
+
+/***
+ * Kształt całej trasy - kolejne wierzchołki geometrii dróg w kierunku przejazdu, zapisane w jednej tablicy
+ * (długość, szerokość, długość, ...). Wspólne wierzchołki sąsiednich segmentów występują raz
+ */
+public final class RouteGeometry {
+
+    private final double[] coordinates;
+
+    public RouteGeometry(double[] coordinates) {
+        this.coordinates = coordinates;
+    }
+
+    /***
+     * Tworzy geometrię z zawartości bufora
+     * @param buffer - bufor współrzędnych
+     * @return RouteGeometry
+     */
+    public static RouteGeometry of(CoordinateBuffer buffer) {
+        return new RouteGeometry(buffer.toArray());
+    }
+
+    public int pointCount() {
+        return coordinates.length / 2;
+    }
+
+    public double longitude(int index) {
+        return coordinates[index * 2];
+    }
+
+    public double latitude(int index) {
+        return coordinates[index * 2 + 1];
+    }
+}
@@ -0,0 +1,65 @@
+package pl.edu.pw.spdb.model;
+
+import java.util.Arrays;
+
+/***
+ * Macierz długości tras (km) i szacowanych czasów przejazdu (h) pomiędzy punktami początkowymi (wiersze)
+ * a punktami końcowymi (kolumny). Dla par, pomiędzy którymi trasa nie istnieje, długość i czas są nieskończone
+ */
+public final class RouteMatrix {
+
+    private final int origins;
+    private final int destinations;
+    private final double[] distances;
+    private final double[] estimatedTimes;
+
+    public RouteMatrix(int origins, int destinations) {
+        this.origins = origins;
+        this.destinations = destinations;
+        this.distances = new double[origins * destinations];
+        this.estimatedTimes = new double[origins * destinations];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(estimatedTimes, Double.POSITIVE_INFINITY);
+    }
+
+    public int origins() {
+        return origins;
+    }
+
+    public int destinations() {
+        return destinations;
+    }
+
+    public double distance(int origin, int destination) {
+        return distances[index(origin, destination)];
+    }
+
+    public double estimatedTime(int origin, int destination) {
+        return estimatedTimes[index(origin, destination)];
+    }
+
+    public boolean isReachable(int origin, int destination) {
+        return distances[index(origin, destination)] != Double.POSITIVE_INFINITY;
+    }
+
+    /***
+     * Zapisuje długość i czas przejazdu trasy pomiędzy punktami
+     * @param origin - indeks punktu początkowego
+     * @param destination - indeks punktu końcowego
+     * @param distance - długość trasy w km
+     * @param estimatedTime - szacowany czas przejazdu w h
+     */
+    public void set(int origin, int destination, double distance, double estimatedTime) {
+        int index = index(origin, destination);
+        distances[index] = distance;
+        estimatedTimes[index] = estimatedTime;
+    }
+
+    private int index(int origin, int destination) {
+        if (origin < 0 || origin >= origins || destination < 0 || destination >= destinations) {
+            throw new IndexOutOfBoundsException("Cell (" + origin + ", " + destination + ") outside of "
+                    + origins + "x" + destinations + " matrix");
+        }
+        return origin * destinations + destination;
+    }
+}
@@ -0,0 +1,187 @@
+package pl.edu.pw.spdb.server;
+
+import pl.edu.pw.spdb.model.CoordinateBuffer;
+import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteGeometry;
+import pl.edu.pw.spdb.model.RouteSegment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+
+/***
+ * Zwięzłe kodowanie tras w odpowiedziach serwera HTTP. Kształt trasy nie jest przesyłany jako lista par liczb:
+ * w JSON jest to polilinia zakodowana algorytmem Google (Encoded Polyline, dokładność 1e-5 stopnia), a w formacie
+ * binarnym różnice kolejnych współrzędnych w 1e-6 stopnia zapisane jako liczby o zmiennej długości (varint)
+ */
+public final class RouteCodec {
+
+    public static final String JSON_CONTENT_TYPE = "application/json";
+    public static final String BINARY_CONTENT_TYPE = "application/octet-stream";
+
+    private static final int MAGIC = 0x53525431; // "SRT1"
+    private static final double POLYLINE_PRECISION = 1e5;
+    private static final double BINARY_PRECISION = 1e6;
+
+    private RouteCodec() {
+    }
+
+    /***
+     * Trasa w JSON: długość (km), czas (h), parametry wyszukiwania, id wierzchołków końcowych, id krawędzi
+     * i zakodowany kształt
+     */
+    public static String toJson(Route route) {
+        StringBuilder json = new StringBuilder(256);
+        appendJson(json, route);
+        return json.toString();
+    }
+
+    /***
+     * Lista tras w JSON - tablica obiektów w formacie toJson
+     */
+    public static String toJson(List<Route> routes) {
+        StringBuilder json = new StringBuilder(256 * routes.size() + 2).append('[');
+        for (int i = 0; i < routes.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendJson(json, routes.get(i));
+        }
+        return json.append(']').toString();
+    }
+
+    /***
+     * Trasy w formacie binarnym (big-endian): MAGIC, liczba tras, a dla każdej trasy: długość i czas (double),
+     * prędkość (int), waga długości (float), id wierzchołków końcowych (long), liczba i id krawędzi (long),
+     * liczba punktów kształtu i różnice kolejnych szerokości i długości geograficznych (varint zigzag)
+     */
+    public static byte[] toBinary(List<Route> routes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 128 * routes.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(routes.size());
+            for (Route route : routes) {
+                out.writeDouble(route.getDistance());
+                out.writeDouble(route.getEstimatedTime());
+                out.writeInt(route.getMaxSpeed());
+                out.writeFloat((float) route.getDistanceWeight());
+                out.writeLong(route.getStartId());
+                out.writeLong(route.getEndId());
+                out.writeInt(route.getSegments().size());
+                for (RouteSegment segment : route.getSegments()) {
+                    out.writeLong(segment.id());
+                }
+                CoordinateBuffer points = points(route);
+                out.writeInt(points.size());
+                long previousLatitude = 0;
+                long previousLongitude = 0;
+                for (int i = 0; i < points.size(); i++) {
+                    long latitude = Math.round(points.y(i) * BINARY_PRECISION);
+                    long longitude = Math.round(points.x(i) * BINARY_PRECISION);
+                    writeVarLong(out, latitude - previousLatitude);
+                    writeVarLong(out, longitude - previousLongitude);
+                    previousLatitude = latitude;
+                    previousLongitude = longitude;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /***
+     * Koduje punkty algorytmem Encoded Polyline
+     * @param points - punkty (x - długość, y - szerokość geograficzna)
+     * @return polilinia
+     */
+    static String encodePolyline(CoordinateBuffer points) {
+        StringBuilder encoded = new StringBuilder(points.size() * 8);
+        long previousLatitude = 0;
+        long previousLongitude = 0;
+        for (int i = 0; i < points.size(); i++) {
+            long latitude = Math.round(points.y(i) * POLYLINE_PRECISION);
+            long longitude = Math.round(points.x(i) * POLYLINE_PRECISION);
+            encodeValue(encoded, latitude - previousLatitude);
+            encodeValue(encoded, longitude - previousLongitude);
+            previousLatitude = latitude;
+            previousLongitude = longitude;
+        }
+        return encoded.toString();
+    }
+
+    /***
+     * Punkty kształtu trasy - kształt dróg, jeśli jest znany, a w przeciwnym razie końce kolejnych segmentów
+     */
+    static CoordinateBuffer points(Route route) {
+        RouteGeometry geometry = route.getGeometry();
+        if (geometry != null) {
+            CoordinateBuffer points = new CoordinateBuffer(geometry.pointCount());
+            for (int i = 0; i < geometry.pointCount(); i++) {
+                points.add(geometry.longitude(i), geometry.latitude(i));
+            }
+            return points;
+        }
+        List<RouteSegment> segments = route.getSegments();
+        CoordinateBuffer points = new CoordinateBuffer(segments.size() + 1);
+        for (int i = 0; i < segments.size(); i++) {
+            RouteSegment segment = segments.get(i);
+            if (i == 0) {
+                points.add(segment.x1(), segment.y1());
+            }
+            points.add(segment.x2(), segment.y2());
+        }
+        return points;
+    }
+
+    private static void appendJson(StringBuilder json, Route route) {
+        json.append("{\"distance\":").append(format(route.getDistance()))
+                .append(",\"time\":").append(format(route.getEstimatedTime()))
+                .append(",\"maxSpeed\":").append(route.getMaxSpeed())
+                .append(",\"weight\":").append(format(route.getDistanceWeight()))
+                .append(",\"start\":").append(route.getStartId())
+                .append(",\"end\":").append(route.getEndId())
+                .append(",\"edges\":[");
+        List<RouteSegment> segments = route.getSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(segments.get(i).id());
+        }
+        json.append("],\"polyline\":\"");
+        // znaki polilinii (63-126) wymagają w JSON zabezpieczenia tylko dla '\'
+        for (char c : encodePolyline(points(route)).toCharArray()) {
+            if (c == '\\') {
+                json.append('\\');
+            }
+            json.append(c);
+        }
+        json.append("\"}");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    private static void encodeValue(StringBuilder encoded, long value) {
+        long shifted = value < 0 ? ~(value << 1) : value << 1;
+        while (shifted >= 0x20) {
+            encoded.append((char) ((0x20 | (shifted & 0x1f)) + 63));
+            shifted >>= 5;
+        }
+        encoded.append((char) (shifted + 63));
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+}
@@ -0,0 +1,266 @@
+package pl.edu.pw.spdb.server;
+
+import com.sothawo.mapjfx.Coordinate;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.service.SearchExecutor;
+import pl.edu.pw.spdb.service.SearchPathService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/***
+ * Serwer HTTP udostępniający wyszukiwanie tras bez interfejsu graficznego (profil "server", uruchamiany przez
+ * SpdbServer). Ścieżki:
+ * GET /route?from=lat,lon&to=lat,lon&speed=90&weight=0.5 - trasa
+ * GET /routes?from=lat,lon&to=lat,lon&speeds=50,90,140&weight=0.5 - trasy dla kilku prędkości
+ * GET /snap?point=lat,lon&start=true - id najbliższego wierzchołka
+ * Trasy zwracane są w JSON lub, z parametrem format=binary, w formacie binarnym RouteCodec.
+ * Żądania obsługiwane są przez pulę routing.server.platform-threads wątków, a liczba równoczesnych wyszukiwań
+ * jest ograniczona do routing.server.max-concurrent-searches, żeby nie przekroczyć puli połączeń z bazą - żądanie
+ * czekające dłużej niż routing.server.queue-timeout-ms dostaje odpowiedź 503. Serwer zaczyna przyjmować żądania
+ * dopiero po utworzeniu kontekstu i jest zatrzymywany przy jego zamknięciu
+ */
+@Component
+@Profile("server")
+@Slf4j
+public class RoutingServer implements SmartLifecycle {
+
+    private static final String JSON_CONTENT_TYPE = RouteCodec.JSON_CONTENT_TYPE + "; charset=utf-8";
+
+    private final SearchPathService searchPathService;
+    private final RouteMetrics metrics;
+    private final Semaphore searches;
+    private final long queueTimeoutMs;
+    private final String host;
+    private final int port;
+    private final int platformThreads;
+    private ExecutorService executor;
+    private HttpServer server;
+
+    public RoutingServer(SearchPathService searchPathService, RouteMetrics metrics,
+                         @Value("${routing.server.host}") String host,
+                         @Value("${routing.server.port}") int port,
+                         @Value("${routing.server.max-concurrent-searches}") int maxConcurrentSearches,
+                         @Value("${routing.server.queue-timeout-ms}") long queueTimeoutMs,
+                         @Value("${routing.server.platform-threads}") int platformThreads) {
+        this.searchPathService = searchPathService;
+        this.metrics = metrics;
+        this.searches = new Semaphore(maxConcurrentSearches, true);
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.host = host;
+        this.port = port;
+        this.platformThreads = platformThreads;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (server != null) {
+            return;
+        }
+        HttpServer httpServer;
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Routing server could not listen on " + host + ":" + port, e);
+        }
+        executor = Executors.newFixedThreadPool(platformThreads, SearchExecutor.threadFactory("routing-server-"));
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/route", exchange -> handle(exchange, "route", this::route));
+        httpServer.createContext("/routes", exchange -> handle(exchange, "routes", this::routes));
+        httpServer.createContext("/snap", exchange -> handle(exchange, "snap", this::snap));
+        httpServer.start();
+        server = httpServer;
+        log.info("Routing server listening on http://" + host + ":" + getPort());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /***
+     * Port, na którym serwer przyjmuje żądania - przydzielony przez system, jeśli routing.server.port=0
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private Response route(Map<String, String> parameters) {
+        Route route = searchPathService.findRoute(coordinate(parameters, "from"), coordinate(parameters, "to"),
+                integer(parameters, "speed"), decimal(parameters, "weight"));
+        return routes(List.of(route), parameters, false);
+    }
+
+    private Response routes(Map<String, String> parameters) {
+        List<Integer> speeds = new ArrayList<>();
+        for (String speed : required(parameters, "speeds").split(",")) {
+            speeds.add(parse(speed.trim(), "speeds", Integer::parseInt));
+        }
+        List<Route> routes = searchPathService.findRoutes(coordinate(parameters, "from"),
+                coordinate(parameters, "to"), speeds, decimal(parameters, "weight"));
+        return routes(routes, parameters, true);
+    }
+
+    private Response snap(Map<String, String> parameters) {
+        boolean isStartPoint = !"false".equals(parameters.get("start"));
+        Long id = searchPathService.findNearestNode(coordinate(parameters, "point"), isStartPoint);
+        if (id == null || id < 0) {
+            return Response.error(404, "No vertex found");
+        }
+        return Response.json(200, "{\"id\":" + id + "}");
+    }
+
+    private static Response routes(List<Route> routes, Map<String, String> parameters, boolean many) {
+        if (!many && routes.get(0).getSegments().isEmpty()) {
+            return Response.error(404, "No route found");
+        }
+        if ("binary".equals(parameters.get("format"))) {
+            return new Response(200, RouteCodec.BINARY_CONTENT_TYPE, RouteCodec.toBinary(routes));
+        }
+        return Response.json(200, many ? RouteCodec.toJson(routes) : RouteCodec.toJson(routes.get(0)));
+    }
+
+    private void handle(HttpExchange exchange, String endpoint, Handler handler) throws IOException {
+        Timer.Sample sample = metrics.start();
+        Response response;
+        try {
+            response = serve(exchange, handler);
+        } catch (RuntimeException e) {
+            log.error("Request " + exchange.getRequestURI() + " failed with message: " + e.getMessage());
+            response = Response.error(500, "Search failed");
+        }
+        try {
+            exchange.getResponseHeaders().set("Content-Type", response.contentType());
+            exchange.sendResponseHeaders(response.status(), response.body().length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response.body());
+            }
+        } finally {
+            exchange.close();
+            metrics.recordRequest(sample, endpoint, response.status());
+        }
+    }
+
+    private Response serve(HttpExchange exchange, Handler handler) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return Response.error(405, "Only GET is supported");
+        }
+        Map<String, String> parameters;
+        try {
+            parameters = parameters(exchange.getRequestURI().getRawQuery());
+        } catch (IllegalArgumentException e) {
+            return Response.error(400, e.getMessage());
+        }
+
+        try {
+            if (!searches.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return Response.error(503, "Too many concurrent searches");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.error(503, "Interrupted");
+        }
+        try {
+            return handler.handle(parameters);
+        } catch (IllegalArgumentException e) {
+            return Response.error(400, e.getMessage());
+        } finally {
+            searches.release();
+        }
+    }
+
+    static Map<String, String> parameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid query parameter: " + pair);
+            }
+            parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static Coordinate coordinate(Map<String, String> parameters, String name) {
+        String[] values = required(parameters, name).split(",");
+        if (values.length != 2) {
+            throw new IllegalArgumentException("Parameter " + name + " should be latitude,longitude");
+        }
+        return new Coordinate(parse(values[0].trim(), name, Double::parseDouble),
+                parse(values[1].trim(), name, Double::parseDouble));
+    }
+
+    private static int integer(Map<String, String> parameters, String name) {
+        return parse(required(parameters, name), name, Integer::parseInt);
+    }
+
+    private static double decimal(Map<String, String> parameters, String name) {
+        return parse(required(parameters, name), name, Double::parseDouble);
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return value;
+    }
+
+    private static <T> T parse(String value, String name, Function<String, T> parser) {
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of parameter " + name + ": " + value);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Response handle(Map<String, String> parameters);
+    }
+
+    private record Response(int status, String contentType, byte[] body) {
+
+        static Response json(int status, String json) {
+            return new Response(status, JSON_CONTENT_TYPE, json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Response error(int status, String message) {
+            return json(status, "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+        }
+    }
+}
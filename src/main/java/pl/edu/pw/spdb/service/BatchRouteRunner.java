@@ -0,0 +1,329 @@
+package pl.edu.pw.spdb.service;
+
+import com.sothawo.mapjfx.Coordinate;
+import lombok.extern.slf4j.Slf4j;
+import pl.edu.pw.spdb.dal.graph.CostProfile;
+import pl.edu.pw.spdb.model.Route;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Wyszukiwanie tras dla wielu par punktów początkowych i końcowych z pliku CSV - zastępuje funkcje
+ * test_routes/calculate_stats z sql/spdb.sql. Pary wyszukiwane są równolegle przez SearchPathService, a wyniki
+ * zapisywane do pliku CSV w kolejności zakończenia (kolumna row to numer wiersza wejścia). Wczytywanie wstrzymuje
+ * się, gdy w toku jest maxInFlight wyszukiwań, więc zużycie pamięci nie zależy od rozmiaru pliku.
+ * Plik wejściowy ma nagłówek z kolumnami from_lat, from_lon, to_lat, to_lon oraz opcjonalnie name, speed i weight.
+ * Wiersz bez speed i weight wyszukiwany jest dla każdego z domyślnych profili kosztu. Niepoprawny wiersz nie przerywa
+ * przebiegu - zapisywany jest ze statusem invalid. Pola zawierające przecinek lub cudzysłów są ujmowane w cudzysłów
+ * (RFC 4180), zarówno na wejściu, jak i na wyjściu
+ */
+@Slf4j
+public class BatchRouteRunner {
+
+    static final String OUTPUT_HEADER =
+            "row,name,from_lat,from_lon,to_lat,to_lon,speed,weight,length_km,time_h,segments,latency_ms,status";
+
+    private final SearchPathService searchPathService;
+    private final List<CostProfile> defaultProfiles;
+    private final int threads;
+    private final int maxInFlight;
+
+    /***
+     * @param searchPathService - serwis wyszukujący trasy
+     * @param defaultProfiles - profile kosztu dla wierszy bez kolumn speed i weight
+     * @param threads - liczba równoległych wyszukiwań (nie więcej niż rozmiar puli połączeń z bazą)
+     * @param maxInFlight - największa liczba wczytanych, a jeszcze niezapisanych wyszukiwań
+     */
+    public BatchRouteRunner(SearchPathService searchPathService, List<CostProfile> defaultProfiles, int threads,
+                            int maxInFlight) {
+        this.searchPathService = searchPathService;
+        this.defaultProfiles = defaultProfiles;
+        this.threads = threads;
+        this.maxInFlight = Math.max(maxInFlight, threads);
+    }
+
+    /***
+     * Wyszukuje trasy dla wszystkich wierszy pliku wejściowego
+     * @param input - plik CSV z parami punktów
+     * @param output - plik CSV z wynikami
+     * @return podsumowanie
+     * @throws IllegalArgumentException jeśli w nagłówku brakuje wymaganej kolumny
+     */
+    public Summary run(Path input, Path output) throws IOException, InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Statistics statistics = new Statistics();
+        long start = System.nanoTime();
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write(OUTPUT_HEADER);
+            writer.newLine();
+            String header = reader.readLine();
+            if (header == null) {
+                return statistics.summary(System.nanoTime() - start);
+            }
+            Columns columns = Columns.of(header);
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            long row = 0;
+            String line;
+            try {
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    row++;
+                    List<Query> queries;
+                    try {
+                        queries = columns.queries(row, line, defaultProfiles);
+                    } catch (IllegalArgumentException e) {
+                        log.warn(e.getMessage());
+                        statistics.invalid.increment();
+                        synchronized (writer) {
+                            writer.write(invalid(row));
+                            writer.newLine();
+                        }
+                        continue;
+                    }
+                    for (Query query : queries) {
+                        inFlight.acquire();
+                        executor.execute(() -> {
+                            try {
+                                String result = search(query, statistics);
+                                synchronized (writer) {
+                                    writer.write(result);
+                                    writer.newLine();
+                                }
+                            } catch (IOException e) {
+                                statistics.writeError.compareAndSet(null, e);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    }
+                }
+            } finally {
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (statistics.writeError.get() != null) {
+            throw new UncheckedIOException(statistics.writeError.get());
+        }
+        return statistics.summary(System.nanoTime() - start);
+    }
+
+    private String search(Query query, Statistics statistics) {
+        long start = System.nanoTime();
+        String status;
+        Route route = null;
+        try {
+            route = searchPathService.findRoute(query.from(), query.to(), query.speed(), query.weight());
+            status = route.getSegments().isEmpty() ? "not_found" : "ok";
+        } catch (RuntimeException e) {
+            log.error("Route search for row " + query.row() + " failed with message: " + e.getMessage());
+            status = "error";
+        }
+        long latency = System.nanoTime() - start;
+        statistics.record(latency, status);
+
+        return String.join(",", String.valueOf(query.row()), quote(query.name()),
+                String.valueOf(query.from().getLatitude()), String.valueOf(query.from().getLongitude()),
+                String.valueOf(query.to().getLatitude()), String.valueOf(query.to().getLongitude()),
+                String.valueOf(query.speed()), String.valueOf(query.weight()),
+                route != null && status.equals("ok") ? format(route.getDistance()) : "",
+                route != null && status.equals("ok") ? format(route.getEstimatedTime()) : "",
+                route != null ? String.valueOf(route.getSegments().size()) : "",
+                format(latency / 1e6), status);
+    }
+
+    private static String invalid(long row) {
+        String[] values = new String[OUTPUT_HEADER.split(",").length];
+        Arrays.fill(values, "");
+        values[0] = String.valueOf(row);
+        values[values.length - 1] = "invalid";
+        return String.join(",", values);
+    }
+
+    /***
+     * Ujmuje pole w cudzysłów, jeśli zawiera przecinek, cudzysłów lub znak końca wiersza
+     */
+    static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /***
+     * Dzieli wiersz CSV na pola, z uwzględnieniem pól ujętych w cudzysłów
+     * @throws IllegalArgumentException jeśli cudzysłów nie jest zamknięty
+     */
+    static List<String> fields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    /***
+     * Podsumowanie przebiegu
+     * @param searches - liczba wyszukiwań
+     * @param found - liczba znalezionych tras
+     * @param failed - liczba wyszukiwań zakończonych błędem
+     * @param invalid - liczba pominiętych, niepoprawnych wierszy wejścia
+     * @param elapsedSeconds - czas całego przebiegu
+     * @param p50Millis - mediana czasu wyszukiwania
+     * @param p99Millis - 99. percentyl czasu wyszukiwania
+     * @param maxMillis - najdłuższe wyszukiwanie
+     */
+    public record Summary(long searches, long found, long failed, long invalid, double elapsedSeconds,
+                          double p50Millis, double p99Millis, double maxMillis) {
+
+        public double throughput() {
+            return elapsedSeconds > 0 ? searches / elapsedSeconds : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d searches (%d found, %d failed, %d invalid rows) in %.1f s: "
+                            + "%.1f searches/s, latency p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                    searches, found, failed, invalid, elapsedSeconds, throughput(), p50Millis, p99Millis, maxMillis);
+        }
+    }
+
+    private record Query(long row, String name, Coordinate from, Coordinate to, int speed, double weight) {
+    }
+
+    /***
+     * Położenie kolumn w pliku wejściowym
+     */
+    private record Columns(int name, int fromLatitude, int fromLongitude, int toLatitude, int toLongitude, int speed,
+                           int weight) {
+
+        static Columns of(String header) {
+            List<String> names = fields(header).stream().map(String::trim).toList();
+            return new Columns(names.indexOf("name"), required(names, "from_lat"), required(names, "from_lon"),
+                    required(names, "to_lat"), required(names, "to_lon"), names.indexOf("speed"),
+                    names.indexOf("weight"));
+        }
+
+        private static int required(List<String> names, String column) {
+            int index = names.indexOf(column);
+            if (index < 0) {
+                throw new IllegalArgumentException("Input file has no column " + column);
+            }
+            return index;
+        }
+
+        List<Query> queries(long row, String line, List<CostProfile> defaultProfiles) {
+            try {
+                String[] values = fields(line).toArray(new String[0]);
+                String label = name >= 0 ? values[name].trim() : "";
+                Coordinate from = new Coordinate(Double.parseDouble(values[fromLatitude].trim()),
+                        Double.parseDouble(values[fromLongitude].trim()));
+                Coordinate to = new Coordinate(Double.parseDouble(values[toLatitude].trim()),
+                        Double.parseDouble(values[toLongitude].trim()));
+                if (speed >= 0 && weight >= 0 && !values[speed].isBlank() && !values[weight].isBlank()) {
+                    return List.of(new Query(row, label, from, to, Integer.parseInt(values[speed].trim()),
+                            Double.parseDouble(values[weight].trim())));
+                }
+                List<Query> queries = new ArrayList<>(defaultProfiles.size());
+                for (CostProfile profile : defaultProfiles) {
+                    queries.add(new Query(row, label, from, to, profile.maxSpeed(), profile.distanceWeight()));
+                }
+                return queries;
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid input row " + row + ": " + line, e);
+            }
+        }
+    }
+
+    /***
+     * Statystyki o stałym rozmiarze - czasy wyszukiwań zliczane są w przedziałach co 1 ms (do LATENCY_BUCKETS ms)
+     */
+    private static final class Statistics {
+
+        private static final int LATENCY_BUCKETS = 60_000;
+
+        private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS + 1);
+        private final LongAdder searches = new LongAdder();
+        private final LongAdder found = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder invalid = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicReference<IOException> writeError = new AtomicReference<>();
+
+        void record(long latencyNanos, String status) {
+            searches.increment();
+            if (status.equals("ok")) {
+                found.increment();
+            } else if (status.equals("error")) {
+                failed.increment();
+            }
+            maxNanos.accumulateAndGet(latencyNanos, Math::max);
+            latencies.incrementAndGet((int) Math.min(latencyNanos / 1_000_000, LATENCY_BUCKETS));
+        }
+
+        /***
+         * Percentyl czasu wyszukiwania - górna granica przedziału, w którym się znajduje
+         */
+        double percentile(double quantile) {
+            long rank = (long) Math.ceil(quantile * searches.sum());
+            long count = 0;
+            for (int bucket = 0; bucket < latencies.length(); bucket++) {
+                count += latencies.get(bucket);
+                if (count >= rank && count > 0) {
+                    return bucket + 1;
+                }
+            }
+            return 0;
+        }
+
+        Summary summary(long elapsedNanos) {
+            return new Summary(searches.sum(), found.sum(), failed.sum(), invalid.sum(), elapsedNanos / 1e9,
+                    percentile(0.5), percentile(0.99), maxNanos.get() / 1e6);
+        }
+    }
+}
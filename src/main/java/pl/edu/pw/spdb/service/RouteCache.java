@@ -0,0 +1,420 @@
+package pl.edu.pw.spdb.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.edu.pw.spdb.dal.WaysChangedEvent;
+import pl.edu.pw.spdb.model.Point;
+import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteSegment;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/***
+ * Pamięć podręczna wyszukanych tras o ograniczonym rozmiarze (usuwane są najdawniej używane wpisy) i czasie życia
+ * wpisu. Równoczesne żądania o tę samą trasę są łączone - do bazy trafia tylko jedno zapytanie, a pozostałe wątki
+ * czekają na jego wynik - dotyczy to także pierwszego wyszukiwania trasy pomiędzy punktami, dla których wierzchołki
+ * nie są jeszcze znane (getByPoints). Dodatkowo zapamiętywane są wierzchołki grafu najbliższe punktom wybranym w GUI, dzięki czemu
+ * dla znanych punktów trasa może zostać odczytana bez żadnego zapytania do bazy
+ */
+@Component
+public class RouteCache {
+
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<RouteKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<RouteKey, CompletableFuture<Route>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<PointsKey, CompletableFuture<Route>> pointsInFlight = new ConcurrentHashMap<>();
+    private final LinkedHashMap<SnapKey, Long> snaps = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public RouteCache(@Value("${route.cache.maximum-size}") int maximumSize,
+                      @Value("${route.cache.ttl-seconds}") long timeToLiveSeconds) {
+        this(maximumSize, TimeUnit.SECONDS.toNanos(timeToLiveSeconds), System::nanoTime);
+    }
+
+    RouteCache(int maximumSize, long timeToLiveNanos, LongSupplier clock) {
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.clock = clock;
+    }
+
+    /***
+     * Zwraca trasę z pamięci podręcznej lub wyznacza ją przy pomocy loader. Jeśli ta sama trasa jest właśnie
+     * wyznaczana przez inny wątek, metoda czeka na jego wynik zamiast wykonywać kolejne zapytanie
+     * @param key - klucz trasy
+     * @param loader - funkcja wyznaczająca trasę
+     * @return Route
+     */
+    public Route get(RouteKey key, Supplier<Route> loader) {
+        Route cached = getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        return singleFlight(inFlight, key, () -> {
+            // wątek, który przed chwilą zakończył wyznaczanie tej trasy, mógł już zapisać wynik
+            Route route = getIfPresent(key);
+            if (route != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                route = loader.get();
+                put(key, route);
+            }
+            return route;
+        });
+    }
+
+    /***
+     * Wyznacza trasę pomiędzy punktami, dla których nie są znane najbliższe wierzchołki, więc trasy nie można
+     * wyszukać w pamięci podręcznej. Równoczesne wyszukiwania pomiędzy tymi samymi punktami są łączone tak jak w get.
+     * Trafienia i chybienia zlicza loader, który może już znaleźć wierzchołki zapamiętane przez poprzednie wyszukiwanie
+     * @param key - punkty i parametry trasy
+     * @param loader - funkcja wyznaczająca trasę
+     * @return Route
+     */
+    public Route getByPoints(PointsKey key, Supplier<Route> loader) {
+        return singleFlight(pointsInFlight, key, loader);
+    }
+
+    private <K> Route singleFlight(ConcurrentHashMap<K, CompletableFuture<Route>> running, K key,
+                                   Supplier<Route> loader) {
+        CompletableFuture<Route> future = new CompletableFuture<>();
+        CompletableFuture<Route> leader = running.putIfAbsent(key, future);
+        if (leader != null) {
+            coalesced.increment();
+            return await(leader);
+        }
+
+        try {
+            Route route = loader.get();
+            future.complete(route);
+            return route;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(key, future);
+        }
+    }
+
+    /***
+     * Wyszukuje w pamięci podręcznej kilka tras naraz, np. tę samą trasę dla kilku prędkości wyznaczaną jednym
+     * zapytaniem. Trasy wyznaczane właśnie przez inne wątki nie są wyszukiwane ponownie - można poczekać na nie metodą
+     * Lookup.await. Pozostałe klucze są rezerwowane dla wywołującego, który musi przekazać ich trasy metodą
+     * Lookup.complete - do tego czasu inne wątki pytające o te trasy czekają na wynik zamiast wykonywać zapytanie
+     * @param keys - klucze tras
+     * @return Lookup - musi zostać zamknięty, także gdy wyznaczenie tras się nie powiodło
+     */
+    public Lookup lookup(Collection<RouteKey> keys) {
+        Lookup lookup = new Lookup();
+        for (RouteKey key : keys) {
+            if (lookup.found.containsKey(key) || lookup.pending.containsKey(key) || lookup.owned.containsKey(key)) {
+                continue;
+            }
+            Route cached = getIfPresent(key);
+            if (cached != null) {
+                hits.increment();
+                lookup.found.put(key, cached);
+                continue;
+            }
+
+            CompletableFuture<Route> future = new CompletableFuture<>();
+            CompletableFuture<Route> running = inFlight.putIfAbsent(key, future);
+            if (running != null) {
+                coalesced.increment();
+                lookup.pending.put(key, running);
+                continue;
+            }
+            // wątek, który przed chwilą zakończył wyznaczanie tej trasy, mógł już zapisać wynik
+            cached = getIfPresent(key);
+            if (cached != null) {
+                hits.increment();
+                inFlight.remove(key, future);
+                future.complete(cached);
+                lookup.found.put(key, cached);
+            } else {
+                misses.increment();
+                lookup.owned.put(key, future);
+            }
+        }
+        return lookup;
+    }
+
+    /***
+     * Zlicza trasy wyszukane bez pytania pamięci podręcznej, bo nie były znane wierzchołki najbliższe punktom
+     * @param count - liczba tras
+     */
+    public void countMisses(int count) {
+        misses.add(count);
+    }
+
+    /***
+     * Zapisuje trasę wyznaczoną poza pamięcią podręczną
+     * @param key - klucz trasy
+     * @param route - trasa
+     */
+    public void put(RouteKey key, Route route) {
+        synchronized (entries) {
+            entries.put(key, new Entry(route, clock.getAsLong() + timeToLiveNanos));
+            Iterator<Map.Entry<RouteKey, Entry>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maximumSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /***
+     * Zwraca trasę, jeśli jest w pamięci podręcznej i nie wygasła
+     * @param key - klucz trasy
+     * @return trasa lub null
+     */
+    public Route getIfPresent(RouteKey key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - clock.getAsLong() <= 0) {
+                entries.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.route;
+        }
+    }
+
+    /***
+     * Zwraca zapamiętane id wierzchołka najbliższego punktowi
+     * @param point - punkt wybrany w GUI
+     * @param isStartPoint - czy punkt jest początkiem trasy
+     * @return id wierzchołka lub null
+     */
+    public Long getSnap(Point point, boolean isStartPoint) {
+        synchronized (snaps) {
+            return snaps.get(new SnapKey(point, isStartPoint));
+        }
+    }
+
+    /***
+     * Zapamiętuje id wierzchołka najbliższego punktowi
+     * @param point - punkt wybrany w GUI
+     * @param isStartPoint - czy punkt jest początkiem trasy
+     * @param id - id wierzchołka
+     */
+    public void putSnap(Point point, boolean isStartPoint, long id) {
+        synchronized (snaps) {
+            snaps.put(new SnapKey(point, isStartPoint), id);
+            Iterator<SnapKey> iterator = snaps.keySet().iterator();
+            while (snaps.size() > maximumSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /***
+     * Usuwa wszystkie wpisy
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        synchronized (snaps) {
+            snaps.clear();
+        }
+    }
+
+    /***
+     * Usuwa trasy przechodzące przez krawędź
+     * @param edgeId - identyfikator krawędzi (ways.gid)
+     */
+    public void invalidateEdge(long edgeId) {
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                for (RouteSegment segment : iterator.next().route.getSegments()) {
+                    if (segment.id() == edgeId) {
+                        iterator.remove();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /***
+     * Usuwa trasy, które mogły przestać być najlepsze po zmianie tabeli ways. Jeśli zmiana tylko podnosi koszt
+     * krawędzi, nieaktualne mogą być jedynie trasy przez nią przechodzące - w przeciwnym razie krawędź mogła stać się
+     * częścią lepszej trasy dowolnej pary punktów i usuwane są wszystkie wpisy
+     * @param event - zmiana tabeli ways
+     */
+    @EventListener
+    public void onWaysChanged(WaysChangedEvent event) {
+        if (event.canLowerCosts()) {
+            invalidateAll();
+        } else {
+            invalidateEdge(event.gid());
+        }
+    }
+
+    public RouteCacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new RouteCacheStats(hits.sum(), misses.sum(), coalesced.sum(), evictions.sum(), size);
+    }
+
+    private static Route await(CompletableFuture<Route> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /***
+     * Wynik metody lookup: trasy znalezione w pamięci podręcznej, trasy wyznaczane przez inne wątki oraz klucze
+     * zarezerwowane dla wywołującego. Jeśli wyznaczenie tras się nie powiodło, wywołujący przekazuje przyczynę metodą
+     * fail - czekające wątki dostają ten sam wyjątek. Zamknięcie kończy wyjątkiem oczekiwanie na zarezerwowane trasy,
+     * których wywołujący nie przekazał
+     */
+    public final class Lookup implements AutoCloseable {
+        private final Map<RouteKey, Route> found = new HashMap<>();
+        private final Map<RouteKey, CompletableFuture<Route>> pending = new HashMap<>();
+        private final Map<RouteKey, CompletableFuture<Route>> owned = new HashMap<>();
+
+        private Lookup() {
+        }
+
+        /***
+         * @return trasa z pamięci podręcznej lub przekazana metodą complete, null jeśli nie jest jeszcze znana
+         */
+        public Route get(RouteKey key) {
+            return found.get(key);
+        }
+
+        /***
+         * Czy trasę musi wyznaczyć wywołujący
+         */
+        public boolean isOwned(RouteKey key) {
+            return owned.containsKey(key);
+        }
+
+        /***
+         * Przekazuje trasę dla zarezerwowanego klucza wątkom, które na nią czekają. Trasa zapisywana jest w pamięci
+         * podręcznej, jeśli wyznaczono ją dla wierzchołków z klucza
+         * @param key - zarezerwowany klucz
+         * @param route - wyznaczona trasa
+         */
+        public void complete(RouteKey key, Route route) {
+            CompletableFuture<Route> future = owned.remove(key);
+            if (future == null) {
+                return;
+            }
+            if (route.getStartId() == key.startId() && route.getEndId() == key.endId()) {
+                put(key, route);
+            }
+            inFlight.remove(key, future);
+            future.complete(route);
+            found.put(key, route);
+        }
+
+        /***
+         * Czeka na trasę wyznaczaną przez inny wątek
+         * @param key - klucz trasy
+         * @return trasa
+         */
+        public Route await(RouteKey key) {
+            Route route = found.get(key);
+            if (route == null) {
+                route = RouteCache.await(pending.get(key));
+                found.put(key, route);
+            }
+            return route;
+        }
+
+        /***
+         * Kończy wyjątkiem oczekiwanie na wszystkie zarezerwowane trasy, których wywołujący jeszcze nie przekazał
+         * @param cause - przyczyna niepowodzenia wyszukiwania, np. CancellationException lub błąd zapytania
+         */
+        public void fail(Throwable cause) {
+            for (Map.Entry<RouteKey, CompletableFuture<Route>> entry : owned.entrySet()) {
+                inFlight.remove(entry.getKey(), entry.getValue());
+                entry.getValue().completeExceptionally(cause);
+            }
+            owned.clear();
+        }
+
+        @Override
+        public void close() {
+            if (!owned.isEmpty()) {
+                fail(new IllegalStateException("Route search finished without a result"));
+            }
+        }
+    }
+
+    /***
+     * Klucz trasy w pamięci podręcznej
+     * @param startId - id punktu początkowego
+     * @param endId - id punktu końcowego
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param distanceWeight - waga długości trasy w koszcie
+     */
+    public record RouteKey(long startId, long endId, int maxSpeed, float distanceWeight) {
+    }
+
+    /***
+     * Klucz trasy pomiędzy punktami, dla których nie są znane najbliższe wierzchołki
+     * @param startPoint - punkt początkowy
+     * @param endPoint - punkt końcowy
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @param distanceWeight - waga długości trasy w koszcie
+     */
+    public record PointsKey(Point startPoint, Point endPoint, int maxSpeed, float distanceWeight) {
+    }
+
+    /***
+     * Statystyki pamięci podręcznej tras
+     * @param hits - liczba trafień
+     * @param misses - liczba zapytań, które trafiły do bazy
+     * @param coalesced - liczba żądań obsłużonych wynikiem równoległego zapytania o tę samą trasę
+     * @param evictions - liczba wpisów usuniętych z powodu rozmiaru lub wygaśnięcia
+     * @param size - aktualna liczba wpisów
+     */
+    public record RouteCacheStats(long hits, long misses, long coalesced, long evictions, int size) {
+    }
+
+    private record Entry(Route route, long expiresAt) {
+    }
+
+    private record SnapKey(Point point, boolean isStartPoint) {
+    }
+}
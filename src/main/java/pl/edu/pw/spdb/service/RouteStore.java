@@ -0,0 +1,434 @@
+package pl.edu.pw.spdb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.edu.pw.spdb.dal.DatabaseService;
+import pl.edu.pw.spdb.dal.WaysChangeListener;
+import pl.edu.pw.spdb.dal.WaysChangedEvent;
+import pl.edu.pw.spdb.model.Route;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/***
+ * Trwały magazyn wyszukanych tras, zachowywany pomiędzy uruchomieniami aplikacji. Trasy dopisywane są na końcu pliku
+ * route.store.file, a w pamięci przechowywany jest tylko indeks - położenie ostatniego zapisu dla każdego klucza.
+ * Zapis trasy zawiera wersję grafu (DatabaseService.getGraphVersion), dla której został wyznaczony - po zmianie
+ * wersji wcześniejsze zapisy są pomijane. Miejsce zajmowane przez nieaktualne zapisy odzyskiwane jest kompakcją:
+ * gdy jest ich więcej niż aktualnych (i więcej niż route.store.compaction-min-bytes), aktualne zapisy przepisywane są
+ * do nowego pliku, który zastępuje poprzedni.
+ * Układ pliku: MAGIC, VERSION, a po nich zapisy: długość danych, suma kontrolna CRC32 danych i dane - klucz
+ * (id wierzchołków, prędkość, waga, wersja grafu) oraz trasa w kodowaniu RouteStoreCodec. Zapis przerwany przez
+ * awarię (niezgodna suma kontrolna lub obcięty koniec pliku) jest przy otwarciu usuwany
+ */
+@Component
+@Slf4j
+public class RouteStore implements AutoCloseable {
+
+    static final long UNKNOWN_VERSION = 0;
+
+    private static final int MAGIC = 0x53525331; // "SRS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int KEY_SIZE = 3 * Long.BYTES + Integer.BYTES + Float.BYTES;
+
+    private final Path file;
+    private final LongSupplier versionSource;
+    private final boolean withGeometry;
+    private final long compactionMinBytes;
+    private final long refreshIntervalNanos;
+    private final LongSupplier clock;
+
+    private final Map<RouteCache.RouteKey, Location> index = new HashMap<>();
+    private FileChannel channel;
+    private long fileSize;
+    private long liveBytes;
+
+    private volatile long graphVersion = UNKNOWN_VERSION;
+    private volatile boolean versionLoaded;
+    private volatile long versionLoadedAt;
+
+    @Autowired
+    public RouteStore(DatabaseService databaseService, ObjectProvider<WaysChangeListener> listener,
+                      @Value("${route.store.enabled}") boolean enabled,
+                      @Value("${route.store.file}") String file,
+                      @Value("${route.store.geometry}") boolean withGeometry,
+                      @Value("${route.store.compaction-min-bytes}") long compactionMinBytes,
+                      @Value("${route.store.version-refresh-seconds}") long versionRefreshSeconds) {
+        this(enabled ? Path.of(file) : null, databaseService::getGraphVersion, withGeometry, compactionMinBytes,
+                listener.getIfAvailable() != null && listener.getIfAvailable().isEnabled()
+                        ? Long.MAX_VALUE : TimeUnit.SECONDS.toNanos(versionRefreshSeconds), System::nanoTime);
+    }
+
+    RouteStore(Path file, LongSupplier versionSource, boolean withGeometry, long compactionMinBytes) {
+        this(file, versionSource, withGeometry, compactionMinBytes, Long.MAX_VALUE, System::nanoTime);
+    }
+
+    /***
+     * @param refreshIntervalNanos - co ile wersja grafu odczytywana jest ponownie, jeśli zmiany tabeli ways nie są
+     *                             publikowane (WaysChangeListener) - Long.MAX_VALUE, jeśli są
+     * @param clock - źródło czasu w nanosekundach
+     */
+    RouteStore(Path file, LongSupplier versionSource, boolean withGeometry, long compactionMinBytes,
+               long refreshIntervalNanos, LongSupplier clock) {
+        this.file = file;
+        this.versionSource = versionSource;
+        this.withGeometry = withGeometry;
+        this.compactionMinBytes = compactionMinBytes;
+        this.refreshIntervalNanos = refreshIntervalNanos;
+        this.clock = clock;
+    }
+
+    /***
+     * Magazyn, który niczego nie zapisuje - dla SearchPathService tworzonego bez magazynu
+     */
+    public static RouteStore disabled() {
+        return new RouteStore(null, () -> UNKNOWN_VERSION, false, 0);
+    }
+
+    /***
+     * Aktualna wersja grafu. Jest odczytywana przy pierwszym użyciu i ponownie po zmianie tabeli ways, a jeśli zmiany
+     * nie są publikowane - nie częściej niż co route.store.version-refresh-seconds. Po zmianie wersji zapisy dla
+     * innych wersji są usuwane z indeksu
+     * @return wersja grafu lub UNKNOWN_VERSION, jeśli magazyn jest wyłączony albo wersja nie jest znana
+     */
+    public long graphVersion() {
+        if (file == null) {
+            return UNKNOWN_VERSION;
+        }
+        if (isVersionCurrent()) {
+            return graphVersion;
+        }
+        synchronized (this) {
+            if (isVersionCurrent()) {
+                return graphVersion;
+            }
+            long version;
+            try {
+                version = versionSource.getAsLong();
+            } catch (RuntimeException e) {
+                log.error("Could not read road graph version - route store is not used: " + e.getMessage());
+                return UNKNOWN_VERSION;
+            }
+            if (!versionLoaded || version != graphVersion) {
+                retainVersion(version);
+            }
+            graphVersion = version;
+            versionLoadedAt = clock.getAsLong();
+            versionLoaded = true;
+            return version;
+        }
+    }
+
+    private boolean isVersionCurrent() {
+        return versionLoaded && clock.getAsLong() - versionLoadedAt < refreshIntervalNanos;
+    }
+
+    /***
+     * Czy magazyn nie zawiera żadnej trasy dla aktualnej wersji grafu
+     */
+    public boolean isEmpty() {
+        if (graphVersion() == UNKNOWN_VERSION) {
+            return true;
+        }
+        synchronized (this) {
+            return index.isEmpty();
+        }
+    }
+
+    /***
+     * Zwraca zapisaną trasę
+     * @param key - klucz trasy
+     * @param version - wersja grafu odczytana metodą graphVersion przed wyszukiwaniem
+     * @return trasa lub null, jeśli nie została zapisana dla tej wersji grafu
+     */
+    public Route get(RouteCache.RouteKey key, long version) {
+        if (version == UNKNOWN_VERSION) {
+            return null;
+        }
+        byte[] record;
+        synchronized (this) {
+            Location location = index.get(key);
+            if (location == null || location.version != version) {
+                return null;
+            }
+            try {
+                record = read(location);
+            } catch (IOException e) {
+                log.error("Could not read route from " + file + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, KEY_SIZE,
+                record.length - KEY_SIZE))) {
+            Route route = RouteStoreCodec.decode(in, key.maxSpeed());
+            route.setStartId(key.startId());
+            route.setEndId(key.endId());
+            route.setDistanceWeight(key.distanceWeight());
+            return route;
+        } catch (IOException e) {
+            log.error("Could not decode route from " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /***
+     * Dopisuje trasę do magazynu. Trasa wyznaczona dla wersji grafu, która w międzyczasie przestała być aktualna,
+     * nie jest zapisywana
+     * @param key - klucz trasy
+     * @param version - wersja grafu odczytana metodą graphVersion przed wyszukiwaniem
+     * @param route - trasa
+     */
+    public void put(RouteCache.RouteKey key, long version, Route route) {
+        if (version == UNKNOWN_VERSION || version != graphVersion) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(KEY_SIZE + 16 + 24 * route.getSegments().size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(key.startId());
+            out.writeLong(key.endId());
+            out.writeInt(key.maxSpeed());
+            out.writeFloat(key.distanceWeight());
+            out.writeLong(version);
+            RouteStoreCodec.encode(route, withGeometry, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] payload = bytes.toByteArray();
+
+        synchronized (this) {
+            if (version != graphVersion) {
+                return;
+            }
+            try {
+                open();
+                append(key, version, payload);
+                compactIfNeeded();
+            } catch (IOException e) {
+                log.error("Could not write route to " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /***
+     * Po zmianie tabeli ways wersja grafu zostanie odczytana ponownie przy następnym użyciu magazynu
+     */
+    @EventListener
+    public void onWaysChanged(WaysChangedEvent event) {
+        versionLoaded = false;
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    synchronized long fileSize() {
+        return fileSize;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /***
+     * Usuwa z indeksu zapisy dla innych wersji grafu
+     */
+    private synchronized void retainVersion(long version) {
+        try {
+            open();
+            Iterator<Location> iterator = index.values().iterator();
+            int removed = 0;
+            while (iterator.hasNext()) {
+                Location location = iterator.next();
+                if (location.version != version) {
+                    liveBytes -= location.length;
+                    iterator.remove();
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                log.info("Dropped " + removed + " stored routes computed for another version of the road graph");
+            }
+            compactIfNeeded();
+        } catch (IOException e) {
+            log.error("Could not open route store " + file + ": " + e.getMessage());
+        }
+    }
+
+    /***
+     * Otwiera plik przy pierwszym użyciu i odtwarza indeks
+     */
+    private void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (!hasValidHeader()) {
+            log.warn("Route store " + file + " is empty or has an unknown format - starting with an empty store");
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+            channel.write(header, 0);
+        }
+
+        long position = HEADER_SIZE;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(HEADER_SIZE)), 1 << 16));
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_SIZE <= channel.size()) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < KEY_SIZE || position + RECORD_HEADER_SIZE + length > channel.size()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer key = ByteBuffer.wrap(payload);
+            RouteCache.RouteKey routeKey = new RouteCache.RouteKey(key.getLong(), key.getLong(), key.getInt(),
+                    key.getFloat());
+            index(routeKey, new Location(position, RECORD_HEADER_SIZE + length, key.getLong()));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (position < channel.size()) {
+            log.warn("Route store " + file + " has an incomplete record at " + position + " - it was dropped");
+            channel.truncate(position);
+        }
+        fileSize = position;
+        log.info("Opened route store " + file + " with " + index.size() + " routes");
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() < HEADER_SIZE || channel.read(header, 0) != HEADER_SIZE) {
+            return false;
+        }
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION;
+    }
+
+    private void append(RouteCache.RouteKey key, long version, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        long position = fileSize;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        index(key, new Location(fileSize, record.capacity(), version));
+        fileSize = position;
+    }
+
+    private void index(RouteCache.RouteKey key, Location location) {
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+        liveBytes += location.length;
+    }
+
+    private byte[] read(Location location) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(location.length);
+        long position = location.offset;
+        while (record.hasRemaining()) {
+            int read = channel.read(record, position);
+            if (read < 0) {
+                throw new EOFException("Route store is truncated");
+            }
+            position += read;
+        }
+        byte[] payload = new byte[location.length - RECORD_HEADER_SIZE];
+        record.position(RECORD_HEADER_SIZE);
+        record.get(payload);
+        return payload;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        long garbage = fileSize - HEADER_SIZE - liveBytes;
+        if (garbage > compactionMinBytes && garbage > liveBytes) {
+            compact();
+        }
+    }
+
+    /***
+     * Przepisuje aktualne zapisy do nowego pliku, który zastępuje dotychczasowy. Kanał nowego pliku pozostaje
+     * otwarty po zmianie nazwy, więc nie jest otwierany ponownie
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        long before = fileSize;
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        FileChannel compacted = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            compacted.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+            long position = HEADER_SIZE;
+            for (Map.Entry<RouteCache.RouteKey, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                long written = channel.transferTo(location.offset, location.length, compacted.position(position));
+                if (written != location.length) {
+                    throw new IOException("Route store record was not copied completely");
+                }
+                entry.setValue(new Location(position, location.length, location.version));
+                position += location.length;
+            }
+            compacted.force(false);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = compacted;
+            fileSize = position;
+            liveBytes = position - HEADER_SIZE;
+        } catch (IOException e) {
+            compacted.close();
+            // indeks mógł zostać częściowo przestawiony na nowy plik - odtworzenie go z dotychczasowego pliku
+            index.clear();
+            liveBytes = 0;
+            channel.close();
+            channel = null;
+            open();
+            throw e;
+        }
+        log.info("Route store compacted from " + before + " to " + fileSize + " bytes in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /***
+     * Położenie zapisu w pliku
+     * @param offset - przesunięcie początku zapisu
+     * @param length - długość zapisu łącznie z nagłówkiem
+     * @param version - wersja grafu
+     */
+    private record Location(long offset, int length, long version) {
+    }
+}
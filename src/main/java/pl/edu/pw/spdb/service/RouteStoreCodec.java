@@ -0,0 +1,157 @@
+package pl.edu.pw.spdb.service;
+
+import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteGeometry;
+import pl.edu.pw.spdb.model.RouteSegment;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Zwięzłe kodowanie trasy w RouteStore. Liczby całkowite zapisywane są jako liczby o zmiennej długości (varint
+ * zigzag), a kolejne wartości jako różnice względem poprzednich: id krawędzi względem id poprzedniej krawędzi, wierzchołki
+ * segmentu względem końca poprzedniego segmentu, współrzędne względem poprzedniego punktu. Długości segmentów są
+ * kwantowane do 1 cm, ograniczenia prędkości do 0.01 km/h, a współrzędne do 1e-7 stopnia. Długość i czas całej trasy
+ * zapisywane są dokładnie. Kształt dróg jest opcjonalny
+ */
+final class RouteStoreCodec {
+
+    private static final double LENGTH_PRECISION = 1e5; // km -> cm
+    private static final double SPEED_PRECISION = 1e2;
+    private static final double COORDINATE_PRECISION = 1e7;
+
+    private RouteStoreCodec() {
+    }
+
+    /***
+     * Koduje trasę
+     * @param route - trasa
+     * @param withGeometry - czy zapisać kształt dróg (jeśli jest znany)
+     * @param out - strumień wyjściowy
+     */
+    static void encode(Route route, boolean withGeometry, DataOutput out) throws IOException {
+        out.writeDouble(route.getDistance());
+        out.writeDouble(route.getEstimatedTime());
+        List<RouteSegment> segments = route.getSegments();
+        writeVarLong(out, segments.size());
+        long previousId = 0;
+        long previousNode = 0;
+        long previousX = 0;
+        long previousY = 0;
+        for (RouteSegment segment : segments) {
+            writeVarLong(out, segment.id() - previousId);
+            writeVarLong(out, segment.source() - previousNode);
+            writeVarLong(out, segment.target() - segment.source());
+            writeVarLong(out, Math.round(segment.length() * LENGTH_PRECISION));
+            writeVarLong(out, Math.round(segment.maxSpeedForward() * SPEED_PRECISION));
+            long x1 = quantize(segment.x1());
+            long y1 = quantize(segment.y1());
+            long x2 = quantize(segment.x2());
+            long y2 = quantize(segment.y2());
+            writeVarLong(out, x1 - previousX);
+            writeVarLong(out, y1 - previousY);
+            writeVarLong(out, x2 - x1);
+            writeVarLong(out, y2 - y1);
+            previousId = segment.id();
+            previousNode = segment.target();
+            previousX = x2;
+            previousY = y2;
+        }
+
+        RouteGeometry geometry = withGeometry ? route.getGeometry() : null;
+        out.writeBoolean(geometry != null);
+        if (geometry != null) {
+            writeVarLong(out, geometry.pointCount());
+            previousX = 0;
+            previousY = 0;
+            for (int i = 0; i < geometry.pointCount(); i++) {
+                long x = quantize(geometry.longitude(i));
+                long y = quantize(geometry.latitude(i));
+                writeVarLong(out, x - previousX);
+                writeVarLong(out, y - previousY);
+                previousX = x;
+                previousY = y;
+            }
+        }
+    }
+
+    /***
+     * Dekoduje trasę zapisaną metodą encode
+     * @param in - strumień wejściowy
+     * @param maxSpeed - maksymalna prędkość pojazdu
+     * @return trasa bez id wierzchołków końcowych i wagi długości - są one częścią klucza w RouteStore
+     */
+    static Route decode(DataInput in, int maxSpeed) throws IOException {
+        double distance = in.readDouble();
+        double estimatedTime = in.readDouble();
+        int segmentCount = (int) readVarLong(in);
+        List<RouteSegment> segments = new ArrayList<>(segmentCount);
+        long previousId = 0;
+        long previousNode = 0;
+        long previousX = 0;
+        long previousY = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            long id = previousId + readVarLong(in);
+            long source = previousNode + readVarLong(in);
+            long target = source + readVarLong(in);
+            double length = readVarLong(in) / LENGTH_PRECISION;
+            double speed = readVarLong(in) / SPEED_PRECISION;
+            long x1 = previousX + readVarLong(in);
+            long y1 = previousY + readVarLong(in);
+            long x2 = x1 + readVarLong(in);
+            long y2 = y1 + readVarLong(in);
+            segments.add(new RouteSegment(id, source, target, length, speed, x1 / COORDINATE_PRECISION,
+                    y1 / COORDINATE_PRECISION, x2 / COORDINATE_PRECISION, y2 / COORDINATE_PRECISION));
+            previousId = id;
+            previousNode = target;
+            previousX = x2;
+            previousY = y2;
+        }
+
+        Route route = new Route(segments, distance, estimatedTime);
+        route.setMaxSpeed(maxSpeed);
+        if (in.readBoolean()) {
+            int pointCount = (int) readVarLong(in);
+            double[] coordinates = new double[pointCount * 2];
+            previousX = 0;
+            previousY = 0;
+            for (int i = 0; i < pointCount; i++) {
+                previousX += readVarLong(in);
+                previousY += readVarLong(in);
+                coordinates[i * 2] = previousX / COORDINATE_PRECISION;
+                coordinates[i * 2 + 1] = previousY / COORDINATE_PRECISION;
+            }
+            route.setGeometry(new RouteGeometry(coordinates));
+        }
+        return route;
+    }
+
+    private static long quantize(double coordinate) {
+        return Math.round(coordinate * COORDINATE_PRECISION);
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 63) {
+                throw new IOException("Malformed variable-length number");
+            }
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,88 @@
+package pl.edu.pw.spdb.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pl.edu.pw.spdb.dal.RunningQueries;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * Wspólny dla całej aplikacji wykonawca zadań wyszukiwania tras. Zadania uruchamiane są partiami - rozpoczęcie
+ * nowej partii anuluje poprzednią: wątki jej zadań są przerywane, a zapytania do bazy wykonywane w ramach tych zadań
+ * przerywane przez Statement.cancel(). Zadania wykonywane są w puli wątków platformy (aplikacja działa na Javie 17,
+ * więc wątki wirtualne nie są dostępne) - wątki powstają w miarę potrzeby i są zwalniane po minucie bezczynności,
+ * a liczbę równoczesnych zapytań do bazy i tak ogranicza pula połączeń
+ */
+@Component
+public class SearchExecutor implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final RunningQueries runningQueries;
+    private List<RunnableFuture<?>> batch = List.of();
+
+    @Autowired
+    public SearchExecutor(RunningQueries runningQueries) {
+        this(newExecutor(), runningQueries);
+    }
+
+    SearchExecutor(ExecutorService executor, RunningQueries runningQueries) {
+        this.executor = executor;
+        this.runningQueries = runningQueries;
+    }
+
+    /***
+     * Anuluje poprzednią partię zadań i uruchamia nową
+     * @param tasks - zadania wyszukiwania, np. javafx.concurrent.Task
+     */
+    public synchronized void submitBatch(List<? extends RunnableFuture<?>> tasks) {
+        cancelBatch();
+        batch = List.copyOf(tasks);
+        for (RunnableFuture<?> task : batch) {
+            executor.execute(() -> {
+                runningQueries.attach(task);
+                try {
+                    task.run();
+                } finally {
+                    runningQueries.detach();
+                }
+            });
+        }
+    }
+
+    /***
+     * Anuluje zadania bieżącej partii, które jeszcze się nie zakończyły
+     */
+    public synchronized void cancelBatch() {
+        for (RunnableFuture<?> task : batch) {
+            if (task.cancel(true)) {
+                runningQueries.cancel(task);
+            }
+        }
+        batch = List.of();
+    }
+
+    @Override
+    public void close() {
+        cancelBatch();
+        executor.shutdownNow();
+    }
+
+    static ExecutorService newExecutor() {
+        return Executors.newCachedThreadPool(threadFactory("route-search-"));
+    }
+
+    /***
+     * Fabryka wątków demona o kolejno numerowanych nazwach - dla pul wątków wyszukiwania tras
+     * @param namePrefix - początek nazwy wątku
+     */
+    public static ThreadFactory threadFactory(String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -2,10 +2,17 @@ package pl.edu.pw.spdb.service;
 
 import com.sothawo.mapjfx.Coordinate;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import pl.edu.pw.spdb.dal.DatabaseService;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+import pl.edu.pw.spdb.model.Isochrone;
 import pl.edu.pw.spdb.model.Point;
 import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteMatrix;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
 
 /***
  * Klasa z zaimplementowaną logiką wyszukiwania najlepszej drogi
@@ -13,14 +20,39 @@ import pl.edu.pw.spdb.model.Route;
 @Service
 public class SearchPathService {
 
+    /***
+     * Maksymalna liczba wyszukiwań przy wyznaczaniu kompromisów długości i czasu
+     */
+    static final int MAX_TRADE_OFF_SEARCHES = 32;
+
+    /***
+     * Różnica długości (km), czasu (h) lub kosztu uznawana za pomijalną
+     */
+    private static final double TRADE_OFF_EPSILON = 1e-9;
+
     private final DatabaseService databaseService;
+    private final RouteCache routeCache;
+    private final RouteStore routeStore;
+    private final RouteMetrics metrics;
+
+    public SearchPathService(DatabaseService databaseService, RouteCache routeCache, RouteMetrics metrics) {
+        this(databaseService, routeCache, RouteStore.disabled(), metrics);
+    }
 
-    public SearchPathService(DatabaseService databaseService) {
+    @Autowired
+    public SearchPathService(DatabaseService databaseService, RouteCache routeCache, RouteStore routeStore,
+                             RouteMetrics metrics) {
         this.databaseService = databaseService;
+        this.routeCache = routeCache;
+        this.routeStore = routeStore;
+        this.metrics = metrics;
     }
 
     /***
-     * Metoda wyszukująca drogę
+     * Metoda wyszukująca drogę. Jeśli wierzchołki najbliższe obu punktom są już znane, wynik pobierany jest z pamięci
+     * podręcznej, a następnie z trwałego magazynu tras. W przeciwnym razie wyszukanie wierzchołków i trasy odbywa się
+     * w jednym zapytaniu do bazy - chyba że magazyn zawiera trasy, wtedy wierzchołki wyszukiwane są osobno, aby można
+     * było z niego skorzystać
      * @param startPointCoordinate - obiekt reprezentujący współrzędne punktu początkowego
      * @param endPointCoordinate - obiekt reprezentujący współrzędne punktu końcowego
      * @param maxSpeed - maksymalna prędkość
@@ -29,12 +61,410 @@ public class SearchPathService {
      */
     public Route findRoute(@NotNull Coordinate startPointCoordinate, Coordinate endPointCoordinate,
                            int maxSpeed, double costParameter) throws RuntimeException {
+        RouteMetrics.Search search = metrics.search(maxSpeed, costParameter);
+        try {
+            Route route = searchRoute(startPointCoordinate, endPointCoordinate, maxSpeed, costParameter);
+            metrics.recordRoute(route);
+            return route;
+        } catch (CancellationException e) {
+            metrics.recordCancellation();
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        } finally {
+            search.close();
+        }
+    }
+
+    private Route searchRoute(Coordinate startPointCoordinate, Coordinate endPointCoordinate,
+                              int maxSpeed, double costParameter) {
+        Point startPoint = new Point(startPointCoordinate.getLatitude(), startPointCoordinate.getLongitude());
+        Point endPoint = new Point(endPointCoordinate.getLatitude(), endPointCoordinate.getLongitude());
+        float distanceWeight = (float) costParameter;
+
+        RouteEnds ends = findRouteEnds(startPoint, endPoint);
+        if (ends != null) {
+            RouteCache.RouteKey key = new RouteCache.RouteKey(ends.startId(), ends.endId(), maxSpeed, distanceWeight);
+            return routeCache.get(key, () -> loadRoute(key));
+        }
+
+        // równoczesne pierwsze wyszukiwania pomiędzy tymi samymi punktami wykonują jedno zapytanie
+        RouteCache.PointsKey pointsKey = new RouteCache.PointsKey(startPoint, endPoint, maxSpeed, distanceWeight);
+        return routeCache.getByPoints(pointsKey, () -> {
+            // wyszukiwanie, które przed chwilą się zakończyło, mogło już zapamiętać wierzchołki
+            Long startId = routeCache.getSnap(startPoint, true);
+            Long endId = routeCache.getSnap(endPoint, false);
+            if (startId != null && endId != null) {
+                RouteCache.RouteKey key = new RouteCache.RouteKey(startId, endId, maxSpeed, distanceWeight);
+                return routeCache.get(key, () -> loadRoute(key));
+            }
+            routeCache.countMisses(1);
+            return searchRouteByPoints(startPoint, endPoint, maxSpeed, distanceWeight);
+        });
+    }
+
+    /***
+     * Wyszukuje wierzchołki najbliższe punktom i trasę pomiędzy nimi jednym zapytaniem
+     */
+    private Route searchRouteByPoints(Point startPoint, Point endPoint, int maxSpeed, float distanceWeight) {
+        long version = routeStore.graphVersion();
+        Route route = databaseService.findRoute(startPoint, endPoint, maxSpeed, distanceWeight);
+        route.setDistanceWeight(distanceWeight);
+        if (route.getStartId() >= 0 && route.getEndId() >= 0) {
+            routeCache.putSnap(startPoint, true, route.getStartId());
+            routeCache.putSnap(endPoint, false, route.getEndId());
+            RouteCache.RouteKey key = new RouteCache.RouteKey(route.getStartId(), route.getEndId(), maxSpeed,
+                    distanceWeight);
+            routeCache.put(key, route);
+            routeStore.put(key, version, route);
+        }
+        return route;
+    }
+
+    /***
+     * Odczytuje trasę z trwałego magazynu lub wyszukuje ją w bazie i zapisuje w magazynie
+     */
+    private Route loadRoute(RouteCache.RouteKey key) {
+        long version = routeStore.graphVersion();
+        Route route = routeStore.get(key, version);
+        if (route == null) {
+            route = databaseService.findRoute(key.startId(), key.endId(), key.maxSpeed(), key.distanceWeight());
+            route.setStartId(key.startId());
+            route.setEndId(key.endId());
+            route.setDistanceWeight(key.distanceWeight());
+            routeStore.put(key, version, route);
+        }
+        return route;
+    }
+
+    /***
+     * Zwraca wierzchołki najbliższe punktom, jeśli są zapamiętane. Gdy trwały magazyn zawiera trasy, brakujące
+     * wierzchołki są wyszukiwane (jednym zapytaniem), bo trasy w magazynie dostępne są tylko po id wierzchołków
+     * @return wierzchołki lub null, jeśli nie są znane
+     */
+    private RouteEnds findRouteEnds(Point startPoint, Point endPoint) {
+        Long startPointId = routeCache.getSnap(startPoint, true);
+        Long endPointId = routeCache.getSnap(endPoint, false);
+        if ((startPointId == null || endPointId == null) && !routeStore.isEmpty()) {
+            Long[] ids = databaseService.getStartAndEnd(startPoint, endPoint);
+            startPointId = ids[0];
+            endPointId = ids[1];
+            if (startPointId != null && startPointId >= 0) {
+                routeCache.putSnap(startPoint, true, startPointId);
+            }
+            if (endPointId != null && endPointId >= 0) {
+                routeCache.putSnap(endPoint, false, endPointId);
+            }
+        }
+        if (startPointId == null || endPointId == null || startPointId < 0 || endPointId < 0) {
+            return null;
+        }
+        return new RouteEnds(startPointId, endPointId);
+    }
+
+    /***
+     * Metoda wyszukująca id wierzchołka grafu najbliższego punktowi. Wynik jest zapamiętywany w pamięci podręcznej,
+     * z której korzysta również wyszukiwanie tras
+     * @param pointCoordinate - obiekt reprezentujący współrzędne punktu
+     * @param isStartPoint - czy punkt jest początkiem trasy
+     * @return id wierzchołka lub null, jeśli nie znaleziono wierzchołka
+     */
+    public Long findNearestNode(@NotNull Coordinate pointCoordinate, boolean isStartPoint) {
+        return findNearestNode(new Point(pointCoordinate.getLatitude(), pointCoordinate.getLongitude()), isStartPoint);
+    }
+
+    private Long findNearestNode(Point point, boolean isStartPoint) {
+        Long id = routeCache.getSnap(point, isStartPoint);
+        if (id == null) {
+            id = databaseService.getStartOrEnd(point, isStartPoint);
+            if (id != null && id >= 0) {
+                routeCache.putSnap(point, isStartPoint, id);
+            }
+        }
+        return id;
+    }
+
+    /***
+     * Metoda wyszukująca drogi dla kilku prędkości jednocześnie. Trasy obecne w pamięci podręcznej nie są wyszukiwane
+     * ponownie, a pozostałe wyszukiwane są jednym wywołaniem, które współdzieli wyszukanie punktów i wczytanie krawędzi
+     * @param startPointCoordinate - obiekt reprezentujący współrzędne punktu początkowego
+     * @param endPointCoordinate - obiekt reprezentujący współrzędne punktu końcowego
+     * @param maxSpeeds - maksymalne prędkości
+     * @param costParameter - parametr kosztu
+     * @return lista dróg w kolejności prędkości z maxSpeeds
+     */
+    public List<Route> findRoutes(@NotNull Coordinate startPointCoordinate, Coordinate endPointCoordinate,
+                                  List<Integer> maxSpeeds, double costParameter) throws RuntimeException {
+        return findRoutes(null, startPointCoordinate, endPointCoordinate, maxSpeeds, costParameter);
+    }
+
+    /***
+     * Metoda wyszukująca drogi dla kilku prędkości w sesji. Stan wyszukiwania zachowany w sesji pozwala wyznaczyć
+     * trasę po niewielkim przesunięciu jednego z punktów bez ponownego wyszukiwania od zera
+     * @param sessionId - identyfikator sesji (np. okna aplikacji), null - wyszukiwanie bez sesji
+     * @param startPointCoordinate - obiekt reprezentujący współrzędne punktu początkowego
+     * @param endPointCoordinate - obiekt reprezentujący współrzędne punktu końcowego
+     * @param maxSpeeds - maksymalne prędkości
+     * @param costParameter - parametr kosztu
+     * @return lista dróg w kolejności prędkości z maxSpeeds
+     */
+    public List<Route> findRoutes(String sessionId, @NotNull Coordinate startPointCoordinate,
+                                  Coordinate endPointCoordinate, List<Integer> maxSpeeds, double costParameter)
+            throws RuntimeException {
+        RouteMetrics.Search search = metrics.searchMany(costParameter);
+        try {
+            List<Route> routes = searchRoutes(sessionId, startPointCoordinate, endPointCoordinate, maxSpeeds,
+                    costParameter);
+            routes.forEach(metrics::recordRoute);
+            return routes;
+        } catch (CancellationException e) {
+            metrics.recordCancellation();
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        } finally {
+            search.close();
+        }
+    }
+
+    private List<Route> searchRoutes(String sessionId, Coordinate startPointCoordinate, Coordinate endPointCoordinate,
+                                     List<Integer> maxSpeeds, double costParameter) {
         Point startPoint = new Point(startPointCoordinate.getLatitude(), startPointCoordinate.getLongitude());
         Point endPoint = new Point(endPointCoordinate.getLatitude(), endPointCoordinate.getLongitude());
+        float distanceWeight = (float) costParameter;
+        List<Integer> speeds = maxSpeeds.stream().distinct().toList();
+
+        Map<Integer, Route> found = new HashMap<>();
+        long version = routeStore.graphVersion();
+        RouteEnds ends = findRouteEnds(startPoint, endPoint);
+        if (ends == null) {
+            routeCache.countMisses(speeds.size());
+            List<Route> routes = searchDatabase(sessionId, startPoint, endPoint, speeds, distanceWeight);
+            for (int i = 0; i < speeds.size(); i++) {
+                Route route = routes.get(i);
+                found.put(speeds.get(i), route);
+                if (route.getStartId() >= 0 && route.getEndId() >= 0) {
+                    RouteCache.RouteKey key = new RouteCache.RouteKey(route.getStartId(), route.getEndId(),
+                            speeds.get(i), distanceWeight);
+                    routeCache.put(key, route);
+                    routeStore.put(key, version, route);
+                }
+            }
+            return maxSpeeds.stream().map(found::get).toList();
+        }
+
+        Map<Integer, RouteCache.RouteKey> keys = new LinkedHashMap<>();
+        for (int maxSpeed : speeds) {
+            keys.put(maxSpeed, new RouteCache.RouteKey(ends.startId(), ends.endId(), maxSpeed, distanceWeight));
+        }
+        // trasy brakujące w pamięci podręcznej wyszukiwane są jednym wywołaniem, a równoległe wyszukiwania tych samych
+        // tras czekają na jego wynik
+        try (RouteCache.Lookup lookup = routeCache.lookup(keys.values())) {
+            try {
+                completeOwnedRoutes(lookup, sessionId, startPoint, endPoint, keys, version, distanceWeight);
+            } catch (RuntimeException e) {
+                lookup.fail(e);
+                throw e;
+            }
+            for (Map.Entry<Integer, RouteCache.RouteKey> entry : keys.entrySet()) {
+                found.put(entry.getKey(), lookup.await(entry.getValue()));
+            }
+        }
+        return maxSpeeds.stream().map(found::get).toList();
+    }
+
+    /***
+     * Przekazuje trasy dla kluczy zarezerwowanych w lookup - z trwałego magazynu lub wyszukane jednym wywołaniem
+     */
+    private void completeOwnedRoutes(RouteCache.Lookup lookup, String sessionId, Point startPoint, Point endPoint,
+                                     Map<Integer, RouteCache.RouteKey> keys, long version, float distanceWeight) {
+        List<Integer> missing = new ArrayList<>();
+        for (Map.Entry<Integer, RouteCache.RouteKey> entry : keys.entrySet()) {
+            RouteCache.RouteKey key = entry.getValue();
+            if (lookup.isOwned(key)) {
+                Route stored = routeStore.get(key, version);
+                if (stored != null) {
+                    lookup.complete(key, stored);
+                } else {
+                    missing.add(entry.getKey());
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            List<Route> routes = searchDatabase(sessionId, startPoint, endPoint, missing, distanceWeight);
+            for (int i = 0; i < missing.size(); i++) {
+                Route route = routes.get(i);
+                RouteCache.RouteKey key = keys.get(missing.get(i));
+                lookup.complete(key, route);
+                if (route.getStartId() == key.startId() && route.getEndId() == key.endId()) {
+                    routeStore.put(key, version, route);
+                }
+            }
+        }
+    }
+
+    /***
+     * Wyszukuje trasy dla kilku prędkości jednym wywołaniem i zapamiętuje wierzchołki najbliższe punktom
+     */
+    private List<Route> searchDatabase(String sessionId, Point startPoint, Point endPoint, List<Integer> maxSpeeds,
+                                       float distanceWeight) {
+        List<Route> routes = sessionId == null
+                ? databaseService.findRoutes(startPoint, endPoint, maxSpeeds, distanceWeight)
+                : databaseService.findRoutes(sessionId, startPoint, endPoint, maxSpeeds, distanceWeight);
+        for (Route route : routes) {
+            route.setDistanceWeight(distanceWeight);
+            if (route.getStartId() >= 0 && route.getEndId() >= 0) {
+                routeCache.putSnap(startPoint, true, route.getStartId());
+                routeCache.putSnap(endPoint, false, route.getEndId());
+            }
+        }
+        return routes;
+    }
+
+    /***
+     * Metoda wyszukująca trasy będące różnymi kompromisami pomiędzy długością a czasem przejazdu (trasy
+     * Pareto-optymalne). Koszt trasy dla parametru w to w * długość + (1 - w) * czas, więc dla dwóch znanych tras
+     * istnieje parametr, przy którym ich koszty są równe. Trasa wyszukana dla tego parametru jest albo jedną z nich,
+     * albo nowym kompromisem leżącym pomiędzy nimi - wtedy wyszukiwanie jest powtarzane dla obu nowych par.
+     * Znalezienie k tras wymaga 2k - 1 wyszukiwań, wierzchołki trasy wyszukiwane są tylko raz
+     * @param startPointCoordinate - obiekt reprezentujący współrzędne punktu początkowego
+     * @param endPointCoordinate - obiekt reprezentujący współrzędne punktu końcowego
+     * @param maxSpeed - maksymalna prędkość
+     * @return trasy od najkrótszej do najszybszej
+     */
+    public List<Route> findTradeOffRoutes(@NotNull Coordinate startPointCoordinate, Coordinate endPointCoordinate,
+                                          int maxSpeed) throws RuntimeException {
+        RouteMetrics.Search search = metrics.searchTradeOffs(maxSpeed);
+        try {
+            return searchTradeOffRoutes(startPointCoordinate, endPointCoordinate, maxSpeed);
+        } catch (CancellationException e) {
+            metrics.recordCancellation();
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        } finally {
+            search.close();
+        }
+    }
+
+    private List<Route> searchTradeOffRoutes(Coordinate startPointCoordinate, Coordinate endPointCoordinate,
+                                             int maxSpeed) {
+        Route shortest = searchRoute(startPointCoordinate, endPointCoordinate, maxSpeed, 1);
+        metrics.recordRoute(shortest);
+        if (shortest.getSegments().isEmpty()) {
+            return List.of(shortest);
+        }
+        Route fastest = searchRoute(startPointCoordinate, endPointCoordinate, maxSpeed, 0);
+        metrics.recordRoute(fastest);
+
+        List<Route> routes = new ArrayList<>(List.of(shortest));
+        Deque<Route[]> pairs = new ArrayDeque<>();
+        if (isTradeOff(shortest, fastest)) {
+            routes.add(fastest);
+            pairs.push(new Route[]{shortest, fastest});
+        }
+        int searches = 2;
+        while (!pairs.isEmpty() && searches < MAX_TRADE_OFF_SEARCHES) {
+            Route[] pair = pairs.pop();
+            double timeGain = pair[0].getEstimatedTime() - pair[1].getEstimatedTime();
+            double distanceLoss = pair[1].getDistance() - pair[0].getDistance();
+            double costParameter = timeGain / (timeGain + distanceLoss);
+
+            Route route = searchRoute(startPointCoordinate, endPointCoordinate, maxSpeed, costParameter);
+            metrics.recordRoute(route);
+            searches++;
+            if (weightedCost(route, costParameter) < weightedCost(pair[0], costParameter) - TRADE_OFF_EPSILON
+                    && isTradeOff(pair[0], route) && isTradeOff(route, pair[1])) {
+                routes.add(route);
+                pairs.push(new Route[]{route, pair[1]});
+                pairs.push(new Route[]{pair[0], route});
+            }
+        }
+        routes.sort(Comparator.comparingDouble(Route::getDistance));
+        return routes;
+    }
 
-        long startPointId = databaseService.getStartOrEnd(startPoint, true);
-        long endPointId = databaseService.getStartOrEnd(endPoint, false);
+    /***
+     * Czy trasa longer jest dłuższa, ale szybsza od trasy shorter
+     */
+    private static boolean isTradeOff(Route shorter, Route longer) {
+        return longer.getDistance() > shorter.getDistance() + TRADE_OFF_EPSILON
+                && longer.getEstimatedTime() < shorter.getEstimatedTime() - TRADE_OFF_EPSILON;
+    }
+
+    private static double weightedCost(Route route, double costParameter) {
+        return costParameter * route.getDistance() + (1 - costParameter) * route.getEstimatedTime();
+    }
+
+    /***
+     * Metoda wyznaczająca macierz długości i czasów przejazdu najlepszych tras pomiędzy każdym punktem początkowym
+     * a każdym punktem końcowym. Trasy wyszukiwane są jednym drzewem wyszukiwania dla każdego punktu początkowego,
+     * więc koszt rośnie z liczbą punktów początkowych, a nie z liczbą par
+     * @param origins - punkty początkowe
+     * @param destinations - punkty końcowe
+     * @param maxSpeed - maksymalna prędkość
+     * @param costParameter - parametr kosztu
+     * @return RouteMatrix - wiersze odpowiadają punktom początkowym, kolumny końcowym
+     */
+    public RouteMatrix findRouteMatrix(List<Point> origins, List<Point> destinations, int maxSpeed,
+                                       double costParameter) throws RuntimeException {
+        RouteMetrics.Search search = metrics.search(maxSpeed, costParameter);
+        try {
+            return databaseService.findRouteMatrix(origins, destinations, maxSpeed, (float) costParameter);
+        } catch (CancellationException e) {
+            metrics.recordCancellation();
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        } finally {
+            search.close();
+        }
+    }
+
+    /***
+     * Metoda wyszukująca obszar osiągalny z punktu początkowego w zadanym budżecie czasu lub długości. Obszar
+     * wyznaczany jest jednym wyszukiwaniem z wierzchołka najbliższego punktowi, z kosztem jak w funkcji astar()
+     * dla wagi 0 (czas) lub 1 (długość)
+     * @param startPointCoordinate - obiekt reprezentujący współrzędne punktu początkowego
+     * @param budgetType - rodzaj budżetu
+     * @param budget - budżet w godzinach (TIME) lub km (DISTANCE)
+     * @param maxSpeed - maksymalna prędkość
+     * @return Isochrone - osiągnięte wierzchołki i krawędzie oraz otoczka obszaru
+     */
+    public Isochrone findIsochrone(@NotNull Coordinate startPointCoordinate, Isochrone.BudgetType budgetType,
+                                   double budget, int maxSpeed) throws RuntimeException {
+        Point startPoint = new Point(startPointCoordinate.getLatitude(), startPointCoordinate.getLongitude());
+        double costParameter = budgetType == Isochrone.BudgetType.TIME ? 0 : 1;
+        RouteMetrics.Search search = metrics.search(maxSpeed, costParameter);
+        try {
+            return databaseService.findIsochrone(startPoint, budgetType, budget, maxSpeed);
+        } catch (CancellationException e) {
+            metrics.recordCancellation();
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        } finally {
+            search.close();
+        }
+    }
 
-        return databaseService.findRoute(startPointId, endPointId, maxSpeed, (float) costParameter);
+    /***
+     * Metoda zwracająca statystyki pamięci podręcznej tras
+     * @return liczba trafień, chybień, połączonych żądań i usuniętych wpisów
+     */
+    public RouteCache.RouteCacheStats getRouteCacheStats() {
+        return routeCache.getStats();
+    }
+
+    /***
+     * Wierzchołki grafu najbliższe punktom początkowemu i końcowemu
+     */
+    private record RouteEnds(long startId, long endId) {
     }
 }
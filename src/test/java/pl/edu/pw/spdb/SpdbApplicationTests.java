@@ -3,7 +3,7 @@ package pl.edu.pw.spdb;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "db.listen.enabled=false")
 class SpdbApplicationTests {
 
     @Test
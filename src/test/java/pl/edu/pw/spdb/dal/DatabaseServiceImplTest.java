@@ -7,6 +7,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import pl.edu.pw.spdb.model.Point;
 import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteMatrix;
+
+import java.util.List;
 
 import static org.springframework.test.util.AssertionErrors.assertEquals;
 import static org.springframework.test.util.AssertionErrors.assertNotNull;
@@ -64,4 +67,69 @@ public class DatabaseServiceImplTest {
         assertEquals("Distance should be around 551km", 316, (int) r.getDistance());
         assertEquals("Time should be around 7h", 4, (int) r.getEstimatedTime());
     }
+
+    @Test
+    public void findRouteByPoints() {
+        // given
+        Point start = new Point(50, 17);
+        Point end = new Point(48, 20);
+        int velocity = 90;
+        float w = 0.5f;
+
+        // when
+        Route r = service.findRoute(start, end, velocity, w);
+        Route expected = service.findRoute(service.getStartOrEnd(start, true), service.getStartOrEnd(end, false),
+                velocity, w);
+
+        // then
+        assertEquals("Found different start point", 813149L, r.getStartId());
+        assertEquals("Found different end point", 1834415L, r.getEndId());
+        assertEquals("Segments number should match separate queries", expected.getSegments().size(),
+                r.getSegments().size());
+        assertEquals("Distance should match separate queries", expected.getDistance(), r.getDistance());
+    }
+
+    @Test
+    public void findRoutesForManySpeeds() {
+        // given
+        Point start = new Point(50, 17);
+        Point end = new Point(48, 20);
+        List<Integer> velocities = List.of(50, 90, 200);
+        float w = 0.5f;
+
+        // when
+        List<Route> routes = service.findRoutes(start, end, velocities, w);
+
+        // then
+        assertEquals("Route should be returned for every speed", velocities.size(), routes.size());
+        for (int i = 0; i < velocities.size(); i++) {
+            Route expected = service.findRoute(start, end, velocities.get(i), w);
+            assertEquals("Distance should match single speed search", expected.getDistance(), routes.get(i).getDistance());
+            assertEquals("Time should match single speed search", expected.getEstimatedTime(),
+                    routes.get(i).getEstimatedTime());
+        }
+    }
+
+    @Test
+    public void findRouteMatrix() {
+        // given
+        List<Point> origins = List.of(new Point(50, 17), new Point(52, 21));
+        List<Point> destinations = List.of(new Point(48, 20), new Point(50, 19), new Point(54, 18));
+        int velocity = 90;
+        float w = 0.5f;
+
+        // when
+        RouteMatrix matrix = service.findRouteMatrix(origins, destinations, velocity, w);
+
+        // then
+        for (int i = 0; i < origins.size(); i++) {
+            for (int j = 0; j < destinations.size(); j++) {
+                Route expected = service.findRoute(origins.get(i), destinations.get(j), velocity, w);
+                assertEquals("Distance should match single route search", (int) expected.getDistance(),
+                        (int) matrix.distance(i, j));
+                assertEquals("Time should match single route search", (int) expected.getEstimatedTime(),
+                        (int) matrix.estimatedTime(i, j));
+            }
+        }
+    }
 }
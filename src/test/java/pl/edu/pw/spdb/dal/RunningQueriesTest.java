@@ -0,0 +1,55 @@
+package pl.edu.pw.spdb.dal;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.springframework.test.util.AssertionErrors.assertFalse;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class RunningQueriesTest {
+
+    @Test
+    public void cancelsOnlyQueryOfCancelledSearch() {
+        // given
+        RunningQueries runningQueries = new RunningQueries();
+        Object first = new Object();
+        Object second = new Object();
+        AtomicBoolean firstCancelled = new AtomicBoolean();
+        AtomicBoolean secondCancelled = new AtomicBoolean();
+        runningQueries.attach(first);
+        runningQueries.register(statement(firstCancelled));
+        runningQueries.unregister();
+        runningQueries.detach();
+        // ten sam wątek puli wykonuje już kolejne wyszukiwanie
+        runningQueries.attach(second);
+        runningQueries.register(statement(secondCancelled));
+
+        // when
+        runningQueries.cancel(first);
+
+        // then
+        assertFalse("Query of search running on reused thread should not be cancelled", secondCancelled.get());
+        assertFalse("Finished query should not be cancelled", firstCancelled.get());
+
+        // when
+        runningQueries.cancel(second);
+
+        // then
+        assertTrue("Query of cancelled search should be cancelled", secondCancelled.get());
+        runningQueries.unregister();
+        runningQueries.detach();
+    }
+
+    private static Statement statement(AtomicBoolean cancelled) {
+        return (Statement) Proxy.newProxyInstance(RunningQueriesTest.class.getClassLoader(),
+                new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("cancel")) {
+                        cancelled.set(true);
+                    }
+                    return null;
+                });
+    }
+}
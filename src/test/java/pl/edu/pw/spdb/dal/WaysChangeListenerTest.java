@@ -0,0 +1,120 @@
+package pl.edu.pw.spdb.dal;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import pl.edu.pw.spdb.dal.graph.ContractionHierarchyRegistry;
+import pl.edu.pw.spdb.dal.graph.LandmarkRegistry;
+import pl.edu.pw.spdb.dal.graph.RoadGraph;
+import pl.edu.pw.spdb.dal.graph.RoadGraphUpdater;
+import pl.edu.pw.spdb.dal.graph.TestGraphs;
+import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteSegment;
+import pl.edu.pw.spdb.service.RouteCache;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertNull;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+/***
+ * Test nasłuchiwania zmian tabeli ways na prawdziwym PostgreSQL uruchamianym w kontenerze - pomijany, jeśli Docker
+ * nie jest dostępny
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class WaysChangeListenerTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Test
+    public void appliesUpdatedRowToGraphAndCache() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(5, 5, 1);
+        int edge = 0;
+        long gid = graph.edgeId(edge);
+        String directory = Files.createTempDirectory("spdb-test").toString();
+        RoadGraphUpdater updater = new RoadGraphUpdater(graph, new ContractionHierarchyRegistry(graph, List.of(),
+                directory), new LandmarkRegistry(graph, 0, directory + "/landmarks.bin"));
+        RouteCache cache = new RouteCache(10, 600);
+        RouteCache.RouteKey key = new RouteCache.RouteKey(1, 2, 90, 0.5f);
+        cache.put(key, new Route(List.of(new RouteSegment(gid, 1, 2, 1, 50, 0, 0, 1, 1)), 0, 0));
+        CountDownLatch changed = new CountDownLatch(1);
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(POSTGRES.getJdbcUrl());
+        dataSource.setUsername(POSTGRES.getUsername());
+        dataSource.setPassword(POSTGRES.getPassword());
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ways (gid bigint PRIMARY KEY, maxspeed_forward double precision, "
+                    + "maxspeed_backward double precision, cost double precision, reverse_cost double precision)");
+            statement.execute(Files.readString(Path.of("sql/ways_notify.sql")));
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO ways VALUES (?, ?, ?, ?, ?)")) {
+                insert.setLong(1, gid);
+                insert.setDouble(2, graph.speedForward(edge));
+                insert.setDouble(3, graph.speedBackward(edge));
+                insert.setDouble(4, (graph.edgeFlags(edge) & RoadGraph.FORWARD) != 0 ? 1 : -1);
+                insert.setDouble(5, (graph.edgeFlags(edge) & RoadGraph.BACKWARD) != 0 ? 1 : -1);
+                insert.executeUpdate();
+            }
+        }
+        WaysChangeListener listener = new WaysChangeListener(dataSource, event -> {
+            if (event instanceof WaysChangedEvent change && change.operation() == WaysChangedEvent.Operation.UPDATE) {
+                updater.onWaysChanged(change);
+                cache.onWaysChanged(change);
+                changed.countDown();
+            }
+        }, true);
+
+        // when
+        listener.start();
+        try {
+            awaitListening(dataSource);
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement update = connection.prepareStatement(
+                         "UPDATE ways SET maxspeed_forward = 20, maxspeed_backward = 20 WHERE gid = ?")) {
+                update.setLong(1, gid);
+                update.executeUpdate();
+            }
+
+            // then
+            assertTrue("Change should be received", changed.await(10, TimeUnit.SECONDS));
+            assertEquals("Edge speed should be updated", 20f, graph.speedForward(edge));
+            assertNull("Route through slower edge should be evicted", cache.getIfPresent(key));
+        } finally {
+            listener.stop();
+            dataSource.close();
+        }
+    }
+
+    /***
+     * Czeka, aż połączenie nasłuchujące wykona LISTEN - powiadomienia wysłane wcześniej nie są dostarczane
+     */
+    private static void awaitListening(HikariDataSource dataSource) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT count(*) FROM pg_stat_activity WHERE query LIKE 'LISTEN%'")) {
+            while (System.nanoTime() < deadline) {
+                try (ResultSet result = statement.executeQuery()) {
+                    if (result.next() && result.getInt(1) > 0) {
+                        return;
+                    }
+                }
+                Thread.sleep(50);
+            }
+        }
+        throw new AssertionError("Listener did not start listening");
+    }
+}
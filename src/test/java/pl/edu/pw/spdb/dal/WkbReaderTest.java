@@ -0,0 +1,65 @@
+package pl.edu.pw.spdb.dal;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.model.CoordinateBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+
+public class WkbReaderTest {
+
+    @Test
+    public void readsLineString() {
+        // given
+        ByteBuffer wkb = ByteBuffer.allocate(1 + 4 + 4 + 3 * 16).order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putInt(2).putInt(3);
+        wkb.putDouble(21.0).putDouble(52.0).putDouble(21.1).putDouble(52.1).putDouble(21.2).putDouble(52.3);
+        CoordinateBuffer buffer = new CoordinateBuffer(1);
+
+        // when
+        int read = WkbReader.read(wkb.array(), buffer);
+
+        // then
+        assertEquals("All points should be read", 3, read);
+        assertEquals("X of last point", 21.2, buffer.x(2));
+        assertEquals("Y of last point", 52.3, buffer.y(2));
+    }
+
+    @Test
+    public void readsBigEndianEwkbWithSridAndZ() {
+        // given
+        ByteBuffer wkb = ByteBuffer.allocate(1 + 4 + 4 + 4 + 2 * 24).order(ByteOrder.BIG_ENDIAN);
+        wkb.put((byte) 0).putInt(2 | 0x80000000 | 0x20000000).putInt(4326).putInt(2);
+        wkb.putDouble(17.0).putDouble(50.0).putDouble(100.0).putDouble(18.0).putDouble(51.0).putDouble(200.0);
+        CoordinateBuffer buffer = new CoordinateBuffer();
+
+        // when
+        int read = WkbReader.read(wkb.array(), buffer);
+
+        // then
+        assertEquals("All points should be read", 2, read);
+        assertEquals("Z should be skipped", 18.0, buffer.x(1));
+        assertEquals("Z should be skipped", 51.0, buffer.y(1));
+    }
+
+    @Test
+    public void readsMultiLineStringPartsOneAfterAnother() {
+        // given
+        ByteBuffer wkb = ByteBuffer.allocate(1 + 4 + 4 + 2 * (1 + 4 + 4 + 2 * 16)).order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putInt(5).putInt(2);
+        wkb.put((byte) 1).putInt(2).putInt(2).putDouble(1).putDouble(2).putDouble(3).putDouble(4);
+        wkb.put((byte) 1).putInt(2).putInt(2).putDouble(5).putDouble(6).putDouble(7).putDouble(8);
+        CoordinateBuffer buffer = new CoordinateBuffer();
+        buffer.add(0, 0);
+
+        // when
+        int read = WkbReader.read(wkb.array(), buffer);
+
+        // then
+        assertEquals("Points of both parts should be read", 4, read);
+        assertEquals("Points should be appended", 5, buffer.size());
+        assertEquals("Second part should follow the first one", 5.0, buffer.x(3));
+    }
+}
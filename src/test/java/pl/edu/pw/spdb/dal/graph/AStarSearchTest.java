@@ -0,0 +1,93 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class AStarSearchTest {
+
+    private static final double EPSILON = 1e-12;
+
+    @Test
+    public void findsSameCostAsDijkstra() {
+        // given
+        RoadGraph graph = TestGraphs.grid(30, 30, 7);
+        AStarSearch search = new AStarSearch(graph);
+        SearchSpace space = new SearchSpace(graph.nodeCount());
+        Random random = new Random(11);
+
+        for (int i = 0; i < 50; i++) {
+            int source = random.nextInt(graph.nodeCount());
+            int target = random.nextInt(graph.nodeCount());
+            CostProfile profile = new CostProfile(50 + random.nextInt(150), random.nextInt(5) / 4f);
+
+            // when
+            ShortestPath dijkstra = search.search(source, target, profile, Heuristic.NONE, space);
+            ShortestPath aStar = search.search(source, target, profile,
+                    Heuristic.straightLine(graph, target, profile), space);
+
+            // then
+            assertEquals("Path existence should not depend on heuristic", dijkstra.isFound(), aStar.isFound());
+            if (dijkstra.isFound()) {
+                assertTrue("A* should find optimal path", Math.abs(dijkstra.cost() - aStar.cost()) < EPSILON);
+                assertTrue("A* should not settle more nodes", aStar.settledNodes() <= dijkstra.settledNodes());
+            }
+        }
+    }
+
+    @Test
+    public void pathFollowsDirectedArcs() {
+        // given
+        RoadGraph graph = TestGraphs.grid(20, 20, 3);
+        AStarSearch search = new AStarSearch(graph);
+        CostProfile profile = new CostProfile(90, 0.5f);
+        int source = 0;
+        int target = graph.nodeCount() - 1;
+
+        // when
+        ShortestPath path = search.search(source, target, profile, Heuristic.straightLine(graph, target, profile),
+                new SearchSpace(graph.nodeCount()));
+
+        // then
+        assertTrue("Path should exist", path.isFound());
+        int node = source;
+        double cost = 0;
+        for (int arc : path.arcs()) {
+            assertEquals("Arc should start where previous ended", node, graph.arcTail(arc));
+            cost += graph.arcCost(arc, profile);
+            node = graph.arcHead(arc);
+        }
+        assertEquals("Path should end in target", target, node);
+        assertTrue("Path cost should be sum of arc costs", Math.abs(cost - path.cost()) < EPSILON);
+    }
+
+    @Test
+    public void findsNearestNode() {
+        // given
+        RoadGraph graph = TestGraphs.grid(25, 25, 5);
+        Random random = new Random(1);
+
+        for (int i = 0; i < 100; i++) {
+            double lat = 51.95 + random.nextDouble() * 0.35;
+            double lon = 20.95 + random.nextDouble() * 0.35;
+
+            // when
+            int nearest = graph.nearestNode(lat, lon, true);
+
+            // then
+            int expected = -1;
+            double best = Double.MAX_VALUE;
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                double d = Math.pow(graph.latitude(node) - lat, 2) + Math.pow(graph.longitude(node) - lon, 2);
+                if (graph.outEnd(node) > graph.outBegin(node) && d < best) {
+                    best = d;
+                    expected = node;
+                }
+            }
+            assertEquals("Grid lookup should match brute force", expected, nearest);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class ContractionHierarchyTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void findsSameRoutesAsAStar(@TempDir Path directory) throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(40, 40, 17);
+        CostProfile profile = new CostProfile(90, 0.3f);
+        ContractionHierarchy built = new ContractionHierarchyBuilder(graph, profile).build();
+        Path file = directory.resolve(ContractionHierarchyFile.fileName(profile));
+        ContractionHierarchyFile.write(built, graph.fingerprint(), file);
+        ContractionHierarchy hierarchy = ContractionHierarchyFile.read(file, graph.fingerprint()).orElseThrow();
+
+        AStarSearch search = new AStarSearch(graph);
+        SearchSpace space = new SearchSpace(graph.nodeCount());
+        SearchSpace forward = new SearchSpace(graph.nodeCount());
+        SearchSpace backward = new SearchSpace(graph.nodeCount());
+        Random random = new Random(5);
+
+        for (int i = 0; i < 200; i++) {
+            int source = random.nextInt(graph.nodeCount());
+            int target = random.nextInt(graph.nodeCount());
+
+            // when
+            ShortestPath expected = search.search(source, target, profile, Heuristic.NONE, space);
+            ShortestPath actual = hierarchy.query(source, target, forward, backward);
+
+            // then
+            assertEquals("Path existence should match A*", expected.isFound(), actual.isFound());
+            if (expected.isFound()) {
+                assertTrue("Cost should match A*", Math.abs(expected.cost() - actual.cost()) < EPSILON);
+                int node = source;
+                double cost = 0;
+                for (int arc : actual.arcs()) {
+                    assertEquals("Unpacked arcs should be connected", node, graph.arcTail(arc));
+                    cost += graph.arcCost(arc, profile);
+                    node = graph.arcHead(arc);
+                }
+                assertEquals("Unpacked path should end in target", target, node);
+                assertTrue("Unpacked path cost should match", Math.abs(cost - actual.cost()) < EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void rejectsHierarchyOfDifferentGraph(@TempDir Path directory) throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(10, 10, 1);
+        RoadGraph otherGraph = TestGraphs.grid(10, 10, 2);
+        CostProfile profile = new CostProfile(50, 0);
+        Path file = directory.resolve(ContractionHierarchyFile.fileName(profile));
+        ContractionHierarchyFile.write(new ContractionHierarchyBuilder(graph, profile).build(), graph.fingerprint(),
+                file);
+
+        // when
+        boolean loaded = ContractionHierarchyFile.read(file, otherGraph.fingerprint()).isPresent();
+
+        // then
+        assertTrue("Hierarchy built for another graph should not be loaded", !loaded);
+    }
+}
@@ -0,0 +1,41 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class IsochroneSearchTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void reachesExactlyNodesWithinTimeBudget() {
+        // given
+        RoadGraph graph = TestGraphs.grid(30, 30, 5);
+        IsochroneSearch isochroneSearch = new IsochroneSearch(graph);
+        SearchSpace space = new SearchSpace(graph.nodeCount());
+        SearchSpace tree = new SearchSpace(graph.nodeCount());
+        int source = graph.nodeCount() / 2;
+        double budget = 0.05;
+
+        // when
+        int[] reached = isochroneSearch.search(source, budget, 70, true, space);
+
+        // then
+        isochroneSearch.search(source, Double.POSITIVE_INFINITY, 70, true, tree);
+        int expected = 0;
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            if (tree.isSettled(node) && tree.distance(node) <= budget) {
+                expected++;
+                assertTrue("Node within budget should be reached", space.isSettled(node));
+                assertTrue("Cost should match unbounded search", Math.abs(tree.distance(node) - space.distance(node)) < EPSILON);
+            }
+        }
+        assertEquals("Only nodes within budget should be reached", expected, reached.length);
+        for (int i = 1; i < reached.length; i++) {
+            assertTrue("Nodes should be in settle order",
+                    space.distance(reached[i - 1]) <= space.distance(reached[i]));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class LandmarksTest {
+
+    private static final double RELATIVE_EPSILON = 1e-6;
+
+    @Test
+    public void findsSameCostAsDijkstraSettlingFewerNodes() {
+        // given
+        RoadGraph graph = TestGraphs.grid(40, 40, 13);
+        Landmarks landmarks = new LandmarkBuilder(graph, 8, 1).build();
+        AStarSearch search = new AStarSearch(graph);
+        SearchSpace space = new SearchSpace(graph.nodeCount());
+        Random random = new Random(5);
+        long dijkstraSettled = 0;
+        long straightLineSettled = 0;
+        long altSettled = 0;
+
+        for (int i = 0; i < 100; i++) {
+            int source = random.nextInt(graph.nodeCount());
+            int target = random.nextInt(graph.nodeCount());
+            CostProfile profile = new CostProfile(30 + random.nextInt(170), random.nextInt(5) / 4f);
+
+            // when
+            ShortestPath dijkstra = search.search(source, target, profile, Heuristic.NONE, space);
+            ShortestPath straightLine = search.search(source, target, profile,
+                    Heuristic.straightLine(graph, target, profile), space);
+            ShortestPath alt = search.search(source, target, profile,
+                    landmarks.heuristic(graph, source, target, profile), space);
+
+            // then
+            assertEquals("Path existence should not depend on heuristic", dijkstra.isFound(), alt.isFound());
+            if (dijkstra.isFound()) {
+                assertTrue("ALT should find optimal path",
+                        Math.abs(dijkstra.cost() - alt.cost()) <= RELATIVE_EPSILON * dijkstra.cost());
+                dijkstraSettled += dijkstra.settledNodes();
+                straightLineSettled += straightLine.settledNodes();
+                altSettled += alt.settledNodes();
+            }
+        }
+        assertTrue("ALT should settle a fraction of Dijkstra nodes", altSettled * 2 < dijkstraSettled);
+        assertTrue("ALT should settle fewer nodes than straight line heuristic", altSettled < straightLineSettled);
+    }
+
+    @Test
+    public void estimateIsLowerBoundOfCost() {
+        // given
+        RoadGraph graph = TestGraphs.grid(20, 20, 8);
+        Landmarks landmarks = new LandmarkBuilder(graph, 4, 2).build();
+        CostProfile profile = new CostProfile(70, 0.25f);
+        int target = graph.nodeCount() / 2;
+        SearchTree tree = new SearchTree(graph, target, true, profile);
+
+        // when
+        Heuristic heuristic = landmarks.heuristic(graph, 0, target, profile);
+
+        // then
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            ShortestPath path = tree.path(node);
+            if (path.isFound()) {
+                assertTrue("Estimate should not exceed cost to target",
+                        heuristic.estimate(node) <= path.cost() * (1 + RELATIVE_EPSILON));
+            }
+        }
+    }
+
+    @Test
+    public void fileIsRejectedForOtherGraph() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(10, 10, 3);
+        Landmarks landmarks = new LandmarkBuilder(graph, 3, 1).build();
+        Path path = Files.createTempDirectory("spdb-alt").resolve("landmarks.bin");
+
+        // when
+        LandmarkFile.write(landmarks, graph.fingerprint(), path);
+        Optional<Landmarks> read = LandmarkFile.read(path, graph.fingerprint());
+        Optional<Landmarks> rejected = LandmarkFile.read(path, TestGraphs.grid(10, 10, 4).fingerprint());
+
+        // then
+        assertTrue("Landmarks should be read for the same graph", read.isPresent());
+        assertEquals("Landmark should be read", landmarks.node(2), read.get().node(2));
+        assertEquals("Distances should be read", landmarks.timeTo(2, 7), read.get().timeTo(2, 7));
+        assertTrue("Landmarks should be rejected for other graph", rejected.isEmpty());
+    }
+}
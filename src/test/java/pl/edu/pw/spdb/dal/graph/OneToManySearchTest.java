@@ -0,0 +1,54 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class OneToManySearchTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void treeContainsSamePathsAsSeparateSearches() {
+        // given
+        RoadGraph graph = TestGraphs.grid(30, 30, 9);
+        CostProfile profile = new CostProfile(70, 0.4f);
+        OneToManySearch oneToMany = new OneToManySearch(graph);
+        AStarSearch search = new AStarSearch(graph);
+        SearchSpace tree = new SearchSpace(graph.nodeCount());
+        SearchSpace space = new SearchSpace(graph.nodeCount());
+        Random random = new Random(13);
+        int source = random.nextInt(graph.nodeCount());
+        int[] targets = new int[20];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = random.nextInt(graph.nodeCount());
+        }
+
+        // when
+        oneToMany.search(source, targets, profile, tree);
+
+        // then
+        for (int target : targets) {
+            ShortestPath expected = search.search(source, target, profile, Heuristic.NONE, space);
+            assertEquals("Reachability should match separate search", expected.isFound(), tree.isSettled(target));
+            if (!expected.isFound()) {
+                continue;
+            }
+            assertTrue("Cost should match separate search", Math.abs(expected.cost() - tree.distance(target)) < EPSILON);
+            double length = 0;
+            double time = 0;
+            for (int arc : expected.arcs()) {
+                double edgeLength = graph.edgeLength(RoadGraph.arcEdge(arc)) / 1000.0;
+                length += edgeLength;
+                time += edgeLength / Math.min(graph.arcSpeed(arc), profile.maxSpeed());
+            }
+            assertTrue("Length should match path of separate search",
+                    Math.abs(length - oneToMany.pathLength(tree, source, target)) < EPSILON);
+            assertTrue("Time should match path of separate search",
+                    Math.abs(time - oneToMany.pathTime(tree, source, target, profile.maxSpeed())) < EPSILON);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertFalse;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class RoadGraphFileTest {
+
+    @Test
+    public void mappedGraphEqualsWrittenGraph() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(20, 15, 11);
+        Path path = Files.createTempDirectory("spdb-test").resolve("graph.bin");
+
+        // when
+        RoadGraphFile.write(graph, path);
+        Optional<RoadGraph> mapped = RoadGraphFile.read(path, true);
+
+        // then
+        assertTrue("Graph should be read", mapped.isPresent());
+        RoadGraph copy = mapped.get();
+        assertEquals("Node count should match", graph.nodeCount(), copy.nodeCount());
+        assertEquals("Edge count should match", graph.edgeCount(), copy.edgeCount());
+        assertEquals("Fingerprint should match", graph.fingerprint(), copy.fingerprint());
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals("Node id should match", graph.nodeId(node), copy.nodeId(node));
+            assertEquals("Latitude should match", graph.latitude(node), copy.latitude(node));
+            assertEquals("Longitude should match", graph.longitude(node), copy.longitude(node));
+            assertEquals("Node index should match", node, copy.nodeIndex(graph.nodeId(node)));
+            assertEquals("Out arcs should match", graph.outEnd(node), copy.outEnd(node));
+            assertEquals("In arcs should match", graph.inEnd(node), copy.inEnd(node));
+        }
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            assertEquals("Edge id should match", graph.edgeId(edge), copy.edgeId(edge));
+            assertEquals("Edge length should match", graph.edgeLength(edge), copy.edgeLength(edge));
+            assertEquals("Edge flags should match", graph.edgeFlags(edge), copy.edgeFlags(edge));
+        }
+        for (int i = 0; i < graph.outEnd(graph.nodeCount() - 1); i++) {
+            assertEquals("Out arc should match", graph.outArc(i), copy.outArc(i));
+        }
+        CostProfile profile = new CostProfile(90, 0.5f);
+        int target = graph.nodeCount() - 1;
+        ShortestPath expected = new AStarSearch(graph).search(0, target, profile, Heuristic.NONE,
+                new SearchSpace(graph.nodeCount()));
+        ShortestPath actual = new AStarSearch(copy).search(0, target, profile, Heuristic.NONE,
+                new SearchSpace(copy.nodeCount()));
+        assertEquals("Route cost should match", expected.cost(), actual.cost());
+    }
+
+    @Test
+    public void rejectsFileWithWrongChecksum() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(10, 10, 2);
+        Path path = Files.createTempDirectory("spdb-test").resolve("graph.bin");
+        RoadGraphFile.write(graph, path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() / 2);
+            int value = file.read();
+            file.seek(file.length() / 2);
+            file.write(value ^ 0xFF);
+        }
+
+        // when
+        Optional<RoadGraph> mapped = RoadGraphFile.read(path, true);
+
+        // then
+        assertFalse("Corrupted graph should be rejected", mapped.isPresent());
+    }
+
+    @Test
+    public void rejectsInconsistentOffsetsWithoutChecksum() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(10, 10, 2);
+        Path path = Files.createTempDirectory("spdb-test").resolve("graph.bin");
+        RoadGraphFile.write(graph, path);
+        int nodeCount = graph.nodeCount();
+        int edgeCount = graph.edgeCount();
+        long outBegins = 64 + 3 * aligned((long) nodeCount * Long.BYTES) + 7 * aligned((long) edgeCount * Integer.BYTES)
+                + aligned(edgeCount);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(outBegins + (long) nodeCount * Integer.BYTES);
+            file.write(0xFF);
+        }
+
+        // when
+        Optional<RoadGraph> mapped = RoadGraphFile.read(path, false);
+
+        // then
+        assertFalse("Graph with inconsistent offsets should be rejected", mapped.isPresent());
+    }
+
+    private static long aligned(long position) {
+        return (position + 7) & ~7L;
+    }
+}
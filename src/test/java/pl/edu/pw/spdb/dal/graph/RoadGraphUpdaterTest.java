@@ -0,0 +1,64 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.dal.WaysChangedEvent;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.springframework.test.util.AssertionErrors.*;
+
+public class RoadGraphUpdaterTest {
+
+    @Test
+    public void closedEdgeIsAvoidedByNextSearch() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(20, 20, 11);
+        String directory = Files.createTempDirectory("spdb-ch").toString();
+        RoadGraphUpdater updater = new RoadGraphUpdater(graph, new ContractionHierarchyRegistry(graph, List.of(),
+                directory), new LandmarkRegistry(graph, 0, directory + "/landmarks.bin"));
+        CostProfile profile = new CostProfile(90, 0.5f);
+        AStarSearch search = new AStarSearch(graph);
+        SearchSpace space = new SearchSpace(graph.nodeCount());
+        int from = 0;
+        int to = graph.nodeCount() - 1;
+        ShortestPath before = search.search(from, to, profile, Heuristic.NONE, space);
+        int edge = RoadGraph.arcEdge(before.arcs()[before.arcs().length / 2]);
+        int gid = graph.edgeId(edge);
+
+        // when
+        updater.onWaysChanged(WaysChangedEvent.parse("D," + gid));
+        ShortestPath after = search.search(from, to, profile, Heuristic.NONE, space);
+
+        // then
+        assertEquals("Edge should be found by its id", edge, graph.edgeIndex(gid));
+        assertTrue("Route should still be found", after.isFound());
+        assertTrue("Route should not be cheaper than before closing an edge", after.cost() >= before.cost());
+        for (int arc : after.arcs()) {
+            assertTrue("Closed edge should not be used", RoadGraph.arcEdge(arc) != edge);
+        }
+    }
+
+    @Test
+    public void changedSpeedIsUsedInCost() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(5, 5, 2);
+        String directory = Files.createTempDirectory("spdb-ch").toString();
+        RoadGraphUpdater updater = new RoadGraphUpdater(graph, new ContractionHierarchyRegistry(graph, List.of(),
+                directory), new LandmarkRegistry(graph, 0, directory + "/landmarks.bin"));
+        CostProfile profile = new CostProfile(140, 0f);
+        int arc = graph.outArc(graph.outBegin(0));
+        int edge = RoadGraph.arcEdge(arc);
+        double before = graph.arcCost(arc, profile);
+        float speed = RoadGraph.arcReversed(arc) ? graph.speedBackward(edge) : graph.speedForward(edge);
+
+        // when
+        updater.onWaysChanged(new WaysChangedEvent(WaysChangedEvent.Operation.UPDATE, graph.edgeId(edge),
+                graph.speedForward(edge), graph.speedBackward(edge), graph.speedForward(edge) / 2,
+                graph.speedBackward(edge) / 2, graph.edgeFlags(edge), graph.edgeFlags(edge)));
+
+        // then
+        assertTrue("Halving speed should raise time cost", graph.arcCost(arc, profile) > before);
+        assertEquals("Speed should be updated", speed / 2, graph.arcSpeed(arc));
+    }
+}
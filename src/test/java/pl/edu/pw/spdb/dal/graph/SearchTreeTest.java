@@ -0,0 +1,92 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class SearchTreeTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void forwardAndBackwardTreesMatchSeparateSearches() {
+        // given
+        RoadGraph graph = TestGraphs.grid(30, 30, 17);
+        CostProfile profile = new CostProfile(90, 0.3f);
+        AStarSearch search = new AStarSearch(graph);
+        SearchSpace space = new SearchSpace(graph.nodeCount());
+        Random random = new Random(5);
+        int root = random.nextInt(graph.nodeCount());
+        SearchTree forward = new SearchTree(graph, root, false, profile);
+        SearchTree backward = new SearchTree(graph, root, true, profile);
+
+        for (int i = 0; i < 30; i++) {
+            int node = random.nextInt(graph.nodeCount());
+
+            // when
+            ShortestPath fromRoot = forward.path(node);
+            ShortestPath toRoot = backward.path(node);
+
+            // then
+            assertPathMatches(graph, fromRoot, search.search(root, node, profile, Heuristic.NONE, space), root, node);
+            assertPathMatches(graph, toRoot, search.search(node, root, profile, Heuristic.NONE, space), node, root);
+        }
+    }
+
+    @Test
+    public void readsPathFromGrownTreeWithoutSearching() {
+        // given
+        RoadGraph graph = TestGraphs.grid(20, 20, 3);
+        SearchTree tree = new SearchTree(graph, 0, false, new CostProfile(90, 0.5f));
+        int far = graph.nodeCount() - 1;
+        tree.path(far);
+
+        // when
+        ShortestPath near = tree.path(graph.nodeCount() / 2);
+
+        // then
+        assertEquals("Path inside grown tree should not settle nodes", 0, near.settledNodes());
+    }
+
+    @Test
+    public void limitedGrowthContinuesInNextCall() {
+        // given
+        RoadGraph graph = TestGraphs.grid(20, 20, 3);
+        CostProfile profile = new CostProfile(90, 0.5f);
+        SearchTree tree = new SearchTree(graph, 0, false, profile);
+        int far = graph.nodeCount() - 1;
+        ShortestPath expected = new SearchTree(graph, 0, false, profile).path(far);
+
+        // when
+        ShortestPath limited = tree.path(far, 10);
+        ShortestPath path = null;
+        int calls = 1;
+        while (path == null) {
+            path = tree.path(far, 10);
+            calls++;
+        }
+
+        // then
+        assertTrue("Path should not be found within limit", limited == null);
+        assertTrue("Tree should be grown over several calls", calls > 2);
+        assertTrue("Cost should match unlimited search", Math.abs(expected.cost() - path.cost()) < EPSILON);
+    }
+
+    private static void assertPathMatches(RoadGraph graph, ShortestPath actual, ShortestPath expected, int from,
+                                          int to) {
+        assertEquals("Reachability should match separate search", expected.isFound(), actual.isFound());
+        if (!expected.isFound()) {
+            return;
+        }
+        assertTrue("Cost should match separate search", Math.abs(expected.cost() - actual.cost()) < EPSILON);
+        int node = from;
+        for (int arc : actual.arcs()) {
+            assertEquals("Arcs should form a path", node, graph.arcTail(arc));
+            node = graph.arcHead(arc);
+        }
+        assertEquals("Path should end at target", to, node);
+    }
+}
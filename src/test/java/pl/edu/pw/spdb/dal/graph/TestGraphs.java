@@ -0,0 +1,55 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import java.util.Random;
+
+/***
+ * Generator małych grafów testowych w kształcie zaburzonej siatki z drogami jednokierunkowymi
+ * i różnymi ograniczeniami prędkości
+ */
+public final class TestGraphs {
+
+    private static final int[] SPEEDS = {30, 50, 70, 90, 120, 140};
+
+    private TestGraphs() {
+    }
+
+    public static RoadGraph grid(int width, int height, long seed) {
+        Random random = new Random(seed);
+        double[] lat = new double[width * height];
+        double[] lon = new double[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                lat[y * width + x] = 52 + y * 0.01 + random.nextDouble() * 0.004;
+                lon[y * width + x] = 21 + x * 0.01 + random.nextDouble() * 0.004;
+            }
+        }
+
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        int gid = 1;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int node = y * width + x;
+                if (x + 1 < width && random.nextInt(10) > 0) {
+                    addEdge(builder, random, gid++, node, node + 1, lat, lon);
+                }
+                if (y + 1 < height && random.nextInt(10) > 0) {
+                    addEdge(builder, random, gid++, node, node + width, lat, lon);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static void addEdge(RoadGraphBuilder builder, Random random, int gid, int source, int target,
+                                double[] lat, double[] lon) {
+        double dLat = lat[source] - lat[target];
+        double dLon = lon[source] - lon[target];
+        double straight = Math.sqrt(dLat * dLat + dLon * dLon);
+        double costLength = straight * (1 + random.nextDouble() * 0.3) / 1000;
+        double length = costLength * 1000 * 80000;
+        double speed = SPEEDS[random.nextInt(SPEEDS.length)];
+        int direction = random.nextInt(8);
+        builder.addEdge(gid, 1000 + source, 1000 + target, costLength, length, speed, speed,
+                direction != 0, direction != 1, lon[source], lat[source], lon[target], lat[target]);
+    }
+}
@@ -0,0 +1,139 @@
+package pl.edu.pw.spdb.dal.graph;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.model.Point;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class TiledAStarSearchTest {
+
+    private static final double TILE_SIZE = 0.05;
+    private static final double RELATIVE_EPSILON = 1e-6;
+
+    @Test
+    public void findsSameCostAsWholeGraphSearch() {
+        // given
+        RoadGraph graph = TestGraphs.grid(40, 40, 21);
+        GraphTileLoader loader = new GraphTileLoader(graph);
+        TileCache cache = new TileCache(loader, TILE_SIZE, 1000);
+        TiledAStarSearch tiled = new TiledAStarSearch(cache, loader);
+        AStarSearch search = new AStarSearch(graph);
+        SearchSpace space = new SearchSpace(graph.nodeCount());
+        Random random = new Random(3);
+
+        for (int i = 0; i < 100; i++) {
+            int source = random.nextInt(graph.nodeCount());
+            int target = random.nextInt(graph.nodeCount());
+            CostProfile profile = new CostProfile(30 + random.nextInt(170), random.nextInt(5) / 4f);
+
+            // when
+            ShortestPath expected = search.search(source, target, profile,
+                    Heuristic.straightLine(graph, target, profile), space);
+            TiledAStarSearch.TiledPath actual = tiled.search(graph.nodeId(source), graph.nodeId(target), profile,
+                    graph.maxSpeed());
+
+            // then
+            assertEquals("Path existence should not depend on tiles", expected.isFound(), actual.isFound());
+            if (expected.isFound()) {
+                assertTrue("Tiled search should find optimal path",
+                        Math.abs(expected.cost() - actual.cost()) <= RELATIVE_EPSILON * expected.cost());
+                double cost = 0;
+                for (int j = 0; j < actual.arcs().length; j++) {
+                    cost += actual.graphs()[j].arcCost(actual.arcs()[j], profile);
+                }
+                assertTrue("Path cost should be sum of its arcs",
+                        Math.abs(cost - actual.cost()) <= RELATIVE_EPSILON * expected.cost());
+            }
+        }
+        assertTrue("Cache should not exceed limit after searches", cache.getStats().edges() <= 1000);
+    }
+
+    @Test
+    public void localSearchLoadsOnlyNearbyTiles() {
+        // given
+        RoadGraph graph = TestGraphs.grid(40, 40, 5);
+        GraphTileLoader loader = new GraphTileLoader(graph);
+        TileCache cache = new TileCache(loader, TILE_SIZE, Long.MAX_VALUE);
+        TiledAStarSearch tiled = new TiledAStarSearch(cache, loader);
+        CostProfile profile = new CostProfile(90, 0.5f);
+        int source = 20 * 40 + 20;
+
+        // when
+        TiledAStarSearch.TiledPath path = tiled.search(graph.nodeId(source), graph.nodeId(source + 1), profile,
+                graph.maxSpeed());
+        tiled.search(graph.nodeId(source), graph.nodeId(source + 1), profile, graph.maxSpeed());
+
+        // then
+        assertTrue("Path should be found", path.isFound());
+        assertTrue("Only tiles around the route should be loaded", loader.loads.get() <= 4);
+        assertEquals("Repeated search should use cached tiles", (long) loader.loads.get(), cache.getStats().loads());
+    }
+
+    @Test
+    public void invalidatedTileIsLoadedAgain() {
+        // given
+        RoadGraph graph = TestGraphs.grid(20, 20, 8);
+        GraphTileLoader loader = new GraphTileLoader(graph);
+        TileCache cache = new TileCache(loader, TILE_SIZE, Long.MAX_VALUE);
+        TileCache.Tile tile = cache.acquire(TileKey.of(graph.latitude(0), graph.longitude(0), TILE_SIZE));
+        cache.release(tile);
+        long gid = tile.graph().edgeId(0);
+
+        // when
+        cache.invalidateEdge(gid);
+        TileCache.Tile reloaded = cache.acquire(tile.key());
+        cache.release(reloaded);
+
+        // then
+        assertEquals("Tile should be loaded again", 2, loader.loads.get());
+        assertTrue("Reloaded tile should be a new graph", reloaded.graph() != tile.graph());
+    }
+
+    /***
+     * Wycina kafelki z grafu testowego tak, jak PostgisTileLoader z tabeli ways
+     */
+    private static final class GraphTileLoader implements TileLoader {
+        private final RoadGraph graph;
+        private final AtomicInteger loads = new AtomicInteger();
+
+        GraphTileLoader(RoadGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public RoadGraph load(TileKey key, double size) {
+            loads.incrementAndGet();
+            RoadGraphBuilder builder = new RoadGraphBuilder();
+            for (int edge = 0; edge < graph.edgeCount(); edge++) {
+                int source = graph.edgeSource(edge);
+                int target = graph.edgeTarget(edge);
+                if (!key.equals(TileKey.of(graph.latitude(source), graph.longitude(source), size))
+                        && !key.equals(TileKey.of(graph.latitude(target), graph.longitude(target), size))) {
+                    continue;
+                }
+                byte flags = graph.edgeFlags(edge);
+                builder.addEdge(graph.edgeId(edge), graph.nodeId(source), graph.nodeId(target),
+                        graph.edgeCostLength(edge), graph.edgeLength(edge), graph.speedForward(edge),
+                        graph.speedBackward(edge), (flags & RoadGraph.FORWARD) != 0,
+                        (flags & RoadGraph.BACKWARD) != 0, graph.longitude(source), graph.latitude(source),
+                        graph.longitude(target), graph.latitude(target));
+            }
+            return builder.build();
+        }
+
+        @Override
+        public Point locate(long nodeId) {
+            int node = graph.nodeIndex(nodeId);
+            return node < 0 ? null : new Point(graph.latitude(node), graph.longitude(node));
+        }
+
+        @Override
+        public double maxSpeed() {
+            return graph.maxSpeed();
+        }
+    }
+}
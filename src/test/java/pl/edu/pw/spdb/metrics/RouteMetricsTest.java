@@ -0,0 +1,52 @@
+package pl.edu.pw.spdb.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.model.Route;
+
+import java.util.List;
+
+import static org.springframework.test.util.AssertionErrors.*;
+
+public class RouteMetricsTest {
+
+    @Test
+    public void tagsPhasesWithCurrentSearch() {
+        // given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RouteMetrics metrics = new RouteMetrics(registry);
+
+        // when
+        RouteMetrics.Search search = metrics.search(120, 0.25);
+        try {
+            metrics.recordQuery(metrics.start());
+        } finally {
+            search.close();
+        }
+        metrics.recordParse(metrics.start());
+
+        // then
+        assertEquals("Query should be tagged with the search", 1L, registry.get(RouteMetrics.QUERY)
+                .tags("maxSpeed", "91-140", "cost", "0.3").timer().count());
+        assertEquals("Parse outside of a search should not be tagged", 1L, registry.get(RouteMetrics.PARSE)
+                .tags("maxSpeed", "none", "cost", "none").timer().count());
+    }
+
+    @Test
+    public void countsEmptyRouteAsFailure() {
+        // given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RouteMetrics metrics = new RouteMetrics(registry);
+        Route route = Route.of(List.of(), 50);
+        route.setDistanceWeight(1);
+
+        // when
+        metrics.recordRoute(route);
+
+        // then
+        assertEquals("Segments should be recorded", 1L, registry.get(RouteMetrics.SEGMENTS)
+                .tags("maxSpeed", "0-50", "cost", "1.0").summary().count());
+        assertEquals("Empty route should be a failed search", 1.0, registry.get(RouteMetrics.FAILURES)
+                .tags("reason", "not_found").counter().count());
+    }
+}
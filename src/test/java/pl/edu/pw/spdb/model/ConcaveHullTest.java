@@ -0,0 +1,62 @@
+package pl.edu.pw.spdb.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertFalse;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class ConcaveHullTest {
+
+    private static final double STEP = 0.001;
+
+    @Test
+    public void excludesNotchOfLShapedArea() {
+        // given
+        CoordinateBuffer points = new CoordinateBuffer();
+        for (int x = 0; x < 20; x++) {
+            for (int y = 0; y < 20; y++) {
+                if (x < 3 || y < 3) {
+                    points.add(x * STEP, y * STEP);
+                }
+            }
+        }
+
+        // when
+        RouteGeometry hull = ConcaveHull.of(points);
+
+        // then
+        int last = hull.pointCount() - 1;
+        assertEquals("Ring should be closed", hull.longitude(0), hull.longitude(last));
+        assertEquals("Ring should be closed", hull.latitude(0), hull.latitude(last));
+        assertFalse("Notch should be outside of hull", contains(hull, 15 * STEP, 15 * STEP));
+        assertTrue("Arm should be inside of hull", contains(hull, 15 * STEP, 1.5 * STEP));
+        assertTrue("Arm should be inside of hull", contains(hull, 1.5 * STEP, 15 * STEP));
+    }
+
+    @Test
+    public void returnsEmptyRingForNoPoints() {
+        // given
+        CoordinateBuffer points = new CoordinateBuffer();
+
+        // when
+        RouteGeometry hull = ConcaveHull.of(points);
+
+        // then
+        assertEquals("Hull of no points should be empty", 0, hull.pointCount());
+    }
+
+    private static boolean contains(RouteGeometry ring, double x, double y) {
+        boolean inside = false;
+        for (int i = 0, j = ring.pointCount() - 2; i < ring.pointCount() - 1; j = i++) {
+            double xi = ring.longitude(i);
+            double yi = ring.latitude(i);
+            double xj = ring.longitude(j);
+            double yj = ring.latitude(j);
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
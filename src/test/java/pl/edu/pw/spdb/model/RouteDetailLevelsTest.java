@@ -0,0 +1,57 @@
+package pl.edu.pw.spdb.model;
+
+import com.sothawo.mapjfx.Coordinate;
+import com.sothawo.mapjfx.Extent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class RouteDetailLevelsTest {
+
+    @Test
+    public void removesPointsLyingOnStraightLine() {
+        // given
+        CoordinateBuffer buffer = new CoordinateBuffer();
+        for (int i = 0; i <= 100; i++) {
+            buffer.add(20 + i * 0.001, 52);
+        }
+        RouteDetailLevels levels = new RouteDetailLevels(RouteGeometry.of(buffer));
+
+        // when
+        List<Coordinate> coordinates = levels.select(18, null).coordinates();
+
+        // then
+        assertEquals("Only ends of straight line should stay", 2, coordinates.size());
+        assertEquals("First point should stay", 20.0, coordinates.get(0).getLongitude());
+        assertTrue("Last point should stay", Math.abs(coordinates.get(1).getLongitude() - 20.1) < 1e-9);
+    }
+
+    @Test
+    public void keepsPointCountIndependentOfRouteLength() {
+        // given
+        RouteDetailLevels shortRoute = new RouteDetailLevels(zigzag(2_000));
+        RouteDetailLevels longRoute = new RouteDetailLevels(zigzag(200_000));
+        Extent extent = Extent.forCoordinates(new Coordinate(51.99, 20.0), new Coordinate(52.01, 20.005));
+
+        // when
+        int shortPoints = shortRoute.select(16, extent).coordinates().size();
+        int longPoints = longRoute.select(16, extent).coordinates().size();
+
+        // then
+        assertTrue("Zoomed in route should keep details", shortRoute.pointCount(16) > 1_000);
+        assertTrue("Long route should not send all points", longRoute.pointCount(16) > 100 * longPoints);
+        assertTrue("Point count should not grow with route length",
+                longPoints <= shortPoints + RouteDetailLevels.OFFSCREEN_POINTS);
+    }
+
+    private static RouteGeometry zigzag(int points) {
+        CoordinateBuffer buffer = new CoordinateBuffer();
+        for (int i = 0; i < points; i++) {
+            buffer.add(20 + i * 0.00002, 52 + (i % 2) * 0.0002);
+        }
+        return RouteGeometry.of(buffer);
+    }
+}
@@ -0,0 +1,60 @@
+package pl.edu.pw.spdb.server;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.model.CoordinateBuffer;
+import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteSegment;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.List;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class RouteCodecTest {
+
+    @Test
+    public void encodesPolylineLikeReferenceImplementation() {
+        // given
+        CoordinateBuffer points = new CoordinateBuffer();
+        points.add(-120.2, 38.5);
+        points.add(-120.95, 40.7);
+        points.add(-126.453, 43.252);
+
+        // when
+        String polyline = RouteCodec.encodePolyline(points);
+
+        // then
+        assertEquals("Polyline should match the reference example", "_p~iF~ps|U_ulLnnqC_mqNvxq`@", polyline);
+    }
+
+    @Test
+    public void writesRouteInJsonAndBinary() throws Exception {
+        // given
+        Route route = Route.of(List.of(
+                new RouteSegment(11, 1, 2, 1.5, 50, 21.0, 52.2, 21.01, 52.21),
+                new RouteSegment(12, 2, 3, 0.5, 90, 21.01, 52.21, 21.02, 52.2)), 90);
+
+        // when
+        String json = RouteCodec.toJson(route);
+        byte[] binary = RouteCodec.toBinary(List.of(route));
+
+        // then
+        assertTrue("JSON should contain edge ids", json.contains("\"edges\":[11,12]"));
+        assertTrue("JSON should contain distance", json.contains("\"distance\":2.000000"));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(binary));
+        assertEquals("Magic", 0x53525431, in.readInt());
+        assertEquals("Route count", 1, in.readInt());
+        in.readDouble();
+        in.readDouble();
+        assertEquals("Max speed", 90, in.readInt());
+        in.readFloat();
+        in.readLong();
+        in.readLong();
+        assertEquals("Edge count", 2, in.readInt());
+        assertEquals("First edge", 11L, in.readLong());
+        assertEquals("Second edge", 12L, in.readLong());
+        assertEquals("Point count", 3, in.readInt());
+    }
+}
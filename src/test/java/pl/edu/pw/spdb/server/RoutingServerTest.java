@@ -0,0 +1,62 @@
+package pl.edu.pw.spdb.server;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.dal.InMemoryDatabaseService;
+import pl.edu.pw.spdb.dal.graph.ContractionHierarchyRegistry;
+import pl.edu.pw.spdb.dal.graph.LandmarkRegistry;
+import pl.edu.pw.spdb.dal.graph.RoadGraph;
+import pl.edu.pw.spdb.dal.graph.RoadGraphBuilder;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+import pl.edu.pw.spdb.service.RouteCache;
+import pl.edu.pw.spdb.service.SearchPathService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertFalse;
+
+public class RoutingServerTest {
+
+    @Test
+    public void returnsNotFoundForMissingRouteInEveryFormat() throws Exception {
+        // given
+        // dwie niepołączone drogi - trasa z pierwszej na drugą nie istnieje
+        RoadGraph graph = new RoadGraphBuilder()
+                .addEdge(1, 1, 2, 0.01, 700, 90, 90, true, false, 21.00, 52.00, 21.01, 52.00)
+                .addEdge(2, 3, 4, 0.01, 700, 90, 90, true, false, 21.50, 52.50, 21.51, 52.50)
+                .build();
+        RouteMetrics metrics = new RouteMetrics(new SimpleMeterRegistry());
+        Path directory = Files.createTempDirectory("spdb-test");
+        SearchPathService service = new SearchPathService(new InMemoryDatabaseService(graph,
+                new ContractionHierarchyRegistry(graph, List.of(), directory.toString()),
+                new LandmarkRegistry(graph, 0, directory.resolve("landmarks.bin").toString()), metrics),
+                new RouteCache(0, 0), metrics);
+        RoutingServer server = new RoutingServer(service, metrics, "localhost", 0, 2, 1000, 2);
+        HttpClient client = HttpClient.newHttpClient();
+
+        // when
+        server.start();
+        try {
+            String route = "http://localhost:" + server.getPort()
+                    + "/route?from=52.00,21.00&to=52.50,21.51&speed=90&weight=0.5";
+            HttpResponse<String> json = client.send(HttpRequest.newBuilder(URI.create(route)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> binary = client.send(HttpRequest.newBuilder(URI.create(route + "&format=binary"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+
+            // then
+            assertEquals("Missing route should be 404 for JSON", 404, json.statusCode());
+            assertEquals("Missing route should be 404 for binary format", 404, binary.statusCode());
+        } finally {
+            server.stop();
+        }
+        assertFalse("Server should be stopped", server.isRunning());
+    }
+}
@@ -0,0 +1,128 @@
+package pl.edu.pw.spdb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.dal.InMemoryDatabaseService;
+import pl.edu.pw.spdb.dal.graph.ContractionHierarchyRegistry;
+import pl.edu.pw.spdb.dal.graph.CostProfile;
+import pl.edu.pw.spdb.dal.graph.LandmarkRegistry;
+import pl.edu.pw.spdb.dal.graph.RoadGraph;
+import pl.edu.pw.spdb.dal.graph.TestGraphs;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.test.util.AssertionErrors.assertEquals;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class BatchRouteRunnerTest {
+
+    @Test
+    public void writesOneResultPerPairAndProfile() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(15, 15, 4);
+        Path directory = Files.createTempDirectory("spdb-test");
+        SearchPathService service = searchPathService(graph, directory);
+        List<String> lines = new ArrayList<>();
+        lines.add("name,from_lat,from_lon,to_lat,to_lon,speed,weight");
+        for (int i = 0; i < 20; i++) {
+            int from = i;
+            int to = graph.nodeCount() - 1 - i;
+            lines.add("pair" + i + "," + graph.latitude(from) + "," + graph.longitude(from) + ","
+                    + graph.latitude(to) + "," + graph.longitude(to) + (i % 2 == 0 ? ",90,0.5" : ",,"));
+        }
+        Path input = Files.write(directory.resolve("pairs.csv"), lines);
+        Path output = directory.resolve("routes.csv");
+        BatchRouteRunner runner = new BatchRouteRunner(service,
+                List.of(new CostProfile(50, 0), new CostProfile(140, 1)), 4, 8);
+
+        // when
+        BatchRouteRunner.Summary summary = runner.run(input, output);
+
+        // then
+        List<String> results = Files.readAllLines(output);
+        assertEquals("Output should start with header", BatchRouteRunner.OUTPUT_HEADER, results.get(0));
+        assertEquals("Rows without profile should be searched for each default profile", 30L, summary.searches());
+        assertEquals("Each search should be written", 31, results.size());
+        assertEquals("All routes should be found", 30L, summary.found());
+        Set<String> searched = new HashSet<>();
+        for (String result : results.subList(1, results.size())) {
+            List<String> values = BatchRouteRunner.fields(result);
+            assertTrue("Route length should be written", !values.get(8).isEmpty());
+            searched.add(values.get(0) + ":" + values.get(6) + ":" + values.get(7));
+        }
+        assertEquals("Each row and profile should be searched once", 30, searched.size());
+    }
+
+    @Test
+    public void writesInvalidRowsAndContinues() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(10, 10, 4);
+        Path directory = Files.createTempDirectory("spdb-test");
+        SearchPathService service = searchPathService(graph, directory);
+        String pair = graph.latitude(0) + "," + graph.longitude(0) + ","
+                + graph.latitude(graph.nodeCount() - 1) + "," + graph.longitude(graph.nodeCount() - 1);
+        Path input = Files.write(directory.resolve("pairs.csv"), List.of(
+                "name,from_lat,from_lon,to_lat,to_lon,speed,weight",
+                "first," + pair + ",90,0.5",
+                "broken,abc,1,2",
+                "last," + pair + ",90,fast"));
+        Path output = directory.resolve("routes.csv");
+        BatchRouteRunner runner = new BatchRouteRunner(service, List.of(new CostProfile(50, 0)), 2, 4);
+
+        // when
+        BatchRouteRunner.Summary summary = runner.run(input, output);
+
+        // then
+        List<String> results = Files.readAllLines(output);
+        assertEquals("Valid row should be searched", 1L, summary.searches());
+        assertEquals("Invalid rows should be counted", 2L, summary.invalid());
+        assertEquals("Each row should be written", 4, results.size());
+        Set<String> invalid = new HashSet<>();
+        for (String result : results.subList(1, results.size())) {
+            List<String> values = BatchRouteRunner.fields(result);
+            assertEquals("Each result should have all columns", 13, values.size());
+            if (values.get(12).equals("invalid")) {
+                invalid.add(values.get(0));
+            }
+        }
+        assertEquals("Invalid rows should be written with their numbers", Set.of("2", "3"), invalid);
+    }
+
+    @Test
+    public void quotesNamesContainingSeparators() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(10, 10, 4);
+        Path directory = Files.createTempDirectory("spdb-test");
+        SearchPathService service = searchPathService(graph, directory);
+        String pair = graph.latitude(0) + "," + graph.longitude(0) + ","
+                + graph.latitude(graph.nodeCount() - 1) + "," + graph.longitude(graph.nodeCount() - 1);
+        Path input = Files.write(directory.resolve("pairs.csv"), List.of(
+                "name,from_lat,from_lon,to_lat,to_lon,speed,weight",
+                "\"Gdansk, \"\"port\"\"\"," + pair + ",90,0.5"));
+        Path output = directory.resolve("routes.csv");
+        BatchRouteRunner runner = new BatchRouteRunner(service, List.of(new CostProfile(50, 0)), 1, 1);
+
+        // when
+        runner.run(input, output);
+
+        // then
+        List<String> values = BatchRouteRunner.fields(Files.readAllLines(output).get(1));
+        assertEquals("Result should have all columns", 13, values.size());
+        assertEquals("Name should be written back unchanged", "Gdansk, \"port\"", values.get(1));
+        assertEquals("Route should be found", "ok", values.get(12));
+    }
+
+    private static SearchPathService searchPathService(RoadGraph graph, Path directory) {
+        RouteMetrics metrics = new RouteMetrics(new SimpleMeterRegistry());
+        return new SearchPathService(new InMemoryDatabaseService(graph,
+                new ContractionHierarchyRegistry(graph, List.of(), directory.toString()),
+                new LandmarkRegistry(graph, 0, directory.resolve("landmarks.bin").toString()), metrics),
+                new RouteCache(0, 0), metrics);
+    }
+}
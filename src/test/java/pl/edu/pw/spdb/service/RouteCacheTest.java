@@ -0,0 +1,221 @@
+package pl.edu.pw.spdb.service;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.dal.WaysChangedEvent;
+import pl.edu.pw.spdb.model.Point;
+import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteSegment;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.test.util.AssertionErrors.*;
+
+public class RouteCacheTest {
+
+    private static final RouteCache.RouteKey KEY = new RouteCache.RouteKey(1, 2, 90, 0.5f);
+
+    @Test
+    public void returnsCachedRouteUntilExpired() {
+        // given
+        AtomicLong now = new AtomicLong();
+        RouteCache cache = new RouteCache(10, 100, now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        // when
+        Route first = cache.get(KEY, () -> newRoute(loads));
+        Route second = cache.get(KEY, () -> newRoute(loads));
+        now.set(100);
+        Route third = cache.get(KEY, () -> newRoute(loads));
+
+        // then
+        assertTrue("Second call should be served from cache", first == second);
+        assertTrue("Expired entry should be loaded again", third != first);
+        assertEquals("Loader should run twice", 2, loads.get());
+        assertEquals("Hits should be counted", 1L, cache.getStats().hits());
+        assertEquals("Misses should be counted", 2L, cache.getStats().misses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedRoute() {
+        // given
+        RouteCache cache = new RouteCache(2, Long.MAX_VALUE / 2, () -> 0);
+        RouteCache.RouteKey other = new RouteCache.RouteKey(3, 4, 90, 0.5f);
+        RouteCache.RouteKey third = new RouteCache.RouteKey(5, 6, 90, 0.5f);
+        AtomicInteger loads = new AtomicInteger();
+
+        // when
+        cache.get(KEY, () -> newRoute(loads));
+        cache.get(other, () -> newRoute(loads));
+        cache.get(KEY, () -> newRoute(loads));
+        cache.get(third, () -> newRoute(loads));
+
+        // then
+        assertNotNull("Recently used route should stay", cache.getIfPresent(KEY));
+        assertNull("Least recently used route should be evicted", cache.getIfPresent(other));
+        assertEquals("Eviction should be counted", 1L, cache.getStats().evictions());
+    }
+
+    @Test
+    public void slowerEdgeInvalidatesOnlyRoutesThroughIt() {
+        // given
+        RouteCache cache = new RouteCache(10, Long.MAX_VALUE / 2, () -> 0);
+        RouteCache.RouteKey other = new RouteCache.RouteKey(3, 4, 90, 0.5f);
+        cache.put(KEY, new Route(List.of(new RouteSegment(7, 1, 2, 1, 50, 0, 0, 1, 1)), 0, 0));
+        cache.put(other, new Route(List.of(new RouteSegment(8, 3, 4, 1, 50, 0, 0, 1, 1)), 0, 0));
+
+        // when
+        cache.onWaysChanged(WaysChangedEvent.parse("U,7,50,50,30,50,3,3"));
+
+        // then
+        assertNull("Route through slower edge should be invalidated", cache.getIfPresent(KEY));
+        assertNotNull("Other route should stay", cache.getIfPresent(other));
+
+        // when
+        cache.onWaysChanged(WaysChangedEvent.parse("U,9,50,50,70,50,3,3"));
+
+        // then
+        assertNull("Faster edge should invalidate all routes", cache.getIfPresent(other));
+    }
+
+    @Test
+    public void coalescesConcurrentRequests() throws Exception {
+        // given
+        RouteCache cache = new RouteCache(10, Long.MAX_VALUE / 2, System::nanoTime);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        Future<Route> leader = executor.submit(() -> cache.get(KEY, () -> {
+            loading.countDown();
+            await(release);
+            return newRoute(loads);
+        }));
+        loading.await();
+        List<Future<Route>> followers = List.of(
+                executor.submit(() -> cache.get(KEY, () -> newRoute(loads))),
+                executor.submit(() -> cache.get(KEY, () -> newRoute(loads))));
+        while (cache.getStats().coalesced() < 2) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        // then
+        Route route = leader.get(5, TimeUnit.SECONDS);
+        for (Future<Route> follower : followers) {
+            assertTrue("Followers should receive leader result", follower.get(5, TimeUnit.SECONDS) == route);
+        }
+        assertEquals("Only one load should be executed", 1, loads.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void requestsWaitForRoutesReservedByLookup() throws Exception {
+        // given
+        RouteCache cache = new RouteCache(10, Long.MAX_VALUE / 2, System::nanoTime);
+        RouteCache.RouteKey other = new RouteCache.RouteKey(1, 2, 50, 0.5f);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        Route route = new Route(List.of(), 0, 0);
+        route.setStartId(KEY.startId());
+        route.setEndId(KEY.endId());
+
+        // when
+        Future<Route> follower;
+        try (RouteCache.Lookup lookup = cache.lookup(List.of(KEY, other))) {
+            follower = executor.submit(() -> cache.get(KEY, () -> newRoute(loads)));
+            while (cache.getStats().coalesced() < 1) {
+                Thread.onSpinWait();
+            }
+            lookup.complete(KEY, route);
+        }
+
+        // then
+        assertTrue("Follower should receive lookup result", follower.get(5, TimeUnit.SECONDS) == route);
+        assertEquals("Loader should not run", 0, loads.get());
+        assertEquals("Reserved keys should be counted as misses", 2L, cache.getStats().misses());
+        assertTrue("Completed route should be cached", cache.getIfPresent(KEY) == route);
+        try (RouteCache.Lookup lookup = cache.lookup(List.of(KEY, other))) {
+            assertTrue("Cached route should be found", lookup.get(KEY) == route);
+            assertTrue("Route not completed before should be reserved again", lookup.isOwned(other));
+        }
+        assertEquals("Cached route should be counted as hit", 1L, cache.getStats().hits());
+        executor.shutdown();
+    }
+
+    @Test
+    public void waitersReceiveCauseOfFailedLookup() throws Exception {
+        // given
+        RouteCache cache = new RouteCache(10, Long.MAX_VALUE / 2, System::nanoTime);
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        CancellationException cause = new CancellationException("Route search cancelled");
+
+        // when
+        Future<Route> follower;
+        try (RouteCache.Lookup lookup = cache.lookup(List.of(KEY))) {
+            follower = executor.submit(() -> cache.get(KEY, () -> newRoute(new AtomicInteger())));
+            while (cache.getStats().coalesced() < 1) {
+                Thread.onSpinWait();
+            }
+            lookup.fail(cause);
+        }
+
+        // then
+        try {
+            follower.get(5, TimeUnit.SECONDS);
+            fail("Follower should fail");
+        } catch (ExecutionException e) {
+            assertTrue("Follower should receive cause of failure", e.getCause() == cause);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void coalescesConcurrentSearchesByPoints() throws Exception {
+        // given
+        RouteCache cache = new RouteCache(10, Long.MAX_VALUE / 2, System::nanoTime);
+        RouteCache.PointsKey key = new RouteCache.PointsKey(new Point(52.2, 21.0), new Point(52.3, 21.1), 90, 0.5f);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // when
+        Future<Route> leader = executor.submit(() -> cache.getByPoints(key, () -> {
+            loading.countDown();
+            await(release);
+            return newRoute(loads);
+        }));
+        loading.await();
+        Future<Route> follower = executor.submit(() -> cache.getByPoints(
+                new RouteCache.PointsKey(new Point(52.2, 21.0), new Point(52.3, 21.1), 90, 0.5f),
+                () -> newRoute(loads)));
+        while (cache.getStats().coalesced() < 1) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        // then
+        assertTrue("Follower should receive leader result",
+                follower.get(5, TimeUnit.SECONDS) == leader.get(5, TimeUnit.SECONDS));
+        assertEquals("Only one search should be executed", 1, loads.get());
+        executor.shutdown();
+    }
+
+    private static Route newRoute(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return new Route(List.of(), 0, 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package pl.edu.pw.spdb.service;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.dal.WaysChangedEvent;
+import pl.edu.pw.spdb.model.Route;
+import pl.edu.pw.spdb.model.RouteGeometry;
+import pl.edu.pw.spdb.model.RouteSegment;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.test.util.AssertionErrors.*;
+
+public class RouteStoreTest {
+
+    private static final RouteCache.RouteKey KEY = new RouteCache.RouteKey(100, 200, 90, 0.5f);
+
+    @Test
+    public void routeSurvivesReopeningStore() throws Exception {
+        // given
+        Path file = Files.createTempDirectory("spdb-store").resolve("routes.bin");
+        Route route = newRoute(50);
+        try (RouteStore store = new RouteStore(file, () -> 7, true, 1 << 20)) {
+            store.put(KEY, store.graphVersion(), route);
+        }
+
+        // when
+        Route read;
+        try (RouteStore store = new RouteStore(file, () -> 7, true, 1 << 20)) {
+            read = store.get(KEY, store.graphVersion());
+        }
+
+        // then
+        assertNotNull("Route should be read after reopening", read);
+        assertEquals("Distance should be stored exactly", route.getDistance(), read.getDistance());
+        assertEquals("Segment count should match", route.getSegments().size(), read.getSegments().size());
+        for (int i = 0; i < route.getSegments().size(); i++) {
+            RouteSegment expected = route.getSegments().get(i);
+            RouteSegment actual = read.getSegments().get(i);
+            assertEquals("Segment id should match", expected.id(), actual.id());
+            assertEquals("Segment target should match", expected.target(), actual.target());
+            assertTrue("Length should be quantised to 1 cm", Math.abs(expected.length() - actual.length()) <= 5e-6);
+            assertTrue("Coordinate should be quantised to 1e-7", Math.abs(expected.y2() - actual.y2()) <= 5e-8);
+        }
+        assertEquals("Geometry should be stored", route.getGeometry().pointCount(), read.getGeometry().pointCount());
+        assertEquals("End vertex should be taken from key", KEY.endId(), read.getEndId());
+    }
+
+    @Test
+    public void routesOfOtherGraphVersionAreDroppedAndCompacted() throws Exception {
+        // given
+        Path file = Files.createTempDirectory("spdb-store").resolve("routes.bin");
+        AtomicLong version = new AtomicLong(1);
+        RouteStore store = new RouteStore(file, version::get, false, 0);
+        for (int i = 0; i < 20; i++) {
+            store.put(new RouteCache.RouteKey(i, i + 1, 90, 0.5f), store.graphVersion(), newRoute(30));
+        }
+        long sizeBefore = store.fileSize();
+
+        // when
+        version.set(2);
+        store.onWaysChanged(WaysChangedEvent.unknown());
+        long newVersion = store.graphVersion();
+        store.put(KEY, newVersion, newRoute(30));
+
+        // then
+        assertNull("Route of previous version should not be returned",
+                store.get(new RouteCache.RouteKey(0, 1, 90, 0.5f), newVersion));
+        assertNotNull("Route of current version should be returned", store.get(KEY, newVersion));
+        assertEquals("Only current routes should be indexed", 1, store.size());
+        assertTrue("File should be compacted", store.fileSize() < sizeBefore / 10);
+        store.close();
+        try (RouteStore reopened = new RouteStore(file, version::get, false, 0)) {
+            assertNotNull("Compacted file should be readable", reopened.get(KEY, reopened.graphVersion()));
+        }
+    }
+
+    @Test
+    public void incompleteRecordIsDroppedOnOpen() throws Exception {
+        // given
+        Path file = Files.createTempDirectory("spdb-store").resolve("routes.bin");
+        RouteCache.RouteKey other = new RouteCache.RouteKey(300, 400, 50, 0f);
+        try (RouteStore store = new RouteStore(file, () -> 3, true, 1 << 20)) {
+            store.put(KEY, store.graphVersion(), newRoute(10));
+            store.put(other, store.graphVersion(), newRoute(10));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        // when
+        try (RouteStore store = new RouteStore(file, () -> 3, true, 1 << 20)) {
+            // then
+            assertNotNull("Complete record should be read", store.get(KEY, store.graphVersion()));
+            assertNull("Incomplete record should be dropped", store.get(other, store.graphVersion()));
+            assertEquals("File should be truncated to complete records", Files.size(file), store.fileSize());
+        }
+    }
+
+    @Test
+    public void versionIsReadAgainOnlyAfterRefreshInterval() throws Exception {
+        // given
+        Path file = Files.createTempDirectory("spdb-store").resolve("routes.bin");
+        AtomicLong now = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+        try (RouteStore store = new RouteStore(file, () -> reads.incrementAndGet() > 1 ? 2 : 1, false, 0, 100,
+                now::get)) {
+            store.put(KEY, store.graphVersion(), newRoute(3));
+
+            // when
+            now.set(99);
+            boolean emptyBeforeRefresh = store.isEmpty();
+            long versionBeforeRefresh = store.graphVersion();
+            now.set(100);
+            long versionAfterRefresh = store.graphVersion();
+
+            // then
+            assertFalse("Store should not be empty before refresh", emptyBeforeRefresh);
+            assertEquals("Version should be cached within interval", 1L, versionBeforeRefresh);
+            assertEquals("Version should be read again after interval", 2L, versionAfterRefresh);
+            assertEquals("Version should be read once per interval", 2L, reads.get());
+            assertTrue("Routes of previous version should be dropped", store.isEmpty());
+        }
+    }
+
+    private static Route newRoute(int segmentCount) {
+        List<RouteSegment> segments = new ArrayList<>();
+        double[] coordinates = new double[(segmentCount + 1) * 2];
+        for (int i = 0; i < segmentCount; i++) {
+            double x = 21.0 + i * 0.0013;
+            double y = 52.2 + i * 0.00071;
+            segments.add(new RouteSegment(1000 + i * 3, 500 + i, 501 + i, 0.1234567 + i * 0.01, 50 + i % 3 * 20,
+                    x, y, x + 0.0013, y + 0.00071));
+            coordinates[i * 2] = x;
+            coordinates[i * 2 + 1] = y;
+        }
+        coordinates[segmentCount * 2] = 21.0 + segmentCount * 0.0013;
+        coordinates[segmentCount * 2 + 1] = 52.2 + segmentCount * 0.00071;
+        Route route = Route.of(segments, 90);
+        route.setGeometry(new RouteGeometry(coordinates));
+        return route;
+    }
+}
@@ -0,0 +1,62 @@
+package pl.edu.pw.spdb.service;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.dal.RunningQueries;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.springframework.test.util.AssertionErrors.*;
+
+public class SearchExecutorTest {
+
+    @Test
+    public void newBatchCancelsRunningSearchAndItsQuery() throws Exception {
+        // given
+        RunningQueries runningQueries = new RunningQueries();
+        SearchExecutor executor = new SearchExecutor(Executors.newCachedThreadPool(), runningQueries);
+        AtomicBoolean queryCancelled = new AtomicBoolean();
+        Statement statement = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("cancel")) {
+                        queryCancelled.set(true);
+                    }
+                    return null;
+                });
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        FutureTask<String> first = new FutureTask<>(() -> {
+            runningQueries.register(statement);
+            queryStarted.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                // zapytanie JDBC nie reaguje na przerwanie wątku - kończy się dopiero po Statement.cancel()
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (!queryCancelled.get() && System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+            } finally {
+                runningQueries.unregister();
+            }
+            return "first";
+        });
+        FutureTask<String> second = new FutureTask<>(() -> "second");
+
+        // when
+        executor.submitBatch(List.of(first));
+        queryStarted.await(5, TimeUnit.SECONDS);
+        executor.submitBatch(List.of(second));
+
+        // then
+        assertTrue("Superseded search should be cancelled", first.isCancelled());
+        assertTrue("Superseded search thread should be interrupted", interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue("Running query should be cancelled", queryCancelled.get());
+        assertEquals("New search should run", "second", second.get(5, TimeUnit.SECONDS));
+        executor.close();
+    }
+}
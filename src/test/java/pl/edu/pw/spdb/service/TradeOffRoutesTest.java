@@ -0,0 +1,52 @@
+package pl.edu.pw.spdb.service;
+
+import com.sothawo.mapjfx.Coordinate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.edu.pw.spdb.dal.InMemoryDatabaseService;
+import pl.edu.pw.spdb.dal.graph.ContractionHierarchyRegistry;
+import pl.edu.pw.spdb.dal.graph.LandmarkRegistry;
+import pl.edu.pw.spdb.dal.graph.RoadGraph;
+import pl.edu.pw.spdb.dal.graph.TestGraphs;
+import pl.edu.pw.spdb.metrics.RouteMetrics;
+import pl.edu.pw.spdb.model.Route;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+public class TradeOffRoutesTest {
+
+    @Test
+    public void returnsShortestFastestAndNonDominatedRoutesBetweenThem() throws Exception {
+        // given
+        RoadGraph graph = TestGraphs.grid(25, 25, 21);
+        RouteMetrics metrics = new RouteMetrics(new SimpleMeterRegistry());
+        String directory = Files.createTempDirectory("spdb-test").toString();
+        SearchPathService service = new SearchPathService(new InMemoryDatabaseService(graph,
+                new ContractionHierarchyRegistry(graph, List.of(), directory),
+                new LandmarkRegistry(graph, 0, directory + "/landmarks.bin"), metrics), new RouteCache(100, 600), metrics);
+        Coordinate start = new Coordinate(graph.latitude(0), graph.longitude(0));
+        Coordinate end = new Coordinate(graph.latitude(graph.nodeCount() - 1), graph.longitude(graph.nodeCount() - 1));
+
+        // when
+        List<Route> routes = service.findTradeOffRoutes(start, end, 140);
+
+        // then
+        Route shortest = service.findRoute(start, end, 140, 1);
+        Route fastest = service.findRoute(start, end, 140, 0);
+        assertTrue("Shortest route should be first",
+                Math.abs(routes.get(0).getDistance() - shortest.getDistance()) < 1e-9);
+        assertTrue("Fastest route should be last",
+                Math.abs(routes.get(routes.size() - 1).getEstimatedTime() - fastest.getEstimatedTime()) < 1e-9);
+        for (int i = 1; i < routes.size(); i++) {
+            assertTrue("Each route should be longer than previous",
+                    routes.get(i).getDistance() > routes.get(i - 1).getDistance());
+            assertTrue("Each route should be faster than previous",
+                    routes.get(i).getEstimatedTime() < routes.get(i - 1).getEstimatedTime());
+        }
+        assertTrue("Routes between shortest and fastest should be found, found " + routes.size(), routes.size() > 2);
+        assertTrue("Weight of route found by vertex ids should be set", routes.get(1).getDistanceWeight() > 0);
+    }
+}